@@ -0,0 +1,110 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+
+package net.sf.sdedit.bench;
+
+import net.sf.sdedit.config.ConfigurationManager;
+import net.sf.sdedit.config.SequenceConfiguration;
+import net.sf.sdedit.diagram.PaintDevice;
+import net.sf.sdedit.diagram.SequenceDiagram;
+import net.sf.sdedit.text.TextHandler;
+import net.sf.sdedit.text.WorkloadGenerator;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The diagram that the benchmarks work on, made by a
+ * {@linkplain WorkloadGenerator}. Its shape is given by the parameters, which
+ * can be overridden on the command line, for example
+ * <tt>-p lifelines=50 -p messages=10000</tt>.
+ * 
+ * @author Markus Strauch
+ */
+@State(Scope.Benchmark)
+public class DiagramState {
+
+	@Param("10")
+	public int lifelines;
+
+	@Param({ "100", "1000" })
+	public int messages;
+
+	@Param("5")
+	public int depth;
+
+	@Param("0")
+	public int threads;
+
+	@Param("10")
+	public int fragments;
+
+	@Param("10")
+	public int notes;
+
+	private String text;
+
+	private SequenceConfiguration configuration;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		WorkloadGenerator generator = new WorkloadGenerator();
+		generator.setLifelines(lifelines);
+		generator.setMessages(messages);
+		generator.setMaxDepth(depth);
+		generator.setThreads(threads);
+		generator.setFragments(fragments);
+		generator.setNotes(notes);
+		generator.setSeed(1);
+		text = generator.generate();
+		configuration = ConfigurationManager.createNewDefaultConfiguration(
+				SequenceConfiguration.class).getDataObject();
+		configuration.setThreaded(generator.isThreaded());
+	}
+
+	public String getText() {
+		return text;
+	}
+
+	public SequenceConfiguration getConfiguration() {
+		return configuration;
+	}
+
+	/**
+	 * Returns a new diagram that is generated from the text, but has not been
+	 * generated yet.
+	 * 
+	 * @param paintDevice
+	 *            the paint device of the diagram
+	 * @return a new diagram
+	 */
+	public SequenceDiagram newDiagram(PaintDevice paintDevice) {
+		return new SequenceDiagram(configuration, new TextHandler(text),
+				paintDevice);
+	}
+
+}
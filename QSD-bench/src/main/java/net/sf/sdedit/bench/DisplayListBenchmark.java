@@ -0,0 +1,106 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.bench;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.sdedit.diagram.SDPaintDevice;
+import net.sf.sdedit.drawable.DisplayList;
+import net.sf.sdedit.drawable.Strokes;
+import net.sf.sdedit.error.DiagramError;
+import net.sf.sdedit.ui.PanelGraphicDevice;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for recording the {@linkplain DisplayList} of a diagram as it is
+ * displayed and for replaying it tile by tile into an offscreen image, like
+ * {@linkplain PaintBenchmark} paints the diagram.
+ * 
+ * @author Markus Strauch
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true" })
+public class DisplayListBenchmark {
+
+	private static final int TILE_SIZE = 1024;
+
+	private SDPaintDevice paintDevice;
+
+	private DisplayList displayList;
+
+	private BufferedImage tile;
+
+	@Setup
+	public void setUp(DiagramState diagram) throws DiagramError {
+		paintDevice = new SDPaintDevice(new PanelGraphicDevice(false));
+		diagram.newDiagram(paintDevice).generate();
+		displayList = paintDevice.getDisplayList();
+		tile = new BufferedImage(TILE_SIZE, TILE_SIZE,
+				BufferedImage.TYPE_INT_RGB);
+	}
+
+	@Benchmark
+	public DisplayList record() {
+		return DisplayList.record(paintDevice, paintDevice.getWidth(),
+				paintDevice.getHeight(), paintDevice.getFont());
+	}
+
+	@Benchmark
+	public BufferedImage replay() {
+		for (int y = 0; y < displayList.getHeight(); y += TILE_SIZE) {
+			for (int x = 0; x < displayList.getWidth(); x += TILE_SIZE) {
+				Graphics2D g2d = tile.createGraphics();
+				g2d.setColor(Color.WHITE);
+				g2d.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+				g2d.translate(-x, -y);
+				g2d.setFont(displayList.getFont());
+				g2d.setColor(Color.BLACK);
+				g2d.setStroke(Strokes.defaultStroke());
+				displayList.replay(g2d, new Rectangle(x, y, TILE_SIZE,
+						TILE_SIZE));
+				g2d.dispose();
+			}
+		}
+		return tile;
+	}
+
+}
@@ -0,0 +1,117 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+
+package net.sf.sdedit.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import net.sf.sdedit.diagram.NullPaintDevice;
+import net.sf.sdedit.diagram.SDPaintDevice;
+import net.sf.sdedit.diagram.SequenceDiagram;
+import net.sf.sdedit.error.DiagramError;
+import net.sf.sdedit.ui.PanelGraphicDevice;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the layout of diagrams: generating a diagram without
+ * drawing it, and the two passes of an {@linkplain SDPaintDevice} that run
+ * when all messages have been read.
+ * 
+ * @author Markus Strauch
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true" })
+public class LayoutBenchmark {
+
+	/**
+	 * A diagram whose messages have all been read, but whose lifeline axes
+	 * and bounds have not been computed.
+	 */
+	@State(Scope.Thread)
+	public static class Generated {
+
+		SDPaintDevice paintDevice;
+
+		int leftAxis;
+
+		@Setup(Level.Invocation)
+		public void generate(DiagramState diagram) throws DiagramError {
+			paintDevice = new SDPaintDevice(new PanelGraphicDevice(false));
+			SequenceDiagram sequenceDiagram = diagram.newDiagram(paintDevice);
+			sequenceDiagram.generate(false);
+			// as in SequenceDiagram.finishGeneration
+			leftAxis = diagram.getConfiguration().getLeftMargin() + 6
+					+ sequenceDiagram.getLifelineAt(0).getHead().getWidth() / 2;
+		}
+	}
+
+	/**
+	 * Like {@linkplain Generated}, but with the lifeline axes computed.
+	 */
+	@State(Scope.Thread)
+	public static class Positioned extends Generated {
+
+		@Setup(Level.Invocation)
+		public void computeAxes() {
+			paintDevice.callSpecial("computeAxes", leftAxis);
+		}
+	}
+
+	@Benchmark
+	public SequenceDiagram generate(DiagramState diagram) throws DiagramError {
+		SequenceDiagram sequenceDiagram = diagram
+				.newDiagram(new NullPaintDevice());
+		// like a dry run, notes cannot be attached to arrows that have not
+		// been laid out by a real paint device
+		sequenceDiagram.generate(false);
+		return sequenceDiagram;
+	}
+
+	@Benchmark
+	public SDPaintDevice computeAxes(Generated generated) {
+		generated.paintDevice.callSpecial("computeAxes", generated.leftAxis);
+		return generated.paintDevice;
+	}
+
+	@Benchmark
+	public SDPaintDevice computeBounds(Positioned positioned) {
+		positioned.paintDevice.computeBounds();
+		return positioned.paintDevice;
+	}
+
+}
@@ -41,8 +41,10 @@ import javax.swing.event.UndoableEditListener;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.DefaultEditorKit;
 import javax.swing.text.DefaultHighlighter;
+import javax.swing.text.Element;
 import javax.swing.text.Highlighter;
 import javax.swing.text.JTextComponent;
+import javax.swing.text.Segment;
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
 import javax.swing.undo.UndoManager;
@@ -187,16 +189,83 @@ public class TextArea extends JTextPane implements UndoableEditListener,
 	 * @return the number of the line the cursor is in
 	 */
 	public int getCaretLine() {
-		final int caret = getCaretPosition();
-		final String text = getText();
-		int line = 0;
-		for (int i = 0; i < caret; i++) {
-			char c = text.charAt(i);
-			if (c == '\n') {
-				line++;
+		return getLineOfOffset(getCaretPosition());
+	}
+
+	/*
+	 * The children of the root element are the lines (paragraphs) of the
+	 * text. The document keeps them up to date as it is changed, their offsets
+	 * are positions that move with insertions and removals, and the index of
+	 * the element containing an offset is found by a binary search. So the
+	 * methods dealing with lines need not look at the text itself.
+	 */
+	private Element getLines() {
+		return getDocument().getDefaultRootElement();
+	}
+
+	/**
+	 * Returns the number of lines of the text.
+	 * 
+	 * @return the number of lines of the text
+	 */
+	public int getLineCount() {
+		return getLines().getElementCount();
+	}
+
+	/**
+	 * Returns the number (starting with 0) of the line that contains the
+	 * given offset. This takes logarithmic time and does not copy the text.
+	 * 
+	 * @param offset
+	 *            an offset in the text
+	 * @return the number of the line that contains the offset
+	 */
+	public int getLineOfOffset(int offset) {
+		return getLines().getElementIndex(offset);
+	}
+
+	/**
+	 * Returns the offset of the first character of the given line.
+	 * 
+	 * @param line
+	 *            the number of a line (starting with 0)
+	 * @return the offset of the first character of the line
+	 * @throws IllegalArgumentException
+	 *             if there is no such line
+	 */
+	public int getLineStartOffset(int line) {
+		if (line < 0 || line >= getLineCount()) {
+			throw new IllegalArgumentException("no such line: " + line);
+		}
+		return getLines().getElement(line).getStartOffset();
+	}
+
+	private char charAt(int offset, Segment segment) {
+		try {
+			getDocument().getText(offset, 1, segment);
+		} catch (BadLocationException e) {
+			throw new IllegalArgumentException(e);
+		}
+		return segment.first();
+	}
+
+	/**
+	 * Returns true if there are only whitespace characters (in the sense of
+	 * <tt>String.trim()</tt>) between the given offset and the end of the
+	 * text. The text is scanned backwards from the end, without being copied.
+	 * 
+	 * @param offset
+	 *            an offset in the text
+	 * @return true if there are only whitespace characters after the offset
+	 */
+	public boolean isBlankFrom(int offset) {
+		Segment segment = new Segment();
+		for (int i = getDocument().getLength() - 1; i >= offset; i--) {
+			if (charAt(i, segment) > ' ') {
+				return false;
 			}
 		}
-		return line;
+		return true;
 	}
 
 	/**
@@ -242,23 +311,26 @@ public class TextArea extends JTextPane implements UndoableEditListener,
 	 *         (where the cursor is)
 	 */
 	public int getCurrentLineBegin() {
-		final int caret = getCaretPosition();
-		final String text = getText();
-		int i = Math.min(text.length() - 1, caret);
+		Segment segment = new Segment();
+		int i = Math.min(getDocument().getLength() - 1, getCaretPosition());
 		// search for the next character that is not a line break
 		for (; i >= 0; i--) {
-			final char c = text.charAt(i);
+			final char c = charAt(i, segment);
 			if (c != '\n' && c != '\r') {
 				break;
 			}
 		}
-		for (; i >= 0; i--) {
-			final char c = text.charAt(i);
-			if (c == '\n' || c == '\r') {
-				return i + 1; //2;
+		if (i < 0) {
+			return 0;
+		}
+		int begin = getLineStartOffset(getLineOfOffset(i));
+		// a single '\r' does not end a line of the document
+		for (int j = i; j > begin; j--) {
+			if (charAt(j - 1, segment) == '\r') {
+				return j;
 			}
 		}
-		return 0;
+		return begin;
 	}
 
 	// paint a thick line under one line of text, from r extending rightward
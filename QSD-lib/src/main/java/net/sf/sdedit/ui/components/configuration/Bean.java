@@ -23,8 +23,6 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package net.sf.sdedit.ui.components.configuration;
 
-import java.beans.BeanInfo;
-import java.beans.Introspector;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyDescriptor;
@@ -32,6 +30,10 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.lang.reflect.InvocationHandler;
@@ -46,10 +48,6 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedMap;
-import java.util.TreeMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import net.sf.sdedit.util.DocUtil;
 import net.sf.sdedit.util.DocUtil.XMLException;
@@ -76,6 +74,13 @@ import org.w3c.dom.Element;
  * enforced by the <tt>permitNullValues</tt> property set to false), and legal,
  * i. e. string properties for which there is a set of alternative values are
  * always assigned to a legal value.
+ * <p>
+ * The data object is an instance of a class that is generated at runtime for
+ * the data interface, with a field for each property, so its get-methods are
+ * plain field reads. Setting the system property
+ * {@value #DATA_OBJECTS_PROPERTY} to <tt>proxy</tt> makes beans use dynamic
+ * proxies (which look up the values on each call) instead. Proxies are also
+ * used for interfaces that cannot be implemented by a generated class.
  * 
  * 
  * @author Markus Strauch
@@ -88,30 +93,53 @@ public class Bean<T extends DataObject> implements Serializable,
 
 	private static final long serialVersionUID = -8567877402350780001L;
 
-	private transient Set<PropertyChangeListener> listeners;
+	/*
+	 * The serialized form is the one of the versions that stored the values
+	 * in a map, by their property names (see writeObject and readObject), so
+	 * beans can be exchanged with them and the values are found by name even
+	 * when properties have been added, removed or reordered.
+	 */
+	private static final ObjectStreamField[] serialPersistentFields = {
+			new ObjectStreamField("values", HashMap.class),
+			new ObjectStreamField("dataClass", Class.class),
+			new ObjectStreamField("permitNullValues", Boolean.TYPE),
+			new ObjectStreamField("stringSets", Map.class),
+			new ObjectStreamField("methodToPropertyNameMap", Map.class),
+			new ObjectStreamField("alwaysNotifyListeners", Boolean.TYPE) };
+
+	/**
+	 * The name of the system property that determines how data objects are
+	 * implemented, one of {generated, proxy}. The default is
+	 * <tt>generated</tt>.
+	 */
+	public static final String DATA_OBJECTS_PROPERTY = "sdedit.dataObjects";
+
+	private static final boolean GENERATE_DATA_OBJECTS = !"proxy"
+			.equals(System.getProperty(DATA_OBJECTS_PROPERTY));
 
-	private transient SortedMap<String, PropertyDescriptor> properties;
+	private transient Set<PropertyChangeListener> listeners;
 
-	private transient SortedMap<String, String> order;
+	// shared by all beans for the data class
+	private transient BeanMetadata metadata;
 
-	// The state of the artificial object accessed by the T proxy
-	// (see getDataObject())
-	private HashMap<String, Object> values;
+	// The state of the data object (see getDataObject()), indexed by the
+	// ordinals of the properties
+	private Object[] values;
 
 	private Class<T> dataClass;
 
 	private transient T dataObject;
 
+	// not null if dataObject is an instance of a generated class
+	private transient GeneratedDataObject generatedObject;
+
 	private transient StringSelectionProvider ssp;
 
 	private boolean permitNullValues;
 
+	// created on demand
 	private Map<String, Set<String>> stringSets;
 
-	private Map<String, String> methodToPropertyNameMap;
-
-	private transient Pattern pattern;
-
 	// flag denoting if PropertyChangeListeners should always be
 	// informed about settings of attributes, even when the value
 	// of the attribute does not change.
@@ -130,79 +158,46 @@ public class Bean<T extends DataObject> implements Serializable,
 	 *            {@linkplain Adjustable#stringSelectionProvided()}
 	 */
 	public Bean(Class<T> dataClass, StringSelectionProvider ssp) {
-		values = new HashMap<String, Object>();
 		this.ssp = ssp;
 		this.dataClass = dataClass;
-		init();
+		metadata = BeanMetadata.get(dataClass);
+		listeners = new LinkedHashSet<PropertyChangeListener>();
+		values = metadata.newValues();
 		permitNullValues = false;
-		stringSets = new HashMap<String, Set<String>>();
-		methodToPropertyNameMap = new HashMap<String, String>();
 		alwaysNotifyListeners = false;
 	}
 
-	public Class<T> getDataClass() {
-		return dataClass;
+	/*
+	 * Creates a copy of the given bean, without any listeners.
+	 */
+	private Bean(Bean<T> bean) {
+		ssp = bean.ssp;
+		dataClass = bean.dataClass;
+		metadata = bean.metadata;
+		listeners = new LinkedHashSet<PropertyChangeListener>();
+		values = bean.values.clone();
+		Object[] nullValues = null;
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] == null) {
+				// the copy does not permit null values
+				if (nullValues == null) {
+					nullValues = metadata.newValues();
+				}
+				values[i] = nullValues[i];
+			}
+		}
+		permitNullValues = false;
+		alwaysNotifyListeners = false;
 	}
 
-	private static String norm(String property) {
-		return Character.toUpperCase(property.charAt(0))
-				+ property.substring(1);
+	public Class<T> getDataClass() {
+		return dataClass;
 	}
 
 	public Set<PropertyChangeListener> getPropertyChangeListeners() {
 		return Collections.checkedSet(listeners, PropertyChangeListener.class);
 	}
 
-	private void init() {
-		properties = new TreeMap<String, PropertyDescriptor>();
-		order = new TreeMap<String, String>();
-		listeners = new LinkedHashSet<PropertyChangeListener>();
-		pattern = Pattern.compile("get|set|is");
-		Class<?> cls = dataClass;
-		while (cls != null) {
-			try {
-				BeanInfo beanInfo = Introspector.getBeanInfo(cls);
-				PropertyDescriptor[] propertyDescriptors = beanInfo
-						.getPropertyDescriptors();
-				for (int i = 0; i < propertyDescriptors.length; i++) {
-					PropertyDescriptor property = propertyDescriptors[i];
-					if (property.getWriteMethod() != null
-							&& property.getWriteMethod().isAnnotationPresent(
-									Adjustable.class)) {
-						String key = property.getWriteMethod()
-								.getAnnotation(Adjustable.class).key();
-						if (key.equals("")) {
-							key = norm(property.getName());
-						}
-						order.put(key, norm(property.getName()));
-						properties.put(norm(property.getName()), property);
-
-						if (getValue(property) == null) {
-							// may not be null when called in the process of
-							// deserialization
-							// (see readObject)
-							setValue(property,
-									NullValueProvider.getNullValue(property
-											.getPropertyType()));
-
-						}
-					}
-				}
-			} catch (RuntimeException e) {
-				throw e;
-			} catch (Throwable t) {
-				t.printStackTrace();
-				throw new IllegalStateException(
-						"FATAL: data class introspection was not successful");
-			}
-			if (cls.getInterfaces() != null && cls.getInterfaces().length > 0) {
-				cls = cls.getInterfaces()[0];
-			} else {
-				cls = null;
-			}
-		}
-	}
-
 	/**
 	 * Returns the synthetic data object implementing the data interface
 	 * belonging to this {@linkplain Bean}.
@@ -213,12 +208,56 @@ public class Bean<T extends DataObject> implements Serializable,
 	@SuppressWarnings("unchecked")
 	public T getDataObject() {
 		if (dataObject == null) {
-			dataObject = (T) Proxy.newProxyInstance(dataClass.getClassLoader(),
-					new Class[] { dataClass }, this);
+			DataObjectGenerator generator = GENERATE_DATA_OBJECTS ? metadata
+					.getGenerator() : null;
+			if (generator != null) {
+				GeneratedDataObject object = generator.newInstance(this);
+				for (int i = 0; i < values.length; i++) {
+					update(object, i, values[i]);
+				}
+				generatedObject = object;
+				dataObject = (T) object;
+			} else {
+				dataObject = (T) Proxy.newProxyInstance(
+						dataClass.getClassLoader(), new Class[] { dataClass },
+						this);
+			}
 		}
 		return dataObject;
 	}
 
+	private void update(GeneratedDataObject object, int ordinal, Object value) {
+		// a primitive field keeps its value if the property becomes null
+		if (value != null
+				|| !metadata.getProperty(ordinal).getPropertyType()
+						.isPrimitive()) {
+			object.update(ordinal, value);
+		}
+	}
+
+	/**
+	 * Called by the set-methods of generated data objects.
+	 * 
+	 * @param ordinal
+	 *            the ordinal of the property
+	 * @param value
+	 *            the new value
+	 */
+	void setGeneratedValue(int ordinal, Object value) {
+		setValue(ordinal, value);
+	}
+
+	/*
+	 * Changes the value of a property in the array and in the generated data
+	 * object, if there is one.
+	 */
+	private void put(int ordinal, Object value) {
+		values[ordinal] = value;
+		if (generatedObject != null) {
+			update(generatedObject, ordinal, value);
+		}
+	}
+
 	/**
 	 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object,
 	 *      java.lang.reflect.Method, java.lang.Object[])
@@ -248,19 +287,16 @@ public class Bean<T extends DataObject> implements Serializable,
 			DataObject other = (DataObject) args[0];
 			return this.equals(other.getBean(DataObject.class));
 		}
-		String property = methodToPropertyNameMap.get(name);
-
-		if (property == null) {
-			Matcher matcher = pattern.matcher(name);
-			property = matcher.replaceFirst("");
-			methodToPropertyNameMap.put(name, property);
+		int ordinal = metadata.getMethodOrdinal(name);
+		if (ordinal < 0) {
+			return null;
 		}
 		if (name.charAt(0) == 's') {
 			// set-method
-			setValue(properties.get(property), args[0]);
+			setValue(ordinal, args[0]);
 			return null;
 		}
-		return getValue(property);
+		return values[ordinal];
 	}
 
 	/**
@@ -271,22 +307,11 @@ public class Bean<T extends DataObject> implements Serializable,
 	 *         {@linkplain Adjustable} annotation
 	 */
 	public Collection<PropertyDescriptor> getProperties() {
-		List<PropertyDescriptor> list = new LinkedList<PropertyDescriptor>();
-		for (String property : order.values()) {
-			list.add(properties.get(property));
-		}
-		return list;
+		return metadata.getProperties();
 	}
 
 	public Collection<PropertyDescriptor> getPrimaryProperties() {
-		List<PropertyDescriptor> list = new LinkedList<PropertyDescriptor>();
-		Collection<PropertyDescriptor> properties = getProperties();
-		for (PropertyDescriptor prop : properties) {
-			if (prop.getWriteMethod().getAnnotation(Adjustable.class).primary()) {
-				list.add(prop);
-			}
-		}
-		return list;
+		return metadata.getPrimaryProperties();
 	}
 
 	/**
@@ -299,7 +324,8 @@ public class Bean<T extends DataObject> implements Serializable,
 	 *         there is no property with the name
 	 */
 	public PropertyDescriptor getProperty(String name) {
-		return properties.get(norm(name));
+		int ordinal = metadata.getOrdinal(name);
+		return ordinal < 0 ? null : metadata.getProperty(ordinal);
 	}
 
 	/**
@@ -334,8 +360,8 @@ public class Bean<T extends DataObject> implements Serializable,
 	 *            another bean
 	 */
 	public void takeValuesFrom(Bean<T> bean) {
-		for (PropertyDescriptor property : getProperties()) {
-			setValue(property, bean.getValue(property.getName()));
+		for (int i = 0; i < values.length; i++) {
+			setValue(i, bean.values[i]);
 		}
 	}
 
@@ -345,9 +371,7 @@ public class Bean<T extends DataObject> implements Serializable,
 	 * @return a shallow copy of this bean
 	 */
 	public Bean<T> copy() {
-		Bean<T> copy = new Bean<T>(dataClass, ssp);
-		copy.takeValuesFrom(this);
-		return copy;
+		return new Bean<T>(this);
 	}
 
 	/**
@@ -358,7 +382,8 @@ public class Bean<T extends DataObject> implements Serializable,
 	 * @return the current value of the property
 	 */
 	public final Object getValue(String property) {
-		return values.get(norm(property));
+		int ordinal = metadata.getOrdinal(property);
+		return ordinal < 0 ? null : values[ordinal];
 	}
 
 	public final Object getValue(PropertyDescriptor pd) {
@@ -452,34 +477,43 @@ public class Bean<T extends DataObject> implements Serializable,
 	 *            the new value of the property
 	 */
 	public final void setValue(PropertyDescriptor property, Object value) {
+		int ordinal = metadata.getOrdinal(property.getName());
+		if (ordinal < 0) {
+			throw new IllegalArgumentException("no such property: "
+					+ property.getName());
+		}
+		setValue(ordinal, value);
+	}
+
+	private void setValue(int ordinal, Object value) {
 		if (value == null && !permitNullValues) {
 			return;
 		}
+		PropertyDescriptor property = metadata.getProperty(ordinal);
 		if (!"".equals(value) && property.getPropertyType() == String.class) {
 			Set<String> choices = getStringsForProperty(property);
 			if (!choices.isEmpty() && !choices.contains(value)) {
 				return;
 			}
 		}
-		String propertyName = norm(property.getName());
-		Object oldValue = values.get(propertyName);
-		values.put(propertyName, value);
-		firePropertyChanged(property, value, oldValue);
+		Object oldValue = values[ordinal];
+		put(ordinal, value);
+		firePropertyChanged(ordinal, value, oldValue);
 	}
 
 	/**
 	 * Sends a notification about the change of a property provided both values
 	 * are not equal (with respect to the result of <tt>equals(Object)</tt>.
 	 * 
-	 * @param property
-	 *            the descriptor of the property whose value has changed
+	 * @param ordinal
+	 *            the ordinal of the property whose value has changed
 	 * @param newValue
 	 *            the new value of the property
 	 * @param oldValue
 	 *            the old value of the property
 	 */
-	private void firePropertyChanged(PropertyDescriptor property,
-			Object newValue, Object oldValue) {
+	private void firePropertyChanged(int ordinal, Object newValue,
+			Object oldValue) {
 		boolean notify;
 		if (alwaysNotifyListeners) {
 			notify = true;
@@ -493,14 +527,14 @@ public class Bean<T extends DataObject> implements Serializable,
 			}
 		}
 		if (notify) {
+			PropertyDescriptor property = metadata.getProperty(ordinal);
 			List<PropertyChangeListener> _listeners;
 			PropertyChangeEvent event = new PropertyChangeEvent(this,
 					property.getName(), oldValue, newValue);
 			synchronized (this) {
 				_listeners = new LinkedList<PropertyChangeListener>(listeners);
 			}
-			Adjustable adj = property.getWriteMethod().getAnnotation(
-					Adjustable.class);
+			Adjustable adj = metadata.getAdjustable(ordinal);
 			try {
 				for (PropertyChangeListener listener : _listeners) {
 					Method actionMethod = null;
@@ -525,7 +559,7 @@ public class Bean<T extends DataObject> implements Serializable,
 				}
 			} finally {
 				if (adj.button()) {
-					values.put(norm(property.getName()), false);
+					put(ordinal, false);
 				}
 			}
 		}
@@ -546,9 +580,10 @@ public class Bean<T extends DataObject> implements Serializable,
 		if (dataClass != bean.getDataClass()) {
 			return false;
 		}
-		for (PropertyDescriptor property : getProperties()) {
-			Object myVal = getValue(property.getName());
-			Object yourVal = bean.getValue(property.getName());
+		// same data class, so the ordinals are the same
+		for (int i = 0; i < values.length; i++) {
+			Object myVal = values[i];
+			Object yourVal = bean.values[i];
 			if (myVal == null && yourVal == null) {
 				// check next property if both are null
 				continue;
@@ -570,8 +605,7 @@ public class Bean<T extends DataObject> implements Serializable,
 	@Override
 	public int hashCode() {
 		StringBuffer code = new StringBuffer();
-		for (PropertyDescriptor property : getProperties()) {
-			Object val = getValue(property.getName());
+		for (Object val : values) {
 			code.append(val);
 		}
 		return code.hashCode();
@@ -588,7 +622,10 @@ public class Bean<T extends DataObject> implements Serializable,
 	 *         given String property
 	 */
 	public Set<String> getStringsForProperty(PropertyDescriptor property) {
-		String propName = norm(property.getName());
+		String propName = BeanMetadata.norm(property.getName());
+		if (stringSets == null) {
+			stringSets = new HashMap<String, Set<String>>();
+		}
 		Set<String> strings = stringSets.get(propName);
 		if (strings == null) {
 			strings = new LinkedHashSet<String>();
@@ -603,7 +640,7 @@ public class Bean<T extends DataObject> implements Serializable,
 			for (String choice : choices) {
 				strings.add(choice);
 			}
-			stringSets.put(norm(property.getName()), strings);
+			stringSets.put(propName, strings);
 		}
 		return strings;
 	}
@@ -613,7 +650,9 @@ public class Bean<T extends DataObject> implements Serializable,
 	}
 
 	public void clearStringSelection(String propertyName) {
-		stringSets.remove(norm(propertyName));
+		if (stringSets != null) {
+			stringSets.remove(BeanMetadata.norm(propertyName));
+		}
 	}
 
 	@Override
@@ -650,10 +689,55 @@ public class Bean<T extends DataObject> implements Serializable,
 		this.permitNullValues = permitNullValues;
 	}
 
-	private void readObject(java.io.ObjectInputStream in) throws IOException,
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		HashMap<String, Object> map = new HashMap<String, Object>();
+		for (int i = 0; i < values.length; i++) {
+			map.put(BeanMetadata.norm(metadata.getProperty(i).getName()),
+					values[i]);
+		}
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("values", map);
+		fields.put("dataClass", dataClass);
+		fields.put("permitNullValues", permitNullValues);
+		fields.put("stringSets", stringSets);
+		// a cache of older versions, filled on demand
+		fields.put("methodToPropertyNameMap", new HashMap<String, String>());
+		fields.put("alwaysNotifyListeners", alwaysNotifyListeners);
+		out.writeFields();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException,
 			ClassNotFoundException {
-		in.defaultReadObject();
-		init();
+		ObjectInputStream.GetField fields = in.readFields();
+		dataClass = (Class<T>) fields.get("dataClass", null);
+		if (dataClass == null) {
+			throw new InvalidObjectException("no data class");
+		}
+		permitNullValues = fields.get("permitNullValues", false);
+		stringSets = (Map<String, Set<String>>) fields.get("stringSets", null);
+		alwaysNotifyListeners = fields.get("alwaysNotifyListeners", false);
+		Map<String, Object> map = (Map<String, Object>) fields.get("values",
+				null);
+		metadata = BeanMetadata.get(dataClass);
+		listeners = new LinkedHashSet<PropertyChangeListener>();
+		values = metadata.newValues();
+		if (map == null) {
+			return;
+		}
+		// properties that are unknown or not stored keep their null values,
+		// and so do the ones whose types have changed
+		for (int i = 0; i < values.length; i++) {
+			Object value = map.get(BeanMetadata.norm(metadata.getProperty(i)
+					.getName()));
+			Class<?> type = metadata.getProperty(i).getPropertyType();
+			if (type.isPrimitive()) {
+				type = values[i].getClass();
+			}
+			if (type.isInstance(value)) {
+				values[i] = value;
+			}
+		}
 	}
 
 }
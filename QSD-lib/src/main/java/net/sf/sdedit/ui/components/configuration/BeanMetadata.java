@@ -0,0 +1,257 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.ui.components.configuration;
+
+import java.beans.BeanInfo;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * <tt>BeanMetadata</tt> describes the properties of a data interface: their
+ * descriptors and annotations, the order in which they are presented and the
+ * values they have before anything has been set. It is computed once per
+ * interface (see {@linkplain #get(Class)}) and shared by all
+ * {@linkplain Bean}s for that interface, including copies and deserialized
+ * beans. Instances are immutable, apart from the lazily created
+ * {@linkplain DataObjectGenerator}, and thus thread-safe.
+ * <p>
+ * Each property has an ordinal, a bean stores the value of a property at the
+ * ordinal's position in an array.
+ * 
+ * @author Markus Strauch
+ */
+final class BeanMetadata {
+
+	private static final ClassValue<BeanMetadata> registry = new ClassValue<BeanMetadata>() {
+		@Override
+		protected BeanMetadata computeValue(Class<?> type) {
+			return new BeanMetadata(type);
+		}
+	};
+
+	private final Class<?> dataClass;
+
+	/*
+	 * The properties, indexed by their ordinals. They are sorted by their
+	 * (capitalized) names.
+	 */
+	private final PropertyDescriptor[] properties;
+
+	private final Adjustable[] adjustables;
+
+	/*
+	 * Maps the names of the properties (as given by the descriptors and
+	 * capitalized) onto their ordinals.
+	 */
+	private final Map<String, Integer> ordinals;
+
+	/*
+	 * Maps the names of the get-, is- and set-methods onto the ordinals of
+	 * their properties.
+	 */
+	private final Map<String, Integer> methods;
+
+	/*
+	 * The properties, sorted by their keys (see Adjustable.key()).
+	 */
+	private final List<PropertyDescriptor> ordered;
+
+	private final List<PropertyDescriptor> primary;
+
+	private final Object[] nullValues;
+
+	private boolean generatorCreated;
+
+	private DataObjectGenerator generator;
+
+	private BeanMetadata(Class<?> dataClass) {
+		this.dataClass = dataClass;
+		SortedMap<String, PropertyDescriptor> byName = new TreeMap<String, PropertyDescriptor>();
+		SortedMap<String, String> order = new TreeMap<String, String>();
+		Class<?> cls = dataClass;
+		while (cls != null) {
+			try {
+				BeanInfo beanInfo = Introspector.getBeanInfo(cls);
+				for (PropertyDescriptor property : beanInfo
+						.getPropertyDescriptors()) {
+					if (property.getWriteMethod() != null
+							&& property.getWriteMethod().isAnnotationPresent(
+									Adjustable.class)) {
+						String key = property.getWriteMethod()
+								.getAnnotation(Adjustable.class).key();
+						if (key.equals("")) {
+							key = norm(property.getName());
+						}
+						order.put(key, norm(property.getName()));
+						byName.put(norm(property.getName()), property);
+					}
+				}
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Throwable t) {
+				t.printStackTrace();
+				throw new IllegalStateException(
+						"FATAL: data class introspection was not successful");
+			}
+			if (cls.getInterfaces() != null && cls.getInterfaces().length > 0) {
+				cls = cls.getInterfaces()[0];
+			} else {
+				cls = null;
+			}
+		}
+		int n = byName.size();
+		properties = byName.values().toArray(new PropertyDescriptor[n]);
+		adjustables = new Adjustable[n];
+		nullValues = new Object[n];
+		ordinals = new HashMap<String, Integer>();
+		methods = new HashMap<String, Integer>();
+		for (int i = 0; i < n; i++) {
+			PropertyDescriptor property = properties[i];
+			adjustables[i] = property.getWriteMethod().getAnnotation(
+					Adjustable.class);
+			nullValues[i] = NullValueProvider.getNullValue(property
+					.getPropertyType());
+			ordinals.put(property.getName(), i);
+			ordinals.put(norm(property.getName()), i);
+			methods.put(property.getWriteMethod().getName(), i);
+			if (property.getReadMethod() != null) {
+				methods.put(property.getReadMethod().getName(), i);
+			}
+		}
+		List<PropertyDescriptor> list = new ArrayList<PropertyDescriptor>();
+		List<PropertyDescriptor> primaryList = new ArrayList<PropertyDescriptor>();
+		for (String name : order.values()) {
+			PropertyDescriptor property = byName.get(name);
+			list.add(property);
+			if (adjustables[ordinals.get(name)].primary()) {
+				primaryList.add(property);
+			}
+		}
+		ordered = Collections.unmodifiableList(list);
+		primary = Collections.unmodifiableList(primaryList);
+	}
+
+	/**
+	 * Returns the metadata of the given data interface.
+	 * 
+	 * @param dataClass
+	 *            a data interface
+	 * @return the metadata of the data interface
+	 */
+	static BeanMetadata get(Class<?> dataClass) {
+		return registry.get(dataClass);
+	}
+
+	static String norm(String property) {
+		return Character.toUpperCase(property.charAt(0))
+				+ property.substring(1);
+	}
+
+	int getPropertyCount() {
+		return properties.length;
+	}
+
+	PropertyDescriptor getProperty(int ordinal) {
+		return properties[ordinal];
+	}
+
+	Adjustable getAdjustable(int ordinal) {
+		return adjustables[ordinal];
+	}
+
+	/**
+	 * Returns the ordinal of the property with the given name, or -1 if there
+	 * is no such property. The first character of the name is not
+	 * case-sensitive.
+	 * 
+	 * @param name
+	 *            the name of a property
+	 * @return the ordinal of the property, or -1
+	 */
+	int getOrdinal(String name) {
+		Integer ordinal = ordinals.get(name);
+		if (ordinal == null && name.length() > 0) {
+			ordinal = ordinals.get(norm(name));
+		}
+		return ordinal == null ? -1 : ordinal;
+	}
+
+	/**
+	 * Returns the ordinal of the property that is accessed by a method with
+	 * the given name, or -1 if there is no such property.
+	 * 
+	 * @param methodName
+	 *            the name of a get-, is- or set-method
+	 * @return the ordinal of the property, or -1
+	 */
+	int getMethodOrdinal(String methodName) {
+		Integer ordinal = methods.get(methodName);
+		return ordinal == null ? -1 : ordinal;
+	}
+
+	/**
+	 * Returns the properties sorted by their keys, as an unmodifiable list.
+	 * 
+	 * @return the properties sorted by their keys
+	 */
+	List<PropertyDescriptor> getProperties() {
+		return ordered;
+	}
+
+	List<PropertyDescriptor> getPrimaryProperties() {
+		return primary;
+	}
+
+	/**
+	 * Returns a new array of values for a bean, where each property has the
+	 * value of {@linkplain NullValueProvider#getNullValue(Class)}.
+	 * 
+	 * @return a new array of values
+	 */
+	Object[] newValues() {
+		return nullValues.clone();
+	}
+
+	/**
+	 * Returns the generator of data objects for the interface, or
+	 * <tt>null</tt> if no data object class can be generated.
+	 * 
+	 * @return the generator of data objects, or <tt>null</tt>
+	 */
+	synchronized DataObjectGenerator getGenerator() {
+		if (!generatorCreated) {
+			generatorCreated = true;
+			generator = DataObjectGenerator.create(dataClass, properties);
+		}
+		return generator;
+	}
+
+}
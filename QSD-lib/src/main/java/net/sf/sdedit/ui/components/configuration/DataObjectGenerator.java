@@ -0,0 +1,591 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.ui.components.configuration;
+
+import java.beans.PropertyDescriptor;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Generates a subclass of {@linkplain GeneratedDataObject} implementing a
+ * data interface, with one field per property. The class file is assembled
+ * directly, it uses version 49 (Java 5) of the format, so no stack map frames
+ * are required. If an interface cannot be implemented this way (because it is
+ * not public or has methods that do not belong to a property), there is no
+ * generator for it and {@linkplain Bean} falls back to a dynamic proxy.
+ * 
+ * @author Markus Strauch
+ */
+final class DataObjectGenerator {
+
+	private static final String SUPER = GeneratedDataObject.class.getName()
+			.replace('.', '/');
+
+	private static final String BEAN_DESCRIPTOR = "L"
+			+ Bean.class.getName().replace('.', '/') + ";";
+
+	private final Constructor<?> constructor;
+
+	private DataObjectGenerator(Class<?> dataClass,
+			PropertyDescriptor[] properties) throws Exception {
+		String name = dataClass.getName() + "$Generated";
+		byte[] code = new ClassFile(name, dataClass, properties).toByteArray();
+		Class<?> cls = new Loader(dataClass.getClassLoader()).define(name, code);
+		constructor = cls.getConstructor(Bean.class);
+	}
+
+	/**
+	 * Generates a data object class for the given data interface and returns
+	 * a generator for its instances, or <tt>null</tt> if the interface cannot
+	 * be implemented by a generated class. This is done once per interface by
+	 * its {@linkplain BeanMetadata}.
+	 * 
+	 * @param dataClass
+	 *            the data interface
+	 * @param properties
+	 *            the properties of the data interface, indexed by their
+	 *            ordinals, which are the indices used by
+	 *            {@linkplain GeneratedDataObject#update(int, Object)}
+	 * @return the generator, or <tt>null</tt>
+	 * @throws IllegalStateException
+	 *             if the class cannot be generated or loaded although the
+	 *             interface can be implemented, which is a bug of the
+	 *             generator
+	 */
+	static DataObjectGenerator create(Class<?> dataClass,
+			PropertyDescriptor[] properties) {
+		if (isGeneratable(dataClass, properties)) {
+			try {
+				return new DataObjectGenerator(dataClass, properties);
+			} catch (Exception e) {
+				throw new IllegalStateException(
+						"cannot generate a data object class for "
+								+ dataClass.getName(), e);
+			} catch (LinkageError e) {
+				// the class file is malformed
+				throw new IllegalStateException(
+						"cannot load the data object class for "
+								+ dataClass.getName(), e);
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Every abstract method must be implemented either by GeneratedDataObject
+	 * or by a get- or set-method for one of the properties.
+	 */
+	private static boolean isGeneratable(Class<?> dataClass,
+			PropertyDescriptor[] properties) {
+		if (!dataClass.isInterface() || !Modifier.isPublic(dataClass.getModifiers())) {
+			return false;
+		}
+		for (Method method : dataClass.getMethods()) {
+			if (method.getDeclaringClass() == DataObject.class
+					|| !Modifier.isAbstract(method.getModifiers())) {
+				continue;
+			}
+			boolean found = false;
+			for (PropertyDescriptor property : properties) {
+				if (matches(method, property.getReadMethod())
+						|| matches(method, property.getWriteMethod())) {
+					found = true;
+					break;
+				}
+			}
+			if (!found) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean matches(Method method, Method accessor) {
+		return accessor != null && method.getName().equals(accessor.getName())
+				&& method.getReturnType() == accessor.getReturnType()
+				&& Arrays.equals(method.getParameterTypes(),
+						accessor.getParameterTypes());
+	}
+
+	/**
+	 * Creates a new data object that is backed by the given bean. All of its
+	 * fields are in their initial state and must be set via
+	 * {@linkplain GeneratedDataObject#update(int, Object)}.
+	 * 
+	 * @param bean
+	 *            the bean
+	 * @return a new data object
+	 */
+	GeneratedDataObject newInstance(Bean<?> bean) {
+		try {
+			return (GeneratedDataObject) constructor.newInstance(bean);
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static final class Loader extends ClassLoader {
+
+		Loader(ClassLoader parent) {
+			super(parent);
+		}
+
+		Class<?> define(String name, byte[] code) {
+			return defineClass(name, code, 0, code.length);
+		}
+	}
+
+	/*
+	 * Assembles the class file.
+	 */
+	private static final class ClassFile {
+
+		private static final int ACC_PUBLIC = 0x0001;
+
+		private static final int ACC_PRIVATE = 0x0002;
+
+		private static final int ACC_PROTECTED = 0x0004;
+
+		private static final int ACC_FINAL = 0x0010;
+
+		private static final int ACC_SUPER = 0x0020;
+
+		private final Map<String, Integer> constants;
+
+		private final ByteArrayOutputStream pool;
+
+		private final DataOutputStream poolOut;
+
+		private final String name;
+
+		private final Class<?> dataClass;
+
+		private final PropertyDescriptor[] properties;
+
+		ClassFile(String name, Class<?> dataClass,
+				PropertyDescriptor[] properties) {
+			this.name = name.replace('.', '/');
+			this.dataClass = dataClass;
+			this.properties = properties;
+			constants = new LinkedHashMap<String, Integer>();
+			pool = new ByteArrayOutputStream();
+			poolOut = new DataOutputStream(pool);
+		}
+
+		byte[] toByteArray() throws IOException {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(body);
+			out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+			out.writeShort(classRef(name));
+			out.writeShort(classRef(SUPER));
+			out.writeShort(1);
+			out.writeShort(classRef(internalName(dataClass)));
+			out.writeShort(properties.length);
+			for (int i = 0; i < properties.length; i++) {
+				out.writeShort(ACC_PRIVATE);
+				out.writeShort(utf8(fieldName(i)));
+				out.writeShort(utf8(descriptor(properties[i].getPropertyType())));
+				out.writeShort(0);
+			}
+			int methods = 2;
+			for (PropertyDescriptor property : properties) {
+				methods += (property.getReadMethod() != null ? 1 : 0)
+						+ (property.getWriteMethod() != null ? 1 : 0);
+			}
+			out.writeShort(methods);
+			writeConstructor(out);
+			for (int i = 0; i < properties.length; i++) {
+				if (properties[i].getReadMethod() != null) {
+					writeGetter(out, i);
+				}
+				if (properties[i].getWriteMethod() != null) {
+					writeSetter(out, i);
+				}
+			}
+			writeUpdate(out);
+			out.writeShort(0);
+			out.flush();
+
+			ByteArrayOutputStream file = new ByteArrayOutputStream();
+			DataOutputStream fileOut = new DataOutputStream(file);
+			fileOut.writeInt(0xCAFEBABE);
+			fileOut.writeShort(0);
+			fileOut.writeShort(49);
+			fileOut.writeShort(constants.size() + 1);
+			poolOut.flush();
+			pool.writeTo(fileOut);
+			body.writeTo(fileOut);
+			fileOut.flush();
+			return file.toByteArray();
+		}
+
+		private void writeConstructor(DataOutputStream out) throws IOException {
+			Code code = new Code();
+			code.op(0x2a); // aload_0
+			code.op(0x2b); // aload_1
+			code.op(0xb7, methodRef(SUPER, "<init>", "(" + BEAN_DESCRIPTOR
+					+ ")V")); // invokespecial
+			code.op(0xb1); // return
+			writeMethod(out, ACC_PUBLIC, "<init>", "(" + BEAN_DESCRIPTOR
+					+ ")V", code, 2, 2);
+		}
+
+		private void writeGetter(DataOutputStream out, int index)
+				throws IOException {
+			Method method = properties[index].getReadMethod();
+			Class<?> type = properties[index].getPropertyType();
+			Code code = new Code();
+			code.op(0x2a); // aload_0
+			code.op(0xb4, fieldRef(index)); // getfield
+			code.op(returnOp(type));
+			writeMethod(out, ACC_PUBLIC, method.getName(), "()"
+					+ descriptor(type), code, 2, 1);
+		}
+
+		private void writeSetter(DataOutputStream out, int index)
+				throws IOException {
+			Method method = properties[index].getWriteMethod();
+			Class<?> type = properties[index].getPropertyType();
+			Code code = new Code();
+			code.op(0x2a); // aload_0
+			code.push(index);
+			code.op(loadOp(type));
+			if (type.isPrimitive()) {
+				Class<?> box = box(type);
+				code.op(0xb8, methodRef(internalName(box), "valueOf", "("
+						+ descriptor(type) + ")" + descriptor(box))); // invokestatic
+			}
+			code.op(0xb6, methodRef(SUPER, "set", "(ILjava/lang/Object;)V")); // invokevirtual
+			code.op(0xb1); // return
+			writeMethod(out, ACC_PUBLIC, method.getName(), "("
+					+ descriptor(type) + ")V", code, 4, 1 + size(type));
+		}
+
+		private void writeUpdate(DataOutputStream out) throws IOException {
+			Code code = new Code();
+			int n = properties.length;
+			if (n > 0) {
+				code.op(0x1b); // iload_1
+				// the offsets are relative to the tableswitch instruction
+				int start = code.length();
+				code.op(0xaa); // tableswitch
+				while (code.length() % 4 != 0) {
+					code.op(0);
+				}
+				int table = code.length();
+				for (int i = 0; i < 3 + n; i++) {
+					code.int32(0);
+				}
+				int[] targets = new int[n];
+				for (int i = 0; i < n; i++) {
+					targets[i] = code.length() - start;
+					Class<?> type = properties[i].getPropertyType();
+					code.op(0x2a); // aload_0
+					code.op(0x2c); // aload_2
+					if (type.isPrimitive()) {
+						Class<?> box = box(type);
+						code.op(0xc0, classRef(internalName(box))); // checkcast
+						code.op(0xb6, methodRef(internalName(box), type
+								.getName()
+								+ "Value", "()" + descriptor(type))); // invokevirtual
+					} else if (type != Object.class) {
+						code.op(0xc0, classRef(internalName(type))); // checkcast
+					}
+					code.op(0xb5, fieldRef(i)); // putfield
+					code.op(0xb1); // return
+				}
+				int defaultTarget = code.length() - start;
+				code.op(0xb1); // return
+				code.setInt32(table, defaultTarget);
+				code.setInt32(table + 4, 0);
+				code.setInt32(table + 8, n - 1);
+				for (int i = 0; i < n; i++) {
+					code.setInt32(table + 12 + 4 * i, targets[i]);
+				}
+			} else {
+				code.op(0xb1); // return
+			}
+			writeMethod(out, ACC_PROTECTED, "update", "(ILjava/lang/Object;)V",
+					code, 3, 3);
+		}
+
+		private void writeMethod(DataOutputStream out, int access,
+				String methodName, String descriptor, Code code, int maxStack,
+				int maxLocals) throws IOException {
+			out.writeShort(access);
+			out.writeShort(utf8(methodName));
+			out.writeShort(utf8(descriptor));
+			out.writeShort(1);
+			out.writeShort(utf8("Code"));
+			byte[] bytes = code.toByteArray();
+			out.writeInt(12 + bytes.length);
+			out.writeShort(maxStack);
+			out.writeShort(maxLocals);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+			out.writeShort(0);
+			out.writeShort(0);
+		}
+
+		private String fieldName(int index) {
+			return "p" + index + "_" + properties[index].getName();
+		}
+
+		private int fieldRef(int index) throws IOException {
+			return ref(9, classRef(name), fieldName(index),
+					descriptor(properties[index].getPropertyType()));
+		}
+
+		private int methodRef(String owner, String methodName,
+				String descriptor) throws IOException {
+			return ref(10, classRef(owner), methodName, descriptor);
+		}
+
+		private int ref(int tag, int owner, String member, String descriptor)
+				throws IOException {
+			int nameAndType = nameAndType(member, descriptor);
+			String key = tag + ":" + owner + ":" + nameAndType;
+			Integer index = constants.get(key);
+			if (index == null) {
+				poolOut.writeByte(tag);
+				poolOut.writeShort(owner);
+				poolOut.writeShort(nameAndType);
+				index = add(key);
+			}
+			return index;
+		}
+
+		private int nameAndType(String member, String descriptor)
+				throws IOException {
+			int n = utf8(member);
+			int d = utf8(descriptor);
+			String key = "12:" + n + ":" + d;
+			Integer index = constants.get(key);
+			if (index == null) {
+				poolOut.writeByte(12);
+				poolOut.writeShort(n);
+				poolOut.writeShort(d);
+				index = add(key);
+			}
+			return index;
+		}
+
+		private int classRef(String internalName) throws IOException {
+			int n = utf8(internalName);
+			String key = "7:" + n;
+			Integer index = constants.get(key);
+			if (index == null) {
+				poolOut.writeByte(7);
+				poolOut.writeShort(n);
+				index = add(key);
+			}
+			return index;
+		}
+
+		private int utf8(String string) throws IOException {
+			String key = "1:" + string;
+			Integer index = constants.get(key);
+			if (index == null) {
+				poolOut.writeByte(1);
+				poolOut.writeUTF(string);
+				index = add(key);
+			}
+			return index;
+		}
+
+		private int add(String key) {
+			int index = constants.size() + 1;
+			constants.put(key, index);
+			return index;
+		}
+
+		private static String internalName(Class<?> cls) {
+			return cls.isArray() ? descriptor(cls) : cls.getName().replace(
+					'.', '/');
+		}
+
+		private static String descriptor(Class<?> type) {
+			if (type.isArray()) {
+				return "[" + descriptor(type.getComponentType());
+			}
+			if (type == Integer.TYPE) {
+				return "I";
+			}
+			if (type == Boolean.TYPE) {
+				return "Z";
+			}
+			if (type == Long.TYPE) {
+				return "J";
+			}
+			if (type == Double.TYPE) {
+				return "D";
+			}
+			if (type == Float.TYPE) {
+				return "F";
+			}
+			if (type == Byte.TYPE) {
+				return "B";
+			}
+			if (type == Short.TYPE) {
+				return "S";
+			}
+			if (type == Character.TYPE) {
+				return "C";
+			}
+			if (type == Void.TYPE) {
+				return "V";
+			}
+			return "L" + type.getName().replace('.', '/') + ";";
+		}
+
+		private static Class<?> box(Class<?> type) {
+			if (type == Integer.TYPE) {
+				return Integer.class;
+			}
+			if (type == Boolean.TYPE) {
+				return Boolean.class;
+			}
+			if (type == Long.TYPE) {
+				return Long.class;
+			}
+			if (type == Double.TYPE) {
+				return Double.class;
+			}
+			if (type == Float.TYPE) {
+				return Float.class;
+			}
+			if (type == Byte.TYPE) {
+				return Byte.class;
+			}
+			if (type == Short.TYPE) {
+				return Short.class;
+			}
+			return Character.class;
+		}
+
+		private static int size(Class<?> type) {
+			return type == Long.TYPE || type == Double.TYPE ? 2 : 1;
+		}
+
+		private static int loadOp(Class<?> type) {
+			if (!type.isPrimitive()) {
+				return 0x2b; // aload_1
+			}
+			if (type == Long.TYPE) {
+				return 0x1f; // lload_1
+			}
+			if (type == Float.TYPE) {
+				return 0x23; // fload_1
+			}
+			if (type == Double.TYPE) {
+				return 0x27; // dload_1
+			}
+			return 0x1b; // iload_1
+		}
+
+		private static int returnOp(Class<?> type) {
+			if (!type.isPrimitive()) {
+				return 0xb0; // areturn
+			}
+			if (type == Long.TYPE) {
+				return 0xad; // lreturn
+			}
+			if (type == Float.TYPE) {
+				return 0xae; // freturn
+			}
+			if (type == Double.TYPE) {
+				return 0xaf; // dreturn
+			}
+			return 0xac; // ireturn
+		}
+	}
+
+	/*
+	 * The bytecode of a method.
+	 */
+	private static final class Code {
+
+		private byte[] bytes = new byte[64];
+
+		private int length;
+
+		int length() {
+			return length;
+		}
+
+		void op(int opcode) {
+			if (length == bytes.length) {
+				byte[] larger = new byte[2 * length];
+				System.arraycopy(bytes, 0, larger, 0, length);
+				bytes = larger;
+			}
+			bytes[length++] = (byte) opcode;
+		}
+
+		void op(int opcode, int operand) {
+			op(opcode);
+			op(operand >> 8);
+			op(operand);
+		}
+
+		void push(int value) {
+			if (value <= 5) {
+				op(0x03 + value); // iconst_<value>
+			} else if (value <= Byte.MAX_VALUE) {
+				op(0x10); // bipush
+				op(value);
+			} else {
+				op(0x11, value); // sipush
+			}
+		}
+
+		void int32(int value) {
+			op(value >> 24);
+			op(value >> 16);
+			op(value >> 8);
+			op(value);
+		}
+
+		void setInt32(int offset, int value) {
+			bytes[offset] = (byte) (value >> 24);
+			bytes[offset + 1] = (byte) (value >> 16);
+			bytes[offset + 2] = (byte) (value >> 8);
+			bytes[offset + 3] = (byte) value;
+		}
+
+		byte[] toByteArray() {
+			byte[] result = new byte[length];
+			System.arraycopy(bytes, 0, result, 0, length);
+			return result;
+		}
+	}
+
+}
@@ -0,0 +1,106 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.ui.components.configuration;
+
+/**
+ * The superclass of the data object classes that are generated at runtime
+ * (see {@linkplain Bean#getDataObject()}). A generated class stores the value
+ * of each property in a field of the property's type, so a get-method is
+ * nothing but a field access. Set-methods are passed to the {@linkplain Bean},
+ * which notifies its listeners and then writes the new value back into the
+ * field via {@linkplain #update(int, Object)}.
+ * <p>
+ * This class is public only because the generated classes are defined by
+ * their own class loaders. It is not meant to be subclassed by client code.
+ * 
+ * @author Markus Strauch
+ */
+public abstract class GeneratedDataObject implements DataObject {
+
+	private final Bean<?> bean;
+
+	protected GeneratedDataObject(Bean<?> bean) {
+		this.bean = bean;
+	}
+
+	/**
+	 * Called by the generated set-methods.
+	 * 
+	 * @param index
+	 *            the index of the property
+	 * @param value
+	 *            the (boxed) new value of the property
+	 */
+	protected final void set(int index, Object value) {
+		bean.setGeneratedValue(index, value);
+	}
+
+	/**
+	 * Writes the new value of a property into its field. This method is
+	 * generated.
+	 * 
+	 * @param index
+	 *            the index of the property
+	 * @param value
+	 *            the new value, not <tt>null</tt> if the property has a
+	 *            primitive type
+	 */
+	protected abstract void update(int index, Object value);
+
+	@SuppressWarnings("unchecked")
+	public <T extends DataObject> Bean<T> getBean(Class<T> cls) {
+		return (Bean<T>) bean;
+	}
+
+	public boolean isA(Class<?> cls) {
+		return cls.isAssignableFrom(bean.getDataClass());
+	}
+
+	public <T extends DataObject> T cast(Class<T> cls) {
+		return cls.cast(this);
+	}
+
+	public <T extends DataObject> T copy(Class<T> cls) {
+		return cls.cast(bean.copy().getDataObject());
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof DataObject)) {
+			return false;
+		}
+		return bean.equals(((DataObject) obj).getBean(DataObject.class));
+	}
+
+	@Override
+	public int hashCode() {
+		return bean.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return bean.toString();
+	}
+
+}
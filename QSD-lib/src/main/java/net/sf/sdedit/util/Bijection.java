@@ -24,8 +24,10 @@
 
 package net.sf.sdedit.util;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 
@@ -98,6 +100,15 @@ public class Bijection<P,I> {
 		return inverse.get(image);
 	}
 	
+	/**
+	 * Returns an unmodifiable view of the set of pre-images.
+	 * 
+	 * @return the set of pre-images
+	 */
+	public Set<P> getPreImages () {
+		return Collections.unmodifiableSet(map.keySet());
+	}
+	
 	public String toString () {
 		return map.toString() + " || " + inverse.toString();
 	}
@@ -0,0 +1,189 @@
+package net.sf.sdedit.ui.components.configuration;
+
+import java.awt.Font;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BeanTest {
+
+	public interface Base extends DataObject {
+
+		public int getNumber();
+
+		@Adjustable(info = "number", category = "test")
+		public void setNumber(int number);
+
+	}
+
+	public interface Data extends Base {
+
+		public long getLong();
+
+		@Adjustable(info = "long", category = "test")
+		public void setLong(long l);
+
+		public double getDouble();
+
+		@Adjustable(info = "double", category = "test")
+		public void setDouble(double d);
+
+		public boolean isFlag();
+
+		@Adjustable(info = "flag", category = "test")
+		public void setFlag(boolean flag);
+
+		public String getMode();
+
+		@Adjustable(info = "mode", category = "test", choices = { "a", "b" })
+		public void setMode(String mode);
+
+		public Font getFont();
+
+		@Adjustable(info = "font", category = "test")
+		public void setFont(Font font);
+
+		public String[] getNames();
+
+		@Adjustable(info = "names", category = "test")
+		public void setNames(String[] names);
+
+	}
+
+	/*
+	 * Data after its properties have been changed: number is unchanged, long
+	 * has another type, flag and the others are gone and extra is new.
+	 */
+	public interface Changed extends DataObject {
+
+		public String getExtra();
+
+		@Adjustable(info = "extra", category = "test")
+		public void setExtra(String extra);
+
+		public String getLong();
+
+		@Adjustable(info = "long", category = "test")
+		public void setLong(String l);
+
+		public int getNumber();
+
+		@Adjustable(info = "number", category = "test")
+		public void setNumber(int number);
+
+		public String getMode();
+
+		@Adjustable(info = "mode", category = "test", choices = { "a", "b" })
+		public void setMode(String mode);
+
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+	}
+
+	private static byte[] serialize(Object object) throws Exception {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(buffer);
+		out.writeObject(object);
+		out.close();
+		return buffer.toByteArray();
+	}
+
+	private static Object deserialize(byte[] data) throws Exception {
+		return new ObjectInputStream(new ByteArrayInputStream(data))
+				.readObject();
+	}
+
+	/*
+	 * Deserializes a bean for Data as if Data had been changed into Changed.
+	 */
+	private static Object deserializeChanged(byte[] data) throws Exception {
+		return new ObjectInputStream(new ByteArrayInputStream(data)) {
+			@Override
+			protected ObjectStreamClass readClassDescriptor()
+					throws IOException, ClassNotFoundException {
+				ObjectStreamClass desc = super.readClassDescriptor();
+				if (desc.getName().equals(Data.class.getName())) {
+					return ObjectStreamClass.lookupAny(Changed.class);
+				}
+				return desc;
+			}
+		}.readObject();
+	}
+
+	@SuppressWarnings("unchecked")
+	public static void main(String[] argv) throws Exception {
+		Bean<Data> bean = new Bean<Data>(Data.class, null);
+		final List<String> changes = new ArrayList<String>();
+		bean.addPropertyChangeListener(new PropertyChangeListener() {
+			public void propertyChange(PropertyChangeEvent evt) {
+				changes.add(evt.getPropertyName() + "=" + evt.getNewValue());
+			}
+		});
+		// values set before the data object exists
+		bean.setValue(bean.getProperty("number"), 7);
+		Data data = bean.getDataObject();
+		System.out.println("data object class: " + data.getClass().getName());
+		check(data.getNumber() == 7, "initial value");
+		check(data.getMode().equals(""), "null value");
+
+		data.setNumber(42);
+		data.setLong(1L << 40);
+		data.setDouble(2.5);
+		data.setFlag(true);
+		data.setMode("b");
+		data.setMode("illegal");
+		data.setFont(new Font("Serif", Font.BOLD, 14));
+		data.setNames(new String[] { "x", "y" });
+		check(data.getNumber() == 42, "int");
+		check(data.getLong() == 1L << 40, "long");
+		check(data.getDouble() == 2.5, "double");
+		check(data.isFlag(), "boolean");
+		check(data.getMode().equals("b"), "choice");
+		check(data.getFont().getSize() == 14, "font");
+		check(data.getNames().length == 2, "array");
+		check(bean.getValue("number").equals(42), "bean value");
+		check(changes.size() == 8, "notifications: " + changes);
+
+		bean.setValue(bean.getProperty("double"), 0.5);
+		check(data.getDouble() == 0.5, "value set via bean");
+
+		Data copy = data.copy(Data.class);
+		check(copy != data && copy.equals(data), "copy");
+		check(copy.getNumber() == 42 && copy.getMode().equals("b"), "copied values");
+		copy.setNumber(1);
+		check(data.getNumber() == 42 && !copy.equals(data), "independent copy");
+		check(data.isA(Base.class) && data.cast(Base.class).getNumber() == 42,
+				"super interface");
+		check(data.getBean(Data.class) == bean, "bean");
+		check(bean.getValue("nothing") == null, "unknown property");
+		check(bean.getProperties() == copy.getBean(Data.class).getProperties(),
+				"shared metadata");
+
+		Bean<Data> deserialized = (Bean<Data>) deserialize(serialize(bean));
+		check(deserialized.getDataObject().getNumber() == 42
+				&& deserialized.getDataObject().getMode().equals("b")
+				&& deserialized.getDataObject().getNames().length == 2,
+				"deserialized data object");
+
+		Bean<Changed> changed = (Bean<Changed>) deserializeChanged(serialize(bean));
+		check(changed.getDataObject().getNumber() == 42
+				&& changed.getDataObject().getMode().equals("b"),
+				"values found by name");
+		check(changed.getDataObject().getLong().equals("")
+				&& changed.getDataObject().getExtra().equals(""),
+				"null values for changed and new properties");
+		System.out.println("ok");
+	}
+
+}
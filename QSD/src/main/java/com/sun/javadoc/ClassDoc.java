@@ -1,6 +1,6 @@
 package com.sun.javadoc;
 
-public interface ClassDoc {
+public interface ClassDoc extends ProgramElementDoc {
 	
 	public abstract boolean isAbstract();
 
@@ -20,6 +20,18 @@ public interface ClassDoc {
 
 	public abstract ClassDoc[] innerClasses(boolean paramBoolean);
 
+	public abstract FieldDoc[] fields();
+
+	public abstract FieldDoc[] fields(boolean paramBoolean);
+
+	public abstract MethodDoc[] methods();
+
+	public abstract MethodDoc[] methods(boolean paramBoolean);
+
+	public abstract ConstructorDoc[] constructors();
+
+	public abstract ConstructorDoc[] constructors(boolean paramBoolean);
+
 	public abstract ClassDoc findClass(String paramString);
 
 	public abstract String qualifiedName();
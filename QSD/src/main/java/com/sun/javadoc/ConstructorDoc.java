@@ -0,0 +1,7 @@
+package com.sun.javadoc;
+
+public interface ConstructorDoc extends ExecutableMemberDoc {
+	
+	public abstract String qualifiedName();
+
+}
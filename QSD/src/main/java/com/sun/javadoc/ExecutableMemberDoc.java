@@ -0,0 +1,13 @@
+package com.sun.javadoc;
+
+public interface ExecutableMemberDoc extends MemberDoc {
+	
+	public abstract boolean isNative();
+
+	public abstract boolean isSynchronized();
+
+	public abstract boolean isVarArgs();
+
+	public abstract String signature();
+
+}
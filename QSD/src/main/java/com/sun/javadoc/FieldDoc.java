@@ -0,0 +1,11 @@
+package com.sun.javadoc;
+
+public interface FieldDoc extends MemberDoc {
+	
+	public abstract boolean isTransient();
+
+	public abstract boolean isVolatile();
+
+	public abstract String constantValueExpression();
+
+}
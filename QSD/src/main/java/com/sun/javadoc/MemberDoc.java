@@ -0,0 +1,7 @@
+package com.sun.javadoc;
+
+public interface MemberDoc extends ProgramElementDoc {
+	
+	public abstract boolean isSynthetic();
+
+}
@@ -0,0 +1,11 @@
+package com.sun.javadoc;
+
+public interface MethodDoc extends ExecutableMemberDoc {
+	
+	public abstract boolean isAbstract();
+
+	public abstract ClassDoc overriddenClass();
+
+	public abstract MethodDoc overriddenMethod();
+
+}
@@ -1,6 +1,6 @@
 package com.sun.javadoc;
 
-public interface PackageDoc {
+public interface PackageDoc extends Doc {
 	
 	public abstract ClassDoc[] allClasses(boolean paramBoolean);
 
@@ -1,6 +1,6 @@
 package com.sun.javadoc;
 
-public interface ProgramElementDoc {
+public interface ProgramElementDoc extends Doc {
 	
 	public abstract ClassDoc containingClass();
 
@@ -26,33 +26,28 @@ package net.sf.sdedit;
 
 import java.beans.PropertyDescriptor;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.swing.SwingUtilities;
 
 import net.sf.sdedit.config.Configuration;
 import net.sf.sdedit.config.ConfigurationManager;
 import net.sf.sdedit.config.SequenceConfiguration;
-import net.sf.sdedit.diagram.DiagramFactory;
-import net.sf.sdedit.diagram.SDPaintDevice;
-import net.sf.sdedit.diagram.SequenceDiagramFactory;
-import net.sf.sdedit.editor.DiagramFileHandler;
 import net.sf.sdedit.editor.Editor;
 import net.sf.sdedit.editor.plugin.Plugin;
 import net.sf.sdedit.editor.plugin.PluginRegistry;
 import net.sf.sdedit.error.DiagramError;
-import net.sf.sdedit.server.Exporter;
-import net.sf.sdedit.ui.ImageGraphicsDevice;
+import net.sf.sdedit.server.BatchRenderer;
+import net.sf.sdedit.server.RenderCache;
+import net.sf.sdedit.server.RenderService;
 import net.sf.sdedit.ui.components.configuration.Adjustable;
 import net.sf.sdedit.ui.components.configuration.Bean;
 import net.sf.sdedit.util.DocUtil.XMLException;
 import net.sf.sdedit.util.OS;
-import net.sf.sdedit.util.ObjectFactory;
-import net.sf.sdedit.util.Pair;
 import net.sf.sdedit.util.Tooltips;
 import net.sf.sdedit.util.Utilities;
 
@@ -131,7 +126,19 @@ public class Main implements Constants {
 			return;
 		}
 
-		if (cmd.getOptionValue('o') != null) {
+		if (!isNumber(cmd, 'j', 1, Integer.MAX_VALUE)
+				|| !isNumber(cmd, 's', 0, 65535)) {
+			printHelp(createBasicOptions());
+			return;
+		}
+
+		if (cmd.getOptionValue('s') != null) {
+			serve(cmd);
+
+		} else if (cmd.getOptionValue('d') != null) {
+			renderBatch(cmd);
+
+		} else if (cmd.getOptionValue('o') != null) {
 			createImage(cmd);
 			System.out
 					.println("created image file: " + cmd.getOptionValue('o'));
@@ -188,6 +195,39 @@ public class Main implements Constants {
 				.create('o');
 		options.addOption(output);
 
+		Option outputDirectory = OptionBuilder.hasArg()
+				.withArgName("output directory")
+				.withDescription(
+						"render all input files (files, directories or glob "
+								+ "patterns) into this directory").create('d');
+		options.addOption(outputDirectory);
+
+		Option threads = OptionBuilder.hasArg().withArgName("threads")
+				.withDescription("number of diagrams rendered in parallel")
+				.create('j');
+		options.addOption(threads);
+
+		Option all = OptionBuilder.withDescription(
+				"render all files, even if their output is up to date")
+				.create('a');
+		options.addOption(all);
+
+		Option serve = OptionBuilder
+				.hasArg()
+				.withArgName("port")
+				.withDescription(
+						"serve diagrams over HTTP at this port "
+								+ "(POST /render, GET /status)").create('s');
+		options.addOption(serve);
+
+		Option cache = OptionBuilder
+				.hasArg()
+				.withArgName("cache directory")
+				.withDescription(
+						"reuse output of unchanged diagrams from this directory")
+				.create('c');
+		options.addOption(cache);
+
 		Option type = OptionBuilder.hasArg().withArgName("output file type")
 				.withDescription("one of " + availableTypes()).hasArg()
 				.create('t');
@@ -231,6 +271,34 @@ public class Main implements Constants {
 		}
 	}
 
+	/*
+	 * Returns true if the option is not given or if its argument is a number
+	 * in the given range, otherwise prints an error message.
+	 */
+	private static boolean isNumber(CommandLine cmd, char option, int min,
+			int max) {
+		String value = cmd.getOptionValue(option);
+		if (value != null) {
+			try {
+				int number = Integer.parseInt(value.trim());
+				if (number >= min && number <= max) {
+					return true;
+				}
+			} catch (NumberFormatException ignored) {
+				/* the message is printed below */
+			}
+			System.err.println("Error: the argument of -" + option
+					+ " must be a number from " + min + " to " + max
+					+ ", not " + value);
+			return false;
+		}
+		return true;
+	}
+
+	private static int getNumber(CommandLine cmd, char option) {
+		return Integer.parseInt(cmd.getOptionValue(option).trim());
+	}
+
 	private static String[] getInputFiles(CommandLine cmd) {
 		return cmd.getArgs();
 	}
@@ -239,14 +307,86 @@ public class Main implements Constants {
 			XMLException, DiagramError {
 		File inFile = new File(getInputFiles(cmd)[0]);
 		File outFile = new File(cmd.getOptionValue('o'));
+		RenderCache cache = getCache(cmd);
+		BatchRenderer.renderFile(inFile, outFile, getType(cmd),
+				getOrientation(cmd), getFormat(cmd), getProperties(cmd), cache);
+		if (cache != null) {
+			System.out.println(cache);
+		}
+	}
+
+	private static RenderCache getCache(CommandLine cmd) throws IOException {
+		if (cmd.getOptionValue('c') == null) {
+			return null;
+		}
+		return new RenderCache(new File(cmd.getOptionValue('c')));
+	}
+
+	private static void renderBatch(CommandLine cmd) throws IOException,
+			InterruptedException {
+		BatchRenderer renderer = new BatchRenderer(new File(
+				cmd.getOptionValue('d')));
+		renderer.setType(getType(cmd));
+		renderer.setOrientation(getOrientation(cmd));
+		renderer.setFormat(getFormat(cmd));
+		renderer.setProperties(getProperties(cmd));
+		renderer.setForce(cmd.hasOption('a'));
+		renderer.setCache(getCache(cmd));
+		if (cmd.getOptionValue('j') != null) {
+			renderer.setThreads(getNumber(cmd, 'j'));
+		}
+		for (String file : getInputFiles(cmd)) {
+			if (renderer.addInput(file) == 0) {
+				System.err.println("Warning: no diagram files found for "
+						+ file);
+			}
+		}
+		long start = System.currentTimeMillis();
+		List<BatchRenderer.Result> results = renderer.render();
+		renderer.printReport(results, System.currentTimeMillis() - start,
+				System.out);
+		for (BatchRenderer.Result result : results) {
+			if (result.getStatus() == BatchRenderer.Status.FAILED) {
+				System.exit(1);
+			}
+		}
+	}
+
+	private static void serve(CommandLine cmd) throws IOException {
+		final RenderService service = new RenderService(new InetSocketAddress(
+				getNumber(cmd, 's')));
+		if (cmd.getOptionValue('j') != null) {
+			service.setWorkers(getNumber(cmd, 'j'));
+		}
+		service.setCache(getCache(cmd));
+		service.start();
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				service.shutDown(10);
+			}
+		});
+		System.out.println("render service listening at "
+				+ service.getAddress());
+	}
+
+	private static String getType(CommandLine cmd) {
 		String type = "png";
 		if (cmd.getOptionValue('t') != null) {
 			type = cmd.getOptionValue('t').toLowerCase();
 		}
+		return type;
+	}
+
+	private static String getFormat(CommandLine cmd) {
 		String format = "A4";
 		if (cmd.getOptionValue('f') != null) {
 			format = cmd.getOptionValue('f').toUpperCase();
 		}
+		return format;
+	}
+
+	private static String getOrientation(CommandLine cmd) {
 		String orientation = "Portrait";
 		if (cmd.getOptionValue('r') != null) {
 			orientation = cmd.getOptionValue('r').toLowerCase();
@@ -255,58 +395,21 @@ public class Main implements Constants {
 						+ orientation.substring(1);
 			}
 		}
-		InputStream in = null;
-		OutputStream out = null;
-		in = new FileInputStream(inFile);
-		try {
-			out = new FileOutputStream(outFile);
-			try {
-				Pair<String, Bean<? extends Configuration>> pair = new DiagramFileHandler()
-						.load(in, ConfigurationManager.getGlobalConfiguration()
-								.getFileEncoding());
-				String text = pair.getFirst();
-				Bean<? extends Configuration> conf = pair.getSecond();
-				configure(conf, cmd);
-				if (type.equals("png")) {
-					ImageGraphicsDevice graphicDevice = new ImageGraphicsDevice();
-					SDPaintDevice paintDevice = new SDPaintDevice(graphicDevice);
-					DiagramFactory factory = new SequenceDiagramFactory(text,
-							paintDevice);
-					factory.generateDiagram(conf.getDataObject());
-					graphicDevice.writeToStream("png", out);
-				} else {
-					Exporter graphicDevice = Exporter.getExporter(type,
-							orientation, format, out);
-					SDPaintDevice paintDevice = new SDPaintDevice(graphicDevice);
-					DiagramFactory factory = new SequenceDiagramFactory(text,
-							paintDevice);
-					factory.generateDiagram(conf.getDataObject());
-					graphicDevice.export();
-				}
-				out.flush();
-			} finally {
-				out.close();
-			}
-		} finally {
-			in.close();
-		}
-
+		return orientation;
 	}
 
-	private static void configure(Bean<? extends Configuration> conf,
-			CommandLine cmd) {
+	private static Map<String, String> getProperties(CommandLine cmd) {
+		Map<String, String> properties = new LinkedHashMap<String, String>();
 		for (Option option : cmd.getOptions()) {
 			if (option.getLongOpt() != null) {
 				String name = option.getLongOpt();
 				String valueString = cmd.getOptionValue(option.getLongOpt());
 				if (valueString != null) {
-					PropertyDescriptor property = conf.getProperty(name);
-					Object value = ObjectFactory.createFromString(
-							property.getPropertyType(), valueString);
-					conf.setValue(property, value);
+					properties.put(name, valueString);
 				}
 			}
 		}
+		return properties;
 	}
 
 	private static String availableTypes() {
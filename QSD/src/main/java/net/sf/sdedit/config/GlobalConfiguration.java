@@ -61,6 +61,8 @@ public interface GlobalConfiguration extends DataObject {
 
 	public boolean isHighlightCurrent();
 
+	public boolean isShowRenderTimes();
+
 	@Adjustable(dflt = 2, min = 1, max = 999, category = "Automation", info = "Redraw/syntax check delay (20 ms)")
 	public void setAutodrawLatency(int autodrawLatency);
 
@@ -99,6 +101,9 @@ public interface GlobalConfiguration extends DataObject {
 
 	@Adjustable(category = "Misc", editable = true, info = "Highlight current message")
 	public void setHighlightCurrent(boolean on);
+
+	@Adjustable(category = "Misc", editable = true, info = "Show render times in the status bar")
+	public void setShowRenderTimes(boolean on);
 	
 	@Adjustable(category = "Misc", info = "Look & Feel (requires restart)", stringSelectionProvided = true)
 	public void setLookAndFeel(String lookAndFeel);
@@ -25,10 +25,13 @@ package net.sf.sdedit.diagram;
 
 import java.awt.Font;
 
+import net.sf.sdedit.drawable.DisplayList;
 import net.sf.sdedit.drawable.Drawable;
 
 public abstract class AbstractGraphicDevice implements GraphicDevice {
     
+    private Diagram diagram;
+    
     private Iterable<Drawable> drawables;
     
     private Font plainFont;
@@ -37,15 +40,53 @@ public abstract class AbstractGraphicDevice implements GraphicDevice {
 
     private int height;
     
+    private DisplayList displayList;
+    
     protected Iterable<Drawable> drawables () {
         return drawables;
     }
     
+    /**
+     * Makes this device draw a diagram that has been laid out before, as
+     * recorded by the given display list, instead of a diagram that is
+     * generated with this device. The device is closed with the size of the
+     * diagram, so it is ready for drawing afterwards.
+     * 
+     * @param displayList
+     *            the display list of a diagram
+     */
+    public void setDisplayList(DisplayList displayList) {
+        this.displayList = displayList;
+        plainFont = displayList.getFont();
+        close(displayList.getWidth(), displayList.getHeight(), false);
+    }
+    
+    /**
+     * Returns the display list that this device draws, or <tt>null</tt> if
+     * it draws the elements of a diagram generated with it.
+     * 
+     * @return the display list that this device draws or <tt>null</tt>
+     */
+    protected DisplayList getDisplayList() {
+        return displayList;
+    }
+    
     public void initialize(Diagram diagram) {
+        this.diagram = diagram;
         this.drawables = diagram.getPaintDevice();    
         plainFont = diagram.getConfiguration().getFont();
 	}
     
+    /**
+     * Returns the times in which the duration of drawing the diagram is to
+     * be recorded, or <tt>null</tt> if it is not measured.
+     * 
+     * @return the render times of the diagram or <tt>null</tt>
+     */
+    protected RenderTimes getRenderTimes() {
+        return diagram == null ? null : diagram.getRenderTimes();
+    }
+    
     public Font getFont() {
         return plainFont;
     }
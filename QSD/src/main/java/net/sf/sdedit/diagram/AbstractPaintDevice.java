@@ -26,7 +26,8 @@ package net.sf.sdedit.diagram;
 import java.awt.Font;
 
 
-public abstract class AbstractPaintDevice implements PaintDevice {
+public abstract class AbstractPaintDevice implements PaintDevice,
+        Copier.Copyable {
     
     private final GraphicDevice graphicDevice;
     
@@ -37,6 +38,21 @@ public abstract class AbstractPaintDevice implements PaintDevice {
     protected AbstractPaintDevice (GraphicDevice graphicDevice) {
         this.graphicDevice = graphicDevice;
     }
+
+    /**
+     * Creates a copy of an <tt>AbstractPaintDevice</tt>, for a copy of its
+     * diagram. The copy uses the graphic device of the copier.
+     * 
+     * @param original
+     *            the paint device to be copied
+     * @param copier
+     *            the copier that keeps track of the copies
+     */
+    protected AbstractPaintDevice (AbstractPaintDevice original,
+            Copier copier) {
+        copier.register(original, this);
+        graphicDevice = copier.getGraphicDevice();
+    }
     
     public Font getFont () {
         return graphicDevice.getFont();
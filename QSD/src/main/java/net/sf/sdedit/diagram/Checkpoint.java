@@ -0,0 +1,140 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.diagram;
+
+import java.util.Arrays;
+
+import net.sf.sdedit.text.AbstractTextHandler;
+
+/**
+ * A <tt>Checkpoint</tt> is a copy of a {@linkplain SequenceDiagram}
+ * (including its text handler, lifelines, thread stacks, note and fragment
+ * managers and the drawables added to the paint device so far) that has been
+ * made while the messages were being read, just before a line was read. A
+ * diagram for a text that coincides with the original text up to that line
+ * can be restored from the checkpoint, so its generation can be continued
+ * there.
+ * 
+ * @author Markus Strauch
+ */
+final class Checkpoint {
+
+	private final SequenceDiagram diagram;
+
+	private final int lineNumber;
+
+	private final int offset;
+
+	private final String title;
+
+	private final String[] description;
+
+	private Checkpoint(SequenceDiagram diagram,
+			SequenceDiagramDataProvider provider, int lineNumber, int offset) {
+		this.diagram = diagram;
+		this.lineNumber = lineNumber;
+		this.offset = offset;
+		this.title = provider.getTitle();
+		this.description = provider.getDescription();
+	}
+
+	/**
+	 * Takes a checkpoint of a diagram that is being generated. The data
+	 * provider of the diagram must be an {@linkplain AbstractTextHandler} and
+	 * its paint device an {@linkplain AbstractPaintDevice}.
+	 * 
+	 * @param diagram
+	 *            a diagram, about to read the next line of its text
+	 * @param offset
+	 *            the number of characters of the text that have been read
+	 * @return a checkpoint for the diagram
+	 * @throws IllegalArgumentException
+	 *             if the diagram contains an object that cannot be copied
+	 */
+	static Checkpoint take(SequenceDiagram diagram, int offset) {
+		// the graphic device (the component displaying the diagram) is not
+		// part of the checkpoint, restored diagrams get their own one
+		SequenceDiagram copy = new Copier(null).copy(diagram);
+		AbstractTextHandler handler = (AbstractTextHandler) diagram
+				.getDataProvider();
+		return new Checkpoint(copy, diagram.getDataProvider(), handler
+				.getLineNumber(), offset);
+	}
+
+	/**
+	 * Returns a new diagram in the state of this checkpoint, reading the
+	 * remaining lines from the given text.
+	 * 
+	 * @param text
+	 *            a text that coincides with the text of the checkpoint's
+	 *            diagram up to the checkpoint's {@linkplain #getOffset()
+	 *            offset}
+	 * @param graphicDevice
+	 *            the graphic device to display the restored diagram
+	 * @return a diagram whose generation can be resumed via
+	 *         {@linkplain SequenceDiagram#resume()}
+	 */
+	SequenceDiagram restore(String text, GraphicDevice graphicDevice) {
+		SequenceDiagram restored = new Copier(graphicDevice).copy(diagram);
+		((AbstractTextHandler) restored.getDataProvider()).resume(text);
+		restored.getPaintDevice().setDiagram(restored);
+		return restored;
+	}
+
+	/**
+	 * Returns true if the title and the description of the diagram (which are
+	 * taken from anywhere in the text) are the same as the ones provided by
+	 * the given provider.
+	 * 
+	 * @param provider
+	 *            a provider for a text to continue with
+	 * @return true if the title and the description are unchanged
+	 */
+	boolean hasHeaderOf(SequenceDiagramDataProvider provider) {
+		return (title == null ? provider.getTitle() == null : title
+				.equals(provider.getTitle()))
+				&& Arrays.equals(description, provider.getDescription());
+	}
+
+	/**
+	 * Returns the number of lines of the text that have been read when the
+	 * checkpoint was taken.
+	 * 
+	 * @return the number of lines that have been read
+	 */
+	int getLineNumber() {
+		return lineNumber;
+	}
+
+	/**
+	 * Returns the number of characters of the text that have been read when
+	 * the checkpoint was taken.
+	 * 
+	 * @return the number of characters that have been read
+	 */
+	int getOffset() {
+		return offset;
+	}
+
+}
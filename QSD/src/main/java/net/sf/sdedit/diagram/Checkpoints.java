@@ -0,0 +1,256 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.diagram;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.ListIterator;
+
+import net.sf.sdedit.config.Configuration;
+import net.sf.sdedit.text.AbstractTextHandler;
+import net.sf.sdedit.ui.components.configuration.Bean;
+
+/**
+ * <tt>Checkpoints</tt> make the re-generation of a sequence diagram after an
+ * edit cheaper by continuing from a copy of the state of the diagram that was
+ * taken (at a multiple of {@value #INTERVAL} lines) in an earlier generation
+ * before the first line that has changed, instead of starting from the first
+ * line.
+ * <p>
+ * A <tt>Checkpoints</tt> object belongs to a single diagram tab, it remembers
+ * the text and the configuration of the last generation. Checkpoints are taken
+ * lazily: a generation takes at most one new checkpoint, namely the one
+ * closest to the first changed line, if there is none there yet. So typing at
+ * the end of a long text only pays for copying the diagram once per
+ * {@value #INTERVAL} lines.
+ * 
+ * @author Markus Strauch
+ */
+public final class Checkpoints {
+
+	/**
+	 * Checkpoints are taken when the number of lines read is a multiple of
+	 * this number.
+	 */
+	public static final int INTERVAL = 200;
+
+	/**
+	 * The maximal number of checkpoints that are kept, the earliest ones are
+	 * dropped first.
+	 */
+	public static final int MAX_CHECKPOINTS = 8;
+
+	/**
+	 * The checkpoints, sorted by their line numbers.
+	 */
+	private final LinkedList<Checkpoint> checkpoints;
+
+	private Bean<? extends Configuration> configuration;
+
+	private String text;
+
+	private boolean disabled;
+
+	public Checkpoints() {
+		checkpoints = new LinkedList<Checkpoint>();
+	}
+
+	/**
+	 * Prepares the generation of a diagram. If there is a checkpoint that is
+	 * still valid for the text of the diagram's provider, a copy of the
+	 * checkpoint's diagram is returned that has already read the text up to
+	 * the checkpoint, and can be completed via
+	 * {@linkplain SequenceDiagram#resume()}. Otherwise the given diagram is
+	 * returned. In both cases, the diagram that is returned may take a new
+	 * checkpoint while it is being generated.
+	 * 
+	 * @param diagram
+	 *            a new diagram, not yet generated, whose provider must be an
+	 *            {@linkplain AbstractTextHandler} and whose paint device must
+	 *            be an {@linkplain AbstractPaintDevice}
+	 * @param configuration
+	 *            the configuration of the diagram
+	 * @return a restored diagram or the given diagram
+	 * @throws RuntimeException
+	 *             if a checkpoint cannot be restored, all checkpoints are
+	 *             dropped and no more are taken then
+	 */
+	public synchronized SequenceDiagram prepare(SequenceDiagram diagram,
+			Bean<? extends Configuration> configuration) {
+		if (disabled) {
+			return diagram;
+		}
+		String newText = ((AbstractTextHandler) diagram.getDataProvider())
+				.getText().toString();
+		int changed;
+		if (this.configuration == null
+				|| !this.configuration.equals(configuration)) {
+			this.configuration = configuration.copy();
+			changed = 0;
+		} else {
+			changed = firstDifference(text, newText);
+		}
+		text = newText;
+		Checkpoint checkpoint = null;
+		Iterator<Checkpoint> iterator = checkpoints.iterator();
+		while (iterator.hasNext()) {
+			Checkpoint next = iterator.next();
+			if (next.getOffset() > changed) {
+				iterator.remove();
+			} else if (next.hasHeaderOf(diagram.getDataProvider())) {
+				checkpoint = next;
+			}
+		}
+		SequenceDiagram result = diagram;
+		if (checkpoint != null) {
+			try {
+				result = checkpoint.restore(newText,
+						((AbstractPaintDevice) diagram.getPaintDevice())
+								.getGraphicDevice());
+			} catch (RuntimeException e) {
+				throw disable(e);
+			}
+		}
+		int line = countLines(newText, changed) / INTERVAL * INTERVAL;
+		if (line > 0
+				&& (checkpoints.isEmpty() || checkpoints.getLast()
+						.getLineNumber() < line)) {
+			result.setCheckpointRequest(new Request(line, changed));
+		}
+		return result;
+	}
+
+	/*
+	 * The diagram contains something that cannot be copied. This is a bug,
+	 * which is reported like any other bug during the generation (as a
+	 * FatalError, by the tab's error handler). The diagrams of the tab can
+	 * always be generated from scratch, so the following generations do
+	 * without checkpoints. Returns the cause, to be thrown.
+	 */
+	private RuntimeException disable(RuntimeException cause) {
+		disabled = true;
+		checkpoints.clear();
+		return cause;
+	}
+
+	private synchronized void add(SequenceDiagram diagram, int offset) {
+		if (disabled) {
+			return;
+		}
+		Checkpoint checkpoint;
+		try {
+			checkpoint = Checkpoint.take(diagram, offset);
+		} catch (RuntimeException e) {
+			throw disable(e);
+		}
+		ListIterator<Checkpoint> iterator = checkpoints
+				.listIterator(checkpoints.size());
+		while (iterator.hasPrevious()) {
+			if (iterator.previous().getLineNumber() < checkpoint
+					.getLineNumber()) {
+				iterator.next();
+				break;
+			}
+		}
+		iterator.add(checkpoint);
+		if (checkpoints.size() > MAX_CHECKPOINTS) {
+			checkpoints.removeFirst();
+		}
+	}
+
+	private static int firstDifference(String text1, String text2) {
+		if (text1 == null) {
+			return 0;
+		}
+		int n = Math.min(text1.length(), text2.length());
+		int i = 0;
+		while (i < n && text1.charAt(i) == text2.charAt(i)) {
+			i++;
+		}
+		return i;
+	}
+
+	/*
+	 * Returns the number of lines that end (including their terminator)
+	 * before the given offset, terminators being the same as for
+	 * BufferedReader.readLine().
+	 */
+	private static int countLines(String text, int offset) {
+		int lines = 0;
+		for (int i = 0; i < offset; i++) {
+			char c = text.charAt(i);
+			if (c == '\n') {
+				lines++;
+			} else if (c == '\r') {
+				if (i + 1 < text.length() && text.charAt(i + 1) == '\n') {
+					if (i + 1 == offset) {
+						break;
+					}
+					i++;
+				}
+				lines++;
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * A <tt>Request</tt> takes a checkpoint of a diagram when the diagram
+	 * first reaches the given line, unless it has read beyond the first
+	 * changed character by then.
+	 */
+	final class Request {
+
+		private final int lineNumber;
+
+		private final int limit;
+
+		private Request(int lineNumber, int limit) {
+			this.lineNumber = lineNumber;
+			this.limit = limit;
+		}
+
+		/**
+		 * Offers a diagram that is about to read its next line.
+		 * 
+		 * @param diagram
+		 *            a diagram being generated
+		 * @return true if the request is settled and need not be offered the
+		 *         diagram again
+		 */
+		boolean offer(SequenceDiagram diagram) {
+			AbstractTextHandler handler = (AbstractTextHandler) diagram
+					.getDataProvider();
+			if (handler.getLineNumber() < lineNumber) {
+				return false;
+			}
+			int offset = handler.getOffset();
+			if (offset <= limit) {
+				add(diagram, offset);
+			}
+			return true;
+		}
+	}
+
+}
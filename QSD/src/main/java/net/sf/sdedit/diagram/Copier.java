@@ -0,0 +1,180 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.diagram;
+
+import java.awt.Point;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A <tt>Copier</tt> makes a copy of a {@linkplain SequenceDiagram} while it is
+ * being generated, i. e. of its lifelines, thread stacks, note and fragment
+ * managers, text handler and paint device, and of the messages and drawables
+ * these refer to. Each class of these objects is {@linkplain Copyable} and has
+ * a copy constructor that takes the original and the copier. It registers the
+ * new object with the copier first and then copies the fields of the
+ * original, so references to objects that are shared or that refer back to
+ * the object being copied are resolved to their copies.
+ * <p>
+ * Objects that do not change anymore once they are part of a diagram
+ * (strings, colors, fonts, the configuration, the {@linkplain MessageData},
+ * text metrics etc.) are not copied but shared by the copies.
+ * 
+ * @author Markus Strauch
+ */
+public final class Copier {
+
+	/**
+	 * A <tt>Copyable</tt> object can be copied by a {@linkplain Copier}.
+	 */
+	public interface Copyable {
+
+		/**
+		 * Returns a copy of this object, made by the copy constructor of its
+		 * class. Each subclass of a <tt>Copyable</tt> class must override this
+		 * method.
+		 * 
+		 * @param copier
+		 *            the copier that keeps track of the copies
+		 * @return a copy of this object
+		 */
+		public Object copy(Copier copier);
+
+	}
+
+	private final Map<Object, Object> copies;
+
+	private final GraphicDevice graphicDevice;
+
+	/**
+	 * Creates a new <tt>Copier</tt>.
+	 * 
+	 * @param graphicDevice
+	 *            the graphic device of the copy of the paint device, may be
+	 *            <tt>null</tt>
+	 */
+	Copier(GraphicDevice graphicDevice) {
+		this.graphicDevice = graphicDevice;
+		copies = new IdentityHashMap<Object, Object>();
+	}
+
+	/**
+	 * Returns the graphic device of the copy of the paint device (which is
+	 * not copied along with the diagram).
+	 * 
+	 * @return the graphic device of the copy of the paint device
+	 */
+	public GraphicDevice getGraphicDevice() {
+		return graphicDevice;
+	}
+
+	/**
+	 * Registers the copy of an object. This must be done by a copy
+	 * constructor before it copies any field of the original.
+	 * 
+	 * @param original
+	 *            the original object
+	 * @param copy
+	 *            the copy that is being constructed
+	 */
+	public void register(Object original, Object copy) {
+		copies.put(original, copy);
+	}
+
+	/**
+	 * Returns the copy of an object, making it if it has not been made yet.
+	 * 
+	 * @param <T>
+	 *            the type of the object
+	 * @param original
+	 *            a {@linkplain Copyable} object or <tt>null</tt>
+	 * @return the copy of the object, or <tt>null</tt> if it is <tt>null</tt>
+	 * @throws IllegalArgumentException
+	 *             if the object is not {@linkplain Copyable}
+	 * @throws IllegalStateException
+	 *             if the class of the object does not override
+	 *             {@linkplain Copyable#copy(Copier)}
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T copy(T original) {
+		if (original == null) {
+			return null;
+		}
+		Object copy = copies.get(original);
+		if (copy == null) {
+			if (!(original instanceof Copyable)) {
+				throw new IllegalArgumentException("cannot copy instances of "
+						+ original.getClass().getName());
+			}
+			copy = ((Copyable) original).copy(this);
+			if (copy.getClass() != original.getClass()
+					|| copies.get(original) != copy) {
+				throw new IllegalStateException(original.getClass().getName()
+						+ " does not override copy(Copier)");
+			}
+		}
+		return (T) copy;
+	}
+
+	/**
+	 * Adds the copies of the given objects to a collection.
+	 * 
+	 * @param <T>
+	 *            the type of the objects
+	 * @param <C>
+	 *            the type of the collection
+	 * @param originals
+	 *            {@linkplain Copyable} objects
+	 * @param collection
+	 *            the collection to add the copies to
+	 * @return the collection
+	 */
+	public <T, C extends Collection<T>> C copyAll(
+			Collection<? extends T> originals, C collection) {
+		for (T original : originals) {
+			collection.add(copy(original));
+		}
+		return collection;
+	}
+
+	/**
+	 * Returns a copy of an array of points.
+	 * 
+	 * @param points
+	 *            an array of points or <tt>null</tt>
+	 * @return a copy of the array, consisting of copies of the points
+	 */
+	public static Point[] copyPoints(Point[] points) {
+		if (points == null) {
+			return null;
+		}
+		Point[] copy = new Point[points.length];
+		for (int i = 0; i < points.length; i++) {
+			copy[i] = points[i] == null ? null : new Point(points[i]);
+		}
+		return copy;
+	}
+
+}
@@ -45,6 +45,14 @@ public interface Diagram extends Constants {
     public DiagramDataProvider getDataProvider ();
 
     public Configuration getConfiguration();
+    
+    /**
+     * Returns the times the phases of the rendering of this diagram are
+     * recorded in, or <tt>null</tt> if they are not measured.
+     * 
+     * @return the render times of this diagram or <tt>null</tt>
+     */
+    public RenderTimes getRenderTimes();
 
 }
 // {{core}}
@@ -38,5 +38,26 @@ public interface DiagramFactory {
     public PaintDevice getPaintDevice();
 
     public Diagram getDiagram();
+    
+    /**
+     * Cancels the generation of the diagram, if it is running or has not yet
+     * begun. This method may be called from any thread. A cancelled
+     * generation stops at the next message, making
+     * {@linkplain #generateDiagram(Configuration)} throw a
+     * {@linkplain net.sf.sdedit.error.GenerationCancelled} exception.
+     */
+    public void cancel();
+    
+    /**
+     * Makes this factory and the diagram it generates record the durations
+     * of the phases of the rendering in the given times.
+     * 
+     * @param times
+     *            the times to record the phases in, or <tt>null</tt> if
+     *            nothing is to be measured
+     */
+    public void setRenderTimes(RenderTimes times);
+
+    public RenderTimes getRenderTimes();
 
 }
@@ -24,7 +24,9 @@
 
 package net.sf.sdedit.diagram;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.ListIterator;
 
 import net.sf.sdedit.drawable.Arrow;
@@ -43,11 +45,15 @@ import net.sf.sdedit.message.Answer;
  * added to the fragment</li>
  * <li><strong>finished</strong>: nothing is being added anymore</li>
  * </ol>
+ * The sequence elements that are added while there are open or closing
+ * fragments are numbered consecutively (see
+ * {@linkplain SequenceElement#getSequenceId()}), so the members of a fragment
+ * are given by a range of numbers.
  * 
  * @author Markus Strauch
  * 
  */
-public final class FragmentManager {
+public final class FragmentManager implements Copier.Copyable {
 	private final SequenceDiagram diagram;
 
 	/**
@@ -71,6 +77,12 @@ public final class FragmentManager {
 	 */
 	private final LinkedList<Fragment> closingFragments;
 
+	/**
+	 * The sequence elements that have been added while there were open or
+	 * closing fragments, the index of an element being its sequence id.
+	 */
+	private final ArrayList<SequenceElement> elements;
+
 	/**
 	 * The list of fragment labels that have currently been opened. The list is
 	 * emptied when something else than a fragment label (for instance, a
@@ -95,9 +107,35 @@ public final class FragmentManager {
 		this.diagram = diagram;
 		openFragments = new LinkedList<Fragment>();
 		closingFragments = new LinkedList<Fragment>();
+		elements = new ArrayList<SequenceElement>();
 		fragmentLabels = new LinkedList<String>();
 	}
 
+	/**
+	 * Creates a copy of a <tt>FragmentManager</tt>, for a copy of its diagram.
+	 * 
+	 * @param original
+	 *            the fragment manager to be copied
+	 * @param copier
+	 *            the copier that keeps track of the copies
+	 */
+	private FragmentManager(FragmentManager original, Copier copier) {
+		copier.register(original, this);
+		diagram = copier.copy(original.diagram);
+		openFragments = copier.copyAll(original.openFragments,
+				new LinkedList<Fragment>());
+		closingFragments = copier.copyAll(original.closingFragments,
+				new LinkedList<Fragment>());
+		elements = copier.copyAll(original.elements,
+				new ArrayList<SequenceElement>(original.elements.size()));
+		fragmentLabels = new LinkedList<String>(original.fragmentLabels);
+		fragmentSectionLabel = original.fragmentSectionLabel;
+	}
+
+	public FragmentManager copy(Copier copier) {
+		return new FragmentManager(this, copier);
+	}
+
 	/**
 	 * Returns the labels for the fragments for which we have already seen an
 	 * open command (see {@linkplain SequenceDiagramDataProvider#openFragment()}) but
@@ -220,6 +258,7 @@ public final class FragmentManager {
 		diagram.extendLifelines(diagram.getConfiguration().getFragmentMargin());
 
 		fragment.setTop(diagram.getVerticalPosition());
+		fragment.beginElements(elements.size());
 
 		diagram.extendLifelines(extension);
 		openFragments.addLast(fragment);
@@ -266,6 +305,7 @@ public final class FragmentManager {
 				.extendLifelines(diagram.getConfiguration()
 						.getFragmentPadding());
 		comment.setBottom(diagram.getVerticalPosition());
+		comment.endElements(elements.size());
 		diagram.extendLifelines(diagram.getConfiguration().getFragmentMargin());
 	}
 
@@ -289,19 +329,35 @@ public final class FragmentManager {
 	}
 
 	/**
-	 * Adds the given sequence element to all open and closing fragments.
+	 * Adds the given sequence element to all open and closing fragments, by
+	 * giving it the next sequence id.
 	 * 
 	 * @param elem
 	 *            a sequence element to be added to all open and closing
 	 *            fragments
 	 */
 	public void addSequenceElement(SequenceElement elem) {
-		for (Fragment comment : openFragments) {
-			comment.addElement(elem);
-		}
-		for (Fragment comment : closingFragments) {
-			comment.addElement(elem);
+		if (elem.getSequenceId() >= 0
+				|| (openFragments.isEmpty() && closingFragments.isEmpty())) {
+			return;
 		}
+		elem.setSequenceId(elements.size());
+		elements.add(elem);
+	}
+
+	/**
+	 * Returns the sequence elements with the sequence ids <tt>from</tt>, ...,
+	 * <tt>to - 1</tt>.
+	 * 
+	 * @param from
+	 *            the sequence id of the first element
+	 * @param to
+	 *            the sequence id after the last element, or -1 for all
+	 *            elements added so far
+	 * @return the sequence elements in the given range
+	 */
+	public List<SequenceElement> getElements(int from, int to) {
+		return elements.subList(from, to < 0 ? elements.size() : to);
 	}
 
 	private void closeRecentFragment() throws SyntaxError {
@@ -59,7 +59,8 @@ import net.sf.sdedit.util.Grep.Region;
  * 
  * @author Markus Strauch
  */
-public final class Lifeline implements Comparable<Lifeline> {
+public final class Lifeline implements Comparable<Lifeline>,
+		Copier.Copyable {
 
 	public static final String ACTOR = "Actor";
 
@@ -169,6 +170,12 @@ public final class Lifeline implements Comparable<Lifeline> {
 
 	private Set<LifelineFlag> flags;
 
+	/**
+	 * Flag denoting if this lifeline is on the stack of its root lifeline, it
+	 * is false when it has been disposed. Always true for root lifelines.
+	 */
+	private boolean attached;
+
 	public String toString() {
 		String string = name + ":" + type;
 		if (label.length() > 0) {
@@ -222,6 +229,7 @@ public final class Lifeline implements Comparable<Lifeline> {
 		root = this;
 		sideLevel = 0;
 		rectangleBottom = 0;
+		attached = true;
 		allViews = new LinkedList<ExtensibleDrawable>();
 		if (type.equals(ACTOR)) {
 			head = new Figure(this, label, diagram.getVerticalPosition(), !is(ROLE));
@@ -291,11 +299,73 @@ public final class Lifeline implements Comparable<Lifeline> {
 		}
 		sideLevel = parent.sideLevel + 1;
 		active = false;
+		attached = true;
 		view = new Rectangle(computeDrawableWidth(), this);
+		view.setExtended(isExtended());
 		head = null;
 		// view's top will be set inside setActive(true)
 	}
 
+	/**
+	 * Creates a copy of a <tt>Lifeline</tt>, for a copy of its diagram.
+	 * 
+	 * @param original
+	 *            the lifeline to be copied
+	 * @param copier
+	 *            the copier that keeps track of the copies
+	 */
+	private Lifeline(Lifeline original, Copier copier) {
+		copier.register(original, this);
+		direction = original.direction;
+		name = original.name;
+		type = original.type;
+		label = original.label;
+		root = copier.copy(original.root);
+		parent = copier.copy(original.parent);
+		leftChild = copier.copy(original.leftChild);
+		rightChild = copier.copy(original.rightChild);
+		active = original.active;
+		alive = original.alive;
+		level = original.level;
+		sideLevel = original.sideLevel;
+		diagram = copier.copy(original.diagram);
+		view = copier.copy(original.view);
+		head = copier.copy(original.head);
+		cross = copier.copy(original.cross);
+		thread = original.thread;
+		lastLine = copier.copy(original.lastLine);
+		rectangleBottom = original.rectangleBottom;
+		allViews = original.allViews == null ? null : copier.copyAll(
+				original.allViews, new LinkedList<ExtensibleDrawable>());
+		nameRegion = original.nameRegion;
+		destroyed = original.destroyed;
+		flags = new HashSet<LifelineFlag>(original.flags);
+		attached = original.attached;
+	}
+
+	public Lifeline copy(Copier copier) {
+		return new Lifeline(this, copier);
+	}
+
+	/*
+	 * The current views of all lifelines belonging to an object that is alive
+	 * and has not been destroyed grow when the lifelines are extended.
+	 */
+	private boolean isExtended() {
+		return attached && root.alive && diagram.isRootLifeline(root);
+	}
+
+	/**
+	 * Updates the extended flags of the current views of this lifeline's root
+	 * and all its sub lifelines. This method must be called when the result
+	 * of {@linkplain #isExtended()} may have changed.
+	 */
+	void updateViews() {
+		for (Lifeline line : root.getAllLifelines()) {
+			line.view.setExtended(line.isExtended());
+		}
+	}
+
 	public void addView(ExtensibleDrawable view) {
 		root.allViews.add(view);
 	}
@@ -504,6 +574,7 @@ public final class Lifeline implements Comparable<Lifeline> {
 		alive = true;
 		head.setVisible(true);
 		view.setVisible(true);
+		updateViews();
 	}
 
 	/**
@@ -604,6 +675,7 @@ public final class Lifeline implements Comparable<Lifeline> {
 			_view.setBottom(bottom);
 		}
 		alive = false;
+		updateViews();
 	}
 
 	/**
@@ -639,6 +711,8 @@ public final class Lifeline implements Comparable<Lifeline> {
 		case CENTER:
 			throw new IllegalStateException("The lifeline is not root, but" + " has center direction");
 		}
+		attached = false;
+		view.setExtended(false);
 		getRoot().setRectangleBottom(diagram.getVerticalPosition());
 	}
 
@@ -655,6 +729,7 @@ public final class Lifeline implements Comparable<Lifeline> {
 			return;
 		}
 		int y = view.getTop() + view.getHeight();
+		view.setExtended(false);
 		if (active) {
 			view = new Rectangle(computeDrawableWidth(), this);
 
@@ -663,6 +738,7 @@ public final class Lifeline implements Comparable<Lifeline> {
 			lastLine = (Line) view;
 		}
 		view.setTop(y);
+		view.setExtended(isExtended());
 	}
 
 	public void setRectangleBottom(int bottom) {
@@ -46,7 +46,7 @@ import net.sf.sdedit.message.Primitive;
  * @author Markus Strauch
  * 
  */
-final class MessageProcessor {
+final class MessageProcessor implements Copier.Copyable {
 
 	private final SequenceDiagram diagram;
 
@@ -112,6 +112,34 @@ final class MessageProcessor {
 		requireReturn = diagram.getConfiguration().isExplicitReturns();
 	}
 
+	/**
+	 * Creates a copy of a <tt>MessageProcessor</tt>, for a copy of its
+	 * diagram.
+	 * 
+	 * @param original
+	 *            the message processor to be copied
+	 * @param copier
+	 *            the copier that keeps track of the copies
+	 */
+	private MessageProcessor(MessageProcessor original, Copier copier) {
+		copier.register(original, this);
+		diagram = copier.copy(original.diagram);
+		provider = copier.copy(original.provider);
+		data = original.data;
+		rootCaller = copier.copy(original.rootCaller);
+		rootCallee = copier.copy(original.rootCallee);
+		callerThread = original.callerThread;
+		calleeThread = original.calleeThread;
+		caller = copier.copy(original.caller);
+		callee = copier.copy(original.callee);
+		answer = copier.copy(original.answer);
+		requireReturn = original.requireReturn;
+	}
+
+	public MessageProcessor copy(Copier copier) {
+		return new MessageProcessor(this, copier);
+	}
+
 	ForwardMessage processMessage(final MessageData theData,
 			final Lifeline precomputedCaller) throws SemanticError {
 		this.data = theData;
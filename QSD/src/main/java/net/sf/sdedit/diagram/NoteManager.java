@@ -35,7 +35,7 @@ import net.sf.sdedit.error.SyntaxError;
 import net.sf.sdedit.message.Message;
 import net.sf.sdedit.util.Pair;
 
-public class NoteManager {
+public class NoteManager implements Copier.Copyable {
 	
 	private final LinkedList<Note> notes;
 
@@ -58,6 +58,47 @@ public class NoteManager {
 		pendingNotes = new HashMap<String, Note>();
 	}
 
+	/**
+	 * Creates a copy of a <tt>NoteManager</tt>, for a copy of its diagram.
+	 * 
+	 * @param original
+	 *            the note manager to be copied
+	 * @param copier
+	 *            the copier that keeps track of the copies
+	 */
+	private NoteManager(NoteManager original, Copier copier) {
+		copier.register(original, this);
+		diagram = copier.copy(original.diagram);
+		notes = copier.copyAll(original.notes, new LinkedList<Note>());
+		messageAssociation = new HashMap<Integer, List<Message>>();
+		for (Map.Entry<Integer, List<Message>> entry : original
+				.messageAssociation.entrySet()) {
+			messageAssociation.put(entry.getKey(), copier.copyAll(
+					entry.getValue(), new LinkedList<Message>()));
+		}
+		eventAssociation =
+				new HashMap<Integer, List<Pair<Lifeline, Integer>>>();
+		for (Map.Entry<Integer, List<Pair<Lifeline, Integer>>> entry :
+				original.eventAssociation.entrySet()) {
+			List<Pair<Lifeline, Integer>> pairs =
+					new LinkedList<Pair<Lifeline, Integer>>();
+			for (Pair<Lifeline, Integer> pair : entry.getValue()) {
+				pairs.add(new Pair<Lifeline, Integer>(copier.copy(pair
+						.getFirst()), pair.getSecond()));
+			}
+			eventAssociation.put(entry.getKey(), pairs);
+		}
+		pendingNotes = new HashMap<String, Note>();
+		for (Map.Entry<String, Note> entry : original.pendingNotes.entrySet()) {
+			pendingNotes.put(entry.getKey(), copier.copy(entry.getValue()));
+		}
+		freeNoteNumber = original.freeNoteNumber;
+	}
+
+	public NoteManager copy(Copier copier) {
+		return new NoteManager(this, copier);
+	}
+
 	public void associateMessage(int number, Message msg) {
 		List<Message> msgs = messageAssociation.get(number);
 		if (msgs == null) {
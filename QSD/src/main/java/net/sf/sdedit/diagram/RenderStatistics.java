@@ -0,0 +1,297 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.diagram;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import net.sf.sdedit.diagram.RenderTimes.Phase;
+import net.sf.sdedit.util.LatencyHistogram;
+
+/**
+ * <tt>RenderStatistics</tt> collect the durations recorded by
+ * {@linkplain RenderTimes} in one {@linkplain LatencyHistogram} per phase and
+ * count the renderings. There is a global instance for all diagrams (see
+ * {@linkplain #getGlobal()}) and typically one instance per diagram tab.
+ * <p>
+ * <tt>RenderStatistics</tt> can be registered as MBeans with the platform
+ * MBean server, under the name
+ * <tt>net.sf.sdedit:type=RenderStatistics,name=</tt><i>name</i>, so they can
+ * be inspected with <tt>jconsole</tt> or any other JMX client.
+ * 
+ * @author Markus Strauch
+ */
+public class RenderStatistics implements RenderStatisticsMBean {
+
+	private static RenderStatistics global;
+
+	private final String name;
+
+	private final AtomicLong renders;
+
+	private final AtomicLong cancelled;
+
+	private final AtomicLong errors;
+
+	private final AtomicLong superseded;
+
+	private final AtomicLong pending;
+
+	private volatile LatencyHistogram[] histograms;
+
+	private volatile RenderTimes last;
+
+	private ObjectName objectName;
+
+	/**
+	 * Creates new <tt>RenderStatistics</tt>.
+	 * 
+	 * @param name
+	 *            the name of the statistics, used as the value of the
+	 *            <tt>name</tt> key of the MBean's object name
+	 */
+	public RenderStatistics(String name) {
+		this.name = name;
+		renders = new AtomicLong();
+		cancelled = new AtomicLong();
+		errors = new AtomicLong();
+		superseded = new AtomicLong();
+		pending = new AtomicLong();
+		histograms = newHistograms();
+	}
+
+	/**
+	 * Returns the statistics of all diagrams rendered for display or export
+	 * in the editor, registering them as an MBean when this method is called
+	 * for the first time.
+	 * 
+	 * @return the global statistics
+	 */
+	public static synchronized RenderStatistics getGlobal() {
+		if (global == null) {
+			global = new RenderStatistics("global");
+			global.register();
+		}
+		return global;
+	}
+
+	private static LatencyHistogram[] newHistograms() {
+		LatencyHistogram[] histograms = new LatencyHistogram[Phase.values().length];
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = new LatencyHistogram();
+		}
+		return histograms;
+	}
+
+	/**
+	 * Registers these statistics with the platform MBean server. Nothing
+	 * happens if they are already registered.
+	 */
+	public synchronized void register() {
+		if (objectName != null) {
+			return;
+		}
+		try {
+			ObjectName on = new ObjectName(
+					"net.sf.sdedit:type=RenderStatistics,name=" + name);
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(on)) {
+				server.unregisterMBean(on);
+			}
+			server.registerMBean(this, on);
+			objectName = on;
+		} catch (JMException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Unregisters these statistics from the platform MBean server, if they
+	 * are registered.
+	 */
+	public synchronized void unregister() {
+		if (objectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException e) {
+			e.printStackTrace();
+		}
+		objectName = null;
+	}
+
+	void record(Phase phase, long nanos) {
+		histograms[phase.ordinal()].record(nanos);
+	}
+
+	void requested() {
+		pending.incrementAndGet();
+	}
+
+	void superseded() {
+		pending.decrementAndGet();
+		superseded.incrementAndGet();
+	}
+
+	void finished(RenderTimes times, boolean wasCancelled, boolean failed) {
+		pending.decrementAndGet();
+		if (wasCancelled) {
+			cancelled.incrementAndGet();
+			return;
+		}
+		renders.incrementAndGet();
+		if (failed) {
+			errors.incrementAndGet();
+		}
+		last = times;
+	}
+
+	/**
+	 * Returns the histogram of the durations of the given phase.
+	 * 
+	 * @param phase
+	 *            a phase
+	 * @return the histogram of the durations of the phase
+	 */
+	public LatencyHistogram getHistogram(Phase phase) {
+		return histograms[phase.ordinal()];
+	}
+
+	/**
+	 * Returns the times of the rendering that has finished last, or
+	 * <tt>null</tt> if no rendering has finished yet. As long as the diagram
+	 * is displayed, its paint times are updated.
+	 * 
+	 * @return the times of the rendering that has finished last
+	 */
+	public RenderTimes getLastTimes() {
+		return last;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the number of renderings that have not been cancelled,
+	 * including the ones that failed.
+	 * 
+	 * @return the number of renderings that have not been cancelled
+	 */
+	public long getRenderCount() {
+		return renders.get();
+	}
+
+	public long getCancelledCount() {
+		return cancelled.get();
+	}
+
+	public long getErrorCount() {
+		return errors.get();
+	}
+
+	/**
+	 * Returns the number of renderings that have been replaced by newer ones
+	 * before they began.
+	 * 
+	 * @return the number of superseded renderings
+	 */
+	public long getSupersededCount() {
+		return superseded.get();
+	}
+
+	/**
+	 * Returns the number of renderings that have been requested and are
+	 * waiting or running.
+	 * 
+	 * @return the number of renderings that are waiting or running
+	 */
+	public long getQueueDepth() {
+		return pending.get();
+	}
+
+	public String getLastRender() {
+		RenderTimes times = last;
+		return times == null ? "" : times.toString();
+	}
+
+	/**
+	 * Returns one line per phase that has been recorded, with the number of
+	 * durations, their mean, percentiles and maximum.
+	 * 
+	 * @return a summary of the statistics
+	 */
+	public String[] getSummary() {
+		LatencyHistogram[] snapshot = histograms;
+		int n = 0;
+		for (LatencyHistogram histogram : snapshot) {
+			if (histogram.getCount() > 0) {
+				n++;
+			}
+		}
+		String[] summary = new String[n];
+		n = 0;
+		for (Phase phase : Phase.values()) {
+			LatencyHistogram histogram = snapshot[phase.ordinal()];
+			if (histogram.getCount() > 0) {
+				summary[n++] = phase.name() + ": " + histogram;
+			}
+		}
+		return summary;
+	}
+
+	public long getCount(String phase) {
+		return getHistogram(Phase.valueOf(phase)).getCount();
+	}
+
+	public double getMeanMillis(String phase) {
+		return getHistogram(Phase.valueOf(phase)).getMeanMillis();
+	}
+
+	public double getMaxMillis(String phase) {
+		return getHistogram(Phase.valueOf(phase)).getMaxMillis();
+	}
+
+	public double getPercentileMillis(String phase, double percentile) {
+		return getHistogram(Phase.valueOf(phase)).getPercentile(percentile);
+	}
+
+	/**
+	 * Clears the histograms and counters, except for the queue depth.
+	 */
+	public void reset() {
+		histograms = newHistograms();
+		renders.set(0);
+		cancelled.set(0);
+		errors.set(0);
+		superseded.set(0);
+		last = null;
+	}
+
+}
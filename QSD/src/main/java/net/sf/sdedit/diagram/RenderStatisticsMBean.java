@@ -0,0 +1,61 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.diagram;
+
+/**
+ * The management interface of {@linkplain RenderStatistics}. Phases are
+ * given by the names of the constants of {@linkplain RenderTimes.Phase},
+ * like <tt>READ_MESSAGES</tt>.
+ * 
+ * @author Markus Strauch
+ */
+public interface RenderStatisticsMBean {
+
+	public String getName();
+
+	public long getRenderCount();
+
+	public long getCancelledCount();
+
+	public long getErrorCount();
+
+	public long getSupersededCount();
+
+	public long getQueueDepth();
+
+	public String getLastRender();
+
+	public String[] getSummary();
+
+	public long getCount(String phase);
+
+	public double getMeanMillis(String phase);
+
+	public double getMaxMillis(String phase);
+
+	public double getPercentileMillis(String phase, double percentile);
+
+	public void reset();
+
+}
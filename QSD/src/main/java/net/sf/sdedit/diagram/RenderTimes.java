@@ -0,0 +1,258 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.diagram;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <tt>RenderTimes</tt> record how long the phases of the rendering of one
+ * diagram have taken. A <tt>RenderTimes</tt> object is passed to a
+ * {@linkplain DiagramFactory} via
+ * {@linkplain DiagramFactory#setRenderTimes(RenderTimes)}; the factory, the
+ * diagram and the graphic devices then record the phases they are
+ * responsible for. Each duration is also recorded by the
+ * {@linkplain RenderStatistics} the <tt>RenderTimes</tt> have been created
+ * with.
+ * <p>
+ * When no <tt>RenderTimes</tt> are set, nothing is measured.
+ * 
+ * @author Markus Strauch
+ */
+public final class RenderTimes {
+
+	/**
+	 * The phases of the rendering of a diagram.
+	 */
+	public enum Phase {
+
+		/**
+		 * Generation of the diagram without drawing it, needed for lifelines
+		 * to be destroyed automatically.
+		 */
+		DRY_RUN("dry run"),
+
+		/**
+		 * Generation of the diagram, including all of the following phases
+		 * up to note association.
+		 */
+		GENERATION("generation"),
+
+		/**
+		 * Reading the object declarations.
+		 */
+		READ_OBJECTS("objects"),
+
+		/**
+		 * Reading and processing the messages.
+		 */
+		READ_MESSAGES("messages"),
+
+		/**
+		 * Computing the positions of the lifelines.
+		 */
+		COMPUTE_AXES("axes"),
+
+		/**
+		 * Computing the size of the diagram.
+		 */
+		COMPUTE_BOUNDS("bounds"),
+
+		/**
+		 * Closing the notes and associating them with messages.
+		 */
+		NOTE_ASSOCIATION("notes"),
+
+		/**
+		 * Painting the diagram on the screen.
+		 */
+		PAINT("paint"),
+
+		/**
+		 * Drawing the diagram to a file.
+		 */
+		EXPORT("export"),
+
+		/**
+		 * The whole rendering of a diagram for display, from the request
+		 * until the diagram is handed over to be displayed, including the
+		 * time the request waits for a renderer thread.
+		 */
+		LATENCY("latency");
+
+		private final String label;
+
+		private Phase(String label) {
+			this.label = label;
+		}
+
+		/**
+		 * Returns a short name of this phase.
+		 * 
+		 * @return a short name of this phase
+		 */
+		public String getLabel() {
+			return label;
+		}
+	}
+
+	private static final Phase[] PHASES = Phase.values();
+
+	private final AtomicLongArray nanos;
+
+	private final RenderStatistics[] statistics;
+
+	/**
+	 * Creates new <tt>RenderTimes</tt>. The statistics count the rendering as
+	 * requested until {@linkplain #finished(boolean, boolean)} or
+	 * {@linkplain #superseded()} is called.
+	 * 
+	 * @param statistics
+	 *            the statistics that record all durations recorded by these
+	 *            <tt>RenderTimes</tt>, too
+	 */
+	public RenderTimes(RenderStatistics... statistics) {
+		this.statistics = statistics;
+		nanos = new AtomicLongArray(PHASES.length);
+		for (int i = 0; i < PHASES.length; i++) {
+			nanos.set(i, -1);
+		}
+		for (RenderStatistics stats : statistics) {
+			stats.requested();
+		}
+	}
+
+	/**
+	 * Records the duration of a phase. If the phase has been recorded before
+	 * (for instance, the diagram has been painted again), the previous
+	 * duration is replaced.
+	 * 
+	 * @param phase
+	 *            a phase
+	 * @param nanos
+	 *            the duration of the phase in nanoseconds
+	 */
+	public void record(Phase phase, long nanos) {
+		this.nanos.set(phase.ordinal(), nanos);
+		for (RenderStatistics stats : statistics) {
+			stats.record(phase, nanos);
+		}
+	}
+
+	/**
+	 * Records the duration of a phase that began at the given time, ending
+	 * now.
+	 * 
+	 * @param phase
+	 *            a phase
+	 * @param start
+	 *            the value of <tt>System.nanoTime()</tt> when the phase began
+	 */
+	public void recordSince(Phase phase, long start) {
+		record(phase, System.nanoTime() - start);
+	}
+
+	/**
+	 * Makes the statistics count the rendering as finished. This should be
+	 * called once, when the generation of the diagram is done.
+	 * 
+	 * @param cancelled
+	 *            flag denoting if the generation has been cancelled
+	 * @param failed
+	 *            flag denoting if the diagram has an error
+	 */
+	public void finished(boolean cancelled, boolean failed) {
+		for (RenderStatistics stats : statistics) {
+			stats.finished(this, cancelled, failed);
+		}
+	}
+
+	/**
+	 * Makes the statistics count the rendering as superseded. This should be
+	 * called instead of {@linkplain #finished(boolean, boolean)} when the
+	 * rendering has been replaced by a newer one before it began.
+	 */
+	public void superseded() {
+		for (RenderStatistics stats : statistics) {
+			stats.superseded();
+		}
+	}
+
+	/**
+	 * Returns true if the duration of the given phase has been recorded.
+	 * 
+	 * @param phase
+	 *            a phase
+	 * @return true if the phase has been recorded
+	 */
+	public boolean isRecorded(Phase phase) {
+		return nanos.get(phase.ordinal()) >= 0;
+	}
+
+	/**
+	 * Returns the duration of the given phase in milliseconds, or -1 if it
+	 * has not been recorded.
+	 * 
+	 * @param phase
+	 *            a phase
+	 * @return the duration of the phase in milliseconds
+	 */
+	public double getMillis(Phase phase) {
+		long n = nanos.get(phase.ordinal());
+		return n < 0 ? -1 : n / 1E6;
+	}
+
+	/**
+	 * Returns the recorded durations, like
+	 * <tt>generation 12.3 ms (objects 0.2, messages 10.9, axes 0.1, bounds 0.6, notes 0.0)</tt>.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		boolean inner = false;
+		for (Phase phase : PHASES) {
+			if (!isRecorded(phase)) {
+				continue;
+			}
+			boolean part = phase.compareTo(Phase.GENERATION) > 0
+					&& phase.compareTo(Phase.NOTE_ASSOCIATION) <= 0;
+			if (part && !inner) {
+				builder.append(builder.length() == 0 ? "(" : " (");
+			} else if (!part && inner) {
+				builder.append(')');
+			}
+			if (builder.length() > 0 && builder.charAt(builder.length() - 1) != '(') {
+				builder.append(", ");
+			}
+			builder.append(phase.getLabel());
+			builder.append(String.format(part ? " %.1f" : " %.1f ms",
+					getMillis(phase)));
+			inner = part;
+		}
+		if (inner) {
+			builder.append(')');
+		}
+		return builder.toString();
+	}
+
+}
@@ -32,11 +32,13 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
 
+import net.sf.sdedit.drawable.DisplayList;
 import net.sf.sdedit.drawable.Drawable;
 import net.sf.sdedit.drawable.ExtensibleDrawable;
 import net.sf.sdedit.drawable.Fragment;
 import net.sf.sdedit.drawable.Line;
 import net.sf.sdedit.drawable.SequenceElement;
+import net.sf.sdedit.jfr.FlightEvents;
 import net.sf.sdedit.util.Direction;
 
 /**
@@ -63,6 +65,8 @@ public class SDPaintDevice extends AbstractPaintDevice {
 
     private final Line rightBound;
     
+    private DisplayList displayList;
+    
     public SDPaintDevice(GraphicDevice graphic) {
         super(graphic);
         height = 0;
@@ -70,6 +74,31 @@ public class SDPaintDevice extends AbstractPaintDevice {
         other = new LinkedList<Drawable>();
         rightBound = new Line(1, null);
     }
+
+    /**
+     * Creates a copy of an <tt>SDPaintDevice</tt>, for a copy of its diagram.
+     * 
+     * @param original
+     *            the paint device to be copied
+     * @param copier
+     *            the copier that keeps track of the copies
+     */
+    protected SDPaintDevice(SDPaintDevice original, Copier copier) {
+        super(original, copier);
+        height = original.height;
+        leftOf = new ArrayList<Set<SequenceElement>>();
+        for (Set<SequenceElement> elements : original.leftOf) {
+            leftOf.add(copier.copyAll(elements,
+                    new HashSet<SequenceElement>()));
+        }
+        other = copier.copyAll(original.other, new LinkedList<Drawable>());
+        diagram = copier.copy(original.diagram);
+        rightBound = copier.copy(original.rightBound);
+    }
+
+    public SDPaintDevice copy(Copier copier) {
+        return new SDPaintDevice(this, copier);
+    }
     
     /*
      * @see net.sf.sdedit.diagram.IPaintDevice#setDiagram(net.sf.sdedit.diagram.Diagram)
@@ -88,6 +117,7 @@ public class SDPaintDevice extends AbstractPaintDevice {
         other.clear();
         rightBound.setLeft(0);
         height = 0;
+        displayList = null;
         for (int i = 0; i < diagram.getNumberOfLifelines(); i++) {
             addLifelineSlot();
         }
@@ -248,6 +278,22 @@ public class SDPaintDevice extends AbstractPaintDevice {
     public void clear() {
         // as a result of this, iterator() will return an empty iterator
         diagram = null;
+        displayList = null;
+    }
+
+    /**
+     * Returns the display list of the diagram, which is recorded when it is
+     * needed for the first time. This method must only be called when the
+     * diagram is complete.
+     * 
+     * @return the display list of the diagram
+     */
+    public synchronized DisplayList getDisplayList() {
+        if (displayList == null) {
+            displayList = DisplayList.record(this, getWidth(), getHeight(),
+                    getFont());
+        }
+        return displayList;
     }
 
     /**
@@ -255,20 +301,27 @@ public class SDPaintDevice extends AbstractPaintDevice {
      * before a frame and a descriptive text can be set).
      */
     public void computeBounds() {
+        FlightEvents events = FlightEvents.get();
+        Object event = events.beginLayout();
+        int drawables = 0;
         for (int i = 0; i < diagram.getNumberOfLifelines(); i++) {
             for (Drawable view : getAllViewsAt(i)) {
                 processDrawable(view);
+                drawables++;
             }
         }
         for (int i = 0; i < leftOf.size(); i++) {
             for (SequenceElement arrow : leftOf.get(i)) {
                 processDrawable(arrow);
+                drawables++;
             }
         }
         for (Drawable d : other) {
             processDrawable(d);
+            drawables++;
         }
         height += diagram.getConfiguration().getLowerMargin();
+        events.endLayout(event, getWidth(), height, drawables);
     }
 
     /**
@@ -404,7 +457,10 @@ public class SDPaintDevice extends AbstractPaintDevice {
         } 
         if ("computeAxes".equals(method)) {
             int leftAxis = (Integer) argument;
+            FlightEvents events = FlightEvents.get();
+            Object event = events.beginAxisComputation();
             this.computeAxes(leftAxis);
+            events.endAxisComputation(event, diagram.getNumberOfLifelines());
             return null;
         } 
         if ("getRightBound".equals(method)) {
@@ -37,10 +37,12 @@ import java.util.Set;
 import java.util.regex.Pattern;
 
 import net.sf.sdedit.config.SequenceConfiguration;
+import net.sf.sdedit.diagram.RenderTimes.Phase;
 import net.sf.sdedit.drawable.Arrow;
 import net.sf.sdedit.drawable.Drawable;
 import net.sf.sdedit.drawable.Fragment;
 import net.sf.sdedit.drawable.Text;
+import net.sf.sdedit.error.GenerationCancelled;
 import net.sf.sdedit.error.SemanticError;
 import net.sf.sdedit.error.SyntaxError;
 import net.sf.sdedit.message.Answer;
@@ -109,7 +111,8 @@ import net.sf.sdedit.util.MultiIterator;
  * [/c]
  * </code>
  */
-public final class SequenceDiagram implements Diagram, Iterable<Lifeline> {
+public final class SequenceDiagram implements Diagram, Iterable<Lifeline>,
+		Copier.Copyable {
 	/**
 	 * Maps names of objects onto their root lifelines.
 	 */
@@ -127,6 +130,11 @@ public final class SequenceDiagram implements Diagram, Iterable<Lifeline> {
 	 */
 	private int verticalPosition;
 
+	/**
+	 * The total amount by which the lifelines have been extended.
+	 */
+	private int lifelineExtension;
+
 	/**
 	 * We read the object and message specifications from a DiagramDataProvider.
 	 */
@@ -238,6 +246,33 @@ public final class SequenceDiagram implements Diagram, Iterable<Lifeline> {
 
 	private int messageId;
 
+	/**
+	 * The frame around the diagram if it has a title.
+	 */
+	private Fragment titleFrame;
+
+	/**
+	 * The description text at the top of the diagram.
+	 */
+	private Text descriptionText;
+
+	/**
+	 * Takes a checkpoint of this diagram while messages are read, may be
+	 * <tt>null</tt>.
+	 */
+	private Checkpoints.Request checkpointRequest;
+
+	/**
+	 * Flag denoting if the generation has been cancelled.
+	 */
+	private volatile boolean cancelled;
+
+	/**
+	 * The times the phases of the generation are recorded in, may be
+	 * <tt>null</tt>.
+	 */
+	private RenderTimes renderTimes;
+
 	/**
 	 * Creates a new diagram that is to be generated based on the data delivered
 	 * by the given <tt>DiagramDataProvider</tt>.
@@ -299,6 +334,109 @@ public final class SequenceDiagram implements Diagram, Iterable<Lifeline> {
 		idMap = new HashMap<String, Integer>();
 	}
 
+	/**
+	 * Creates a copy of a <tt>SequenceDiagram</tt> that is being generated,
+	 * including its data provider, paint device, lifelines, thread stacks,
+	 * note and fragment managers. The copy has no checkpoint request and no
+	 * render times, and it is not cancelled.
+	 * 
+	 * @param original
+	 *            the diagram to be copied
+	 * @param copier
+	 *            the copier that keeps track of the copies
+	 */
+	private SequenceDiagram(SequenceDiagram original, Copier copier) {
+		copier.register(original, this);
+		arrowSize = original.arrowSize;
+		arrowColor = original.arrowColor;
+		messagePadding = original.messagePadding;
+		subLifelineWidth = original.subLifelineWidth;
+		selfMessageXExtent = original.selfMessageXExtent;
+		mainLifelineWidth = original.mainLifelineWidth;
+		messageLabelSpace = original.messageLabelSpace;
+		returnArrowVisible = original.returnArrowVisible;
+		arrowThickness = original.arrowThickness;
+		activationBarBorderThickness = original.activationBarBorderThickness;
+		lifelineThickness = original.lifelineThickness;
+		opaqueText = original.opaqueText;
+		messageLineLength = original.messageLineLength;
+		threadColors = original.threadColors;
+		requireReturn = original.requireReturn;
+		conf = original.conf;
+		threaded = original.threaded;
+		paintDevice = copier.copy(original.paintDevice);
+		provider = copier.copy(original.provider);
+		lifelineMap = new HashMap<String, Lifeline>();
+		for (Entry<String, Lifeline> entry : original.lifelineMap.entrySet()) {
+			lifelineMap.put(entry.getKey(), copier.copy(entry.getValue()));
+		}
+		lifelineList = new ArrayList<List<Lifeline>>();
+		for (List<Lifeline> list : original.lifelineList) {
+			lifelineList.add(copier.copyAll(list, new ArrayList<Lifeline>()));
+		}
+		verticalPosition = original.verticalPosition;
+		lifelineExtension = original.lifelineExtension;
+		threadStacks = new ArrayList<LinkedList<Message>>();
+		for (LinkedList<Message> stack : original.threadStacks) {
+			// the stacks of finished threads are null
+			threadStacks.add(stack == null ? null : copier.copyAll(stack,
+					new LinkedList<Message>()));
+		}
+		first = copier.copyAll(original.first, new ArrayList<Lifeline>());
+		drawableBijection = new Bijection<Drawable, Object>();
+		for (Drawable drawable : original.drawableBijection.getPreImages()) {
+			drawableBijection.add(copier.copy(drawable),
+					original.drawableBijection.getImage(drawable));
+		}
+		callerThread = original.callerThread;
+		threadStates = new ArrayList<String>(original.threadStates);
+		noteManager = copier.copy(original.noteManager);
+		fragmentManager = copier.copy(original.fragmentManager);
+		processor = copier.copy(original.processor);
+		finished = original.finished;
+		messages = copier.copyAll(original.messages,
+				new LinkedList<ForwardMessage>());
+		positionMap = new HashMap<String, Integer>(original.positionMap);
+		messageId = original.messageId;
+		idMap = original.idMap == null ? null : new HashMap<String, Integer>(
+				original.idMap);
+		reverseIdMap = original.reverseIdMap;
+		titleFrame = copier.copy(original.titleFrame);
+		descriptionText = copier.copy(original.descriptionText);
+	}
+
+	public SequenceDiagram copy(Copier copier) {
+		return new SequenceDiagram(this, copier);
+	}
+
+	/**
+	 * Reads the object declarations (and nothing else) from the
+	 * <tt>DiagramDataProvider</tt> and returns true if there is a lifeline
+	 * that is to be destroyed automatically after its last activity. Only
+	 * then the diagram depends on a reverse id map (see
+	 * {@linkplain #setReverseIdMap(Map)}), which must be computed by
+	 * generating the diagram beforehand.
+	 * <p>
+	 * The diagram cannot be generated after this method has been called.
+	 * 
+	 * @return true if there is a lifeline that is to be destroyed
+	 *         automatically
+	 * @throws SyntaxError
+	 *             if an object declaration is not well-formed
+	 * @throws SemanticError
+	 *             if an object is declared twice
+	 */
+	public boolean hasAutodestroyLifelines() throws SyntaxError,
+			SemanticError {
+		readObjects();
+		for (Lifeline lifeline : getLifelines()) {
+			if (lifeline.isAutodestroy()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	public void setReverseIdMap(Map<Integer, List<String>> map) {
 		this.reverseIdMap = map;
 		idMap = null;
@@ -326,34 +464,40 @@ public final class SequenceDiagram implements Diagram, Iterable<Lifeline> {
 	 *             if a message or object specification is syntactically wrong
 	 * @throws SemanticError
 	 *             if a message or object specification is semantically wrong
+	 * @throws GenerationCancelled
+	 *             if the generation has been cancelled via
+	 *             {@linkplain #cancel()}
 	 */
-	public void generate() throws SemanticError, SyntaxError {
+	public void generate() throws SemanticError, SyntaxError, GenerationCancelled {
 		generate(true);
 	}
 	
-	public void generate(boolean complete) throws SemanticError, SyntaxError {
+	public void generate(boolean complete) throws SemanticError, SyntaxError, GenerationCancelled {
 
-		Fragment frame = null;
-		Text text = null;
 		String title = provider.getTitle();
 
 		String description[] = provider.getDescription();
 		if (description != null) {
-			text = new Text(description, this);
-			text.setTop(conf.getUpperMargin());
-			text.setLeft(conf.getLeftMargin());
-			verticalPosition = text.getBottom() + 3;
+			descriptionText = new Text(description, this);
+			descriptionText.setTop(conf.getUpperMargin());
+			descriptionText.setLeft(conf.getLeftMargin());
+			verticalPosition = descriptionText.getBottom() + 3;
 		} else {
 			verticalPosition = conf.getUpperMargin();
 		}
 
 		if (title != null) {
-			frame = new Fragment(title, "", this);
-			frame.setTop(verticalPosition);
-			verticalPosition += frame.getLabelHeight() + 5;
+			titleFrame = new Fragment(title, "", this);
+			titleFrame.setTop(verticalPosition);
+			verticalPosition += titleFrame.getLabelHeight() + 5;
 		}
 
-		readObjects();
+		long start = System.nanoTime();
+		try {
+			readObjects();
+		} finally {
+			record(Phase.READ_OBJECTS, start);
+		}
 		if (lifelineList.isEmpty()) {
 			return;
 		}
@@ -377,41 +521,120 @@ public final class SequenceDiagram implements Diagram, Iterable<Lifeline> {
 				}
 			}
 
-			readMessages();
+			start = System.nanoTime();
+			try {
+				readMessages();
+			} finally {
+				record(Phase.READ_MESSAGES, start);
+			}
 
 		} finally {
+			finishGeneration(complete && !cancelled);
+		}
+	}
 
-			fragmentManager.finishFragments();
+	/**
+	 * Continues the generation of a diagram that has been restored from a
+	 * {@linkplain Checkpoint}, reading the remaining messages from the
+	 * <tt>DiagramDataProvider</tt>.
+	 * 
+	 * @throws SyntaxError
+	 *             if a message specification is syntactically wrong
+	 * @throws SemanticError
+	 *             if a message specification is semantically wrong
+	 * @throws GenerationCancelled
+	 *             if the generation has been cancelled
+	 */
+	void resume() throws SemanticError, SyntaxError, GenerationCancelled {
+		long start = System.nanoTime();
+		try {
+			readMessages();
+		} finally {
+			record(Phase.READ_MESSAGES, start);
+			finishGeneration(!cancelled);
+		}
+	}
+
+	private void record(Phase phase, long start) {
+		if (renderTimes != null) {
+			renderTimes.recordSince(phase, start);
+		}
+	}
 
-			if (complete && getNumberOfLifelines() > 0) {
+	private void finishGeneration(boolean complete) throws SemanticError {
 
-				paintDevice.callSpecial("computeAxes", conf.getLeftMargin() + 6
-						+ getLifelineAt(0).getHead().getWidth() / 2);
-				
-				paintDevice.computeBounds();
+		fragmentManager.finishFragments();
 
-				// fixes bug 2019730 (notes appear outside of diagram)
-				for (Lifeline lifeline : this) {
-					noteManager.closeNote(lifeline.getName());
-				}
-				//
+		if (complete && getNumberOfLifelines() > 0) {
 
-				noteManager.computeArrowAssociations();
+			long start = System.nanoTime();
+			paintDevice.callSpecial("computeAxes", conf.getLeftMargin() + 6
+					+ getLifelineAt(0).getHead().getWidth() / 2);
+			record(Phase.COMPUTE_AXES, start);
+			
+			start = System.nanoTime();
+			paintDevice.computeBounds();
+			record(Phase.COMPUTE_BOUNDS, start);
 
-				if (frame != null) {
-					frame.setLeft(conf.getLeftMargin());
-					frame.setRight(paintDevice.getWidth()
-							- conf.getRightMargin() + 6);
-					frame.setBottom(verticalPosition + 4);
-					paintDevice.addExtraordinary(frame);
-				}
-				if (text != null) {
-					paintDevice.addExtraordinary(text);
-				}
+			start = System.nanoTime();
+			// fixes bug 2019730 (notes appear outside of diagram)
+			for (Lifeline lifeline : this) {
+				noteManager.closeNote(lifeline.getName());
+			}
+			//
+
+			noteManager.computeArrowAssociations();
+			record(Phase.NOTE_ASSOCIATION, start);
+
+			if (titleFrame != null) {
+				titleFrame.setLeft(conf.getLeftMargin());
+				titleFrame.setRight(paintDevice.getWidth()
+						- conf.getRightMargin() + 6);
+				titleFrame.setBottom(verticalPosition + 4);
+				paintDevice.addExtraordinary(titleFrame);
+			}
+			if (descriptionText != null) {
+				paintDevice.addExtraordinary(descriptionText);
 			}
-			finished = true;
-			paintDevice.close();
 		}
+		finished = true;
+		paintDevice.close();
+	}
+
+	/**
+	 * Cancels the generation of this diagram. This method may be called from
+	 * any thread. The generation stops with a
+	 * {@linkplain GenerationCancelled} exception before it reads the next
+	 * message.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Sets the request that is offered this diagram before each message line
+	 * is read, until it has taken a checkpoint.
+	 * 
+	 * @param checkpointRequest
+	 *            the request or <tt>null</tt>
+	 */
+	void setCheckpointRequest(Checkpoints.Request checkpointRequest) {
+		this.checkpointRequest = checkpointRequest;
+	}
+
+	/**
+	 * Makes this diagram record the durations of the phases of its
+	 * generation in the given times.
+	 * 
+	 * @param renderTimes
+	 *            the times or <tt>null</tt> if nothing is to be measured
+	 */
+	public void setRenderTimes(RenderTimes renderTimes) {
+		this.renderTimes = renderTimes;
+	}
+
+	public RenderTimes getRenderTimes() {
+		return renderTimes;
 	}
 
 	public final boolean isFinished() {
@@ -455,9 +678,9 @@ public final class SequenceDiagram implements Diagram, Iterable<Lifeline> {
 	 *             if a message between objects that are not existing or that
 	 *             are not active is described
 	 */
-	private void readMessages() throws SyntaxError, SemanticError {
+	private void readMessages() throws SyntaxError, SemanticError, GenerationCancelled {
 
-		while (provider.advance()) {
+		while (advance()) {
 
 			Lifeline caller = null;
 
@@ -556,6 +779,16 @@ public final class SequenceDiagram implements Diagram, Iterable<Lifeline> {
 		}
 	}
 
+	private boolean advance() throws GenerationCancelled {
+		if (cancelled) {
+			throw new GenerationCancelled(provider);
+		}
+		if (checkpointRequest != null && checkpointRequest.offer(this)) {
+			checkpointRequest = null;
+		}
+		return provider.advance();
+	}
+
 	public List<ForwardMessage> getMessages() {
 		return messages;
 	}
@@ -618,6 +851,7 @@ public final class SequenceDiagram implements Diagram, Iterable<Lifeline> {
 			positionMap.put(lifeline.getName(), add(lifeline));
 		}
 		lifelineMap.put(lifeline.getName(), lifeline);
+		lifeline.updateViews();
 		return true;
 	}
 
@@ -655,17 +889,43 @@ public final class SequenceDiagram implements Diagram, Iterable<Lifeline> {
 		paintDevice.addExtraordinary(lifeline.getHead());
 	}
 
+	/**
+	 * Extends the current views of all lifelines (including sub lifelines) of
+	 * objects that are alive by the given amount and moves the vertical
+	 * position down accordingly. This takes constant time, as the views
+	 * compute their heights from {@linkplain #getLifelineExtension()}.
+	 * 
+	 * @param amount
+	 *            the number of pixels by which the lifelines are extended
+	 */
 	public final void extendLifelines(final int amount) {
-		for (final Lifeline lifeline : getLifelines()) {
-			if (lifeline.isAlive()) {
-				for (final Lifeline line : lifeline.getAllLifelines()) {
-					line.getView().extend(amount);
-				}
-			}
-		}
+		lifelineExtension += amount;
 		verticalPosition += amount;
 	}
 
+	/**
+	 * Returns the total amount by which the lifelines have been extended via
+	 * {@linkplain #extendLifelines(int)}.
+	 * 
+	 * @return the total amount by which the lifelines have been extended
+	 */
+	public int getLifelineExtension() {
+		return lifelineExtension;
+	}
+
+	/**
+	 * Returns true if the given lifeline is the root lifeline of an object
+	 * that has not been destroyed.
+	 * 
+	 * @param lifeline
+	 *            a root lifeline
+	 * @return true if the lifeline belongs to an object that has not been
+	 *         destroyed
+	 */
+	boolean isRootLifeline(Lifeline lifeline) {
+		return lifelineMap.get(lifeline.getName()) == lifeline;
+	}
+
 	int getPositionOf(Lifeline lifeline) {
 		return positionMap.get(lifeline.getRoot().getName());
 	}
@@ -726,11 +986,12 @@ public final class SequenceDiagram implements Diagram, Iterable<Lifeline> {
 	 *            the name of the object of which the lifeline is to be removed
 	 */
 	public void removeLifeline(String name) {
-
-		if (lifelineMap.remove(name) == null) {
+		Lifeline lifeline = lifelineMap.remove(name);
+		if (lifeline == null) {
 			throw new IllegalArgumentException("lifeline " + name
 					+ " should be removed, but does not exist");
 		}
+		lifeline.updateViews();
 	}
 
 	LinkedList<Message> currentStack() {
@@ -23,13 +23,18 @@
 //THE POSSIBILITY OF SUCH DAMAGE.
 package net.sf.sdedit.diagram;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 import net.sf.sdedit.config.Configuration;
 import net.sf.sdedit.config.SequenceConfiguration;
+import net.sf.sdedit.diagram.RenderTimes.Phase;
 import net.sf.sdedit.error.DiagramError;
+import net.sf.sdedit.error.GenerationCancelled;
+import net.sf.sdedit.jfr.FlightEvents;
 import net.sf.sdedit.text.TextHandler;
+import net.sf.sdedit.ui.components.configuration.Bean;
 
 public class SequenceDiagramFactory implements DiagramFactory, DiagramDataProviderFactory {
 
@@ -43,6 +48,29 @@ public class SequenceDiagramFactory implements DiagramFactory, DiagramDataProvid
 
 	private DiagramDataProvider provider;
 
+	private Checkpoints checkpoints;
+
+	private Bean<? extends Configuration> configurationBean;
+
+	private volatile boolean cancelled;
+
+	private RenderTimes renderTimes;
+
+	/**
+	 * Flag denoting if the diagram had to be generated twice.
+	 */
+	private boolean dryRun;
+
+	/**
+	 * Flag denoting if the generation continued from a checkpoint.
+	 */
+	private boolean resumed;
+
+	/**
+	 * The diagram that is currently being generated.
+	 */
+	private volatile SequenceDiagram generating;
+
 	public SequenceDiagramFactory(DiagramDataProviderFactory providerFactory, PaintDevice paintDevice) {
 		this.providerFactory = providerFactory;
 		this.paintDevice = paintDevice;
@@ -59,27 +87,133 @@ public class SequenceDiagramFactory implements DiagramFactory, DiagramDataProvid
 		return new SequenceDiagram(configuration, (SequenceDiagramDataProvider) provider, paintDevice);
 	}
 
+	/**
+	 * Makes this factory use the given checkpoints, so a diagram generated
+	 * from a text that has the same beginning as the one of a previous
+	 * generation continues where that text has been changed.
+	 * 
+	 * @param checkpoints
+	 *            the checkpoints of the diagram's tab
+	 * @param configurationBean
+	 *            the bean of the configuration the diagram will be generated
+	 *            with
+	 */
+	public void setCheckpoints(Checkpoints checkpoints,
+			Bean<? extends Configuration> configurationBean) {
+		this.checkpoints = checkpoints;
+		this.configurationBean = configurationBean;
+	}
+
 	public DiagramDataProvider createProvider() {
 		return new TextHandler(text);
 	}
 
 	public void generateDiagram(Configuration conf) throws DiagramError {
+		FlightEvents events = FlightEvents.get();
+		Object event = events.beginParse();
+		if (event == null) {
+			generate(conf);
+			return;
+		}
+		String outcome = "error";
+		try {
+			generate(conf);
+			outcome = "ok";
+		} catch (GenerationCancelled e) {
+			outcome = "cancelled";
+			throw e;
+		} finally {
+			SequenceDiagram current = generating;
+			events.endParse(event, current == null ? 0 : current.getNumberOfLifelines(),
+					current == null ? 0 : current.getMessages().size(), dryRun,
+					resumed, outcome);
+		}
+	}
+
+	private void generate(Configuration conf) throws DiagramError {
 		SequenceConfiguration configuration = conf.cast(SequenceConfiguration.class);
-		Map<Integer, List<String>> map = null;
+		Map<Integer, List<String>> map = Collections.emptyMap();
+		if (cancelled) {
+			throw new GenerationCancelled(null);
+		}
+		dryRun = needsDryRun(configuration);
+		if (dryRun) {
+			long start = System.nanoTime();
+			provider = providerFactory.createProvider();
+			SequenceDiagram _diagram = track(newDiagram(configuration, provider, new NullPaintDevice()));
+			try {
+				_diagram.generate(false);
+			} catch (DiagramError ignored) {
+
+			}
+			if (renderTimes != null) {
+				renderTimes.recordSince(Phase.DRY_RUN, start);
+			}
+			if (cancelled) {
+				throw new GenerationCancelled(provider);
+			}
+			map = _diagram.makeReverseIdMap();
+		}
+		long start = System.nanoTime();
 		provider = providerFactory.createProvider();
-		SequenceDiagram _diagram = newDiagram(configuration, provider, new NullPaintDevice());
+		SequenceDiagram sequenceDiagram = newDiagram(configuration, provider, paintDevice);
 		try {
-			_diagram.generate(false);
-		} catch (DiagramError ignored) {
+			// with lifelines being destroyed automatically, the diagram depends
+			// on the text after any line, so checkpoints cannot be used
+			if (checkpoints != null && !dryRun) {
+				SequenceDiagram restored = checkpoints.prepare(sequenceDiagram, configurationBean);
+				if (restored != sequenceDiagram) {
+					resumed = true;
+					diagram = track(restored);
+					provider = restored.getDataProvider();
+					restored.setRenderTimes(renderTimes);
+					restored.resume();
+					return;
+				}
+			}
+			diagram = track(sequenceDiagram);
+			sequenceDiagram.setReverseIdMap(map);
+			sequenceDiagram.setRenderTimes(renderTimes);
+			diagram.generate();
+		} finally {
+			if (renderTimes != null) {
+				renderTimes.recordSince(Phase.GENERATION, start);
+			}
+		}
+	}
+
+	public void cancel() {
+		cancelled = true;
+		SequenceDiagram current = generating;
+		if (current != null) {
+			current.cancel();
+		}
+	}
 
+	private SequenceDiagram track(SequenceDiagram sequenceDiagram) {
+		generating = sequenceDiagram;
+		if (cancelled) {
+			sequenceDiagram.cancel();
 		}
-		map = _diagram.makeReverseIdMap();
+		return sequenceDiagram;
+	}
+
+	/*
+	 * The diagram must be generated twice only if there are lifelines to be
+	 * destroyed automatically after their last activity, because that is
+	 * not known before all messages have been processed. A pre-scan of the
+	 * object section tells if there are any.
+	 */
+	private boolean needsDryRun(SequenceConfiguration configuration) {
 		provider = providerFactory.createProvider();
-		diagram = newDiagram(configuration, provider, paintDevice);
-		if (map != null) {
-			((SequenceDiagram) getDiagram()).setReverseIdMap(map);
+		SequenceDiagram _diagram = newDiagram(configuration, provider, new NullPaintDevice());
+		try {
+			return _diagram.hasAutodestroyLifelines();
+		} catch (DiagramError e) {
+			// generation will fail at the same place, before any message
+			// could be processed
+			return false;
 		}
-		diagram.generate();
 	}
 
 	public DiagramDataProviderFactory getProviderFactory() {
@@ -98,4 +232,21 @@ public class SequenceDiagramFactory implements DiagramFactory, DiagramDataProvid
 		return diagram;
 	}
 
+	/**
+	 * Returns true if the last generation continued from a checkpoint.
+	 * 
+	 * @return true if the last generation continued from a checkpoint
+	 */
+	public boolean isResumed() {
+		return resumed;
+	}
+
+	public void setRenderTimes(RenderTimes renderTimes) {
+		this.renderTimes = renderTimes;
+	}
+
+	public RenderTimes getRenderTimes() {
+		return renderTimes;
+	}
+
 }
@@ -30,8 +30,7 @@ import java.awt.Point;
 import java.awt.Polygon;
 import java.awt.Stroke;
 
-import javax.swing.JLabel;
-
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.diagram.Lifeline;
 import net.sf.sdedit.diagram.MessageData;
 import net.sf.sdedit.diagram.SequenceDiagram;
@@ -105,6 +104,30 @@ public class Arrow extends SequenceElement {
 		setWidth(headSize + leftPadding() + rightPadding() + diagram().messagePadding + getLabel().textWidth());
 	}
 
+	/**
+	 * Creates a copy of an <tt>Arrow</tt>, for a copy of its diagram.
+	 * 
+	 * @param original
+	 *            the arrow to be copied
+	 * @param copier
+	 *            the copier that keeps track of the copies
+	 */
+	protected Arrow(Arrow original, Copier copier) {
+		super(original, copier);
+		stroke = original.stroke;
+		headType = original.headType;
+		message = copier.copy(original.message);
+		space = original.space;
+		pts = Copier.copyPoints(original.pts);
+		textPoint = original.textPoint == null ? null : new Point(
+				original.textPoint);
+		isAnswer = original.isAnswer;
+	}
+
+	public Arrow copy(Copier copier) {
+		return new Arrow(this, copier);
+	}
+
 
 	/**
 	 * Creates a new <tt>Arrow</tt>.
@@ -158,8 +181,8 @@ public class Arrow extends SequenceElement {
 	public static int getInnerHeight(Message message) {
 		// int l = message.getText().split("\\\\n").length;
 		String[] msg = splitMessage(message.getText(), message.getDiagram().messageLineLength);
-		JLabel label = DrawableLabel.makeLabel(msg, message.getDiagram().getPaintDevice().getFont(), false, false, false);
-		return label.getPreferredSize().height
+		TextMetrics metrics = TextMetrics.getMetrics(message.getDiagram().getPaintDevice().getFont(), false, false, false, msg);
+		return metrics.getHeight()
 				+ message.getDiagram().getConfiguration().getMessageLabelSpace();
 	}
 
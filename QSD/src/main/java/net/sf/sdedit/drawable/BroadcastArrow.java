@@ -28,6 +28,7 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Point;
 
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.message.Message;
 import net.sf.sdedit.util.Direction;
 
@@ -37,6 +38,23 @@ public class BroadcastArrow extends Arrow {
 		super(message, ArrowStroke.SOLID, align, y);
 	}
 
+	/**
+	 * Creates a copy of a <tt>BroadcastArrow</tt>, for a copy of its diagram.
+	 * 
+	 * @param original
+	 *            the arrow to be copied
+	 * @param copier
+	 *            the copier that keeps track of the copies
+	 */
+	protected BroadcastArrow(BroadcastArrow original, Copier copier) {
+		super(original, copier);
+
+	}
+
+	public BroadcastArrow copy(Copier copier) {
+		return new BroadcastArrow(this, copier);
+	}
+
 	protected void drawObject(Graphics2D g2d) {
     	ArrowStroke stroke = getStroke();
     	Point [] pts = getPoints();
@@ -27,6 +27,7 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Point;
 
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.diagram.Lifeline;
 import net.sf.sdedit.drawable.Strokes.StrokeType;
 
@@ -42,6 +43,23 @@ public class Cross extends Drawable
         setHeight(getWidth());
     }
 
+    /**
+     * Creates a copy of a <tt>Cross</tt>, for a copy of its diagram.
+     * 
+     * @param original
+     *            the cross to be copied
+     * @param copier
+     *            the copier that keeps track of the copies
+     */
+    protected Cross(Cross original, Copier copier) {
+        super(original, copier);
+        pts = Copier.copyPoints(original.pts);
+    }
+
+    public Cross copy(Copier copier) {
+        return new Cross(this, copier);
+    }
+
     /**
      * Returns an array of four points, the first two points are the end points
      * of the first line of the cross, the last two points those of the second
@@ -62,6 +80,20 @@ public class Cross extends Drawable
         g2d.drawLine(pts[2].x, pts[2].y, pts [3].x, pts [3].y);
     }
 
+    /**
+     * The cross is centered at the top of its bounds, so it paints above
+     * them.
+     */
+    public java.awt.Rectangle getExtent() {
+        if (pts == null) {
+            return super.getExtent();
+        }
+        int top = Math.min(pts[0].y, pts[3].y);
+        int bottom = Math.max(pts[1].y, pts[2].y);
+        return new java.awt.Rectangle(getLeft() - 10, top - 10,
+                getWidth() + 20, bottom - top + 20);
+    }
+
     public void computeLayoutInformation() {
         int left = getLeft();
         int top = getTop();
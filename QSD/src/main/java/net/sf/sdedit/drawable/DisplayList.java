@@ -0,0 +1,653 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.drawable;
+
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.text.AttributedString;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A <tt>DisplayList</tt> is a compact, immutable recording of the drawing
+ * operations of the elements of a diagram that has been laid out: their
+ * shapes, positions, strokes, colors and text runs. It is recorded once from
+ * the drawable elements (see {@linkplain #record(Iterable, int, int, Font)})
+ * and can then be replayed to any <tt>Graphics2D</tt>, be it the screen, a
+ * printer or the graphics of one of the export formats, without generating
+ * the diagram again.
+ * <p>
+ * The operations are encoded as integers, the objects they need (colors,
+ * fonts, strokes, strings and copies of shapes and transforms) are kept in an
+ * array beside them. Nothing of a display list is changed after it has been
+ * recorded and nothing refers to the diagram, so a display list can be
+ * shared by threads and replayed by them at the same time.
+ * <p>
+ * For each element, the list knows its extent (see
+ * {@linkplain Drawable#getExtent()}) and the state of the graphics context
+ * when it was drawn, so the elements in a part of the diagram can be replayed
+ * on their own, with the same result as if all elements were replayed (see
+ * {@linkplain #replay(Graphics2D, Rectangle)}).
+ * 
+ * @author Markus Strauch
+ */
+public final class DisplayList {
+
+	/*
+	 * The operations. Each one is followed by its integer arguments in the
+	 * code, the objects it needs are the next ones in the object array.
+	 */
+	static final int SELECT = 0;
+
+	static final int CREATE = 1;
+
+	static final int DISPOSE = 2;
+
+	static final int SET_COLOR = 3;
+
+	static final int SET_PAINT = 4;
+
+	static final int SET_STROKE = 5;
+
+	static final int SET_FONT = 6;
+
+	static final int SET_COMPOSITE = 7;
+
+	static final int SET_BACKGROUND = 8;
+
+	static final int SET_PAINT_MODE = 9;
+
+	static final int SET_XOR_MODE = 10;
+
+	static final int SET_HINT = 11;
+
+	static final int SET_HINTS = 12;
+
+	static final int ADD_HINTS = 13;
+
+	static final int TRANSLATE = 14;
+
+	static final int TRANSFORM = 15;
+
+	static final int SET_TRANSFORM = 16;
+
+	static final int CLIP_RECT = 17;
+
+	static final int SET_CLIP_RECT = 18;
+
+	static final int CLIP = 19;
+
+	static final int SET_CLIP = 20;
+
+	static final int DRAW_LINE = 21;
+
+	static final int DRAW_RECT = 22;
+
+	static final int FILL_RECT = 23;
+
+	static final int CLEAR_RECT = 24;
+
+	static final int DRAW_OVAL = 25;
+
+	static final int FILL_OVAL = 26;
+
+	static final int DRAW_ARC = 27;
+
+	static final int FILL_ARC = 28;
+
+	static final int DRAW_ROUND_RECT = 29;
+
+	static final int FILL_ROUND_RECT = 30;
+
+	static final int DRAW_POLYLINE = 31;
+
+	static final int DRAW_POLYGON = 32;
+
+	static final int FILL_POLYGON = 33;
+
+	static final int DRAW = 34;
+
+	static final int FILL = 35;
+
+	static final int DRAW_STRING = 36;
+
+	static final int DRAW_STRING_FLOAT = 37;
+
+	static final int DRAW_TEXT = 38;
+
+	static final int DRAW_GLYPHS = 39;
+
+	static final int DRAW_IMAGE = 40;
+
+	static final int COPY_AREA = 41;
+
+	private final int width;
+
+	private final int height;
+
+	private final Font font;
+
+	private final int[] code;
+
+	private final Object[] objects;
+
+	private final int contexts;
+
+	/*
+	 * For the i-th element: its extent (x, y, width, height at 4i...4i+3),
+	 * the positions of its first operation and object, and the state of the
+	 * graphics context when it is drawn.
+	 */
+	private final int[] extents;
+
+	private final int[] codeStart;
+
+	private final int[] objectStart;
+
+	private final int[] stateOf;
+
+	private final State[] states;
+
+	DisplayList(int width, int height, Font font, int[] code,
+			Object[] objects, int contexts, int[] extents, int[] codeStart,
+			int[] objectStart, int[] stateOf, State[] states) {
+		this.width = width;
+		this.height = height;
+		this.font = font;
+		this.code = code;
+		this.objects = objects;
+		this.contexts = contexts;
+		this.extents = extents;
+		this.codeStart = codeStart;
+		this.objectStart = objectStart;
+		this.stateOf = stateOf;
+		this.states = states;
+	}
+
+	/**
+	 * Records the display list of a diagram that is complete.
+	 * 
+	 * @param drawables
+	 *            the (visible) drawable elements of the diagram, in the order
+	 *            in which they are to be drawn
+	 * @param width
+	 *            the width of the diagram
+	 * @param height
+	 *            the height of the diagram
+	 * @param font
+	 *            the (plain) font of the diagram
+	 * @return the display list of the diagram
+	 */
+	public static DisplayList record(Iterable<Drawable> drawables, int width,
+			int height, Font font) {
+		RecordingGraphics.Recording recording = new RecordingGraphics.Recording();
+		RecordingGraphics g2d = new RecordingGraphics(recording);
+		// like G2DGraphicsDevice.drawAll()
+		g2d.setFont(font);
+		g2d.setColor(Color.BLACK);
+		g2d.setStroke(Strokes.defaultStroke());
+		for (Drawable drawable : drawables) {
+			recording.beginElement(drawable.getExtent(), g2d.getState());
+			drawable.draw(g2d);
+		}
+		return recording.finish(width, height, font);
+	}
+
+	/**
+	 * Returns the width of the diagram.
+	 * 
+	 * @return the width of the diagram
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the height of the diagram.
+	 * 
+	 * @return the height of the diagram
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the (plain) font of the diagram.
+	 * 
+	 * @return the font of the diagram
+	 */
+	public Font getFont() {
+		return font;
+	}
+
+	/**
+	 * Returns the number of elements that have been recorded.
+	 * 
+	 * @return the number of elements
+	 */
+	public int size() {
+		return stateOf.length;
+	}
+
+	/**
+	 * Returns the extents of the elements that have been recorded, in the
+	 * order in which they are drawn.
+	 * 
+	 * @return the extents of the elements
+	 */
+	public List<Rectangle> getExtents() {
+		return new AbstractList<Rectangle>() {
+
+			@Override
+			public Rectangle get(int index) {
+				if (index < 0 || index >= size()) {
+					throw new IndexOutOfBoundsException("" + index);
+				}
+				int i = 4 * index;
+				return new Rectangle(extents[i], extents[i + 1],
+						extents[i + 2], extents[i + 3]);
+			}
+
+			@Override
+			public int size() {
+				return DisplayList.this.size();
+			}
+		};
+	}
+
+	/**
+	 * Draws all elements into the given graphics context. The operations are
+	 * replayed relative to its transform and clip. Only the state of the
+	 * graphics context is changed, as by drawing the elements themselves.
+	 * 
+	 * @param g2d
+	 *            a graphics context
+	 */
+	public void replay(Graphics2D g2d) {
+		Graphics2D[] g = new Graphics2D[contexts];
+		g[0] = g2d;
+		execute(g, new State(g2d), 0, code.length, 0);
+	}
+
+	/**
+	 * Draws the elements whose extent intersects the given area into the
+	 * given graphics context. Before an element is drawn that does not
+	 * follow the previous one, the state of the graphics context is restored
+	 * as it was when the element was recorded.
+	 * 
+	 * @param g2d
+	 *            a graphics context
+	 * @param area
+	 *            a rectangular area of the diagram
+	 */
+	public void replay(Graphics2D g2d, Rectangle area) {
+		Graphics2D[] g = new Graphics2D[contexts];
+		g[0] = g2d;
+		State initial = new State(g2d);
+		int n = size();
+		execute(g, initial, 0, n == 0 ? code.length : codeStart[0], 0);
+		int next = 0;
+		for (int i = 0; i < n; i++) {
+			if (intersects(i, area)) {
+				if (i != next) {
+					states[stateOf[i]].restore(g2d, initial);
+				}
+				execute(g, initial, codeStart[i], i + 1 < n ? codeStart[i + 1]
+						: code.length, objectStart[i]);
+				next = i + 1;
+			}
+		}
+	}
+
+	private boolean intersects(int index, Rectangle area) {
+		int i = 4 * index;
+		int x = extents[i];
+		int y = extents[i + 1];
+		int w = extents[i + 2];
+		int h = extents[i + 3];
+		if (w <= 0 || h <= 0 || area.width <= 0 || area.height <= 0) {
+			return false;
+		}
+		return area.x < x + w && area.y < y + h && x < area.x + area.width
+				&& y < area.y + area.height;
+	}
+
+	/*
+	 * Transforms and clips that are set (not concatenated or intersected) are
+	 * relative to the initial transform and clip of the context into which the
+	 * list is replayed.
+	 */
+	private void execute(Graphics2D[] contexts, State initial, int from,
+			int to, int object) {
+		int[] c = code;
+		Object[] o = objects;
+		Graphics2D g = contexts[0];
+		int current = 0;
+		int pc = from;
+		while (pc < to) {
+			switch (c[pc++]) {
+			case SELECT:
+				current = c[pc++];
+				g = contexts[current];
+				break;
+			case CREATE:
+				contexts[c[pc++]] = (Graphics2D) g.create();
+				break;
+			case DISPOSE:
+				g.dispose();
+				contexts[current] = null;
+				g = null;
+				break;
+			case SET_COLOR:
+				g.setColor((Color) o[object++]);
+				break;
+			case SET_PAINT:
+				g.setPaint((Paint) o[object++]);
+				break;
+			case SET_STROKE:
+				g.setStroke((Stroke) o[object++]);
+				break;
+			case SET_FONT:
+				g.setFont((Font) o[object++]);
+				break;
+			case SET_COMPOSITE:
+				g.setComposite((Composite) o[object++]);
+				break;
+			case SET_BACKGROUND:
+				g.setBackground((Color) o[object++]);
+				break;
+			case SET_PAINT_MODE:
+				g.setPaintMode();
+				break;
+			case SET_XOR_MODE:
+				g.setXORMode((Color) o[object++]);
+				break;
+			case SET_HINT:
+				g.setRenderingHint((RenderingHints.Key) o[object],
+						o[object + 1]);
+				object += 2;
+				break;
+			case SET_HINTS:
+				g.setRenderingHints((Map<?, ?>) o[object++]);
+				break;
+			case ADD_HINTS:
+				g.addRenderingHints((Map<?, ?>) o[object++]);
+				break;
+			case TRANSLATE:
+				g.translate(c[pc], c[pc + 1]);
+				pc += 2;
+				break;
+			case TRANSFORM:
+				g.transform((AffineTransform) o[object++]);
+				break;
+			case SET_TRANSFORM:
+				g.setTransform(initial.transform);
+				g.transform((AffineTransform) o[object++]);
+				break;
+			case CLIP_RECT:
+				g.clipRect(c[pc], c[pc + 1], c[pc + 2], c[pc + 3]);
+				pc += 4;
+				break;
+			case SET_CLIP_RECT:
+				resetClip(g, initial);
+				g.clipRect(c[pc], c[pc + 1], c[pc + 2], c[pc + 3]);
+				pc += 4;
+				break;
+			case CLIP:
+				g.clip((Shape) o[object++]);
+				break;
+			case SET_CLIP: {
+				resetClip(g, initial);
+				Shape clip = (Shape) o[object++];
+				if (clip != null) {
+					g.clip(clip);
+				}
+				break;
+			}
+			case DRAW_LINE:
+				g.drawLine(c[pc], c[pc + 1], c[pc + 2], c[pc + 3]);
+				pc += 4;
+				break;
+			case DRAW_RECT:
+				g.drawRect(c[pc], c[pc + 1], c[pc + 2], c[pc + 3]);
+				pc += 4;
+				break;
+			case FILL_RECT:
+				g.fillRect(c[pc], c[pc + 1], c[pc + 2], c[pc + 3]);
+				pc += 4;
+				break;
+			case CLEAR_RECT:
+				g.clearRect(c[pc], c[pc + 1], c[pc + 2], c[pc + 3]);
+				pc += 4;
+				break;
+			case DRAW_OVAL:
+				g.drawOval(c[pc], c[pc + 1], c[pc + 2], c[pc + 3]);
+				pc += 4;
+				break;
+			case FILL_OVAL:
+				g.fillOval(c[pc], c[pc + 1], c[pc + 2], c[pc + 3]);
+				pc += 4;
+				break;
+			case DRAW_ARC:
+				g.drawArc(c[pc], c[pc + 1], c[pc + 2], c[pc + 3], c[pc + 4],
+						c[pc + 5]);
+				pc += 6;
+				break;
+			case FILL_ARC:
+				g.fillArc(c[pc], c[pc + 1], c[pc + 2], c[pc + 3], c[pc + 4],
+						c[pc + 5]);
+				pc += 6;
+				break;
+			case DRAW_ROUND_RECT:
+				g.drawRoundRect(c[pc], c[pc + 1], c[pc + 2], c[pc + 3],
+						c[pc + 4], c[pc + 5]);
+				pc += 6;
+				break;
+			case FILL_ROUND_RECT:
+				g.fillRoundRect(c[pc], c[pc + 1], c[pc + 2], c[pc + 3],
+						c[pc + 4], c[pc + 5]);
+				pc += 6;
+				break;
+			case DRAW_POLYLINE: {
+				int[] x = (int[]) o[object++];
+				g.drawPolyline(x, (int[]) o[object++], x.length);
+				break;
+			}
+			case DRAW_POLYGON: {
+				int[] x = (int[]) o[object++];
+				g.drawPolygon(x, (int[]) o[object++], x.length);
+				break;
+			}
+			case FILL_POLYGON: {
+				int[] x = (int[]) o[object++];
+				g.fillPolygon(x, (int[]) o[object++], x.length);
+				break;
+			}
+			case DRAW:
+				g.draw((Shape) o[object++]);
+				break;
+			case FILL:
+				g.fill((Shape) o[object++]);
+				break;
+			case DRAW_STRING:
+				g.drawString((String) o[object++], c[pc], c[pc + 1]);
+				pc += 2;
+				break;
+			case DRAW_STRING_FLOAT:
+				g.drawString((String) o[object++],
+						Float.intBitsToFloat(c[pc]),
+						Float.intBitsToFloat(c[pc + 1]));
+				pc += 2;
+				break;
+			case DRAW_TEXT:
+				g.drawString(((AttributedString) o[object++]).getIterator(),
+						Float.intBitsToFloat(c[pc]),
+						Float.intBitsToFloat(c[pc + 1]));
+				pc += 2;
+				break;
+			case DRAW_GLYPHS:
+				g.drawGlyphVector((GlyphVector) o[object++],
+						Float.intBitsToFloat(c[pc]),
+						Float.intBitsToFloat(c[pc + 1]));
+				pc += 2;
+				break;
+			case DRAW_IMAGE:
+				g.drawImage((Image) o[object], (AffineTransform) o[object + 1],
+						null);
+				object += 2;
+				break;
+			case COPY_AREA:
+				g.copyArea(c[pc], c[pc + 1], c[pc + 2], c[pc + 3], c[pc + 4],
+						c[pc + 5]);
+				pc += 6;
+				break;
+			default:
+				throw new IllegalStateException("illegal operation: "
+						+ c[pc - 1]);
+			}
+		}
+	}
+
+	private static void resetClip(Graphics2D g2d, State initial) {
+		AffineTransform transform = g2d.getTransform();
+		g2d.setTransform(initial.transform);
+		g2d.setClip(initial.clip);
+		g2d.setTransform(transform);
+	}
+
+	/**
+	 * The state of a graphics context. The state of a recorded context only
+	 * contains what has been set while recording, the rest (<tt>null</tt>) is
+	 * taken from the state of the context into which the list is replayed.
+	 * The clip is given in the coordinates of that context.
+	 */
+	static final class State {
+
+		Paint paint;
+
+		Color color;
+
+		Stroke stroke;
+
+		Font font;
+
+		Composite composite;
+
+		Color xor;
+
+		Color background;
+
+		Map<?, ?> hints;
+
+		boolean hintsReplaced;
+
+		AffineTransform transform;
+
+		Shape clip;
+
+		State() {
+			/* empty */
+		}
+
+		State(State state) {
+			paint = state.paint;
+			color = state.color;
+			stroke = state.stroke;
+			font = state.font;
+			composite = state.composite;
+			xor = state.xor;
+			background = state.background;
+			hints = state.hints;
+			hintsReplaced = state.hintsReplaced;
+			transform = new AffineTransform(state.transform);
+			clip = state.clip;
+		}
+
+		State(Graphics2D g2d) {
+			paint = g2d.getPaint();
+			color = g2d.getColor();
+			stroke = g2d.getStroke();
+			font = g2d.getFont();
+			composite = g2d.getComposite();
+			background = g2d.getBackground();
+			hints = g2d.getRenderingHints();
+			transform = g2d.getTransform();
+			clip = g2d.getClip();
+		}
+
+		boolean isSame(State state) {
+			return paint == state.paint && color == state.color
+					&& stroke == state.stroke && font == state.font
+					&& composite == state.composite && xor == state.xor
+					&& background == state.background
+					&& hints == state.hints
+					&& hintsReplaced == state.hintsReplaced
+					&& clip == state.clip
+					&& transform.equals(state.transform);
+		}
+
+		/*
+		 * Sets the state of g2d to this state, where initial is the state g2d
+		 * had when replaying started.
+		 */
+		void restore(Graphics2D g2d, State initial) {
+			g2d.setTransform(initial.transform);
+			g2d.setClip(initial.clip);
+			if (clip != null) {
+				g2d.clip(clip);
+			}
+			g2d.transform(transform);
+			g2d.setComposite(composite != null ? composite : initial.composite);
+			if (xor != null) {
+				g2d.setXORMode(xor);
+			}
+			g2d.setColor(color != null ? color : initial.color);
+			g2d.setPaint(paint != null ? paint : initial.paint);
+			g2d.setStroke(stroke != null ? stroke : initial.stroke);
+			g2d.setFont(font != null ? font : initial.font);
+			g2d.setBackground(background != null ? background
+					: initial.background);
+			if (hintsReplaced) {
+				g2d.setRenderingHints(hints);
+			} else {
+				g2d.setRenderingHints(initial.hints);
+				if (hints != null) {
+					g2d.addRenderingHints(hints);
+				}
+			}
+		}
+	}
+
+}
@@ -29,6 +29,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import net.sf.sdedit.Constants;
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.diagram.Diagram;
 
 /**
@@ -44,7 +45,7 @@ import net.sf.sdedit.diagram.Diagram;
  * @author Markus Strauch
  * 
  */
-public abstract class Drawable implements Constants {
+public abstract class Drawable implements Constants, Copier.Copyable {
 
 	private int top, left, height, width;
 
@@ -64,6 +65,27 @@ public abstract class Drawable implements Constants {
 		this.diagram = diagram;
 		labels = new ArrayList<DrawableLabel>(1);
 	}
+
+	/**
+	 * Creates a copy of a <tt>Drawable</tt>, for a copy of its diagram. The
+	 * copy constructor of each subclass calls this one first.
+	 * 
+	 * @param original
+	 *            the drawable to be copied
+	 * @param copier
+	 *            the copier that keeps track of the copies
+	 */
+	protected Drawable(Drawable original, Copier copier) {
+		copier.register(original, this);
+		top = original.top;
+		left = original.left;
+		height = original.height;
+		width = original.width;
+		visible = original.visible;
+		diagram = copier.copy(original.diagram);
+		labels = copier.copyAll(original.labels, new ArrayList<DrawableLabel>(
+				original.labels.size()));
+	}
 	
 	public DrawableLabel addLabel() {
 		DrawableLabel label = new DrawableLabel(this);
@@ -131,11 +153,11 @@ public abstract class Drawable implements Constants {
 		return width;
 	}
 
-	public final int getHeight() {
+	public int getHeight() {
 		return height;
 	}
 
-	public final void setHeight(int height) {
+	public void setHeight(int height) {
 		this.height = height;
 	}
 
@@ -152,7 +174,7 @@ public abstract class Drawable implements Constants {
 	}
 
 	public final int getBottom() {
-		return top + height;
+		return top + getHeight();
 	}
 
 	public final int getRight() {
@@ -185,14 +207,26 @@ public abstract class Drawable implements Constants {
 	 * @return true if this drawable component's bounds intersect the rectangle
 	 */
 	public boolean intersects(java.awt.Rectangle rectangle) {
-		return rectangle.intersects(left - 10, top - 10, width + 20,
-				height + 20);
+		return rectangle.intersects(getExtent());
+	}
+
+	/**
+	 * Returns a rectangle that encloses all points where this drawable
+	 * component paints or that it {@linkplain #contains(Point)}. It is the
+	 * area that {@linkplain #intersects(java.awt.Rectangle)} refers to.
+	 * 
+	 * @return a rectangle enclosing this drawable component
+	 */
+	public java.awt.Rectangle getExtent() {
+		return new java.awt.Rectangle(left - 10, top - 10, width + 20,
+				getHeight() + 20);
 	}
 
 	public boolean contains(Point point) {
 		int x = point.x;
 		int y = point.y;
-		return x >= left && x <= left + width && y >= top && y <= top + height;
+		return x >= left && x <= left + width && y >= top
+				&& y <= top + getHeight();
 	}
 
 	/**
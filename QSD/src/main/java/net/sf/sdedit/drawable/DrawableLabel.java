@@ -8,9 +8,10 @@ import java.awt.Graphics2D;
 import javax.swing.JLabel;
 import javax.swing.SwingConstants;
 
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.util.Utilities;
 
-public class DrawableLabel {
+public class DrawableLabel implements Copier.Copyable {
 	
 	private JLabel jlabel;
 	
@@ -24,9 +25,36 @@ public class DrawableLabel {
 
 	private Drawable drawable;
 	
+	private TextMetrics metrics;
+	
+	private Font metricsFont;
+	
 	public DrawableLabel (Drawable parent) {
 		this.drawable = parent;
 	}	
+
+	/**
+	 * Creates a copy of a <tt>DrawableLabel</tt>, for a copy of its drawable.
+	 * 
+	 * @param original
+	 *            the label to be copied
+	 * @param copier
+	 *            the copier that keeps track of the copies
+	 */
+	private DrawableLabel(DrawableLabel original, Copier copier) {
+		copier.register(original, this);
+		bold = original.bold;
+		italic = original.italic;
+		underlined = original.underlined;
+		label = original.label;
+		drawable = copier.copy(original.drawable);
+		metrics = original.metrics;
+		metricsFont = original.metricsFont;
+	}
+
+	public DrawableLabel copy(Copier copier) {
+		return new DrawableLabel(this, copier);
+	}
 	
     protected static JLabel makeLabel(String[] strings, Font font, boolean bold, boolean italic, boolean underlined) {
 		JLabel label = new JLabel();
@@ -58,11 +86,11 @@ public class DrawableLabel {
     }
     
     public int textWidth() {
-    	 return getJLabel().getPreferredSize().width;
+    	return getMetrics().getWidth();
     }
 
     public int textHeight() {
-        return getJLabel().getPreferredSize().height;
+        return getMetrics().getHeight();
     }
     
     public int getNumLines () {
@@ -72,6 +100,15 @@ public class DrawableLabel {
     public int getSimpleHeight() {
     	return textHeight() / getNumLines();
     }
+    
+    protected TextMetrics getMetrics() {
+    	Font font = drawable.getDiagram().getPaintDevice().getFont();
+    	if (metrics == null || !font.equals(metricsFont)) {
+    		metrics = TextMetrics.getMetrics(font, bold, italic, underlined, label);
+    		metricsFont = font;
+    	}
+    	return metrics;
+    }
 	
     protected JLabel getJLabel() {
     	Font font = drawable.getDiagram().getPaintDevice().getFont();
@@ -84,6 +121,11 @@ public class DrawableLabel {
 	
     protected void drawLabel(Graphics2D g, int x, int y,Color color, 
             Color background) {
+    	TextMetrics metrics = getMetrics();
+    	if (metrics.isPlain()) {
+    		metrics.draw(g, x, y, color);
+    		return;
+    	}
     	JLabel label = getJLabel();
     	if (color != null) {
     		label.setForeground(color);
@@ -104,6 +146,7 @@ public class DrawableLabel {
 
 	public DrawableLabel setBold(boolean bold) {
 		this.bold = bold;
+		this.metrics = null;
 		return this;
 	}
 
@@ -113,6 +156,7 @@ public class DrawableLabel {
 
 	public DrawableLabel setItalic(boolean italic) {
 		this.italic = italic;
+		this.metrics = null;
 		return this;
 	}
 	
@@ -122,11 +166,13 @@ public class DrawableLabel {
 	
 	public DrawableLabel setUnderlined(boolean underlined) {
 		this.underlined = underlined;
+		this.metrics = null;
 		return this;
 	}
 	
 	protected DrawableLabel setLabel(String... label) {
 		this.label = label;
+		this.metrics = null;
 		return this;
 	}
 	
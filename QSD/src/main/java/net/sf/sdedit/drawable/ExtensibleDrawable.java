@@ -24,13 +24,20 @@
 
 package net.sf.sdedit.drawable;
 
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.diagram.Lifeline;
+import net.sf.sdedit.diagram.SequenceDiagram;
 
 /**
  * An <tt>ExtensibleDrawable</tt> represents the state of a lifeline during a
  * sequence. It is being extended - i. e. its height grows - as long as the
  * state remains the same. If the state changes, the <tt>ExtensibleDrawable</tt>
  * is closed and another instance is used for representing the state.
+ * <p>
+ * The growth is not applied step by step. While an <tt>ExtensibleDrawable</tt>
+ * is extended (see {@linkplain #setExtended(boolean)}), its height is computed
+ * from the total amount by which the lifelines of the diagram have been
+ * extended since (see {@linkplain SequenceDiagram#getLifelineExtension()}).
  * 
  * @author Markus Strauch
  * 
@@ -42,6 +49,16 @@ public abstract class ExtensibleDrawable extends Drawable {
      */
     private final Lifeline lifeline;
 
+    /**
+     * Flag denoting if this drawable grows when the lifelines are extended.
+     */
+    private boolean extended;
+
+    /**
+     * The lifeline extension of the diagram when the height was set.
+     */
+    private int extensionMark;
+
     /**
      * Creates a new <tt>ExtensibleDrawable</tt> with an initial height of 0.
      * 
@@ -60,6 +77,22 @@ public abstract class ExtensibleDrawable extends Drawable {
         	lifeline.addView(this);
         }
     }
+
+    /**
+     * Creates a copy of an <tt>ExtensibleDrawable</tt>,
+     * for a copy of its diagram.
+     * 
+     * @param original
+     *            the extensible drawable to be copied
+     * @param copier
+     *            the copier that keeps track of the copies
+     */
+    protected ExtensibleDrawable(ExtensibleDrawable original, Copier copier) {
+        super(original, copier);
+        lifeline = copier.copy(original.lifeline);
+        extended = original.extended;
+        extensionMark = original.extensionMark;
+    }
     
     public boolean isVisible () {
     	if (lifeline == null) {
@@ -88,6 +121,44 @@ public abstract class ExtensibleDrawable extends Drawable {
         setHeight(getHeight() + amount);
     }
 
+    /**
+     * Sets a flag denoting if this <tt>ExtensibleDrawable</tt> grows when the
+     * lifelines of the diagram are extended. When the flag is cleared, the
+     * current height is kept.
+     * 
+     * @param extended
+     *            flag denoting if this drawable grows with the lifelines
+     */
+    public final void setExtended(final boolean extended) {
+        if (extended != this.extended) {
+            int height = getHeight();
+            this.extended = extended;
+            setHeight(height);
+        }
+    }
+
+    @Override
+    public int getHeight() {
+        if (extended) {
+            return super.getHeight() + getLifelineExtension() - extensionMark;
+        }
+        return super.getHeight();
+    }
+
+    @Override
+    public void setHeight(int height) {
+        super.setHeight(height);
+        extensionMark = getLifelineExtension();
+    }
+
+    private int getLifelineExtension() {
+        // called by the super constructor, before lifeline is set
+        if (lifeline == null) {
+            return 0;
+        }
+        return lifeline.getDiagram().getLifelineExtension();
+    }
+
     /**
      * @see net.sf.sdedit.drawable.Drawable#computeLayoutInformation()
      */
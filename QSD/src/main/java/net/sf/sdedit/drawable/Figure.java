@@ -28,6 +28,7 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Polygon;
 
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.diagram.Lifeline;
 import net.sf.sdedit.drawable.Strokes.StrokeType;
 
@@ -79,6 +80,25 @@ public class Figure extends Drawable {
                 .isShouldShadowParticipants();
     }
 
+    /**
+     * Creates a copy of a <tt>Figure</tt>, for a copy of its diagram.
+     * 
+     * @param original
+     *            the figure to be copied
+     * @param copier
+     *            the copier that keeps track of the copies
+     */
+    protected Figure(Figure original, Copier copier) {
+        super(original, copier);
+        actorHeight = original.actorHeight;
+        actorWidth = original.actorWidth;
+        shouldShadow = original.shouldShadow;
+    }
+
+    public Figure copy(Copier copier) {
+        return new Figure(this, copier);
+    }
+
     /**
      * @see net.sf.sdedit.drawable.Drawable#drawObject(java.awt.Graphics2D)
      */
@@ -26,11 +26,10 @@ package net.sf.sdedit.drawable;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics2D;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
 
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.diagram.SequenceDiagram;
 import net.sf.sdedit.drawable.Strokes.StrokeType;
 import net.sf.sdedit.message.ConstructorMessage;
@@ -66,9 +65,14 @@ public class Fragment extends Drawable
     private SequenceDiagram diagram;
 
     /**
-     * The sequence elements that are members of the fragment.
+     * The members of the fragment are the sequence elements with the sequence
+     * ids <tt>firstElement</tt>, ..., <tt>endElement - 1</tt> (see
+     * {@linkplain SequenceElement#getSequenceId()}), as long as elements are
+     * being added, <tt>endElement</tt> is -1.
      */
-    private Set<SequenceElement> includedElements;
+    private int firstElement;
+
+    private int endElement;
 
     /**
      * The space between the left border of the frame and the text representing
@@ -113,12 +117,37 @@ public class Fragment extends Drawable
         addLabel().setLabel(type).setBold(true);
         addLabel().setLabel(condition).setBold(true);
         this.diagram = diagram;
-        includedElements = new HashSet<SequenceElement>();
+        firstElement = 0;
+        endElement = -1;
         typeTextPadding = diagram.getConfiguration().getFragmentTextPadding();
         level = 0;
         separators = new LinkedList<Pair<Integer, String>>();
     }
 
+    /**
+     * Creates a copy of a <tt>Fragment</tt>, for a copy of its diagram.
+     * 
+     * @param original
+     *            the fragment to be copied
+     * @param copier
+     *            the copier that keeps track of the copies
+     */
+    protected Fragment(Fragment original, Copier copier) {
+        super(original, copier);
+        type = original.type;
+        condition = original.condition;
+        diagram = copier.copy(original.diagram);
+        firstElement = original.firstElement;
+        endElement = original.endElement;
+        typeTextPadding = original.typeTextPadding;
+        level = original.level;
+        separators = new LinkedList<Pair<Integer, String>>(original.separators);
+    }
+
+    public Fragment copy(Copier copier) {
+        return new Fragment(this, copier);
+    }
+
     /**
      * Sets the level of this fragment (the number of fragments that this
      * fragment is a part of) to the maximum of the current level and the given
@@ -143,13 +172,28 @@ public class Fragment extends Drawable
     }
 
     /**
-     * Adds a sequence element that is a member of this fragment.
+     * Makes the sequence elements with the given sequence id and all
+     * following ones members of this fragment, until
+     * {@linkplain #endElements(int)} is called.
      * 
-     * @param element
-     *            a member of this fragment
+     * @param firstElement
+     *            the sequence id of the first member of this fragment
+     */
+    public void beginElements(int firstElement) {
+        this.firstElement = firstElement;
+        this.endElement = -1;
+    }
+
+    /**
+     * Determines that the sequence elements with the given sequence id and
+     * all following ones are not members of this fragment.
+     * 
+     * @param endElement
+     *            the sequence id of the first element that is not a member
+     *            of this fragment
      */
-    public void addElement(SequenceElement element) {
-        includedElements.add(element);
+    public void endElements(int endElement) {
+        this.endElement = endElement;
     }
 
     /**
@@ -178,7 +222,8 @@ public class Fragment extends Drawable
      * @return true if the element is a member of this fragment
      */
     public boolean containsElement(SequenceElement element) {
-        return includedElements.contains(element);
+        int id = element.getSequenceId();
+        return id >= firstElement && (endElement < 0 || id < endElement);
     }
 
     /**
@@ -187,7 +232,8 @@ public class Fragment extends Drawable
     public void computeLayoutInformation() {
         int min = Integer.MAX_VALUE;
         int max = Integer.MIN_VALUE;
-        for (SequenceElement element : includedElements) {
+        for (SequenceElement element : diagram.getFragmentManager()
+                .getElements(firstElement, endElement)) {
             int left = element.getLeft();
             int right = element.getLeft() + element.getWidth();
             if (element instanceof Arrow) {
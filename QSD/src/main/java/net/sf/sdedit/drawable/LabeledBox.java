@@ -29,6 +29,7 @@ import java.awt.Graphics2D;
 import java.awt.Stroke;
 
 import net.sf.sdedit.config.SequenceConfiguration;
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.diagram.Lifeline;
 import net.sf.sdedit.drawable.Strokes.StrokeType;
 
@@ -78,6 +79,27 @@ public class LabeledBox extends Drawable {
 
     }
 
+    /**
+     * Creates a copy of a <tt>LabeledBox</tt>, for a copy of its diagram.
+     * 
+     * @param original
+     *            the labeled box to be copied
+     * @param copier
+     *            the copier that keeps track of the copies
+     */
+    protected LabeledBox(LabeledBox original, Copier copier) {
+        super(original, copier);
+        headWidth = original.headWidth;
+        headHeight = original.headHeight;
+        padding = original.padding;
+        stroke = original.stroke;
+        lifeline = copier.copy(original.lifeline);
+    }
+
+    public LabeledBox copy(Copier copier) {
+        return new LabeledBox(this, copier);
+    }
+
     public boolean isVisible() {
         return !lifeline.isExternal() && super.isVisible();
     }
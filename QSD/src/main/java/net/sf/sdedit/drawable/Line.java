@@ -28,6 +28,7 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Point;
 
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.diagram.Lifeline;
 import net.sf.sdedit.drawable.Strokes.StrokeType;
 
@@ -39,6 +40,23 @@ public class Line extends ExtensibleDrawable {
 	public Line(int width, Lifeline lifeline) {
 		super(width, lifeline);
 	}
+
+	/**
+	 * Creates a copy of a <tt>Line</tt>, for a copy of its diagram.
+	 * 
+	 * @param original
+	 *            the line to be copied
+	 * @param copier
+	 *            the copier that keeps track of the copies
+	 */
+	protected Line(Line original, Copier copier) {
+		super(original, copier);
+		mainLine = original.mainLine;
+	}
+
+	public Line copy(Copier copier) {
+		return new Line(this, copier);
+	}
 	
 	/*
 	public void draw(Graphics2D g2d) {
@@ -27,6 +27,7 @@ package net.sf.sdedit.drawable;
 import java.awt.Graphics2D;
 import java.awt.Point;
 
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.message.Message;
 import net.sf.sdedit.util.Direction;
 import net.sf.sdedit.util.UIUtilities;
@@ -56,6 +57,25 @@ public class LoopArrow extends Arrow {
 		init();
 	}
 
+	/**
+	 * Creates a copy of a <tt>LoopArrow</tt>, for a copy of its diagram.
+	 * 
+	 * @param original
+	 *            the arrow to be copied
+	 * @param copier
+	 *            the copier that keeps track of the copies
+	 */
+	protected LoopArrow(LoopArrow original, Copier copier) {
+		super(original, copier);
+		xExtent = original.xExtent;
+		from = copier.copy(original.from);
+		to = copier.copy(original.to);
+	}
+
+	public LoopArrow copy(Copier copier) {
+		return new LoopArrow(this, copier);
+	}
+
 	private void init() {
 		Message message = getMessage();
 		xExtent = diagram().selfMessageXExtent;
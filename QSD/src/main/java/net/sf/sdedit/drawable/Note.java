@@ -32,6 +32,7 @@ import java.net.URI;
 import java.util.LinkedList;
 import java.util.List;
 
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.diagram.Lifeline;
 import net.sf.sdedit.drawable.Strokes.StrokeType;
 import net.sf.sdedit.util.Direction;
@@ -121,6 +122,35 @@ public class Note extends SequenceElement
         targetId = 0;
         subId = -1;
     }
+
+    /**
+     * Creates a copy of a <tt>Note</tt>, for a copy of its diagram.
+     * 
+     * @param original
+     *            the note to be copied
+     * @param copier
+     *            the copier that keeps track of the copies
+     */
+    protected Note(Note original, Copier copier) {
+        super(original, copier);
+        number = original.number;
+        padding = original.padding;
+        margin = original.margin;
+        targets = new LinkedList<Point>();
+        for (Point target : original.targets) {
+            targets.add(new Point(target));
+        }
+        anchors = Copier.copyPoints(original.anchors);
+        location = copier.copy(original.location);
+        consuming = original.consuming;
+        link = original.link;
+        targetId = original.targetId;
+        subId = original.subId;
+    }
+
+    public Note copy(Copier copier) {
+        return new Note(this, copier);
+    }
     
     public void setTargetId (long id) {
     	this.targetId = id;
@@ -293,9 +323,9 @@ public class Note extends SequenceElement
     }
 
     @Override
-    public boolean intersects(java.awt.Rectangle rectangle) {
+    public java.awt.Rectangle getExtent() {
         if (targets.isEmpty()) {
-            return super.intersects(rectangle);
+            return super.getExtent();
         }
         int left = getLeft(), right = left + getWidth(), top = getTop(), bottom = top
                 + getHeight();
@@ -305,7 +335,7 @@ public class Note extends SequenceElement
             top = Math.min(top, a.y);
             bottom = Math.max(bottom, a.y);
         }
-        return rectangle.intersects(left - 10, top - 10, right - left + 20,
+        return new java.awt.Rectangle(left - 10, top - 10, right - left + 20,
                 bottom - top + 20);
     }
 
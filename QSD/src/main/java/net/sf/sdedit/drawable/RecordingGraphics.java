@@ -0,0 +1,954 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.drawable;
+
+import static net.sf.sdedit.drawable.DisplayList.*;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Paint;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Path2D;
+import java.awt.geom.QuadCurve2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RectangularShape;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ColorModel;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.awt.image.renderable.RenderableImage;
+import java.text.AttributedCharacterIterator;
+import java.text.AttributedString;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.sdedit.drawable.DisplayList.State;
+
+/**
+ * A <tt>RecordingGraphics</tt> is a graphics context that does not draw, but
+ * records the operations into a {@linkplain DisplayList}. It keeps track of
+ * its state, so the elements can ask for it as usual, and creates copies of
+ * everything mutable that it is given (shapes, transforms, images, texts).
+ * The device space of a recording is the user space of the context into
+ * which the display list is replayed.
+ * 
+ * @author Markus Strauch
+ */
+final class RecordingGraphics extends Graphics2D {
+
+	private static final Stroke DEFAULT_STROKE = new BasicStroke();
+
+	private final Recording recording;
+
+	private final int id;
+
+	private final State state;
+
+	private boolean disposed;
+
+	RecordingGraphics(Recording recording) {
+		this(recording, 0, new State());
+		state.transform = new AffineTransform();
+	}
+
+	private RecordingGraphics(Recording recording, int id, State state) {
+		this.recording = recording;
+		this.id = id;
+		this.state = state;
+	}
+
+	State getState() {
+		return state;
+	}
+
+	/*
+	 * Starts an operation, returns false if the operation is not to be
+	 * recorded, because this context is disposed or the recording is
+	 * finished.
+	 */
+	private boolean op(int op) {
+		if (disposed || recording.finished) {
+			return false;
+		}
+		recording.op(id, op);
+		return true;
+	}
+
+	private void op(int op, int a, int b) {
+		if (op(op)) {
+			recording.arg(a);
+			recording.arg(b);
+		}
+	}
+
+	private void op(int op, int a, int b, int c, int d) {
+		if (op(op)) {
+			recording.arg(a);
+			recording.arg(b);
+			recording.arg(c);
+			recording.arg(d);
+		}
+	}
+
+	private void op(int op, int a, int b, int c, int d, int e, int f) {
+		if (op(op)) {
+			recording.arg(a);
+			recording.arg(b);
+			recording.arg(c);
+			recording.arg(d);
+			recording.arg(e);
+			recording.arg(f);
+		}
+	}
+
+	private void op(int op, Object object) {
+		if (op(op)) {
+			recording.object(object);
+		}
+	}
+
+	private void op(int op, Object object, float x, float y) {
+		if (op(op)) {
+			recording.arg(Float.floatToIntBits(x));
+			recording.arg(Float.floatToIntBits(y));
+			recording.object(object);
+		}
+	}
+
+	private static Shape copy(Shape shape) {
+		if (shape instanceof RectangularShape) {
+			return (Shape) ((RectangularShape) shape).clone();
+		}
+		if (shape instanceof Line2D) {
+			return (Shape) ((Line2D) shape).clone();
+		}
+		if (shape instanceof Path2D) {
+			return (Shape) ((Path2D) shape).clone();
+		}
+		if (shape instanceof Polygon) {
+			Polygon polygon = (Polygon) shape;
+			return new Polygon(polygon.xpoints, polygon.ypoints,
+					polygon.npoints);
+		}
+		if (shape instanceof Area) {
+			return (Shape) ((Area) shape).clone();
+		}
+		if (shape instanceof QuadCurve2D) {
+			return (Shape) ((QuadCurve2D) shape).clone();
+		}
+		if (shape instanceof CubicCurve2D) {
+			return (Shape) ((CubicCurve2D) shape).clone();
+		}
+		return new Path2D.Double(shape);
+	}
+
+	private static GlyphVector copy(GlyphVector glyphs) {
+		int n = glyphs.getNumGlyphs();
+		GlyphVector copy = glyphs.getFont().createGlyphVector(
+				glyphs.getFontRenderContext(),
+				glyphs.getGlyphCodes(0, n, null));
+		for (int i = 0; i <= n; i++) {
+			copy.setGlyphPosition(i, glyphs.getGlyphPosition(i));
+		}
+		for (int i = 0; i < n; i++) {
+			AffineTransform transform = glyphs.getGlyphTransform(i);
+			if (transform != null) {
+				copy.setGlyphTransform(i, transform);
+			}
+		}
+		return copy;
+	}
+
+	private static BufferedImage copy(Image image, ImageObserver observer) {
+		int width = image.getWidth(observer);
+		int height = image.getHeight(observer);
+		if (width <= 0 || height <= 0) {
+			return null;
+		}
+		BufferedImage copy = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2d = copy.createGraphics();
+		g2d.setComposite(AlphaComposite.Src);
+		g2d.drawImage(image, 0, 0, observer);
+		g2d.dispose();
+		return copy;
+	}
+
+	private boolean isTranslation() {
+		int type = state.transform.getType();
+		return type == AffineTransform.TYPE_IDENTITY
+				|| type == AffineTransform.TYPE_TRANSLATION;
+	}
+
+	private Shape toDevice(Shape shape) {
+		if (shape instanceof Rectangle2D && isTranslation()) {
+			Rectangle2D r = (Rectangle2D) shape;
+			return new Rectangle2D.Double(r.getX()
+					+ state.transform.getTranslateX(), r.getY()
+					+ state.transform.getTranslateY(), r.getWidth(),
+					r.getHeight());
+		}
+		return state.transform.createTransformedShape(shape);
+	}
+
+	private void intersectClip(Shape shape) {
+		Shape clip = toDevice(shape);
+		if (state.clip == null) {
+			state.clip = clip;
+		} else if (state.clip instanceof Rectangle2D
+				&& clip instanceof Rectangle2D) {
+			Rectangle2D r = new Rectangle2D.Double();
+			Rectangle2D.intersect((Rectangle2D) state.clip,
+					(Rectangle2D) clip, r);
+			state.clip = r;
+		} else {
+			Area area = new Area(state.clip);
+			area.intersect(new Area(clip));
+			state.clip = area;
+		}
+	}
+
+	private Map<?, ?> getHints() {
+		return state.hints == null ? new RenderingHints(null) : state.hints;
+	}
+
+	private void putHints(Map<?, ?> hints, boolean replace) {
+		RenderingHints copy = new RenderingHints(null);
+		if (!replace) {
+			copy.putAll(getHints());
+		}
+		copy.putAll(hints);
+		state.hints = copy;
+		state.hintsReplaced |= replace;
+	}
+
+	@Override
+	public Graphics create() {
+		if (!op(CREATE)) {
+			RecordingGraphics child = new RecordingGraphics(recording, id,
+					new State(state));
+			child.disposed = true;
+			return child;
+		}
+		int child = recording.newContext();
+		recording.arg(child);
+		return new RecordingGraphics(recording, child, new State(state));
+	}
+
+	@Override
+	public void dispose() {
+		if (id != 0 && op(DISPOSE)) {
+			recording.freeContext(id);
+		}
+		disposed = true;
+	}
+
+	/*
+	 * A graphics context is disposed when it is garbage collected. This must
+	 * not become part of the recording.
+	 */
+	@Override
+	@SuppressWarnings("deprecation")
+	public void finalize() {
+		/* empty */
+	}
+
+	@Override
+	public Color getColor() {
+		return state.color == null ? Color.BLACK : state.color;
+	}
+
+	@Override
+	public void setColor(Color c) {
+		if (c == null
+				|| c.equals(state.color) && c.equals(state.paint)) {
+			return;
+		}
+		state.color = c;
+		state.paint = c;
+		op(SET_COLOR, c);
+	}
+
+	@Override
+	public Paint getPaint() {
+		return state.paint == null ? getColor() : state.paint;
+	}
+
+	@Override
+	public void setPaint(Paint paint) {
+		if (paint == null) {
+			return;
+		}
+		if (paint instanceof Color) {
+			setColor((Color) paint);
+			return;
+		}
+		state.paint = paint;
+		op(SET_PAINT, paint);
+	}
+
+	@Override
+	public void setPaintMode() {
+		state.xor = null;
+		state.composite = AlphaComposite.SrcOver;
+		op(SET_PAINT_MODE);
+	}
+
+	@Override
+	public void setXORMode(Color c) {
+		state.xor = c;
+		op(SET_XOR_MODE, c);
+	}
+
+	@Override
+	public Composite getComposite() {
+		return state.composite == null ? AlphaComposite.SrcOver
+				: state.composite;
+	}
+
+	@Override
+	public void setComposite(Composite comp) {
+		state.composite = comp;
+		state.xor = null;
+		op(SET_COMPOSITE, comp);
+	}
+
+	@Override
+	public Stroke getStroke() {
+		return state.stroke == null ? DEFAULT_STROKE : state.stroke;
+	}
+
+	@Override
+	public void setStroke(Stroke s) {
+		if (s == null || s.equals(state.stroke)) {
+			return;
+		}
+		state.stroke = s;
+		op(SET_STROKE, s);
+	}
+
+	@Override
+	public Font getFont() {
+		return state.font == null ? recording.scratch.getFont() : state.font;
+	}
+
+	@Override
+	public void setFont(Font font) {
+		if (font == null || font.equals(state.font)) {
+			return;
+		}
+		state.font = font;
+		op(SET_FONT, font);
+	}
+
+	@Override
+	public Color getBackground() {
+		return state.background == null ? Color.WHITE : state.background;
+	}
+
+	@Override
+	public void setBackground(Color color) {
+		state.background = color;
+		op(SET_BACKGROUND, color);
+	}
+
+	@Override
+	public Object getRenderingHint(RenderingHints.Key hintKey) {
+		return getHints().get(hintKey);
+	}
+
+	@Override
+	public void setRenderingHint(RenderingHints.Key hintKey, Object hintValue) {
+		RenderingHints hints = new RenderingHints(null);
+		hints.put(hintKey, hintValue);
+		putHints(hints, false);
+		if (op(SET_HINT)) {
+			recording.object(hintKey);
+			recording.object(hintValue);
+		}
+	}
+
+	@Override
+	public void setRenderingHints(Map<?, ?> hints) {
+		putHints(hints, true);
+		// the hints of a state are never changed, but replaced
+		op(SET_HINTS, state.hints);
+	}
+
+	@Override
+	public void addRenderingHints(Map<?, ?> hints) {
+		RenderingHints copy = new RenderingHints(null);
+		copy.putAll(hints);
+		putHints(copy, false);
+		op(ADD_HINTS, copy);
+	}
+
+	@Override
+	public RenderingHints getRenderingHints() {
+		RenderingHints hints = new RenderingHints(null);
+		hints.putAll(getHints());
+		return hints;
+	}
+
+	@Override
+	public FontRenderContext getFontRenderContext() {
+		return scratch().getFontRenderContext();
+	}
+
+	@Override
+	public FontMetrics getFontMetrics(Font f) {
+		return scratch().getFontMetrics(f);
+	}
+
+	/*
+	 * The scratch context of the recording, in the state (as far as fonts
+	 * are concerned) of this context.
+	 */
+	private Graphics2D scratch() {
+		Graphics2D scratch = recording.scratch;
+		scratch.setTransform(state.transform);
+		scratch.setRenderingHints(getHints());
+		return scratch;
+	}
+
+	@Override
+	public GraphicsConfiguration getDeviceConfiguration() {
+		return recording.scratch.getDeviceConfiguration();
+	}
+
+	@Override
+	public void translate(int x, int y) {
+		if (x == 0 && y == 0) {
+			return;
+		}
+		state.transform.translate(x, y);
+		op(TRANSLATE, x, y);
+	}
+
+	@Override
+	public void translate(double tx, double ty) {
+		transform(AffineTransform.getTranslateInstance(tx, ty));
+	}
+
+	@Override
+	public void rotate(double theta) {
+		transform(AffineTransform.getRotateInstance(theta));
+	}
+
+	@Override
+	public void rotate(double theta, double x, double y) {
+		transform(AffineTransform.getRotateInstance(theta, x, y));
+	}
+
+	@Override
+	public void scale(double sx, double sy) {
+		transform(AffineTransform.getScaleInstance(sx, sy));
+	}
+
+	@Override
+	public void shear(double shx, double shy) {
+		transform(AffineTransform.getShearInstance(shx, shy));
+	}
+
+	@Override
+	public void transform(AffineTransform tx) {
+		state.transform.concatenate(tx);
+		op(TRANSFORM, new AffineTransform(tx));
+	}
+
+	@Override
+	public void setTransform(AffineTransform tx) {
+		state.transform.setTransform(tx);
+		op(SET_TRANSFORM, new AffineTransform(tx));
+	}
+
+	@Override
+	public AffineTransform getTransform() {
+		return new AffineTransform(state.transform);
+	}
+
+	@Override
+	public Shape getClip() {
+		if (state.clip == null) {
+			return null;
+		}
+		if (state.clip instanceof Rectangle2D && isTranslation()) {
+			Rectangle2D r = (Rectangle2D) state.clip;
+			return new Rectangle2D.Double(r.getX()
+					- state.transform.getTranslateX(), r.getY()
+					- state.transform.getTranslateY(), r.getWidth(),
+					r.getHeight());
+		}
+		try {
+			return state.transform.createInverse().createTransformedShape(
+					state.clip);
+		} catch (NoninvertibleTransformException e) {
+			return new Rectangle();
+		}
+	}
+
+	@Override
+	public Rectangle getClipBounds() {
+		Shape clip = getClip();
+		return clip == null ? null : clip.getBounds();
+	}
+
+	@Override
+	public void clip(Shape s) {
+		if (s == null) {
+			setClip(null);
+			return;
+		}
+		intersectClip(s);
+		op(CLIP, copy(s));
+	}
+
+	@Override
+	public void clipRect(int x, int y, int width, int height) {
+		intersectClip(new Rectangle(x, y, width, height));
+		op(CLIP_RECT, x, y, width, height);
+	}
+
+	@Override
+	public void setClip(int x, int y, int width, int height) {
+		state.clip = null;
+		intersectClip(new Rectangle(x, y, width, height));
+		op(SET_CLIP_RECT, x, y, width, height);
+	}
+
+	@Override
+	public void setClip(Shape clip) {
+		state.clip = null;
+		if (clip != null) {
+			intersectClip(clip);
+		}
+		op(SET_CLIP, clip == null ? null : copy(clip));
+	}
+
+	@Override
+	public boolean hit(Rectangle rect, Shape s, boolean onStroke) {
+		if (onStroke) {
+			s = getStroke().createStrokedShape(s);
+		}
+		s = state.transform.createTransformedShape(s);
+		if (state.clip != null && !state.clip.intersects(rect)) {
+			return false;
+		}
+		return s.intersects(rect);
+	}
+
+	@Override
+	public void copyArea(int x, int y, int width, int height, int dx, int dy) {
+		op(COPY_AREA, x, y, width, height, dx, dy);
+	}
+
+	@Override
+	public void drawLine(int x1, int y1, int x2, int y2) {
+		op(DRAW_LINE, x1, y1, x2, y2);
+	}
+
+	@Override
+	public void drawRect(int x, int y, int width, int height) {
+		op(DRAW_RECT, x, y, width, height);
+	}
+
+	@Override
+	public void fillRect(int x, int y, int width, int height) {
+		op(FILL_RECT, x, y, width, height);
+	}
+
+	@Override
+	public void clearRect(int x, int y, int width, int height) {
+		op(CLEAR_RECT, x, y, width, height);
+	}
+
+	@Override
+	public void drawOval(int x, int y, int width, int height) {
+		op(DRAW_OVAL, x, y, width, height);
+	}
+
+	@Override
+	public void fillOval(int x, int y, int width, int height) {
+		op(FILL_OVAL, x, y, width, height);
+	}
+
+	@Override
+	public void drawArc(int x, int y, int width, int height, int startAngle,
+			int arcAngle) {
+		op(DRAW_ARC, x, y, width, height, startAngle, arcAngle);
+	}
+
+	@Override
+	public void fillArc(int x, int y, int width, int height, int startAngle,
+			int arcAngle) {
+		op(FILL_ARC, x, y, width, height, startAngle, arcAngle);
+	}
+
+	@Override
+	public void drawRoundRect(int x, int y, int width, int height,
+			int arcWidth, int arcHeight) {
+		op(DRAW_ROUND_RECT, x, y, width, height, arcWidth, arcHeight);
+	}
+
+	@Override
+	public void fillRoundRect(int x, int y, int width, int height,
+			int arcWidth, int arcHeight) {
+		op(FILL_ROUND_RECT, x, y, width, height, arcWidth, arcHeight);
+	}
+
+	private void polygon(int op, int[] xPoints, int[] yPoints, int nPoints) {
+		if (op(op)) {
+			recording.object(Arrays.copyOf(xPoints, nPoints));
+			recording.object(Arrays.copyOf(yPoints, nPoints));
+		}
+	}
+
+	@Override
+	public void drawPolyline(int[] xPoints, int[] yPoints, int nPoints) {
+		polygon(DRAW_POLYLINE, xPoints, yPoints, nPoints);
+	}
+
+	@Override
+	public void drawPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+		polygon(DRAW_POLYGON, xPoints, yPoints, nPoints);
+	}
+
+	@Override
+	public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+		polygon(FILL_POLYGON, xPoints, yPoints, nPoints);
+	}
+
+	@Override
+	public void draw(Shape s) {
+		op(DRAW, copy(s));
+	}
+
+	@Override
+	public void fill(Shape s) {
+		op(FILL, copy(s));
+	}
+
+	@Override
+	public void drawString(String str, int x, int y) {
+		if (op(DRAW_STRING)) {
+			recording.arg(x);
+			recording.arg(y);
+			recording.object(str);
+		}
+	}
+
+	@Override
+	public void drawString(String str, float x, float y) {
+		op(DRAW_STRING_FLOAT, str, x, y);
+	}
+
+	@Override
+	public void drawString(AttributedCharacterIterator iterator, int x, int y) {
+		drawString(iterator, (float) x, (float) y);
+	}
+
+	@Override
+	public void drawString(AttributedCharacterIterator iterator, float x,
+			float y) {
+		op(DRAW_TEXT, new AttributedString(iterator), x, y);
+	}
+
+	@Override
+	public void drawGlyphVector(GlyphVector g, float x, float y) {
+		op(DRAW_GLYPHS, copy(g), x, y);
+	}
+
+	/*
+	 * All images are recorded as copies that are drawn with a transform.
+	 */
+	private boolean drawImage(BufferedImage image, AffineTransform xform) {
+		if (image != null && op(DRAW_IMAGE)) {
+			recording.object(image);
+			recording.object(xform == null ? new AffineTransform()
+					: new AffineTransform(xform));
+		}
+		return true;
+	}
+
+	private void fillBackground(Color bgcolor, int x, int y, int width,
+			int height) {
+		if (bgcolor != null) {
+			Paint paint = getPaint();
+			setColor(bgcolor);
+			fillRect(x, y, width, height);
+			setPaint(paint);
+		}
+	}
+
+	@Override
+	public boolean drawImage(Image img, AffineTransform xform,
+			ImageObserver obs) {
+		return drawImage(copy(img, obs), xform);
+	}
+
+	@Override
+	public void drawImage(BufferedImage img, BufferedImageOp op, int x, int y) {
+		drawImage(op == null ? img : op.filter(img, null), x, y, null);
+	}
+
+	@Override
+	public void drawRenderedImage(RenderedImage img, AffineTransform xform) {
+		if (img instanceof BufferedImage) {
+			drawImage((BufferedImage) img, xform, null);
+			return;
+		}
+		ColorModel model = img.getColorModel();
+		WritableRaster raster = model.createCompatibleWritableRaster(
+				img.getWidth(), img.getHeight());
+		img.copyData(raster.createWritableTranslatedChild(img.getMinX(),
+				img.getMinY()));
+		AffineTransform transform = xform == null ? new AffineTransform()
+				: new AffineTransform(xform);
+		transform.translate(img.getMinX(), img.getMinY());
+		drawImage(new BufferedImage(model, raster, model.isAlphaPremultiplied(),
+				null), transform, null);
+	}
+
+	@Override
+	public void drawRenderableImage(RenderableImage img, AffineTransform xform) {
+		drawRenderedImage(img.createDefaultRendering(), xform);
+	}
+
+	@Override
+	public boolean drawImage(Image img, int x, int y, ImageObserver observer) {
+		return drawImage(copy(img, observer),
+				AffineTransform.getTranslateInstance(x, y));
+	}
+
+	@Override
+	public boolean drawImage(Image img, int x, int y, Color bgcolor,
+			ImageObserver observer) {
+		BufferedImage copy = copy(img, observer);
+		if (copy != null) {
+			fillBackground(bgcolor, x, y, copy.getWidth(), copy.getHeight());
+		}
+		return drawImage(copy, AffineTransform.getTranslateInstance(x, y));
+	}
+
+	@Override
+	public boolean drawImage(Image img, int x, int y, int width, int height,
+			ImageObserver observer) {
+		return drawImage(img, x, y, width, height, null, observer);
+	}
+
+	@Override
+	public boolean drawImage(Image img, int x, int y, int width, int height,
+			Color bgcolor, ImageObserver observer) {
+		BufferedImage copy = copy(img, observer);
+		if (copy == null || width == 0 || height == 0) {
+			return true;
+		}
+		fillBackground(bgcolor, x, y, width, height);
+		AffineTransform transform = AffineTransform.getTranslateInstance(x, y);
+		transform.scale(1D * width / copy.getWidth(),
+				1D * height / copy.getHeight());
+		return drawImage(copy, transform);
+	}
+
+	@Override
+	public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2,
+			int sx1, int sy1, int sx2, int sy2, ImageObserver observer) {
+		return drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, null,
+				observer);
+	}
+
+	@Override
+	public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2,
+			int sx1, int sy1, int sx2, int sy2, Color bgcolor,
+			ImageObserver observer) {
+		BufferedImage copy = copy(img, observer);
+		if (copy == null || sx1 == sx2 || sy1 == sy2) {
+			return true;
+		}
+		Rectangle source = new Rectangle(Math.min(sx1, sx2), Math.min(sy1,
+				sy2), Math.abs(sx2 - sx1), Math.abs(sy2 - sy1))
+				.intersection(new Rectangle(0, 0, copy.getWidth(),
+						copy.getHeight()));
+		if (source.isEmpty()) {
+			return true;
+		}
+		fillBackground(bgcolor, Math.min(dx1, dx2), Math.min(dy1, dy2),
+				Math.abs(dx2 - dx1), Math.abs(dy2 - dy1));
+		AffineTransform transform = AffineTransform.getTranslateInstance(dx1,
+				dy1);
+		transform.scale(1D * (dx2 - dx1) / (sx2 - sx1), 1D * (dy2 - dy1)
+				/ (sy2 - sy1));
+		transform.translate(source.x - sx1, source.y - sy1);
+		return drawImage(copy.getSubimage(source.x, source.y, source.width,
+				source.height), transform);
+	}
+
+	/**
+	 * The operations, objects and elements of a display list while it is
+	 * being recorded.
+	 */
+	static final class Recording {
+
+		private final Graphics2D scratch;
+
+		private int[] code = new int[1024];
+
+		private int size;
+
+		private Object[] objects = new Object[256];
+
+		private int count;
+
+		private boolean finished;
+
+		/*
+		 * The context the recorded operations refer to, -1 if it is not known
+		 */
+		private int current;
+
+		private int contexts = 1;
+
+		private int[] free = new int[8];
+
+		private int freeCount;
+
+		private int[] extents = new int[64];
+
+		private int[] codeStart = new int[16];
+
+		private int[] objectStart = new int[16];
+
+		private int[] stateOf = new int[16];
+
+		private int elements;
+
+		private final List<State> states = new ArrayList<State>();
+
+		Recording() {
+			scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB)
+					.createGraphics();
+		}
+
+		void op(int context, int op) {
+			if (context != current) {
+				arg(SELECT);
+				arg(context);
+				current = context;
+			}
+			arg(op);
+		}
+
+		void arg(int arg) {
+			if (size == code.length) {
+				code = Arrays.copyOf(code, 2 * size);
+			}
+			code[size++] = arg;
+		}
+
+		void object(Object object) {
+			if (count == objects.length) {
+				objects = Arrays.copyOf(objects, 2 * count);
+			}
+			objects[count++] = object;
+		}
+
+		int newContext() {
+			return freeCount > 0 ? free[--freeCount] : contexts++;
+		}
+
+		void freeContext(int context) {
+			if (freeCount == free.length) {
+				free = Arrays.copyOf(free, 2 * freeCount);
+			}
+			free[freeCount++] = context;
+			current = -1;
+		}
+
+		/*
+		 * Begins the operations of the next element, which is drawn into the
+		 * root context, whose state is given.
+		 */
+		void beginElement(Rectangle extent, State state) {
+			if (current != 0) {
+				arg(SELECT);
+				arg(0);
+				current = 0;
+			}
+			if (elements == codeStart.length) {
+				int n = 2 * elements;
+				extents = Arrays.copyOf(extents, 4 * n);
+				codeStart = Arrays.copyOf(codeStart, n);
+				objectStart = Arrays.copyOf(objectStart, n);
+				stateOf = Arrays.copyOf(stateOf, n);
+			}
+			extents[4 * elements] = extent.x;
+			extents[4 * elements + 1] = extent.y;
+			extents[4 * elements + 2] = extent.width;
+			extents[4 * elements + 3] = extent.height;
+			codeStart[elements] = size;
+			objectStart[elements] = count;
+			if (states.isEmpty() || !states.get(states.size() - 1).isSame(state)) {
+				states.add(new State(state));
+			}
+			stateOf[elements] = states.size() - 1;
+			elements++;
+		}
+
+		DisplayList finish(int width, int height, Font font) {
+			finished = true;
+			scratch.dispose();
+			return new DisplayList(width, height, font,
+					Arrays.copyOf(code, size), Arrays.copyOf(objects, count),
+					contexts, Arrays.copyOf(extents, 4 * elements),
+					Arrays.copyOf(codeStart, elements), Arrays.copyOf(
+							objectStart, elements), Arrays.copyOf(stateOf,
+							elements), states.toArray(new State[states
+							.size()]));
+		}
+	}
+
+}
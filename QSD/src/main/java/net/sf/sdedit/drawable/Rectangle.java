@@ -28,6 +28,7 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 
 import net.sf.sdedit.config.SequenceConfiguration;
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.diagram.Lifeline;
 import net.sf.sdedit.drawable.Strokes.StrokeType;
 
@@ -49,6 +50,25 @@ public class Rectangle extends ExtensibleDrawable
                 : lifeline.getDiagram().threadColors[lifeline.getThread() % l];
         configuration = lifeline.getDiagram().getConfiguration();
     }
+
+    /**
+     * Creates a copy of a <tt>Rectangle</tt>, for a copy of its diagram.
+     * 
+     * @param original
+     *            the rectangle to be copied
+     * @param copier
+     *            the copier that keeps track of the copies
+     */
+    protected Rectangle(Rectangle original, Copier copier) {
+        super(original, copier);
+        color = original.color;
+        thread = original.thread;
+        configuration = original.configuration;
+    }
+
+    public Rectangle copy(Copier copier) {
+        return new Rectangle(this, copier);
+    }
     
     public final Color getColor () {
         return color;
@@ -27,6 +27,7 @@ package net.sf.sdedit.drawable;
 import net.sf.sdedit.Constants;
 import net.sf.sdedit.config.Configuration;
 import net.sf.sdedit.config.SequenceConfiguration;
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.diagram.Lifeline;
 import net.sf.sdedit.diagram.SequenceDiagram;
 import net.sf.sdedit.util.Direction;
@@ -47,6 +48,8 @@ public abstract class SequenceElement extends Drawable implements Constants {
 
     private int leftPadding;
 
+    private int sequenceId;
+
     protected final Configuration configuration;
 
     protected SequenceElement(SequenceDiagram diagram, Lifeline boundary0,
@@ -55,11 +58,33 @@ public abstract class SequenceElement extends Drawable implements Constants {
         setTop(y);
         addLabel().setLabel(text);
         this.align = align;
+        sequenceId = -1;
         configuration = configuration();
         findEndpoints(boundary0, boundary1);
         computePadding();
     }
 
+    /**
+     * Creates a copy of a <tt>SequenceElement</tt>, for a copy of its diagram.
+     * 
+     * @param original
+     *            the sequence element to be copied
+     * @param copier
+     *            the copier that keeps track of the copies
+     */
+    protected SequenceElement(SequenceElement original, Copier copier) {
+        super(original, copier);
+        leftEndpoint = copier.copy(original.leftEndpoint);
+        leftLimit = copier.copy(original.leftLimit);
+        rightEndpoint = copier.copy(original.rightEndpoint);
+        rightLimit = copier.copy(original.rightLimit);
+        align = original.align;
+        rightPadding = original.rightPadding;
+        leftPadding = original.leftPadding;
+        sequenceId = original.sequenceId;
+        configuration = original.configuration;
+    }
+
     protected final SequenceDiagram diagram() {
         return (SequenceDiagram) getDiagram();
     }
@@ -202,5 +227,21 @@ public abstract class SequenceElement extends Drawable implements Constants {
     public final void setRightLimit(ExtensibleDrawable rightLimit) {
         this.rightLimit = rightLimit;
     }
+
+    /**
+     * Returns the number of this element in the sequence of elements that
+     * have been added to the diagram while there were unfinished fragments,
+     * or -1 if it is not a member of any fragment.
+     * 
+     * @return the sequence id of this element
+     * @see net.sf.sdedit.diagram.FragmentManager#addSequenceElement(SequenceElement)
+     */
+    public final int getSequenceId() {
+        return sequenceId;
+    }
+
+    public final void setSequenceId(int sequenceId) {
+        this.sequenceId = sequenceId;
+    }
 }
 // {{core}}
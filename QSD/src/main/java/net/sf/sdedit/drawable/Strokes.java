@@ -64,7 +64,10 @@ public class Strokes {
     
     public static Stroke getStroke (StrokeType type, int width) {
         Pair<StrokeType, Integer> key = Utilities.pair(type, width);
-        Stroke stroke = strokeCache.get(key);
+        Stroke stroke;
+        synchronized (strokeCache) {
+            stroke = strokeCache.get(key);
+        }
         if (stroke == null) {
             int cap = BasicStroke.CAP_BUTT;
             int join = BasicStroke.JOIN_ROUND;
@@ -26,6 +26,7 @@ package net.sf.sdedit.drawable;
 
 import java.awt.Graphics2D;
 
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.diagram.Diagram;
 
 public class Text extends Drawable {
@@ -37,6 +38,23 @@ public class Text extends Drawable {
 		setWidth(getLabel().textWidth());
 	}
 
+	/**
+	 * Creates a copy of a <tt>Text</tt>, for a copy of its diagram.
+	 * 
+	 * @param original
+	 *            the text to be copied
+	 * @param copier
+	 *            the copier that keeps track of the copies
+	 */
+	protected Text(Text original, Copier copier) {
+		super(original, copier);
+
+	}
+
+	public Text copy(Copier copier) {
+		return new Text(this, copier);
+	}
+
 	@Override
 	public void computeLayoutInformation() {
 
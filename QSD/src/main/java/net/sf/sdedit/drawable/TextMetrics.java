@@ -0,0 +1,305 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.drawable;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Toolkit;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.JLabel;
+import javax.swing.UIManager;
+
+/**
+ * <tt>TextMetrics</tt> objects describe the extent of the (possibly
+ * multi-line) text of a {@linkplain DrawableLabel} and know how to draw it.
+ * <p>
+ * Plain text is measured with the same <tt>FontMetrics</tt> (and thus the same
+ * <tt>FontRenderContext</tt>) that Swing's HTML views use for labels, so the
+ * numbers are identical to the ones of the <tt>&lt;html&gt;</tt>-<tt>JLabel</tt>
+ * that used to do the job, but no HTML document or view tree has to be built.
+ * Texts that would be interpreted by the HTML renderer (because they contain
+ * markup characters, tabs or empty lines) are still measured and drawn by a
+ * <tt>JLabel</tt>, see {@linkplain #isPlain()}.
+ * <p>
+ * Metrics are cached by font, style and text in a bounded LRU cache that is
+ * shared by all diagrams and threads.
+ *
+ * @author Markus Strauch
+ */
+public final class TextMetrics {
+
+	/**
+	 * The maximal number of metrics that are cached.
+	 */
+	public static final int CACHE_SIZE = 4096;
+
+	private static final Map<Key, TextMetrics> cache = new LinkedHashMap<Key, TextMetrics>(
+			CACHE_SIZE / 2, 0.75F, true) {
+
+		private static final long serialVersionUID = 5394181862574133537L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, TextMetrics> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	private static JLabel probe;
+
+	private final boolean plain;
+
+	private final int width;
+
+	private final int height;
+
+	private final int lineHeight;
+
+	private final int baseline;
+
+	private final boolean underlined;
+
+	private final Font font;
+
+	private final String[] lines;
+
+	private final int[] lineWidths;
+
+	private TextMetrics(Font font, boolean underlined, String[] lines,
+			FontMetrics metrics) {
+		this.plain = true;
+		this.font = font;
+		this.underlined = underlined;
+		this.lines = new String[lines.length];
+		this.lineWidths = new int[lines.length];
+		int w = 0;
+		for (int i = 0; i < lines.length; i++) {
+			// makeLabel replaces all spaces by &nbsp;
+			this.lines[i] = lines[i].replace(' ', '\u00a0');
+			lineWidths[i] = metrics.stringWidth(this.lines[i]);
+			w = Math.max(w, lineWidths[i]);
+		}
+		width = w;
+		lineHeight = metrics.getHeight();
+		height = lineHeight * lines.length;
+		baseline = lineHeight - metrics.getDescent();
+	}
+
+	private TextMetrics(Dimension size) {
+		this.plain = false;
+		this.font = null;
+		this.underlined = false;
+		this.lines = null;
+		this.lineWidths = null;
+		width = size.width;
+		height = size.height;
+		lineHeight = 0;
+		baseline = 0;
+	}
+
+	/**
+	 * Returns the metrics of the given text.
+	 *
+	 * @param font
+	 *            the (plain) font of the diagram
+	 * @param bold
+	 *            flag denoting if the text is bold
+	 * @param italic
+	 *            flag denoting if the text is italic
+	 * @param underlined
+	 *            flag denoting if the text is underlined
+	 * @param lines
+	 *            the lines of the text
+	 * @return the metrics of the text
+	 */
+	public static TextMetrics getMetrics(Font font, boolean bold,
+			boolean italic, boolean underlined, String... lines) {
+		Key key = new Key(font, bold, italic, underlined, lines);
+		TextMetrics metrics;
+		synchronized (cache) {
+			metrics = cache.get(key);
+		}
+		if (metrics == null) {
+			if (isPlain(font, lines)) {
+				int style = (bold ? Font.BOLD : 0) | (italic ? Font.ITALIC : 0);
+				Font styled = style == 0 ? font : font.deriveFont(style);
+				metrics = new TextMetrics(styled, underlined, lines,
+						getProbe().getFontMetrics(styled));
+			} else {
+				metrics = new TextMetrics(DrawableLabel.makeLabel(lines, font,
+						bold, italic, underlined).getPreferredSize());
+			}
+			synchronized (cache) {
+				cache.put(key, metrics);
+			}
+		}
+		return metrics;
+	}
+
+	/**
+	 * Removes all cached metrics.
+	 */
+	public static void clearCache() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	private static synchronized JLabel getProbe() {
+		if (probe == null) {
+			probe = new JLabel();
+		}
+		return probe;
+	}
+
+	/*
+	 * A text can be measured and drawn without the HTML renderer if it is not
+	 * empty, has no empty lines (the renderer treats trailing <br>s in a
+	 * special way) and no characters that the renderer would interpret.
+	 */
+	private static boolean isPlain(Font font, String[] lines) {
+		if (lines.length == 0 || font.getSize2D() != font.getSize()
+				|| font.isTransformed() || font.hasLayoutAttributes()) {
+			return false;
+		}
+		for (String line : lines) {
+			if (line.length() == 0) {
+				return false;
+			}
+			for (int i = 0; i < line.length(); i++) {
+				char c = line.charAt(i);
+				if (c < ' ' || c == '<' || c == '&' || c == '\u007f') {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if this text can be drawn by
+	 * {@linkplain #draw(Graphics2D, int, int, Color)}. If it is false, the text
+	 * must be rendered as HTML by a <tt>JLabel</tt>.
+	 *
+	 * @return true if this text can be drawn by
+	 *         {@linkplain #draw(Graphics2D, int, int, Color)}
+	 */
+	public boolean isPlain() {
+		return plain;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Draws the text such that its lower left corner is at the given point.
+	 *
+	 * @param g2d
+	 *            the graphics context
+	 * @param x
+	 *            the left of the text
+	 * @param y
+	 *            the bottom of the text
+	 * @param color
+	 *            the color of the text, if <tt>null</tt>, the default label
+	 *            foreground color is used
+	 */
+	public void draw(Graphics2D g2d, int x, int y, Color color) {
+		if (!plain) {
+			throw new IllegalStateException("text cannot be drawn directly");
+		}
+		if (color == null) {
+			color = UIManager.getColor("Label.foreground");
+			if (color == null) {
+				color = Color.BLACK;
+			}
+		}
+		Graphics2D g = (Graphics2D) g2d.create();
+		// Swing components use the desktop settings for text anti-aliasing
+		Map<?, ?> hints = (Map<?, ?>) Toolkit.getDefaultToolkit()
+				.getDesktopProperty("awt.font.desktophints");
+		if (hints != null) {
+			g.addRenderingHints(hints);
+		}
+		g.setFont(font);
+		g.setColor(color);
+		int top = y - height;
+		// like a component, the text must not paint outside of its bounds
+		g.clipRect(x, top, width, height);
+		for (int i = 0; i < lines.length; i++) {
+			int v = top + i * lineHeight + baseline;
+			g.drawString(lines[i], x, v);
+			if (underlined) {
+				g.drawLine(x, v + 1, x + lineWidths[i], v + 1);
+			}
+		}
+		g.dispose();
+	}
+
+	private static final class Key {
+
+		private final Font font;
+
+		private final int style;
+
+		private final String[] lines;
+
+		private final int hash;
+
+		Key(Font font, boolean bold, boolean italic, boolean underlined,
+				String[] lines) {
+			this.font = font;
+			this.style = (bold ? 1 : 0) | (italic ? 2 : 0)
+					| (underlined ? 4 : 0);
+			this.lines = lines;
+			hash = 31 * (31 * font.hashCode() + style) + Arrays.hashCode(lines);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) obj;
+			return hash == key.hash && style == key.style
+					&& font.equals(key.font) && Arrays.equals(lines, key.lines);
+		}
+	}
+
+}
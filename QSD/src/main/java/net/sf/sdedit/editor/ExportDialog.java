@@ -14,7 +14,10 @@ import javax.swing.JDialog;
 
 import net.sf.sdedit.config.ExportConfiguration;
 import net.sf.sdedit.diagram.DiagramFactory;
+import net.sf.sdedit.diagram.RenderStatistics;
+import net.sf.sdedit.diagram.RenderTimes;
 import net.sf.sdedit.diagram.SDPaintDevice;
+import net.sf.sdedit.drawable.DisplayList;
 import net.sf.sdedit.server.Exporter;
 import net.sf.sdedit.ui.components.configuration.Bean;
 import net.sf.sdedit.ui.components.configuration.ConfigurationUI;
@@ -113,10 +116,21 @@ public class ExportDialog extends JDialog implements ConfigurationUIListener, Wi
 					Exporter exporter = Exporter.getExporter(configuration.getDataObject().getType(),
 							null, null,
 							stream);
-					SDPaintDevice paintDevice = new SDPaintDevice(exporter);
-					DiagramFactory factory = tab.createFactory(paintDevice);
-					factory.generateDiagram(tab.getConfiguration().getDataObject());
-					exporter.export();
+					// the diagram displayed need not be generated again
+					DisplayList displayList = tab.getDisplayList();
+					if (displayList != null) {
+						exporter.setDisplayList(displayList);
+						exporter.export();
+					} else {
+						SDPaintDevice paintDevice = new SDPaintDevice(exporter);
+						DiagramFactory factory = tab.createFactory(paintDevice);
+						RenderTimes times = new RenderTimes(tab.getRenderStatistics(),
+								RenderStatistics.getGlobal());
+						factory.setRenderTimes(times);
+						factory.generateDiagram(tab.getConfiguration().getDataObject());
+						exporter.export();
+						times.finished(false, false);
+					}
 				} finally {
 					stream.close();
 				}
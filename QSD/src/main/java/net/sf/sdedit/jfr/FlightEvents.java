@@ -0,0 +1,224 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.jfr;
+
+/**
+ * <tt>FlightEvents</tt> emit the events that make the work on diagrams show
+ * up in Java Flight Recorder recordings: parsing (that is, generating) a
+ * diagram, its layout, the computation of the lifeline axes, exports and
+ * batches of lines entered by the real-time server.
+ * <p>
+ * The event classes extend <tt>jdk.jfr.Event</tt>, which is not part of the
+ * Java 8 API, so they are compiled separately (from <tt>src/main/jfr</tt>)
+ * and only loaded if the JVM has a flight recorder. Otherwise the methods of
+ * this class do nothing.
+ * <p>
+ * An event is emitted by a pair of calls: a <tt>begin</tt> method returns a
+ * handle, which is passed to the corresponding <tt>end</tt> method together
+ * with the fields of the event. If the event type is not enabled in any
+ * recording, the handle is <tt>null</tt> and the <tt>end</tt> method returns
+ * immediately, so the fields should be cheap to compute (the drawables of
+ * an export are passed as an <tt>Iterable</tt>, they are only counted if the
+ * event is committed).
+ * 
+ * @author Markus Strauch
+ */
+public class FlightEvents {
+
+	private static final FlightEvents events = load();
+
+	protected FlightEvents() {
+	}
+
+	private static FlightEvents load() {
+		try {
+			Class.forName("jdk.jfr.FlightRecorder");
+			return (FlightEvents) Class.forName(
+					"net.sf.sdedit.jfr.JfrFlightEvents").newInstance();
+		} catch (Exception e) {
+			return new FlightEvents();
+		} catch (LinkageError e) {
+			return new FlightEvents();
+		}
+	}
+
+	/**
+	 * Returns the <tt>FlightEvents</tt> that emit events to the flight
+	 * recorder, if it is available, otherwise <tt>FlightEvents</tt> that do
+	 * nothing.
+	 * 
+	 * @return the <tt>FlightEvents</tt> to be used
+	 */
+	public static FlightEvents get() {
+		return events;
+	}
+
+	/**
+	 * Returns true if events are emitted to the flight recorder (which need
+	 * not record them).
+	 * 
+	 * @return flag denoting if the flight recorder is available
+	 */
+	public boolean isAvailable() {
+		return false;
+	}
+
+	/**
+	 * Begins a <tt>DiagramParse</tt> event, covering the generation of a
+	 * diagram from its text.
+	 * 
+	 * @return a handle for {@linkplain #endParse(Object, int, int, boolean, boolean, String)}
+	 *         or <tt>null</tt>
+	 */
+	public Object beginParse() {
+		return null;
+	}
+
+	/**
+	 * Ends a <tt>DiagramParse</tt> event.
+	 * 
+	 * @param event
+	 *            the handle returned by {@linkplain #beginParse()}
+	 * @param lifelines
+	 *            the number of lifelines of the diagram
+	 * @param messages
+	 *            the number of messages of the diagram
+	 * @param dryRun
+	 *            flag denoting if the diagram had to be generated twice
+	 * @param resumed
+	 *            flag denoting if the generation resumed from a checkpoint
+	 * @param outcome
+	 *            <tt>"ok"</tt>, <tt>"error"</tt> or <tt>"cancelled"</tt>
+	 */
+	public void endParse(Object event, int lifelines, int messages,
+			boolean dryRun, boolean resumed, String outcome) {
+	}
+
+	/**
+	 * Begins a <tt>DiagramLayout</tt> event, covering the computation of the
+	 * size of a diagram.
+	 * 
+	 * @return a handle for {@linkplain #endLayout(Object, int, int, int)} or
+	 *         <tt>null</tt>
+	 */
+	public Object beginLayout() {
+		return null;
+	}
+
+	/**
+	 * Ends a <tt>DiagramLayout</tt> event.
+	 * 
+	 * @param event
+	 *            the handle returned by {@linkplain #beginLayout()}
+	 * @param width
+	 *            the width of the diagram
+	 * @param height
+	 *            the height of the diagram
+	 * @param drawables
+	 *            the number of drawables that have been laid out
+	 */
+	public void endLayout(Object event, int width, int height, int drawables) {
+	}
+
+	/**
+	 * Begins a <tt>LifelineAxisComputation</tt> event, covering the
+	 * computation of the horizontal positions of the lifelines.
+	 * 
+	 * @return a handle for {@linkplain #endAxisComputation(Object, int)} or
+	 *         <tt>null</tt>
+	 */
+	public Object beginAxisComputation() {
+		return null;
+	}
+
+	/**
+	 * Ends a <tt>LifelineAxisComputation</tt> event.
+	 * 
+	 * @param event
+	 *            the handle returned by {@linkplain #beginAxisComputation()}
+	 * @param positions
+	 *            the number of lifeline positions
+	 */
+	public void endAxisComputation(Object event, int positions) {
+	}
+
+	/**
+	 * Begins a <tt>DiagramExport</tt> event, covering drawing a diagram to
+	 * a file or stream.
+	 * 
+	 * @return a handle for
+	 *         {@linkplain #endExport(Object, String, long, Iterable)} or
+	 *         <tt>null</tt>
+	 */
+	public Object beginExport() {
+		return null;
+	}
+
+	/**
+	 * Ends a <tt>DiagramExport</tt> event.
+	 * 
+	 * @param event
+	 *            the handle returned by {@linkplain #beginExport()}
+	 * @param format
+	 *            the output format, like <tt>png</tt>
+	 * @param bytes
+	 *            the number of bytes written
+	 * @param drawables
+	 *            the drawables of the diagram
+	 */
+	public void endExport(Object event, String format, long bytes,
+			Iterable<?> drawables) {
+	}
+
+	/**
+	 * Begins a <tt>RealtimeBatchApplied</tt> event, covering entering a batch
+	 * of lines received by the real-time server into a tab.
+	 * 
+	 * @return a handle for
+	 *         {@linkplain #endRealtimeBatch(Object, String, int, int, boolean)}
+	 *         or <tt>null</tt>
+	 */
+	public Object beginRealtimeBatch() {
+		return null;
+	}
+
+	/**
+	 * Ends a <tt>RealtimeBatchApplied</tt> event.
+	 * 
+	 * @param event
+	 *            the handle returned by {@linkplain #beginRealtimeBatch()}
+	 * @param tab
+	 *            the title of the tab
+	 * @param lines
+	 *            the number of lines of the batch
+	 * @param characters
+	 *            the number of characters of the batch
+	 * @param cleared
+	 *            flag denoting if the tab has been cleared before
+	 */
+	public void endRealtimeBatch(Object event, String tab, int lines,
+			int characters, boolean cleared) {
+	}
+
+}
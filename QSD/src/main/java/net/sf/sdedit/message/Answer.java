@@ -24,6 +24,7 @@
 
 package net.sf.sdedit.message;
 
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.diagram.Lifeline;
 import net.sf.sdedit.diagram.MessageData;
 import net.sf.sdedit.diagram.SequenceDiagram;
@@ -65,6 +66,23 @@ public class Answer extends Message
         forward = forwardMsg;
     }
 
+    /**
+     * Creates a copy of an <tt>Answer</tt>, for a copy of its diagram.
+     * 
+     * @param original
+     *            the answer to be copied
+     * @param copier
+     *            the copier that keeps track of the copies
+     */
+    protected Answer(Answer original, Copier copier) {
+        super(original, copier);
+        forward = copier.copy(original.forward);
+    }
+
+    public Answer copy(Copier copier) {
+        return new Answer(this, copier);
+    }
+
     /**
      * Returns the <tt>ForwardMessage</tt> to which this is the answer.
      * 
@@ -24,6 +24,7 @@
 
 package net.sf.sdedit.message;
 
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.diagram.Lifeline;
 import net.sf.sdedit.diagram.MessageData;
 import net.sf.sdedit.diagram.SequenceDiagram;
@@ -39,6 +40,22 @@ public class AnswerToSelf extends Answer
             MessageData data, ForwardMessage forward) {
         super(caller, callee, diagram, data, forward);
     }
+
+    /**
+     * Creates a copy of an <tt>AnswerToSelf</tt>, for a copy of its diagram.
+     * 
+     * @param original
+     *            the answer to be copied
+     * @param copier
+     *            the copier that keeps track of the copies
+     */
+    protected AnswerToSelf(AnswerToSelf original, Copier copier) {
+        super(original, copier);
+    }
+
+    public AnswerToSelf copy(Copier copier) {
+        return new AnswerToSelf(this, copier);
+    }
     
     protected void execute() {
     	
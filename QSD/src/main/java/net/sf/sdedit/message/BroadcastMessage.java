@@ -24,6 +24,7 @@
 
 package net.sf.sdedit.message;
 
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.diagram.Lifeline;
 import net.sf.sdedit.diagram.MessageData;
 import net.sf.sdedit.diagram.SequenceDiagram;
@@ -46,6 +47,28 @@ public class BroadcastMessage extends ForwardMessage {
 		super(caller, callee, diagram, data);
 	}
 
+	/**
+	 * Creates a copy of a <tt>BroadcastMessage</tt>, for a copy of its diagram.
+	 * 
+	 * @param original
+	 *            the message to be copied
+	 * @param copier
+	 *            the copier that keeps track of the copies
+	 */
+	protected BroadcastMessage(BroadcastMessage original, Copier copier) {
+		super(original, copier);
+		if (original.otherCallees != null) {
+			otherCallees = new Lifeline[original.otherCallees.length];
+			for (int i = 0; i < otherCallees.length; i++) {
+				otherCallees[i] = copier.copy(original.otherCallees[i]);
+			}
+		}
+	}
+
+	public BroadcastMessage copy(Copier copier) {
+		return new BroadcastMessage(this, copier);
+	}
+
 	@Override
 	public Answer getAnswerMessage() {
 		return null;
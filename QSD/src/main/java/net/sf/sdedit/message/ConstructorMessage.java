@@ -24,6 +24,7 @@
 
 package net.sf.sdedit.message;
 
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.diagram.Lifeline;
 import net.sf.sdedit.diagram.MessageData;
 import net.sf.sdedit.diagram.SequenceDiagram;
@@ -59,6 +60,23 @@ public class ConstructorMessage extends ForwardMessage
         super(caller, callee, diagram, data);
     }
 
+    /**
+     * Creates a copy of a <tt>ConstructorMessage</tt>, for a copy of its
+     * diagram.
+     * 
+     * @param original
+     *            the message to be copied
+     * @param copier
+     *            the copier that keeps track of the copies
+     */
+    protected ConstructorMessage(ConstructorMessage original, Copier copier) {
+        super(original, copier);
+    }
+
+    public ConstructorMessage copy(Copier copier) {
+        return new ConstructorMessage(this, copier);
+    }
+
     protected void execute() {
     	
         int headHeight = getCallee().getHead().getHeight();
@@ -24,6 +24,7 @@
 
 package net.sf.sdedit.message;
 
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.diagram.Lifeline;
 import net.sf.sdedit.diagram.MessageData;
 import net.sf.sdedit.diagram.SequenceDiagram;
@@ -56,6 +57,22 @@ public class DestructorAnswer extends Answer
         super(caller, callee, diagram, data, forward);
     }
 
+    /**
+     * Creates a copy of a <tt>DestructorAnswer</tt>, for a copy of its diagram.
+     * 
+     * @param original
+     *            the answer to be copied
+     * @param copier
+     *            the copier that keeps track of the copies
+     */
+    protected DestructorAnswer(DestructorAnswer original, Copier copier) {
+        super(original, copier);
+    }
+
+    public DestructorAnswer copy(Copier copier) {
+        return new DestructorAnswer(this, copier);
+    }
+
     protected void execute() {
 
         super.execute();
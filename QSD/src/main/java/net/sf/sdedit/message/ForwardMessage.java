@@ -24,6 +24,7 @@
 
 package net.sf.sdedit.message;
 
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.diagram.Lifeline;
 import net.sf.sdedit.diagram.MessageData;
 import net.sf.sdedit.diagram.SequenceDiagram;
@@ -64,6 +65,23 @@ public class ForwardMessage extends Message {
 		// TODO ? set level for pretty print
 		// this.level = caller.getCallLevel();
 	}
+
+	/**
+	 * Creates a copy of a <tt>ForwardMessage</tt>, for a copy of its diagram.
+	 * 
+	 * @param original
+	 *            the message to be copied
+	 * @param copier
+	 *            the copier that keeps track of the copies
+	 */
+	protected ForwardMessage(ForwardMessage original, Copier copier) {
+		super(original, copier);
+		level = original.level;
+	}
+
+	public ForwardMessage copy(Copier copier) {
+		return new ForwardMessage(this, copier);
+	}
 	
 	public int getLevel () {
 		return level;
@@ -26,6 +26,7 @@ package net.sf.sdedit.message;
 
 import net.sf.sdedit.Constants;
 import net.sf.sdedit.config.SequenceConfiguration;
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.diagram.Lifeline;
 import net.sf.sdedit.diagram.MessageData;
 import net.sf.sdedit.diagram.SequenceDiagram;
@@ -38,7 +39,7 @@ import net.sf.sdedit.drawable.Arrow;
  * @author Markus Strauch
  * 
  */
-public abstract class Message implements Constants {
+public abstract class Message implements Constants, Copier.Copyable {
 
     private final Lifeline caller;
 
@@ -61,6 +62,24 @@ public abstract class Message implements Constants {
         conf = diagram.getConfiguration();
     }
 
+    /**
+     * Creates a copy of a <tt>Message</tt>, for a copy of its diagram.
+     * 
+     * @param original
+     *            the message to be copied
+     * @param copier
+     *            the copier that keeps track of the copies
+     */
+    protected Message(Message original, Copier copier) {
+        copier.register(original, this);
+        caller = copier.copy(original.caller);
+        callee = copier.copy(original.callee);
+        diagram = copier.copy(original.diagram);
+        data = original.data;
+        conf = original.conf;
+        arrow = copier.copy(original.arrow);
+    }
+
     /**
      * Returns a string representation of this message, in particular of the
      * caller and the callee lifeline.
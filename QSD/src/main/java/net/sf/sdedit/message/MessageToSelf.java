@@ -24,6 +24,7 @@
 
 package net.sf.sdedit.message;
 
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.diagram.Lifeline;
 import net.sf.sdedit.diagram.MessageData;
 import net.sf.sdedit.diagram.SequenceDiagram;
@@ -61,6 +62,22 @@ public class MessageToSelf extends ForwardMessage
         super(caller, callee, diagram, data);
     }
 
+    /**
+     * Creates a copy of a <tt>MessageToSelf</tt>, for a copy of its diagram.
+     * 
+     * @param original
+     *            the message to be copied
+     * @param copier
+     *            the copier that keeps track of the copies
+     */
+    protected MessageToSelf(MessageToSelf original, Copier copier) {
+        super(original, copier);
+    }
+
+    public MessageToSelf copy(Copier copier) {
+        return new MessageToSelf(this, copier);
+    }
+
     /**
      * Returns an answer from the sub-lifeline to the sender lifeline. In the
      * answer, the roles of caller and callee change.
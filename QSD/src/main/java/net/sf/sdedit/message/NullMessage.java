@@ -23,6 +23,7 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package net.sf.sdedit.message;
 
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.diagram.Lifeline;
 import net.sf.sdedit.diagram.MessageData;
 import net.sf.sdedit.diagram.SequenceDiagram;
@@ -33,6 +34,22 @@ public class NullMessage extends ForwardMessage {
 		super(null, receiver, diagram, data);
 	}
 
+	/**
+	 * Creates a copy of a <tt>NullMessage</tt>, for a copy of its diagram.
+	 * 
+	 * @param original
+	 *            the message to be copied
+	 * @param copier
+	 *            the copier that keeps track of the copies
+	 */
+	protected NullMessage(NullMessage original, Copier copier) {
+		super(original, copier);
+	}
+
+	public NullMessage copy(Copier copier) {
+		return new NullMessage(this, copier);
+	}
+
 	@Override
 	public String getText() {
 		return "";
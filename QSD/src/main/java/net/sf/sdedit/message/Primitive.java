@@ -24,6 +24,7 @@
 
 package net.sf.sdedit.message;
 
+import net.sf.sdedit.diagram.Copier;
 import net.sf.sdedit.diagram.Lifeline;
 import net.sf.sdedit.diagram.MessageData;
 import net.sf.sdedit.diagram.SequenceDiagram;
@@ -54,6 +55,22 @@ public final class Primitive extends ForwardMessage {
 		super(caller, null, diagram, data);
 	}
 
+	/**
+	 * Creates a copy of a <tt>Primitive</tt>, for a copy of its diagram.
+	 * 
+	 * @param original
+	 *            the message to be copied
+	 * @param copier
+	 *            the copier that keeps track of the copies
+	 */
+	private Primitive(Primitive original, Copier copier) {
+		super(original, copier);
+	}
+
+	public Primitive copy(Copier copier) {
+		return new Primitive(this, copier);
+	}
+
 	protected void execute() {
 		
 		/*
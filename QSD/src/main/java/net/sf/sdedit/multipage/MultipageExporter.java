@@ -40,6 +40,7 @@ import net.sf.sdedit.config.Configuration;
 import net.sf.sdedit.config.PrintConfiguration;
 import net.sf.sdedit.diagram.DiagramFactory;
 import net.sf.sdedit.diagram.PaintDevice;
+import net.sf.sdedit.drawable.DisplayList;
 import net.sf.sdedit.error.DiagramError;
 import net.sf.sdedit.ui.components.ZoomPane;
 import net.sf.sdedit.ui.impl.DiagramTab;
@@ -112,8 +113,6 @@ public class MultipageExporter extends JPanel {
 	public void init() throws DiagramError {
 		graphicDevice = new MultipagePaintDevice(properties, size);
 
-		PaintDevice pd = tab.createPaintDevice(graphicDevice);
-
 		String cmd = properties.getCommand();
 		
 		if (cmd == null || Utilities.in(cmd, "", "AcroRd32.exe")) {
@@ -132,8 +131,17 @@ public class MultipageExporter extends JPanel {
 			}
 		}
 
-		DiagramFactory factory = tab.createFactory(pd);
-		factory.generateDiagram(configuration);
+		// the layout for multiple pages is not the one displayed, as the
+		// lifelines are extended over the page breaks
+		DisplayList displayList = properties.isMultipage() ? null : tab
+				.getDisplayList();
+		if (displayList != null) {
+			graphicDevice.setDisplayList(displayList);
+		} else {
+			PaintDevice pd = tab.createPaintDevice(graphicDevice);
+			DiagramFactory factory = tab.createFactory(pd);
+			factory.generateDiagram(configuration);
+		}
 		int n = graphicDevice.getPanels().size();
 		setLayout(new BoxLayout(this, BoxLayout.X_AXIS));
 		int i = 0;
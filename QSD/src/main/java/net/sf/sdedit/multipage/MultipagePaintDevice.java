@@ -37,6 +37,7 @@ import net.sf.sdedit.config.PrintConfiguration;
 import net.sf.sdedit.diagram.AbstractGraphicDevice;
 import net.sf.sdedit.diagram.Diagram;
 import net.sf.sdedit.diagram.SequenceDiagram;
+import net.sf.sdedit.drawable.DisplayList;
 import net.sf.sdedit.drawable.Drawable;
 import net.sf.sdedit.drawable.Strokes;
 import net.sf.sdedit.ui.components.ZoomPane;
@@ -175,7 +176,7 @@ public class MultipagePaintDevice extends AbstractGraphicDevice {
 		@Override
 		public void paintComponent(Graphics g) {
 			Graphics2D g2d = (Graphics2D) g.create();
-			g2d.setFont(diagram.getConfiguration().getFont());
+			g2d.setFont(getFont());
 			g2d.scale(scale, scale);
 			Rectangle clipBounds = g2d.getClipBounds();
 			g2d.setColor(Color.WHITE);
@@ -204,9 +205,18 @@ public class MultipagePaintDevice extends AbstractGraphicDevice {
 			}
 		    g2d.setColor(Color.BLACK);
 		    g2d.setStroke(Strokes.defaultStroke());
-			for (Drawable drawable : drawables()) {
-				if (rect == null || drawable.intersects(rect)) {
-					drawable.draw(g2d);
+			DisplayList displayList = getDisplayList();
+			if (displayList != null) {
+				if (rect == null) {
+					displayList.replay(g2d);
+				} else {
+					displayList.replay(g2d, rect);
+				}
+			} else {
+				for (Drawable drawable : drawables()) {
+					if (rect == null || drawable.intersects(rect)) {
+						drawable.draw(g2d);
+					}
 				}
 			}
 			g2d.dispose();
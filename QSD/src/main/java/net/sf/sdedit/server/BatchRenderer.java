@@ -0,0 +1,629 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.server;
+
+import java.beans.PropertyDescriptor;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.sf.sdedit.config.Configuration;
+import net.sf.sdedit.config.ConfigurationManager;
+import net.sf.sdedit.config.SequenceConfiguration;
+import net.sf.sdedit.diagram.DiagramDataProvider;
+import net.sf.sdedit.diagram.DiagramDataProviderFactory;
+import net.sf.sdedit.diagram.DiagramFactory;
+import net.sf.sdedit.diagram.SDPaintDevice;
+import net.sf.sdedit.diagram.SequenceDiagramFactory;
+import net.sf.sdedit.editor.DiagramFileHandler;
+import net.sf.sdedit.error.DiagramError;
+import net.sf.sdedit.text.FileDataProviderFactory;
+import net.sf.sdedit.text.TextHandler;
+import net.sf.sdedit.ui.StripedPNGGraphicsDevice;
+import net.sf.sdedit.ui.components.configuration.Bean;
+import net.sf.sdedit.util.DocUtil.XMLException;
+import net.sf.sdedit.util.ObjectFactory;
+import net.sf.sdedit.util.Pair;
+
+/**
+ * A <tt>BatchRenderer</tt> renders a set of diagram files into an output
+ * directory without any user interface. The input can be given as files,
+ * directories (all <tt>.sd</tt> and <tt>.sdx</tt> files below them are
+ * rendered) or glob patterns like <tt>diagrams/**.sd</tt>. The files are
+ * rendered in parallel by a pool of worker threads, each of them using its own
+ * paint device and exporter. Files whose output is newer than the input are
+ * skipped unless {@linkplain #setForce(boolean)} has been called.
+ * 
+ * @author Markus Strauch
+ */
+public class BatchRenderer {
+
+	/**
+	 * The outcome of rendering a single file.
+	 */
+	public static enum Status {
+
+		RENDERED,
+
+		UP_TO_DATE,
+
+		FAILED
+
+	}
+
+	/**
+	 * Describes what happened to one of the input files.
+	 */
+	public static class Result {
+
+		private final File input;
+
+		private final File output;
+
+		private final Status status;
+
+		private final long millis;
+
+		private final String error;
+
+		Result(File input, File output, Status status, long millis,
+				String error) {
+			this.input = input;
+			this.output = output;
+			this.status = status;
+			this.millis = millis;
+			this.error = error;
+		}
+
+		public File getInput() {
+			return input;
+		}
+
+		public File getOutput() {
+			return output;
+		}
+
+		public Status getStatus() {
+			return status;
+		}
+
+		/**
+		 * Returns the number of milliseconds it took to render the file.
+		 * 
+		 * @return the number of milliseconds it took to render the file
+		 */
+		public long getMillis() {
+			return millis;
+		}
+
+		/**
+		 * Returns a description of the error that occurred when the file was
+		 * rendered, or <tt>null</tt> if the file has not failed.
+		 * 
+		 * @return a description of the error
+		 */
+		public String getError() {
+			return error;
+		}
+	}
+
+	private final File outputDirectory;
+
+	/*
+	 * Pairs of input files and the paths of the corresponding output files
+	 * (relative to the output directory and without suffix).
+	 */
+	private final List<Pair<File, String>> inputs;
+
+	private final Set<File> inputFiles;
+
+	private String type;
+
+	private String orientation;
+
+	private String format;
+
+	private Map<String, String> properties;
+
+	private int threads;
+
+	private boolean force;
+
+	private RenderCache cache;
+
+	/**
+	 * Creates a new <tt>BatchRenderer</tt> that writes PNG files into the
+	 * given directory.
+	 * 
+	 * @param outputDirectory
+	 *            the directory where the output files are created
+	 */
+	public BatchRenderer(File outputDirectory) {
+		this.outputDirectory = outputDirectory;
+		inputs = new ArrayList<Pair<File, String>>();
+		inputFiles = new HashSet<File>();
+		type = "png";
+		orientation = "Portrait";
+		format = "A4";
+		properties = Collections.emptyMap();
+		threads = Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Sets the type of the output files.
+	 * 
+	 * @param type
+	 *            one of {ps, pdf, emf, svg, png, gif, jpg, bmp}
+	 */
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	public void setOrientation(String orientation) {
+		this.orientation = orientation;
+	}
+
+	public void setFormat(String format) {
+		this.format = format;
+	}
+
+	/**
+	 * Sets values of diagram preferences that override the ones of the
+	 * diagram files.
+	 * 
+	 * @param properties
+	 *            maps names of <tt>SequenceConfiguration</tt> properties
+	 *            onto string representations of their values
+	 */
+	public void setProperties(Map<String, String> properties) {
+		this.properties = properties;
+	}
+
+	/**
+	 * Sets the number of files that are rendered simultaneously.
+	 * 
+	 * @param threads
+	 *            the number of worker threads
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Sets a flag denoting if all files are to be rendered, even if their
+	 * output is up to date.
+	 * 
+	 * @param force
+	 *            flag denoting if all files are to be rendered
+	 */
+	public void setForce(boolean force) {
+		this.force = force;
+	}
+
+	/**
+	 * Sets the cache that is consulted before a file is rendered.
+	 * 
+	 * @param cache
+	 *            the cache, or <tt>null</tt> if no cache is to be used
+	 */
+	public void setCache(RenderCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Adds input files. If the argument is a directory, all diagram files
+	 * below it are added and their output files will be placed in the
+	 * corresponding subdirectories of the output directory. If the argument
+	 * does not denote an existing file, it is interpreted as a glob pattern.
+	 * 
+	 * @param argument
+	 *            a file, directory or glob pattern
+	 * @return the number of files that have been added
+	 * @throws IOException
+	 *             if a directory cannot be read
+	 */
+	public int addInput(String argument) throws IOException {
+		File file = new File(argument);
+		if (file.isFile()) {
+			return addInput(file, baseName(file.getName()));
+		}
+		if (file.isDirectory()) {
+			return addInputs(file.toPath(), null);
+		}
+		String pattern = argument.replace(File.separatorChar, '/');
+		String[] segments = pattern.split("/", -1);
+		StringBuffer base = new StringBuffer();
+		int i = 0;
+		while (i < segments.length - 1 && !isGlob(segments[i])) {
+			base.append(segments[i]).append('/');
+			i++;
+		}
+		File dir = new File(base.length() == 0 ? "." : base.toString());
+		if (!dir.isDirectory()) {
+			return 0;
+		}
+		StringBuffer glob = new StringBuffer();
+		for (; i < segments.length; i++) {
+			glob.append(glob.length() == 0 ? "" : "/").append(segments[i]);
+		}
+		return addInputs(dir.toPath(), FileSystems.getDefault()
+				.getPathMatcher("glob:" + glob));
+	}
+
+	private static boolean isGlob(String segment) {
+		for (char c : "*?[{".toCharArray()) {
+			if (segment.indexOf(c) >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Adds the files below dir that are accepted by the matcher, or all diagram
+	 * files if it is null.
+	 */
+	private int addInputs(Path dir, PathMatcher matcher) throws IOException {
+		List<Path> files = new ArrayList<Path>();
+		LinkedList<Path> queue = new LinkedList<Path>();
+		queue.add(dir);
+		while (!queue.isEmpty()) {
+			DirectoryStream<Path> stream = Files.newDirectoryStream(queue
+					.removeFirst());
+			try {
+				for (Path path : stream) {
+					if (Files.isDirectory(path)) {
+						queue.add(path);
+					} else if (Files.isRegularFile(path)) {
+						files.add(path);
+					}
+				}
+			} finally {
+				stream.close();
+			}
+		}
+		Collections.sort(files);
+		int n = 0;
+		for (Path path : files) {
+			Path relative = dir.relativize(path);
+			String name = relative.toString().replace(File.separatorChar, '/');
+			if (matcher == null ? isDiagramFile(name) : matcher
+					.matches(relative)) {
+				n += addInput(path.toFile(), baseName(name));
+			}
+		}
+		return n;
+	}
+
+	private int addInput(File file, String name) throws IOException {
+		if (!inputFiles.add(file.getCanonicalFile())) {
+			return 0;
+		}
+		inputs.add(new Pair<File, String>(file, name));
+		return 1;
+	}
+
+	private static boolean isDiagramFile(String name) {
+		name = name.toLowerCase();
+		return name.endsWith(".sd") || name.endsWith(".sdx");
+	}
+
+	private static String baseName(String name) {
+		int dot = name.lastIndexOf('.');
+		return dot > name.lastIndexOf('/') + 1 ? name.substring(0, dot) : name;
+	}
+
+	/**
+	 * Renders all input files that have been added and returns the results in
+	 * the order in which the files have been added.
+	 * 
+	 * @return the results of rendering the input files
+	 * @throws InterruptedException
+	 *             if the current thread is interrupted while waiting for the
+	 *             workers
+	 */
+	public List<Result> render() throws InterruptedException {
+		List<Future<Result>> futures = new ArrayList<Future<Result>>();
+		Map<File, File> outputs = new HashMap<File, File>();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(
+				threads, Math.max(1, inputs.size())));
+		try {
+			for (Pair<File, String> input : inputs) {
+				final File inFile = input.getFirst();
+				final File outFile = new File(outputDirectory,
+						input.getSecond() + "." + type);
+				File other = outputs.put(outFile, inFile);
+				final String conflict = other == null ? null
+						: "same output file as " + other;
+				futures.add(executor.submit(new Callable<Result>() {
+					public Result call() {
+						if (conflict != null) {
+							return new Result(inFile, outFile, Status.FAILED,
+									0, conflict);
+						}
+						return renderInput(inFile, outFile);
+					}
+				}));
+			}
+			List<Result> results = new ArrayList<Result>();
+			for (Future<Result> future : futures) {
+				try {
+					results.add(future.get());
+				} catch (ExecutionException e) {
+					// renderInput does not throw exceptions
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private Result renderInput(File inFile, File outFile) {
+		if (!force && outFile.length() > 0
+				&& outFile.lastModified() >= inFile.lastModified()) {
+			return new Result(inFile, outFile, Status.UP_TO_DATE, 0, null);
+		}
+		long start = System.nanoTime();
+		String error = null;
+		try {
+			File dir = outFile.getParentFile();
+			if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+				throw new FileNotFoundException("cannot create directory "
+						+ dir);
+			}
+			renderFile(inFile, outFile, type, orientation, format, properties,
+					cache);
+		} catch (DiagramError e) {
+			error = describe(e);
+		} catch (Exception e) {
+			error = e.getClass().getSimpleName() + ": " + e.getMessage();
+		} catch (Error e) {
+			// OutOfMemoryError and the like must not affect other files
+			error = e.getClass().getSimpleName() + ": " + e.getMessage();
+		}
+		long millis = (System.nanoTime() - start) / 1000000;
+		if (error != null) {
+			outFile.delete();
+			return new Result(inFile, outFile, Status.FAILED, millis, error);
+		}
+		return new Result(inFile, outFile, Status.RENDERED, millis, null);
+	}
+
+	static String describe(DiagramError error) {
+		DiagramDataProvider provider = error.getProvider();
+		if (provider instanceof TextHandler) {
+			return error.getMessage() + " (line "
+					+ ((TextHandler) provider).getLineNumber() + ")";
+		}
+		return error.getMessage();
+	}
+
+	/**
+	 * Prints a report with one line per input file and a summary.
+	 * 
+	 * @param results
+	 *            the results of {@linkplain #render()}
+	 * @param millis
+	 *            the total number of milliseconds rendering took
+	 * @param out
+	 *            the stream to print the report to
+	 */
+	public void printReport(List<Result> results, long millis, PrintStream out) {
+		int[] count = new int[Status.values().length];
+		for (Result result : results) {
+			count[result.getStatus().ordinal()]++;
+			switch (result.getStatus()) {
+			case RENDERED:
+				out.printf("rendered   %6d ms  %s -> %s%n", result.getMillis(),
+						result.getInput(), result.getOutput());
+				break;
+			case UP_TO_DATE:
+				out.printf("up to date            %s%n", result.getInput());
+				break;
+			case FAILED:
+				out.printf("FAILED     %6d ms  %s: %s%n", result.getMillis(),
+						result.getInput(), result.getError());
+				break;
+			}
+		}
+		out.printf("%d file(s): %d rendered, %d up to date, %d failed "
+				+ "(%d ms, %d thread(s))%n", results.size(),
+				count[Status.RENDERED.ordinal()],
+				count[Status.UP_TO_DATE.ordinal()],
+				count[Status.FAILED.ordinal()], millis, threads);
+		if (cache != null) {
+			out.println(cache);
+		}
+	}
+
+	/**
+	 * Renders a single diagram file. If a cache is given, the output is taken
+	 * from the cache if possible, otherwise it is stored there. Without a
+	 * cache, a plain diagram file (<tt>.sd</tt>) is not loaded into memory,
+	 * but read while the diagram is generated (see
+	 * {@linkplain FileDataProviderFactory}), so it may be of any size.
+	 * 
+	 * @param inFile
+	 *            the diagram file (<tt>.sd</tt> or <tt>.sdx</tt>)
+	 * @param outFile
+	 *            the file to be created
+	 * @param type
+	 *            one of {ps, pdf, emf, svg, png, gif, jpg, bmp}
+	 * @param orientation
+	 *            one of {Portrait, Landscape}
+	 * @param format
+	 *            one of {A0, ..., A6}
+	 * @param properties
+	 *            values of diagram preferences that override the ones of the
+	 *            diagram file, see {@linkplain #setProperties(Map)}
+	 * @param cache
+	 *            the cache to be used, or <tt>null</tt>
+	 * @throws IOException
+	 * @throws XMLException
+	 * @throws DiagramError
+	 */
+	public static void renderFile(File inFile, File outFile, String type,
+			String orientation, String format, Map<String, String> properties,
+			RenderCache cache) throws IOException, XMLException, DiagramError {
+		String encoding = ConfigurationManager.getGlobalConfiguration()
+				.getFileEncoding();
+		if (cache == null && FileDataProviderFactory.isPlain(inFile, encoding)) {
+			Bean<? extends Configuration> conf = ConfigurationManager
+					.createNewDefaultConfiguration(SequenceConfiguration.class);
+			configure(conf, properties);
+			FileDataProviderFactory providers = new FileDataProviderFactory(
+					inFile, encoding);
+			OutputStream out = new FileOutputStream(outFile);
+			try {
+				render(null, providers, conf, type, orientation, format, out);
+				out.flush();
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			} finally {
+				providers.close();
+				out.close();
+			}
+			return;
+		}
+		Pair<String, Bean<? extends Configuration>> pair;
+		InputStream in = new FileInputStream(inFile);
+		try {
+			pair = new DiagramFileHandler().load(in, encoding);
+		} finally {
+			in.close();
+		}
+		String text = pair.getFirst();
+		Bean<? extends Configuration> conf = pair.getSecond();
+		configure(conf, properties);
+		byte[] data = null;
+		String key = null;
+		if (cache != null) {
+			key = RenderCache.getKey(text, conf, type, orientation, format);
+			data = cache.get(key);
+			if (data == null) {
+				ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+				render(text, null, conf, type, orientation, format, buffer);
+				data = buffer.toByteArray();
+				cache.put(key, data);
+			}
+		}
+		OutputStream out = new FileOutputStream(outFile);
+		try {
+			if (data != null) {
+				out.write(data);
+			} else {
+				render(text, null, conf, type, orientation, format, out);
+			}
+			out.flush();
+		} finally {
+			out.close();
+		}
+	}
+
+	/*
+	 * The diagram is specified either by a text or by the factory of the
+	 * providers that read it.
+	 */
+	private static void render(String text,
+			DiagramDataProviderFactory providers,
+			Bean<? extends Configuration> conf, String type,
+			String orientation, String format, OutputStream out)
+			throws IOException, DiagramError {
+		if (type.equals("png")) {
+			StripedPNGGraphicsDevice graphicDevice = new StripedPNGGraphicsDevice();
+			SDPaintDevice paintDevice = new SDPaintDevice(graphicDevice);
+			DiagramFactory factory = newFactory(text, providers, paintDevice);
+			factory.generateDiagram(conf.getDataObject());
+			graphicDevice.writeToStream(out);
+		} else {
+			Exporter graphicDevice = Exporter.getExporter(type, orientation,
+					format, out);
+			SDPaintDevice paintDevice = new SDPaintDevice(graphicDevice);
+			DiagramFactory factory = newFactory(text, providers, paintDevice);
+			factory.generateDiagram(conf.getDataObject());
+			graphicDevice.export();
+		}
+	}
+
+	private static DiagramFactory newFactory(String text,
+			DiagramDataProviderFactory providers, SDPaintDevice paintDevice) {
+		if (text == null) {
+			return new SequenceDiagramFactory(providers, paintDevice);
+		}
+		return new SequenceDiagramFactory(text, paintDevice);
+	}
+
+	/*
+	 * Overrides the values of the given diagram preferences. Throws an
+	 * IllegalArgumentException with a message that can be shown to the user
+	 * if there is no such preference or if a value cannot be converted.
+	 */
+	static void configure(Bean<? extends Configuration> conf,
+			Map<String, String> properties) {
+		for (Map.Entry<String, String> entry : properties.entrySet()) {
+			PropertyDescriptor property = conf.getProperty(entry.getKey());
+			if (property == null) {
+				throw new IllegalArgumentException("unknown preference: "
+						+ entry.getKey());
+			}
+			Object value;
+			try {
+				value = ObjectFactory.createFromString(
+						property.getPropertyType(), entry.getValue());
+			} catch (RuntimeException e) {
+				throw new IllegalArgumentException("illegal value for "
+						+ entry.getKey() + ": " + entry.getValue(), e);
+			}
+			conf.setValue(property, value);
+		}
+	}
+
+}
@@ -28,11 +28,16 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics2D;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Properties;
 
+import net.sf.sdedit.diagram.RenderTimes;
+import net.sf.sdedit.diagram.RenderTimes.Phase;
+import net.sf.sdedit.jfr.FlightEvents;
 import net.sf.sdedit.ui.G2DGraphicsDevice;
+import net.sf.sdedit.util.CountingOutputStream;
 import net.sf.sdedit.util.Utilities;
 
 import org.freehep.graphics2d.VectorGraphics;
@@ -41,7 +46,6 @@ import org.freehep.graphicsio.emf.EMFGraphics2D;
 import org.freehep.graphicsio.gif.GIFGraphics2D;
 import org.freehep.graphicsio.pdf.PDFGraphics2D;
 import org.freehep.graphicsio.ps.PSGraphics2D;
-import org.freehep.graphicsio.svg.SVGGraphics2D;
 
 
 /**
@@ -52,18 +56,22 @@ import org.freehep.graphicsio.svg.SVGGraphics2D;
  */
 public class Exporter extends G2DGraphicsDevice {
 	
-    private OutputStream stream;
+    private CountingOutputStream stream;
 
     private String type;
 
     private VectorGraphics vg;
 
+    private SVGGraphics svg;
+
     private String orientation;
 
     private String format;
 
     private Dimension dim;
 
+    private String idPrefix = SVGGraphics.DEFAULT_PREFIX;
+
     public Exporter(String orientation, String format) {
         super();
         this.orientation = orientation;
@@ -122,8 +130,6 @@ public class Exporter extends G2DGraphicsDevice {
             vectorGraphics = ps;
         } else if (type.equals("emf")) {
             vectorGraphics = new EMFGraphics2D(stream, dim);
-        } else if (type.equals("svg")) {
-            vectorGraphics = new SVGGraphics2D(stream, dim);
         } else {
             throw new IllegalArgumentException("Unknown type: " + type);
         }
@@ -133,7 +139,12 @@ public class Exporter extends G2DGraphicsDevice {
     @Override
     protected Graphics2D createDummyGraphics() {
         dim = new Dimension(1, 1);
-        VectorGraphics dummy = getGraphics();
+        Graphics2D dummy;
+        if (type.equals("svg")) {
+            dummy = new SVGGraphics(new ByteArrayOutputStream(), 1, 1);
+        } else {
+            dummy = getGraphics();
+        }
         Font font = getFont();
         dummy.setFont(font);
         return dummy;
@@ -142,6 +153,11 @@ public class Exporter extends G2DGraphicsDevice {
     @Override
     protected Graphics2D createGraphics() {
         dim = new Dimension(getWidth(), getHeight());
+        if (type.equals("svg")) {
+            // written directly, without freehep's SVGGraphics2D
+            svg = new SVGGraphics(stream, getWidth(), getHeight(), idPrefix);
+            return svg;
+        }
         vg = getGraphics();
         if (vg instanceof ImageGraphics2D) {
             vg.setColor(Color.WHITE);
@@ -151,7 +167,18 @@ public class Exporter extends G2DGraphicsDevice {
     }
 
     protected void setOutputStream(OutputStream stream) {
-        this.stream = stream;
+        this.stream = new CountingOutputStream(stream);
+    }
+
+    /**
+     * Sets the prefix of the names of the classes and the ids in an SVG
+     * document (see {@linkplain SVGGraphics}).
+     * 
+     * @param idPrefix
+     *            the prefix of the names of the classes and the ids
+     */
+    public void setIdPrefix(String idPrefix) {
+        this.idPrefix = idPrefix;
     }
 
     protected void setType(String type) {
@@ -159,6 +186,27 @@ public class Exporter extends G2DGraphicsDevice {
     }
 
     public void export() {
+        long start = System.nanoTime();
+        FlightEvents events = FlightEvents.get();
+        Object event = events.beginExport();
+        long written = stream.getCount();
+        if (svg != null) {
+            svg.startExport();
+            drawAll();
+            svg.endExport();
+        } else {
+            exportVectorGraphics();
+        }
+        events.endExport(event, type, stream.getCount() - written,
+                getDisplayList() == null ? drawables() : getDisplayList()
+                        .getExtents());
+        RenderTimes times = getRenderTimes();
+        if (times != null) {
+            times.recordSince(Phase.EXPORT, start);
+        }
+    }
+
+    private void exportVectorGraphics() {
         vg.startExport();
         if (vg instanceof PSGraphics2D && "ps".equals(type)) {
             try {
@@ -21,129 +21,385 @@
 // CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
 // ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
 // THE POSSIBILITY OF SUCH DAMAGE.
-
 package net.sf.sdedit.server;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
-import javax.swing.SwingUtilities;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import net.sf.sdedit.Constants;
 import net.sf.sdedit.config.ConfigurationManager;
 import net.sf.sdedit.config.SequenceConfiguration;
 import net.sf.sdedit.editor.Editor;
 import net.sf.sdedit.ui.impl.DiagramTextTab;
-import net.sf.sdedit.util.Grep;
 
-public class RealtimeServer extends Thread implements Constants {
-	
-	private ServerSocket serverSocket;
+/**
+ * The <tt>RealtimeServer</tt> accepts connections from clients that send
+ * diagram specifications line by line. Each connection gets a tab of its own,
+ * titled by the first line that is received, into which the following lines
+ * are entered by a {@linkplain Receiver}.
+ * <p>
+ * All connections are served by the server's thread, using a selector and
+ * non-blocking channels. Received lines are entered in batches, which are
+ * limited by the {@linkplain #getBatchDelay() batch delay} and the
+ * {@linkplain #getMaxBatchLines() maximal number of lines}.
+ * <p>
+ * While it is running, the server is registered as an MBean with the platform
+ * MBean server, under the name
+ * <tt>net.sf.sdedit:type=RealtimeServer,port=</tt><i>port</i>, so its
+ * counters can be inspected and its batching can be tuned with
+ * <tt>jconsole</tt> or any other JMX client.
+ * 
+ * @author Markus Strauch
+ */
+public class RealtimeServer extends Thread implements Constants,
+		RealtimeServerMBean {
+
+	/**
+	 * The default time in milliseconds that received lines may be held back
+	 * to be entered together with the following ones.
+	 */
+	public static final int DEFAULT_BATCH_DELAY = 100;
+
+	/**
+	 * The default number of lines that make a batch be entered immediately.
+	 */
+	public static final int DEFAULT_MAX_BATCH_LINES = 1000;
+
+	/**
+	 * The default number of received lines that may wait to be entered into a
+	 * busy tab before the server stops reading from the client.
+	 */
+	public static final int DEFAULT_MAX_PENDING_LINES = 10000;
+
+	/**
+	 * The interval in milliseconds in which a busy tab is polled.
+	 */
+	static final int POLL_INTERVAL = 20;
+
+	private final ServerSocketChannel serverChannel;
+
+	private final Selector selector;
 
 	private Editor editor;
 
-	private List<Receiver> receivers;
+	private final List<Receiver> receivers;
+
+	private volatile boolean shutDown;
+
+	private volatile int batchDelay = DEFAULT_BATCH_DELAY;
+
+	private volatile int maxBatchLines = DEFAULT_MAX_BATCH_LINES;
+
+	private volatile int maxPendingLines = DEFAULT_MAX_PENDING_LINES;
 
-	private boolean shutDown;
+	private final AtomicLong acceptedConnections = new AtomicLong();
+
+	private final AtomicLong openConnections = new AtomicLong();
+
+	private final AtomicLong receivedBytes = new AtomicLong();
+
+	private final AtomicLong receivedLines = new AtomicLong();
+
+	private final AtomicLong deliveredBatches = new AtomicLong();
+
+	private final AtomicLong deliveredLines = new AtomicLong();
+
+	private final AtomicLong pauses = new AtomicLong();
+
+	private ObjectName objectName;
 
 	public RealtimeServer(int port, Editor editor) throws IOException {
-		serverSocket = new ServerSocket(port);
+		super("RealtimeServer-Thread");
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		try {
+			serverChannel.socket().bind(new InetSocketAddress(port));
+			serverChannel.configureBlocking(false);
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			serverChannel.close();
+			selector.close();
+			throw e;
+		}
 		this.editor = editor;
 		receivers = new LinkedList<Receiver>();
 	}
 
 	public void shutDown() {
 		shutDown = true;
+		selector.wakeup();
+	}
+
+	public int getPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	public int getBatchDelay() {
+		return batchDelay;
+	}
+
+	/**
+	 * Sets the time in milliseconds that received lines may be held back to
+	 * be entered together with the following ones.
+	 * 
+	 * @param batchDelay
+	 *            the batch delay in milliseconds
+	 */
+	public void setBatchDelay(int batchDelay) {
+		this.batchDelay = batchDelay;
+		selector.wakeup();
+	}
+
+	public int getMaxBatchLines() {
+		return maxBatchLines;
+	}
+
+	/**
+	 * Sets the number of lines that make a batch be entered without waiting
+	 * for the batch delay to pass.
+	 * 
+	 * @param maxBatchLines
+	 *            the maximal number of lines of a batch
+	 */
+	public void setMaxBatchLines(int maxBatchLines) {
+		this.maxBatchLines = maxBatchLines;
+		selector.wakeup();
+	}
+
+	public int getMaxPendingLines() {
+		return maxPendingLines;
+	}
+
+	/**
+	 * Sets the number of received lines that may wait to be entered into a
+	 * tab that is busy before the server stops reading from the client
+	 * until the tab has caught up.
+	 * 
+	 * @param maxPendingLines
+	 *            the maximal number of lines waiting to be entered
+	 */
+	public void setMaxPendingLines(int maxPendingLines) {
+		this.maxPendingLines = maxPendingLines;
+	}
+
+	/**
+	 * Returns the number of connections that have been accepted.
+	 * 
+	 * @return the number of connections that have been accepted
+	 */
+	public long getAcceptedConnections() {
+		return acceptedConnections.get();
+	}
+
+	/**
+	 * Returns the number of connections that are currently open.
+	 * 
+	 * @return the number of open connections
+	 */
+	public long getOpenConnections() {
+		return openConnections.get();
+	}
+
+	/**
+	 * Returns the number of bytes received from all clients.
+	 * 
+	 * @return the number of bytes received
+	 */
+	public long getReceivedBytes() {
+		return receivedBytes.get();
+	}
+
+	/**
+	 * Returns the number of lines received from all clients, not counting the
+	 * first lines, which contain the titles.
+	 * 
+	 * @return the number of lines received
+	 */
+	public long getReceivedLines() {
+		return receivedLines.get();
+	}
+
+	/**
+	 * Returns the number of batches that have been entered into tabs.
+	 * 
+	 * @return the number of batches entered
+	 */
+	public long getDeliveredBatches() {
+		return deliveredBatches.get();
+	}
+
+	/**
+	 * Returns the number of lines that have been entered into tabs.
+	 * 
+	 * @return the number of lines entered
+	 */
+	public long getDeliveredLines() {
+		return deliveredLines.get();
+	}
+
+	/**
+	 * Returns how often the server has stopped reading from a client because
+	 * its tab could not keep up.
+	 * 
+	 * @return the number of times reading has been paused
+	 */
+	public long getPauses() {
+		return pauses.get();
+	}
+
+	void received(int bytes) {
+		receivedBytes.addAndGet(bytes);
+	}
+
+	void receivedLine() {
+		receivedLines.incrementAndGet();
+	}
+
+	void delivered(int lines) {
+		deliveredBatches.incrementAndGet();
+		deliveredLines.addAndGet(lines);
+	}
+
+	void paused() {
+		pauses.incrementAndGet();
+	}
+
+	private void register() {
 		try {
-			serverSocket.close();
-		} catch (IOException e) {
-			/* empty */
+			ObjectName on = new ObjectName(
+					"net.sf.sdedit:type=RealtimeServer,port=" + getPort());
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(on)) {
+				server.unregisterMBean(on);
+			}
+			server.registerMBean(this, on);
+			objectName = on;
+		} catch (JMException e) {
+			e.printStackTrace();
 		}
-		for (Receiver receiver : receivers) {
-			receiver.shutDown();
+	}
+
+	private void unregister() {
+		if (objectName == null) {
+			return;
 		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException e) {
+			e.printStackTrace();
+		}
+		objectName = null;
 	}
 
-	public int getPort() {
-		if (serverSocket == null) {
-			return 0;
+	void wakeup() {
+		selector.wakeup();
+	}
+
+	/*
+	 * Must be called on the event dispatch thread.
+	 */
+	DiagramTextTab createTab(String title) {
+		return (DiagramTextTab) editor.getUI().addSequenceDiagramTextTab(title,
+				ConfigurationManager.createNewDefaultConfiguration(SequenceConfiguration.class), true);
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
 		}
-		return serverSocket.getLocalPort();
-	}
-
-	private void createReceiver(final Socket socket) throws IOException {
-		InputStream stream = socket.getInputStream();
-		final BufferedReader reader = new BufferedReader(new InputStreamReader(
-				stream, ConfigurationManager.getGlobalConfiguration().getFileEncoding()));
-		String line = reader.readLine();
-		if (line != null) {
-			final BufferedReader decodingReader;
-			final String title;
-			line = line.trim();
-			String[] parts = new Grep(Grep.NO_UNESCAPE).parse("^(.*)\\[(.*)\\]$", line);
-			if (parts != null) {
-				String enc = parts[1];
-				title = parts[0];
-				BufferedReader theReader = null;
-				try {
-					theReader = new BufferedReader(new InputStreamReader(
-							stream, enc));
-				} catch (Exception failed) {
-					failed.printStackTrace();
-					theReader = null;
-				}
-				decodingReader = theReader == null ? reader : theReader;
-			} else {
-				title = line;
-				decodingReader = reader;
-			}
-			if (title.length() > 0) {
-				SwingUtilities.invokeLater(new Runnable() {
-					public void run() {
-						DiagramTextTab tab = (DiagramTextTab) editor.getUI().addSequenceDiagramTextTab(title,
-								ConfigurationManager.createNewDefaultConfiguration(SequenceConfiguration.class), true);
-						Receiver receiver = new Receiver(tab,
-								decodingReader, socket);
-						receivers.add(receiver);
-						Thread receiverThread = new Thread(receiver);
-						receiverThread.setDaemon(true);
-						receiverThread.start();
-					}
-				});
+		channel.configureBlocking(false);
+		SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+		Receiver receiver = new Receiver(this, channel, key,
+				ConfigurationManager.getGlobalConfiguration().getFileEncoding());
+		key.attach(receiver);
+		receivers.add(receiver);
+		acceptedConnections.incrementAndGet();
+		openConnections.incrementAndGet();
+	}
+
+	/*
+	 * Delivers the batches that are due, closes the connections that are
+	 * done and returns the time to wait for the next selection.
+	 */
+	private long deliver() {
+		long now = System.currentTimeMillis();
+		long next = Long.MAX_VALUE;
+		Iterator<Receiver> iterator = receivers.iterator();
+		while (iterator.hasNext()) {
+			Receiver receiver = iterator.next();
+			next = Math.min(next, receiver.deliver(now));
+			if (receiver.isDone()) {
+				receiver.shutDown();
+				iterator.remove();
+				openConnections.decrementAndGet();
 			}
 		}
+		return next == Long.MAX_VALUE ? 0 : Math.max(1, next - now);
 	}
 
 	public void run() {
-		Socket socket;
-		while (true) {
-			try {
-				socket = serverSocket.accept();
-			} catch (IOException e) {
-				if (shutDown) {
-					return;
+		register();
+		try {
+			while (!shutDown) {
+				selector.select(deliver());
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						try {
+							accept();
+						} catch (IOException e) {
+							editor.getUI().errorMessage(e, null,
+									"Exception caught while establishing a connection to a client.");
+						}
+					} else if (key.isReadable()) {
+						Receiver receiver = (Receiver) key.attachment();
+						try {
+							receiver.read();
+						} catch (IOException e) {
+							// the client has gone, deliver what has been
+							// received before
+							receiver.abort();
+						}
+					}
 				}
-				editor
-						.getUI()
-						.errorMessage(e,null,
-								"Exception caught while waiting for a client to be connected.");
-				return;
 			}
-
+		} catch (IOException e) {
+			if (!shutDown) {
+				editor.getUI().errorMessage(e, null,
+						"Exception caught while waiting for a client to be connected.");
+			}
+		} finally {
+			for (Receiver receiver : receivers) {
+				receiver.shutDown();
+			}
+			receivers.clear();
+			openConnections.set(0);
+			unregister();
 			try {
-				createReceiver(socket);
-			} catch (Exception e) {
-				editor
-						.getUI()
-						.errorMessage(e,null,
-								"Exception caught while establishing a connection to a client.");
+				serverChannel.close();
+				selector.close();
+			} catch (IOException e) {
+				/* empty */
 			}
 		}
 	}
-}
\ No newline at end of file
+}
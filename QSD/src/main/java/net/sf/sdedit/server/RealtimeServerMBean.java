@@ -0,0 +1,63 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.server;
+
+/**
+ * The management interface of {@linkplain RealtimeServer}, through which its
+ * connection and throughput counters can be read and its batching can be
+ * tuned while it is running.
+ * 
+ * @author Markus Strauch
+ */
+public interface RealtimeServerMBean {
+
+	public int getPort();
+
+	public int getBatchDelay();
+
+	public void setBatchDelay(int batchDelay);
+
+	public int getMaxBatchLines();
+
+	public void setMaxBatchLines(int maxBatchLines);
+
+	public int getMaxPendingLines();
+
+	public void setMaxPendingLines(int maxPendingLines);
+
+	public long getAcceptedConnections();
+
+	public long getOpenConnections();
+
+	public long getReceivedBytes();
+
+	public long getReceivedLines();
+
+	public long getDeliveredBatches();
+
+	public long getDeliveredLines();
+
+	public long getPauses();
+
+}
@@ -21,129 +21,341 @@
 // CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
 // ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
 // THE POSSIBILITY OF SUCH DAMAGE.
-
 package net.sf.sdedit.server;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.net.Socket;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import javax.swing.SwingUtilities;
 
+import net.sf.sdedit.jfr.FlightEvents;
 import net.sf.sdedit.ui.UserInterface;
-import net.sf.sdedit.ui.components.DelayedActivity;
 import net.sf.sdedit.ui.impl.DiagramTextTab;
+import net.sf.sdedit.util.Grep;
 
 /**
  * A <tt>Receiver</tt> receives a diagram specification through a TCP socket.
  * The received code will be entered into the text area of some tab in the
  * {@linkplain UserInterface}.
+ * <p>
+ * A <tt>Receiver</tt> does not have a thread of its own. The
+ * {@linkplain RealtimeServer} calls {@linkplain #read()} when data is
+ * available on the socket, and {@linkplain #deliver(long)} regularly. Lines
+ * are not entered one by one, but collected into batches, which are entered
+ * when they have become large enough or old enough and the tab has finished
+ * rendering the previous ones. While a tab cannot keep up, the receiver stops
+ * reading from its socket, so the client is slowed down by TCP flow control.
  * 
  * @author Markus Strauch
  * 
  */
-public class Receiver implements Runnable
-{
+public class Receiver {
+
 	private static final String RESET_STRING = "@RESET";
+
 	private static final String END_CONNECTION = "end";
-	
-    private BufferedReader reader;
-
-    private int delay = 100;
-
-    private Socket socket;
-
-    private boolean shutDown;
-
-    private DelayedActivity waiter;
-
-    private StringBuffer appendBuffer;
-
-    /**
-     * Creates a new Receiver.
-     * 
-     * @param editor
-     *            the control editor
-     * @param tabTitle
-     *            the name of the title where the code that is received through
-     *            the socket is to be entered
-     * @param reader
-     *            a reader for the socket's input stream, ready to read
-     * @param socket
-     *            the socket
-     */
-    public Receiver(final DiagramTextTab tab,
-            BufferedReader reader, Socket socket) {
-        this.reader = reader;
-        this.socket = socket;
-        shutDown = false;
-        appendBuffer = new StringBuffer();
-        waiter = new DelayedActivity()
-        {
-        	@Override
-            protected int getDelay() {
-                return delay;
-            }
-
-        	@Override
-            protected void perform() {
-        		// If the RESET_STRING is found then clear the diagram
-        		// 
-        		if( appendBuffer.toString().trim().equals(RESET_STRING) ){
-        			tab.clear();
-        		}
-        		else{
-        			tab.append(appendBuffer.toString());
-        		}
-        		appendBuffer.setLength(0);
-            }
-        };
-        waiter.start();
-    }
-
-    /**
-     * Closes the socket of this <tt>Receiver</tt>.
-     */
-    public void shutDown() {
-        shutDown = true;
-        try {
-            socket.close();
-        } catch (IOException e) {
-        	/* empty */
-        }
-    }
-
-    /**
-     * Calls <tt>readLine</tt> on the socket's reader, collects the received
-     * lines and notifies the <tt>waiter</tt> each time a new line has been
-     * received.
-     */
-    public void run() {
-        try {
-            String line;
-            do {
-                line = reader.readLine();
-                if (line != null) {
-                    line = line.trim();
-                    if (line.toLowerCase().equals(END_CONNECTION)) {
-                        return;
-                    }
-                    synchronized (waiter) {
-                        appendBuffer.append(line + "\n");
-                    }
-                    waiter.indicateChange();
-                }
-            } while (line != null);
-        } catch (Exception e) {
-            if (!shutDown) {
-                e.printStackTrace();
-            }
-        } finally {
-            if (!socket.isClosed()) {
-                try {
-                    socket.close();
-                } catch (IOException ex) {
-                    ex.printStackTrace();
-                }
-            }
-        }
-    }
+
+	/**
+	 * The maximal length of the first line, which contains the title of the
+	 * tab and optionally the encoding of the following lines.
+	 */
+	private static final int MAX_HEADER_LENGTH = 4096;
+
+	private final RealtimeServer server;
+
+	private final SocketChannel channel;
+
+	private final SelectionKey key;
+
+	private final ByteBuffer bytes;
+
+	private final CharBuffer chars;
+
+	private ByteArrayOutputStream header;
+
+	private CharsetDecoder decoder;
+
+	private final StringBuilder line;
+
+	private final StringBuilder batch;
+
+	private int batchLines;
+
+	private long batchStart;
+
+	private boolean reset;
+
+	private boolean ended;
+
+	private boolean paused;
+
+	private volatile DiagramTextTab tab;
+
+	/**
+	 * Flag denoting if a batch has been handed to the event dispatch thread
+	 * and has not yet been entered into the tab.
+	 */
+	private volatile boolean delivering;
+
+	/**
+	 * Creates a new Receiver.
+	 * 
+	 * @param server
+	 *            the server that has accepted the connection
+	 * @param channel
+	 *            the (non-blocking) channel of the connection
+	 * @param key
+	 *            the key of the channel, registered with the server's
+	 *            selector
+	 * @param encoding
+	 *            the encoding of the first line
+	 */
+	Receiver(RealtimeServer server, SocketChannel channel, SelectionKey key,
+			String encoding) {
+		this.server = server;
+		this.channel = channel;
+		this.key = key;
+		bytes = ByteBuffer.allocate(8192);
+		chars = CharBuffer.allocate(8192);
+		header = new ByteArrayOutputStream();
+		decoder = newDecoder(encoding);
+		line = new StringBuilder();
+		batch = new StringBuilder();
+	}
+
+	private static CharsetDecoder newDecoder(String encoding) {
+		return Charset.forName(encoding).newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	/**
+	 * Reads the data that is available on the socket, until there is no more
+	 * data or the number of lines waiting to be entered has reached the
+	 * server's limit.
+	 * 
+	 * @throws IOException
+	 *             if the socket cannot be read
+	 */
+	void read() throws IOException {
+		while (!ended && !paused) {
+			int n = channel.read(bytes);
+			if (n < 0) {
+				bytes.flip();
+				decode(true);
+				bytes.clear();
+				ended = true;
+				break;
+			}
+			if (n == 0) {
+				break;
+			}
+			server.received(n);
+			bytes.flip();
+			if (header != null) {
+				readHeader();
+			}
+			if (header == null) {
+				decode(false);
+			}
+			bytes.compact();
+			if (batchLines >= server.getMaxPendingLines()) {
+				paused = true;
+				key.interestOps(0);
+				server.paused();
+			}
+		}
+		if (ended) {
+			key.interestOps(0);
+		}
+	}
+
+	/*
+	 * The first line is decoded separately, since it may name the encoding
+	 * of the following lines.
+	 */
+	private void readHeader() {
+		while (bytes.hasRemaining()) {
+			byte b = bytes.get();
+			if (b == '\n' || header.size() >= MAX_HEADER_LENGTH) {
+				String encoding = decoder.charset().name();
+				String text;
+				try {
+					text = header.toString(encoding).trim();
+				} catch (UnsupportedEncodingException e) {
+					// the decoder exists
+					throw new IllegalStateException(e);
+				}
+				header = null;
+				String[] parts = new Grep(Grep.NO_UNESCAPE).parse(
+						"^(.*)\\[(.*)\\]$", text);
+				final String title;
+				if (parts != null) {
+					title = parts[0];
+					try {
+						decoder = newDecoder(parts[1]);
+					} catch (Exception failed) {
+						failed.printStackTrace();
+					}
+				} else {
+					title = text;
+				}
+				if (title.length() == 0) {
+					ended = true;
+				} else {
+					SwingUtilities.invokeLater(new Runnable() {
+						public void run() {
+							tab = server.createTab(title);
+							server.wakeup();
+						}
+					});
+				}
+				return;
+			}
+			header.write(b);
+		}
+	}
+
+	private void decode(boolean endOfInput) {
+		if (header != null) {
+			return;
+		}
+		CoderResult result;
+		do {
+			result = decoder.decode(bytes, chars, endOfInput);
+			if (endOfInput && result.isUnderflow()) {
+				result = decoder.flush(chars);
+			}
+			chars.flip();
+			while (chars.hasRemaining()) {
+				char c = chars.get();
+				if (c == '\n') {
+					receive(line.toString().trim());
+					line.setLength(0);
+				} else {
+					line.append(c);
+				}
+			}
+			chars.clear();
+		} while (result.isOverflow());
+		if (endOfInput && line.length() > 0) {
+			receive(line.toString().trim());
+			line.setLength(0);
+		}
+	}
+
+	private void receive(String received) {
+		if (ended) {
+			return;
+		}
+		if (received.toLowerCase().equals(END_CONNECTION)) {
+			ended = true;
+			return;
+		}
+		server.receivedLine();
+		if (received.equals(RESET_STRING)) {
+			batch.setLength(0);
+			batchLines = 0;
+			reset = true;
+			return;
+		}
+		if (batchLines == 0) {
+			batchStart = System.currentTimeMillis();
+		}
+		batch.append(received).append('\n');
+		batchLines++;
+	}
+
+	/**
+	 * Enters the collected lines into the tab if they should not be collected
+	 * any longer and the tab is ready.
+	 * 
+	 * @param now
+	 *            the current time
+	 * @return the time when this method should be called again at the
+	 *         latest, <tt>Long.MAX_VALUE</tt> if there is no need to call it
+	 *         before more data has been received
+	 */
+	long deliver(long now) {
+		if (batchLines == 0 && !reset) {
+			return Long.MAX_VALUE;
+		}
+		if (tab == null || delivering || tab.getRenderer().isRendering(tab)) {
+			return now + RealtimeServer.POLL_INTERVAL;
+		}
+		if (!ended && batchLines < server.getMaxBatchLines()
+				&& now - batchStart < server.getBatchDelay()) {
+			return batchStart + server.getBatchDelay();
+		}
+		final DiagramTextTab theTab = tab;
+		final String text = batch.toString();
+		final boolean clear = reset;
+		final int lines = batchLines;
+		server.delivered(batchLines);
+		batch.setLength(0);
+		batchLines = 0;
+		reset = false;
+		delivering = true;
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				FlightEvents events = FlightEvents.get();
+				Object event = events.beginRealtimeBatch();
+				if (clear) {
+					theTab.clear();
+				}
+				if (text.length() > 0) {
+					theTab.append(text);
+				}
+				events.endRealtimeBatch(event, theTab.getTitle(), lines,
+						text.length(), clear);
+				delivering = false;
+				server.wakeup();
+			}
+		});
+		if (paused) {
+			paused = false;
+			key.interestOps(SelectionKey.OP_READ);
+		}
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * Stops receiving after the socket has failed. The lines received so far
+	 * are still entered.
+	 */
+	void abort() {
+		ended = true;
+		key.interestOps(0);
+	}
+
+	/**
+	 * Returns true if the client has ended the connection and everything
+	 * received has been entered into the tab (or there is no tab).
+	 * 
+	 * @return flag denoting if this receiver is done
+	 */
+	boolean isDone() {
+		return ended && !delivering && batchLines == 0 && !reset;
+	}
+
+	/**
+	 * Closes the socket of this <tt>Receiver</tt>.
+	 */
+	public void shutDown() {
+		key.cancel();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			/* empty */
+		}
+	}
 }
@@ -0,0 +1,425 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.server;
+
+import java.awt.Color;
+import java.beans.PropertyDescriptor;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.sdedit.config.Configuration;
+import net.sf.sdedit.ui.components.configuration.Bean;
+
+/**
+ * A <tt>RenderCache</tt> stores exported diagrams in a local directory, so
+ * unchanged diagrams need not be rendered again. An entry is addressed by a
+ * hash of everything the output depends on: the diagram text (with normalized
+ * line ends), the values of the diagram configuration, the output type and
+ * the page format and orientation (see
+ * {@linkplain #getKey(String, Bean, String, String, String)}).
+ * <p>
+ * The total size of the entries is bounded. When it is exceeded, the least
+ * recently used entries are removed. Entries are written atomically, so a
+ * directory can be shared by several threads and processes.
+ * <p>
+ * A cache never makes rendering fail: if it cannot be read or written, it
+ * behaves as if it were empty.
+ * 
+ * @author Markus Strauch
+ */
+public class RenderCache {
+
+	/**
+	 * The name of the system property that specifies the directory of the
+	 * default cache. If it is not set, there is no default cache.
+	 */
+	public static final String DIRECTORY_PROPERTY = "sdedit.cache";
+
+	/**
+	 * The name of the system property that specifies the maximal size of the
+	 * default cache in megabytes.
+	 */
+	public static final String SIZE_PROPERTY = "sdedit.cacheSize";
+
+	/**
+	 * The name of the system property that, when set to <tt>true</tt>, makes
+	 * the statistics of the default cache be printed to <tt>System.err</tt>
+	 * when the virtual machine exits.
+	 */
+	public static final String REPORT_PROPERTY = "sdedit.cacheReport";
+
+	/**
+	 * The default maximal size of a cache in megabytes.
+	 */
+	public static final int DEFAULT_SIZE = 64;
+
+	/*
+	 * Must be changed when the output for a given key changes, i. e. when the
+	 * way diagrams are drawn changes.
+	 */
+	private static final String FORMAT = "4";
+
+	private static final Charset UTF8 = Charset.forName("utf-8");
+
+	private static RenderCache defaultCache;
+
+	private static boolean defaultCacheInitialized;
+
+	private final File directory;
+
+	private final long maxSize;
+
+	/*
+	 * Maps the names of the cached files onto their sizes, least recently
+	 * used first.
+	 */
+	private final LinkedHashMap<String, Long> entries;
+
+	private long size;
+
+	private long hits;
+
+	private long misses;
+
+	private long stores;
+
+	private long evictions;
+
+	/**
+	 * Creates a new <tt>RenderCache</tt> using the given directory. Its
+	 * maximal size is specified by the system property {@value #SIZE_PROPERTY}
+	 * (in megabytes), or {@value #DEFAULT_SIZE} megabytes if it is not set.
+	 * 
+	 * @param directory
+	 *            the directory where the entries are stored, it is created if
+	 *            it does not exist
+	 * @throws IOException
+	 *             if the directory cannot be created
+	 */
+	public RenderCache(File directory) throws IOException {
+		this(directory, Long.getLong(SIZE_PROPERTY, DEFAULT_SIZE) * 1024 * 1024);
+	}
+
+	/**
+	 * Creates a new <tt>RenderCache</tt> using the given directory. Entries
+	 * already present in the directory are reused.
+	 * 
+	 * @param directory
+	 *            the directory where the entries are stored, it is created if
+	 *            it does not exist
+	 * @param maxSize
+	 *            the maximal total size of the entries in bytes
+	 * @throws IOException
+	 *             if the directory cannot be created
+	 */
+	public RenderCache(File directory, long maxSize) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("cannot create cache directory " + directory);
+		}
+		this.directory = directory;
+		this.maxSize = maxSize;
+		entries = new LinkedHashMap<String, Long>(16, 0.75F, true);
+		File[] files = directory.listFiles();
+		if (files != null) {
+			List<File> list = new ArrayList<File>(Arrays.asList(files));
+			Collections.sort(list, new Comparator<File>() {
+				public int compare(File f1, File f2) {
+					long t1 = f1.lastModified();
+					long t2 = f2.lastModified();
+					return t1 < t2 ? -1 : (t1 == t2 ? 0 : 1);
+				}
+			});
+			for (File file : list) {
+				if (isEntry(file.getName())) {
+					entries.put(file.getName(), file.length());
+					size += file.length();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the cache specified by the system properties
+	 * {@value #DIRECTORY_PROPERTY} and {@value #SIZE_PROPERTY}, or
+	 * <tt>null</tt> if there is no such cache. If the system property
+	 * {@value #REPORT_PROPERTY} is <tt>true</tt>, the statistics of the cache
+	 * are printed to <tt>System.err</tt> when the virtual machine exits.
+	 * 
+	 * @return the default cache, or <tt>null</tt>
+	 */
+	public static synchronized RenderCache getDefault() {
+		if (!defaultCacheInitialized) {
+			defaultCacheInitialized = true;
+			String dir = System.getProperty(DIRECTORY_PROPERTY);
+			if (dir != null && dir.length() > 0) {
+				try {
+					defaultCache = new RenderCache(new File(dir));
+				} catch (IOException e) {
+					System.err.println("Warning: cannot use render cache ("
+							+ e.getMessage() + ")");
+					return null;
+				}
+				if (Boolean.getBoolean(REPORT_PROPERTY)) {
+					Runtime.getRuntime().addShutdownHook(new Thread() {
+						@Override
+						public void run() {
+							System.err.println(defaultCache);
+						}
+					});
+				}
+			}
+		}
+		return defaultCache;
+	}
+
+	/**
+	 * Computes the key of a diagram.
+	 * 
+	 * @param text
+	 *            the diagram text
+	 * @param configuration
+	 *            the configuration of the diagram
+	 * @param type
+	 *            the output type
+	 * @param orientation
+	 *            the page orientation
+	 * @param format
+	 *            the page format
+	 * @return the key of the diagram
+	 */
+	public static String getKey(String text,
+			Bean<? extends Configuration> configuration, String type,
+			String orientation, String format) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		StringBuffer buffer = new StringBuffer();
+		buffer.append(FORMAT).append('\n');
+		buffer.append(RenderCache.class.getPackage().getImplementationVersion())
+				.append('\n');
+		buffer.append(type).append('\n').append(orientation).append('\n')
+				.append(format).append('\n');
+		List<String> names = new ArrayList<String>();
+		for (PropertyDescriptor property : configuration.getProperties()) {
+			names.add(property.getName());
+		}
+		Collections.sort(names);
+		for (String name : names) {
+			Object value = configuration.getValue(name);
+			buffer.append(name).append('=');
+			if (value instanceof Color) {
+				// Color.toString() ignores the alpha value
+				buffer.append(Integer.toHexString(((Color) value).getRGB()));
+			} else {
+				buffer.append(value);
+			}
+			buffer.append('\n');
+		}
+		buffer.append('\n').append(normalize(text));
+		byte[] hash = digest.digest(buffer.toString().getBytes(UTF8));
+		StringBuffer key = new StringBuffer();
+		for (byte b : hash) {
+			key.append(Character.forDigit((b >> 4) & 0xf, 16));
+			key.append(Character.forDigit(b & 0xf, 16));
+		}
+		return key.append('.').append(type.toLowerCase()).toString();
+	}
+
+	private static String normalize(String text) {
+		if (text.length() > 0 && text.charAt(0) == '\uFEFF') {
+			text = text.substring(1);
+		}
+		return text.replace("\r\n", "\n").replace('\r', '\n');
+	}
+
+	private static boolean isEntry(String name) {
+		int dot = name.indexOf('.');
+		if (dot != 64 || name.indexOf('.', dot + 1) >= 0) {
+			return false;
+		}
+		for (int i = 0; i < dot; i++) {
+			if (Character.digit(name.charAt(i), 16) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the cached output for the given key, or <tt>null</tt> if there
+	 * is none.
+	 * 
+	 * @param key
+	 *            a key, see
+	 *            {@linkplain #getKey(String, Bean, String, String, String)}
+	 * @return the cached output, or <tt>null</tt>
+	 */
+	public byte[] get(String key) {
+		File file = new File(directory, key);
+		byte[] data;
+		try {
+			data = Files.readAllBytes(file.toPath());
+		} catch (IOException e) {
+			data = null;
+		}
+		synchronized (this) {
+			if (data == null) {
+				misses++;
+				Long length = entries.remove(key);
+				if (length != null) {
+					// removed by another process
+					size -= length;
+				}
+				return null;
+			}
+			hits++;
+			if (entries.get(key) == null) {
+				// stored by another process
+				entries.put(key, (long) data.length);
+				size += data.length;
+			}
+		}
+		// other processes use the modification time for ordering the entries
+		file.setLastModified(System.currentTimeMillis());
+		return data;
+	}
+
+	/**
+	 * Stores output in the cache. Afterwards, the least recently used entries
+	 * are removed until the size of the cache does not exceed the maximal
+	 * size any longer.
+	 * 
+	 * @param key
+	 *            a key, see
+	 *            {@linkplain #getKey(String, Bean, String, String, String)}
+	 * @param data
+	 *            the output
+	 */
+	public void put(String key, byte[] data) {
+		if (data.length > maxSize) {
+			return;
+		}
+		File file = new File(directory, key);
+		try {
+			File tmp = File.createTempFile("render", ".tmp", directory);
+			try {
+				OutputStream out = new FileOutputStream(tmp);
+				try {
+					out.write(data);
+				} finally {
+					out.close();
+				}
+				try {
+					Files.move(tmp.toPath(), file.toPath(),
+							StandardCopyOption.REPLACE_EXISTING,
+							StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(tmp.toPath(), file.toPath(),
+							StandardCopyOption.REPLACE_EXISTING);
+				}
+			} finally {
+				tmp.delete();
+			}
+		} catch (IOException e) {
+			return;
+		}
+		List<String> evicted = new ArrayList<String>();
+		synchronized (this) {
+			stores++;
+			Long length = entries.put(key, (long) data.length);
+			size += data.length - (length == null ? 0 : length);
+			Iterator<Map.Entry<String, Long>> iterator = entries.entrySet()
+					.iterator();
+			while (size > maxSize && iterator.hasNext()) {
+				Map.Entry<String, Long> entry = iterator.next();
+				if (!entry.getKey().equals(key)) {
+					evicted.add(entry.getKey());
+					size -= entry.getValue();
+					evictions++;
+					iterator.remove();
+				}
+			}
+		}
+		for (String name : evicted) {
+			new File(directory, name).delete();
+		}
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getStores() {
+		return stores;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Returns the total size of the cached outputs in bytes.
+	 * 
+	 * @return the total size of the cached outputs in bytes
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "render cache " + directory + ": " + hits + " hit(s), "
+				+ misses + " miss(es), " + stores + " stored, " + evictions
+				+ " evicted, " + size / 1024 + " of " + maxSize / 1024
+				+ " KB used";
+	}
+
+}
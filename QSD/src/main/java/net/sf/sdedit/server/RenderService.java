@@ -0,0 +1,633 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sf.sdedit.config.Configuration;
+import net.sf.sdedit.diagram.DiagramFactory;
+import net.sf.sdedit.diagram.SDPaintDevice;
+import net.sf.sdedit.diagram.SequenceDiagramFactory;
+import net.sf.sdedit.editor.DiagramFileHandler;
+import net.sf.sdedit.error.DiagramError;
+import net.sf.sdedit.ui.StripedPNGGraphicsDevice;
+import net.sf.sdedit.ui.components.configuration.Bean;
+import net.sf.sdedit.util.DocUtil.XMLException;
+import net.sf.sdedit.util.LatencyHistogram;
+import net.sf.sdedit.util.Pair;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A <tt>RenderService</tt> renders diagrams on behalf of HTTP clients, using
+ * the HTTP server built into the JDK. It has two endpoints:
+ * <dl>
+ * <dt><tt>POST /render</tt></dt>
+ * <dd>The request body is a diagram, either plain text or the XML format of
+ * <tt>.sdx</tt> files (the encoding is taken from the <tt>charset</tt>
+ * parameter of the <tt>Content-Type</tt> header, default is UTF-8). The
+ * query parameters <tt>type</tt> (one of {ps, pdf, emf, svg, png, gif, jpg,
+ * bmp}, default is png), <tt>orientation</tt> and <tt>format</tt> describe
+ * the output, all other query parameters are names of diagram preferences
+ * whose values override the ones of the diagram, as with the long options
+ * of the command line. The response is the exported diagram or a short
+ * plain text error description:
+ * <ul>
+ * <li>400 if the diagram or a parameter is erroneous,</li>
+ * <li>413 if the body exceeds {@linkplain #setMaxRequestSize(int)},</li>
+ * <li>503 if all workers are busy and the queue is full, or if the service
+ * is shutting down,</li>
+ * <li>504 if the diagram could not be rendered within
+ * {@linkplain #setTimeout(long)}.</li>
+ * </ul>
+ * </dd>
+ * <dt><tt>GET /status</tt></dt>
+ * <dd>A plain text report of the request counters and the latency
+ * histograms of the endpoints.</dd>
+ * </dl>
+ * Diagrams are rendered by a fixed number of worker threads with a bounded
+ * queue in front of them. The threads that handle the HTTP exchanges only
+ * read requests and write responses. Connections are kept alive as HTTP/1.1
+ * requires, the idle timeouts are the ones of the JDK's server (see the
+ * <tt>sun.net.httpserver.*</tt> system properties).
+ * <p>
+ * This class replaces the experimental <tt>DiagramServer</tt>, which used a
+ * line-based protocol over plain sockets.
+ * 
+ * @author Markus Strauch
+ */
+public class RenderService {
+
+	/**
+	 * The default number of requests that may wait for a worker.
+	 */
+	public static final int DEFAULT_QUEUE_SIZE = 64;
+
+	/**
+	 * The default maximal size of a request body in bytes.
+	 */
+	public static final int DEFAULT_MAX_REQUEST_SIZE = 1024 * 1024;
+
+	/**
+	 * The default time limit (in milliseconds) for a request, including the
+	 * time it waits for a worker.
+	 */
+	public static final long DEFAULT_TIMEOUT = 30000;
+
+	private static final Charset UTF8 = Charset.forName("utf-8");
+
+	private static final Map<String, String> CONTENT_TYPES;
+
+	static {
+		Map<String, String> types = new HashMap<String, String>();
+		types.put("ps", "application/postscript");
+		types.put("eps", "application/postscript");
+		types.put("pdf", "application/pdf");
+		types.put("emf", "image/emf");
+		types.put("svg", "image/svg+xml");
+		types.put("png", "image/png");
+		types.put("gif", "image/gif");
+		types.put("jpg", "image/jpeg");
+		types.put("bmp", "image/bmp");
+		CONTENT_TYPES = Collections.unmodifiableMap(types);
+	}
+
+	private final HttpServer server;
+
+	private final Map<String, LatencyHistogram> histograms;
+
+	private final AtomicLong rendered;
+
+	private final AtomicLong cached;
+
+	private final AtomicLong failed;
+
+	private final AtomicLong rejected;
+
+	private final AtomicLong timedOut;
+
+	private final AtomicLong tooLarge;
+
+	private int workers;
+
+	private int queueSize;
+
+	private int maxRequestSize;
+
+	private long timeout;
+
+	private RenderCache cache;
+
+	private ThreadPoolExecutor workerPool;
+
+	private ExecutorService handlerPool;
+
+	private volatile boolean draining;
+
+	/**
+	 * Creates a new <tt>RenderService</tt> bound to the given address. It
+	 * does not serve requests before {@linkplain #start()} is called.
+	 * 
+	 * @param address
+	 *            the address to listen at, the port may be 0, in which case
+	 *            an ephemeral port is chosen (see {@linkplain #getAddress()})
+	 * @throws IOException
+	 *             if the address cannot be bound
+	 */
+	public RenderService(InetSocketAddress address) throws IOException {
+		server = HttpServer.create(address, 0);
+		histograms = new LinkedHashMap<String, LatencyHistogram>();
+		histograms.put("render", new LatencyHistogram());
+		histograms.put("status", new LatencyHistogram());
+		rendered = new AtomicLong();
+		cached = new AtomicLong();
+		failed = new AtomicLong();
+		rejected = new AtomicLong();
+		timedOut = new AtomicLong();
+		tooLarge = new AtomicLong();
+		workers = Runtime.getRuntime().availableProcessors();
+		queueSize = DEFAULT_QUEUE_SIZE;
+		maxRequestSize = DEFAULT_MAX_REQUEST_SIZE;
+		timeout = DEFAULT_TIMEOUT;
+	}
+
+	/**
+	 * Returns the address the service is listening at.
+	 * 
+	 * @return the address the service is listening at
+	 */
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	/**
+	 * Sets the number of diagrams that are rendered simultaneously. Must be
+	 * called before {@linkplain #start()}.
+	 * 
+	 * @param workers
+	 *            the number of worker threads
+	 */
+	public void setWorkers(int workers) {
+		this.workers = Math.max(1, workers);
+	}
+
+	/**
+	 * Sets the number of requests that may wait for a worker. Further
+	 * requests are refused with status 503. Must be called before
+	 * {@linkplain #start()}.
+	 * 
+	 * @param queueSize
+	 *            the number of requests that may wait for a worker
+	 */
+	public void setQueueSize(int queueSize) {
+		this.queueSize = Math.max(1, queueSize);
+	}
+
+	/**
+	 * Sets the maximal size of a request body in bytes.
+	 * 
+	 * @param maxRequestSize
+	 *            the maximal size of a request body in bytes
+	 */
+	public void setMaxRequestSize(int maxRequestSize) {
+		this.maxRequestSize = maxRequestSize;
+	}
+
+	/**
+	 * Sets the time limit for rendering a diagram, including the time the
+	 * request waits for a worker. When it is exceeded, the generation of the
+	 * diagram is cancelled and the request fails with status 504.
+	 * 
+	 * @param timeout
+	 *            the time limit in milliseconds
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Sets the cache that is consulted before a diagram is rendered.
+	 * 
+	 * @param cache
+	 *            the cache, or <tt>null</tt> if no cache is to be used
+	 */
+	public void setCache(RenderCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Returns the latency histogram of an endpoint.
+	 * 
+	 * @param endpoint
+	 *            one of {render, status}
+	 * @return the latency histogram of the endpoint, or <tt>null</tt> if
+	 *         there is no such endpoint
+	 */
+	public LatencyHistogram getHistogram(String endpoint) {
+		return histograms.get(endpoint);
+	}
+
+	/**
+	 * Starts the worker threads and begins to serve requests.
+	 */
+	public void start() {
+		workerPool = new ThreadPoolExecutor(workers, workers, 0,
+				TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(
+						queueSize), threadFactory("Worker"));
+		handlerPool = Executors.newCachedThreadPool(threadFactory("Handler"));
+		server.createContext("/render", new Endpoint("render") {
+			@Override
+			void serve(HttpExchange exchange) throws IOException {
+				render(exchange);
+			}
+		});
+		server.createContext("/status", new Endpoint("status") {
+			@Override
+			void serve(HttpExchange exchange) throws IOException {
+				status(exchange);
+			}
+		});
+		server.setExecutor(handlerPool);
+		server.start();
+	}
+
+	/**
+	 * Stops the service. New connections are no longer accepted and new
+	 * render requests are refused, while requests that are already being
+	 * processed are given the chance to complete.
+	 * 
+	 * @param delay
+	 *            the maximal number of seconds to wait for running requests
+	 */
+	public void shutDown(int delay) {
+		draining = true;
+		server.stop(delay);
+		if (workerPool != null) {
+			workerPool.shutdownNow();
+			handlerPool.shutdownNow();
+		}
+	}
+
+	private static ThreadFactory threadFactory(final String kind) {
+		return new ThreadFactory() {
+			private final AtomicInteger number = new AtomicInteger();
+
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable);
+				thread.setDaemon(true);
+				thread.setName("RenderService-" + kind + "-"
+						+ number.incrementAndGet());
+				return thread;
+			}
+		};
+	}
+
+	private void render(HttpExchange exchange) throws IOException {
+		long deadline = System.nanoTime() + timeout * 1000000;
+		if (!"POST".equals(exchange.getRequestMethod())) {
+			exchange.getResponseHeaders().set("Allow", "POST");
+			respond(exchange, 405, "method not allowed, use POST");
+			return;
+		}
+		if (draining) {
+			respond(exchange, 503, "shutting down");
+			return;
+		}
+		Map<String, String> parameters = getParameters(exchange);
+		String type = remove(parameters, "type", "png").toLowerCase();
+		String orientation = remove(parameters, "orientation", "Portrait");
+		String format = remove(parameters, "format", "A4").toUpperCase();
+		if (!CONTENT_TYPES.containsKey(type)) {
+			failed.incrementAndGet();
+			respond(exchange, 400, "unknown type: " + type);
+			return;
+		}
+		byte[] body = readBody(exchange);
+		if (body == null) {
+			tooLarge.incrementAndGet();
+			respond(exchange, 413, "request exceeds " + maxRequestSize
+					+ " bytes");
+			return;
+		}
+		Pair<String, Bean<? extends Configuration>> pair;
+		try {
+			pair = new DiagramFileHandler().load(
+					new ByteArrayInputStream(body), getCharset(exchange));
+		} catch (XMLException e) {
+			failed.incrementAndGet();
+			respond(exchange, 400, "malformed diagram file: " + e.getMessage());
+			return;
+		}
+		String text = pair.getFirst();
+		Bean<? extends Configuration> conf = pair.getSecond();
+		try {
+			BatchRenderer.configure(conf, parameters);
+		} catch (IllegalArgumentException e) {
+			failed.incrementAndGet();
+			respond(exchange, 400, e.getMessage());
+			return;
+		}
+		String key = null;
+		if (cache != null) {
+			key = RenderCache.getKey(text, conf, type, orientation, format);
+			byte[] data = cache.get(key);
+			if (data != null) {
+				cached.incrementAndGet();
+				respond(exchange, 200, CONTENT_TYPES.get(type), data);
+				return;
+			}
+		}
+		Job job = new Job(text, conf, type, orientation, format);
+		Future<byte[]> future;
+		try {
+			future = workerPool.submit(job);
+		} catch (RejectedExecutionException e) {
+			rejected.incrementAndGet();
+			exchange.getResponseHeaders().set("Retry-After", "1");
+			respond(exchange, 503, draining ? "shutting down"
+					: "too many requests");
+			return;
+		}
+		byte[] data;
+		try {
+			data = future.get(Math.max(0, deadline - System.nanoTime()),
+					TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			job.cancel();
+			future.cancel(false);
+			timedOut.incrementAndGet();
+			respond(exchange, 504, "rendering exceeded " + timeout + " ms");
+			return;
+		} catch (InterruptedException e) {
+			job.cancel();
+			future.cancel(false);
+			Thread.currentThread().interrupt();
+			respond(exchange, 503, "shutting down");
+			return;
+		} catch (ExecutionException e) {
+			failed.incrementAndGet();
+			Throwable cause = e.getCause();
+			if (cause instanceof DiagramError) {
+				respond(exchange, 400,
+						BatchRenderer.describe((DiagramError) cause));
+			} else {
+				respond(exchange, 500, cause.getClass().getSimpleName()
+						+ ": " + cause.getMessage());
+			}
+			return;
+		}
+		rendered.incrementAndGet();
+		if (cache != null) {
+			cache.put(key, data);
+		}
+		respond(exchange, 200, CONTENT_TYPES.get(type), data);
+	}
+
+	private void status(HttpExchange exchange) throws IOException {
+		StringWriter buffer = new StringWriter();
+		PrintWriter writer = new PrintWriter(buffer);
+		writer.printf("workers: %d (%d active, %d queued, %d max queued)%n",
+				workers, workerPool.getActiveCount(), workerPool.getQueue()
+						.size(), queueSize);
+		writer.printf("rendered: %d%n", rendered.get());
+		writer.printf("from cache: %d%n", cached.get());
+		writer.printf("failed: %d%n", failed.get());
+		writer.printf("rejected: %d%n", rejected.get());
+		writer.printf("timed out: %d%n", timedOut.get());
+		writer.printf("too large: %d%n", tooLarge.get());
+		for (Map.Entry<String, LatencyHistogram> entry : histograms
+				.entrySet()) {
+			writer.printf("/%s: %s%n", entry.getKey(), entry.getValue());
+			entry.getValue().printBuckets(writer);
+		}
+		if (cache != null) {
+			writer.println(cache);
+		}
+		writer.flush();
+		respond(exchange, 200, "text/plain; charset=utf-8", buffer.toString()
+				.getBytes(UTF8));
+	}
+
+	/*
+	 * Returns the body of the request, or null if it is larger than
+	 * maxRequestSize. In that case, the remainder is not read, the server
+	 * closes the connection after the response.
+	 */
+	private byte[] readBody(HttpExchange exchange) throws IOException {
+		String length = exchange.getRequestHeaders().getFirst("Content-Length");
+		if (length != null) {
+			try {
+				if (Long.parseLong(length.trim()) > maxRequestSize) {
+					return null;
+				}
+			} catch (NumberFormatException ignored) {
+				/* the length is checked while reading */
+			}
+		}
+		InputStream in = exchange.getRequestBody();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int n;
+		while ((n = in.read(buffer)) > 0) {
+			if (out.size() + n > maxRequestSize) {
+				return null;
+			}
+			out.write(buffer, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	private static String getCharset(HttpExchange exchange) {
+		String contentType = exchange.getRequestHeaders().getFirst(
+				"Content-Type");
+		if (contentType != null) {
+			for (String parameter : contentType.split(";")) {
+				parameter = parameter.trim();
+				if (parameter.toLowerCase().startsWith("charset=")) {
+					String charset = parameter.substring(8).replace("\"", "");
+					if (Charset.isSupported(charset)) {
+						return charset;
+					}
+				}
+			}
+		}
+		return "utf-8";
+	}
+
+	private static Map<String, String> getParameters(HttpExchange exchange)
+			throws IOException {
+		Map<String, String> parameters = new LinkedHashMap<String, String>();
+		String query = exchange.getRequestURI().getRawQuery();
+		if (query != null) {
+			for (String pair : query.split("&")) {
+				if (pair.length() > 0) {
+					int eq = pair.indexOf('=');
+					String name = eq < 0 ? pair : pair.substring(0, eq);
+					String value = eq < 0 ? "" : pair.substring(eq + 1);
+					parameters.put(URLDecoder.decode(name, "utf-8"),
+							URLDecoder.decode(value, "utf-8"));
+				}
+			}
+		}
+		return parameters;
+	}
+
+	private static String remove(Map<String, String> parameters, String name,
+			String defaultValue) {
+		String value = parameters.remove(name);
+		return value == null || value.length() == 0 ? defaultValue : value;
+	}
+
+	private static void respond(HttpExchange exchange, int status,
+			String message) throws IOException {
+		respond(exchange, status, "text/plain; charset=utf-8",
+				(message + "\n").getBytes(UTF8));
+	}
+
+	private static void respond(HttpExchange exchange, int status,
+			String contentType, byte[] data) throws IOException {
+		Headers headers = exchange.getResponseHeaders();
+		headers.set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, data.length == 0 ? -1
+				: data.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(data);
+		out.flush();
+	}
+
+	/*
+	 * Measures the latency of each exchange and makes sure it is closed.
+	 */
+	private abstract class Endpoint implements HttpHandler {
+
+		private final LatencyHistogram histogram;
+
+		Endpoint(String name) {
+			histogram = histograms.get(name);
+		}
+
+		abstract void serve(HttpExchange exchange) throws IOException;
+
+		public void handle(HttpExchange exchange) throws IOException {
+			long start = System.nanoTime();
+			try {
+				serve(exchange);
+			} finally {
+				exchange.close();
+				histogram.record(System.nanoTime() - start);
+			}
+		}
+	}
+
+	/*
+	 * Renders a diagram into a byte array, so a response can be sent with a
+	 * content length and nothing is sent if rendering fails.
+	 */
+	private static class Job implements Callable<byte[]> {
+
+		private final String text;
+
+		private final Bean<? extends Configuration> conf;
+
+		private final String type;
+
+		private final String orientation;
+
+		private final String format;
+
+		private volatile DiagramFactory factory;
+
+		private volatile boolean cancelled;
+
+		Job(String text, Bean<? extends Configuration> conf, String type,
+				String orientation, String format) {
+			this.text = text;
+			this.conf = conf;
+			this.type = type;
+			this.orientation = orientation;
+			this.format = format;
+		}
+
+		void cancel() {
+			cancelled = true;
+			DiagramFactory current = factory;
+			if (current != null) {
+				current.cancel();
+			}
+		}
+
+		private void generate(SDPaintDevice paintDevice) throws DiagramError {
+			factory = new SequenceDiagramFactory(text, paintDevice);
+			if (cancelled) {
+				factory.cancel();
+			}
+			factory.generateDiagram(conf.getDataObject());
+		}
+
+		public byte[] call() throws IOException, DiagramError {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			if (type.equals("png")) {
+				StripedPNGGraphicsDevice graphicDevice = new StripedPNGGraphicsDevice();
+				generate(new SDPaintDevice(graphicDevice));
+				graphicDevice.writeToStream(out);
+			} else {
+				Exporter graphicDevice = Exporter.getExporter(type,
+						orientation, format, out);
+				generate(new SDPaintDevice(graphicDevice));
+				graphicDevice.export();
+			}
+			return out.toByteArray();
+		}
+	}
+
+}
@@ -0,0 +1,1409 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.server;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Paint;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.text.AttributedCharacterIterator;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+/**
+ * An <tt>SVGGraphics</tt> is a graphics context that writes what is drawn
+ * into it as an SVG document, straight to an output stream. Each operation
+ * becomes one element: lines, rectangles and ellipses become the
+ * corresponding SVG elements, strings become <tt>&lt;text&gt;</tt> elements.
+ * The styles (stroke, fill, font) become CSS classes that the elements
+ * share. Polygons and other paths (relative to their first point) are
+ * referenced by <tt>&lt;use&gt;</tt> elements, so the arrow heads of a
+ * sequence diagram are defined only once per kind. Clips only become clip
+ * paths where they cut something off. The classes, shapes and clip paths are
+ * defined at the end of the document, in a single <tt>&lt;defs&gt;</tt>
+ * element with a single <tt>&lt;style&gt;</tt> element.
+ * <p>
+ * The names of the classes and the ids start with a prefix, which is
+ * {@value #DEFAULT_PREFIX} unless another one is given. Documents that are
+ * embedded into the same HTML page share the styles and ids, so they must
+ * have different prefixes, see {@linkplain SVGPage}. The prefix does not
+ * depend on anything but the arguments, so the same diagram always gives the
+ * same document.
+ * <p>
+ * The document is started by {@linkplain #startExport()} and finished (and
+ * the stream closed) by {@linkplain #endExport()}. Errors when writing are
+ * thrown as <tt>UncheckedIOException</tt>s.
+ * 
+ * @author Markus Strauch
+ */
+public class SVGGraphics extends Graphics2D {
+
+    /**
+     * The prefix of the names of the classes and the ids if no other one is
+     * given.
+     */
+    public static final String DEFAULT_PREFIX = "sd-";
+
+    private final Document document;
+
+    private Paint paint;
+
+    private Color color;
+
+    private Stroke stroke;
+
+    private Font font;
+
+    private Composite composite;
+
+    private Color background;
+
+    private RenderingHints hints;
+
+    private AffineTransform transform;
+
+    // in the coordinates of the document, null if there is no clip
+    private Shape clip;
+
+    // the classes for the current state, null if not known yet
+    private String strokeClass;
+
+    private String fillClass;
+
+    private String textClass;
+
+    // true if the current element is wrapped in a group with a clip path
+    private boolean wrapped;
+
+    /**
+     * Creates a new <tt>SVGGraphics</tt>.
+     * 
+     * @param stream
+     *            the stream to write the document to
+     * @param width
+     *            the width of the document
+     * @param height
+     *            the height of the document
+     */
+    public SVGGraphics(OutputStream stream, int width, int height) {
+        this(stream, width, height, DEFAULT_PREFIX);
+    }
+
+    /**
+     * Creates a new <tt>SVGGraphics</tt> writing a document that can be
+     * embedded into an HTML page along with documents having other prefixes.
+     * 
+     * @param stream
+     *            the stream to write the document to
+     * @param width
+     *            the width of the document
+     * @param height
+     *            the height of the document
+     * @param prefix
+     *            the prefix of the names of the classes and the ids, a name
+     *            that ends with a hyphen
+     */
+    public SVGGraphics(OutputStream stream, int width, int height,
+            String prefix) {
+        document = new Document(stream, width, height, prefix);
+        color = Color.BLACK;
+        paint = color;
+        stroke = new BasicStroke();
+        font = new Font(Font.DIALOG, Font.PLAIN, 12);
+        composite = AlphaComposite.SrcOver;
+        background = Color.WHITE;
+        hints = new RenderingHints(null);
+        transform = new AffineTransform();
+    }
+
+    private SVGGraphics(SVGGraphics parent) {
+        document = parent.document;
+        color = parent.color;
+        paint = parent.paint;
+        stroke = parent.stroke;
+        font = parent.font;
+        composite = parent.composite;
+        background = parent.background;
+        hints = (RenderingHints) parent.hints.clone();
+        transform = new AffineTransform(parent.transform);
+        clip = parent.clip;
+        strokeClass = parent.strokeClass;
+        fillClass = parent.fillClass;
+        textClass = parent.textClass;
+    }
+
+    /**
+     * Writes the beginning of the document.
+     */
+    public void startExport() {
+        document.start();
+    }
+
+    /**
+     * Writes the end of the document and closes the stream.
+     */
+    public void endExport() {
+        document.end();
+    }
+
+    /*
+     * The shared part of all graphics contexts writing into the same
+     * document.
+     */
+    private static final class Document {
+
+        private final Writer out;
+
+        private final int width;
+
+        private final int height;
+
+        private final StringBuilder element = new StringBuilder();
+
+        private final StringBuilder other = new StringBuilder();
+
+        // the prefix of the class names and ids
+        private final String prefix;
+
+        // the rules of the style sheet
+        private final StringBuilder styles = new StringBuilder();
+
+        // the shapes and clip paths
+        private final StringBuilder definitions = new StringBuilder();
+
+        private final Map<String, String> classes = new HashMap<String, String>();
+
+        private final Map<String, String> shapes = new HashMap<String, String>();
+
+        private final Map<String, String> clips = new HashMap<String, String>();
+
+        private final Map<Font, FontMetrics> metrics = new HashMap<Font, FontMetrics>();
+
+        private final Graphics2D scratch;
+
+        Document(OutputStream stream, int width, int height, String prefix) {
+            try {
+                out = new BufferedWriter(new OutputStreamWriter(stream,
+                        "UTF-8"), 1 << 16);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.width = width;
+            this.height = height;
+            this.prefix = prefix;
+            scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB)
+                    .createGraphics();
+        }
+
+        void write(CharSequence text) {
+            try {
+                out.append(text);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void start() {
+            other.setLength(0);
+            other.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            other.append("<svg xmlns=\"http://www.w3.org/2000/svg\"");
+            other.append(" xmlns:xlink=\"http://www.w3.org/1999/xlink\"");
+            other.append(" version=\"1.1\" width=\"").append(width);
+            other.append("\" height=\"").append(height);
+            other.append("\" viewBox=\"0 0 ").append(width).append(' ');
+            other.append(height).append("\" xml:space=\"preserve\">\n");
+            write(other);
+        }
+
+        void end() {
+            other.setLength(0);
+            if (styles.length() > 0 || definitions.length() > 0) {
+                other.append("<defs>\n");
+                if (styles.length() > 0) {
+                    other.append("<style type=\"text/css\">\n");
+                    other.append(styles).append("</style>\n");
+                }
+                other.append(definitions).append("</defs>\n");
+            }
+            other.append("</svg>\n");
+            write(other);
+            scratch.dispose();
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /*
+         * Returns the class with the given style, defining it first if it is
+         * new.
+         */
+        String styleClass(String style) {
+            String name = classes.get(style);
+            if (name == null) {
+                name = prefix + "s" + classes.size();
+                classes.put(style, name);
+                styles.append('.').append(name);
+                styles.append('{').append(style).append("}\n");
+            }
+            return name;
+        }
+
+        /*
+         * Returns the id of a shape with the given geometry (an attribute of
+         * the given element), defining it first if it is new.
+         */
+        String shape(String element, String attribute, String geometry) {
+            String key = element + geometry;
+            String id = shapes.get(key);
+            if (id == null) {
+                id = prefix + "g" + shapes.size();
+                shapes.put(key, id);
+                definitions.append('<').append(element).append(" id=\"");
+                definitions.append(id).append("\" ").append(attribute);
+                definitions.append("=\"").append(geometry).append("\"/>\n");
+            }
+            return id;
+        }
+
+        /*
+         * Returns the id of a clip path for the given clip (in the
+         * coordinates of the document), defining it first if it is new.
+         */
+        String clipPath(Shape clip) {
+            StringBuilder geometry = new StringBuilder();
+            String element;
+            if (clip instanceof Rectangle2D) {
+                Rectangle2D r = (Rectangle2D) clip;
+                element = "rect";
+                geometry.append("x=\"");
+                number(geometry, r.getX()).append("\" y=\"");
+                number(geometry, r.getY()).append("\" width=\"");
+                number(geometry, r.getWidth()).append("\" height=\"");
+                number(geometry, r.getHeight()).append('"');
+            } else {
+                element = "path";
+                geometry.append("d=\"");
+                path(geometry, clip, 0, 0).append('"');
+            }
+            String key = geometry.toString();
+            String id = clips.get(key);
+            if (id == null) {
+                id = prefix + "c" + clips.size();
+                clips.put(key, id);
+                definitions.append("<clipPath id=\"").append(id);
+                definitions.append("\"><").append(element).append(' ');
+                definitions.append(key).append("/></clipPath>\n");
+            }
+            return id;
+        }
+
+        FontMetrics getFontMetrics(Font font) {
+            FontMetrics fm = metrics.get(font);
+            if (fm == null) {
+                fm = scratch.getFontMetrics(font);
+                metrics.put(font, fm);
+            }
+            return fm;
+        }
+    }
+
+    /*
+     * Appends a number with at most three decimal places.
+     */
+    private static StringBuilder number(StringBuilder sb, double d) {
+        long thousandths = Math.round(d * 1000);
+        if (thousandths < 0) {
+            sb.append('-');
+            thousandths = -thousandths;
+        }
+        sb.append(thousandths / 1000);
+        int fraction = (int) (thousandths % 1000);
+        if (fraction != 0) {
+            sb.append('.');
+            if (fraction < 100) {
+                sb.append('0');
+            }
+            if (fraction < 10) {
+                sb.append('0');
+            }
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+            }
+            sb.append(fraction);
+        }
+        return sb;
+    }
+
+    private static StringBuilder attribute(StringBuilder sb, String name,
+            double value) {
+        sb.append(' ').append(name).append("=\"");
+        return number(sb, value).append('"');
+    }
+
+    /*
+     * Appends the path data of a shape, relative to the given origin.
+     */
+    private static StringBuilder path(StringBuilder sb, Shape shape,
+            double x0, double y0) {
+        double[] c = new double[6];
+        boolean first = true;
+        for (PathIterator i = shape.getPathIterator(null); !i.isDone(); i
+                .next()) {
+            if (!first) {
+                sb.append(' ');
+            }
+            first = false;
+            int type = i.currentSegment(c);
+            int points;
+            switch (type) {
+            case PathIterator.SEG_MOVETO:
+                sb.append('M');
+                points = 1;
+                break;
+            case PathIterator.SEG_LINETO:
+                sb.append('L');
+                points = 1;
+                break;
+            case PathIterator.SEG_QUADTO:
+                sb.append('Q');
+                points = 2;
+                break;
+            case PathIterator.SEG_CUBICTO:
+                sb.append('C');
+                points = 3;
+                break;
+            default:
+                sb.append('Z');
+                points = 0;
+            }
+            for (int p = 0; p < points; p++) {
+                if (p > 0) {
+                    sb.append(' ');
+                }
+                number(sb, c[2 * p] - x0).append(',');
+                number(sb, c[2 * p + 1] - y0);
+            }
+        }
+        return sb;
+    }
+
+    private static StringBuilder color(StringBuilder sb, Color color) {
+        sb.append('#');
+        String hex = Integer.toHexString(color.getRGB() & 0xffffff);
+        for (int i = hex.length(); i < 6; i++) {
+            sb.append('0');
+        }
+        return sb.append(hex);
+    }
+
+    private static String family(Font font) {
+        String family = font.getFamily();
+        if (Font.DIALOG.equals(family) || Font.SANS_SERIF.equals(family)) {
+            return "sans-serif";
+        }
+        if (Font.SERIF.equals(family)) {
+            return "serif";
+        }
+        if (Font.MONOSPACED.equals(family)
+                || Font.DIALOG_INPUT.equals(family)) {
+            return "monospace";
+        }
+        return "'" + family.replace("'", "") + "', sans-serif";
+    }
+
+    private void opacity(StringBuilder sb, String property, Color color) {
+        if (color.getAlpha() < 255) {
+            sb.append(';').append(property).append(':');
+            number(sb, color.getAlpha() / 255D);
+        }
+        if (composite instanceof AlphaComposite
+                && ((AlphaComposite) composite).getAlpha() < 1F) {
+            sb.append(";opacity:");
+            number(sb, ((AlphaComposite) composite).getAlpha());
+        }
+    }
+
+    private String strokeClass() {
+        if (strokeClass == null) {
+            StringBuilder sb = new StringBuilder("fill:none;stroke:");
+            color(sb, color);
+            opacity(sb, "stroke-opacity", color);
+            if (stroke instanceof BasicStroke) {
+                BasicStroke bs = (BasicStroke) stroke;
+                sb.append(";stroke-width:");
+                number(sb, bs.getLineWidth());
+                if (bs.getEndCap() == BasicStroke.CAP_SQUARE) {
+                    sb.append(";stroke-linecap:square");
+                } else if (bs.getEndCap() == BasicStroke.CAP_ROUND) {
+                    sb.append(";stroke-linecap:round");
+                }
+                if (bs.getLineJoin() == BasicStroke.JOIN_ROUND) {
+                    sb.append(";stroke-linejoin:round");
+                } else if (bs.getLineJoin() == BasicStroke.JOIN_BEVEL) {
+                    sb.append(";stroke-linejoin:bevel");
+                } else {
+                    sb.append(";stroke-miterlimit:");
+                    number(sb, Math.max(1, bs.getMiterLimit()));
+                }
+                float[] dash = bs.getDashArray();
+                if (dash != null) {
+                    sb.append(";stroke-dasharray:");
+                    for (int i = 0; i < dash.length; i++) {
+                        if (i > 0) {
+                            sb.append(',');
+                        }
+                        number(sb, dash[i]);
+                    }
+                    if (bs.getDashPhase() != 0) {
+                        sb.append(";stroke-dashoffset:");
+                        number(sb, bs.getDashPhase());
+                    }
+                }
+            }
+            strokeClass = document.styleClass(sb.toString());
+        }
+        return strokeClass;
+    }
+
+    private String fillClass() {
+        if (fillClass == null) {
+            StringBuilder sb = new StringBuilder("fill:");
+            color(sb, color);
+            opacity(sb, "fill-opacity", color);
+            fillClass = document.styleClass(sb.toString());
+        }
+        return fillClass;
+    }
+
+    private String textClass() {
+        if (textClass == null) {
+            StringBuilder sb = new StringBuilder("font-family:");
+            sb.append(family(font)).append(";font-size:");
+            number(sb, font.getSize2D()).append("px");
+            if (font.isBold()) {
+                sb.append(";font-weight:bold");
+            }
+            if (font.isItalic()) {
+                sb.append(";font-style:italic");
+            }
+            sb.append(";fill:");
+            color(sb, color);
+            opacity(sb, "fill-opacity", color);
+            textClass = document.styleClass(sb.toString());
+        }
+        return textClass;
+    }
+
+    private void invalidateClasses() {
+        strokeClass = null;
+        fillClass = null;
+        textClass = null;
+    }
+
+    private boolean isTranslation() {
+        int type = transform.getType();
+        return type == AffineTransform.TYPE_IDENTITY
+                || type == AffineTransform.TYPE_TRANSLATION;
+    }
+
+    // the offset to add to the coordinates of an element
+    private double dx() {
+        return isTranslation() ? transform.getTranslateX() : 0;
+    }
+
+    private double dy() {
+        return isTranslation() ? transform.getTranslateY() : 0;
+    }
+
+    private double strokeMargin() {
+        if (stroke instanceof BasicStroke) {
+            return ((BasicStroke) stroke).getLineWidth() + 1;
+        }
+        return stroke.createStrokedShape(new Rectangle()).getBounds2D()
+                .getWidth() + 1;
+    }
+
+    /*
+     * Begins an element (with the given class, which may be null) that
+     * covers the given rectangle in user space, plus the margin. Returns
+     * false if the element is not visible due to the clip and must not be
+     * written.
+     */
+    private boolean open(String name, String cls, double x, double y,
+            double w, double h, double margin) {
+        Rectangle2D bounds = new Rectangle2D.Double(x - margin, y - margin, w
+                + 2 * margin, h + 2 * margin);
+        boolean translation = isTranslation();
+        if (translation) {
+            bounds.setRect(bounds.getX() + transform.getTranslateX(),
+                    bounds.getY() + transform.getTranslateY(),
+                    bounds.getWidth(), bounds.getHeight());
+        } else {
+            bounds = transform.createTransformedShape(bounds).getBounds2D();
+        }
+        String clipPath = null;
+        if (clip != null) {
+            if (!clip.intersects(bounds)) {
+                return false;
+            }
+            if (!clip.contains(bounds)) {
+                clipPath = document.clipPath(clip);
+            }
+        }
+        StringBuilder sb = document.element;
+        sb.setLength(0);
+        // the clip path refers to the user space of the element
+        wrapped = clipPath != null && !translation;
+        if (wrapped) {
+            sb.append("<g clip-path=\"url(#").append(clipPath).append(")\">");
+        }
+        sb.append('<').append(name);
+        if (cls != null) {
+            sb.append(" class=\"").append(cls).append('"');
+        }
+        if (clipPath != null && !wrapped) {
+            sb.append(" clip-path=\"url(#").append(clipPath).append(")\"");
+        }
+        if (!translation) {
+            double[] m = new double[6];
+            transform.getMatrix(m);
+            sb.append(" transform=\"matrix(");
+            for (int i = 0; i < 6; i++) {
+                if (i > 0) {
+                    sb.append(' ');
+                }
+                number(sb, m[i]);
+            }
+            sb.append(")\"");
+        }
+        return true;
+    }
+
+    private void close() {
+        StringBuilder sb = document.element;
+        sb.append("/>");
+        if (wrapped) {
+            sb.append("</g>");
+        }
+        sb.append('\n');
+        document.write(sb);
+    }
+
+    private void close(String name, String content) {
+        StringBuilder sb = document.element;
+        sb.append('>');
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            switch (c) {
+            case '&':
+                sb.append("&amp;");
+                break;
+            case '<':
+                sb.append("&lt;");
+                break;
+            case '>':
+                sb.append("&gt;");
+                break;
+            default:
+                // characters that are not allowed in XML are left out
+                if (c >= ' ' && c != '\ufffe' && c != '\uffff'
+                        || c == '\t') {
+                    sb.append(c);
+                }
+            }
+        }
+        sb.append("</").append(name).append('>');
+        if (wrapped) {
+            sb.append("</g>");
+        }
+        sb.append('\n');
+        document.write(sb);
+    }
+
+    /*
+     * Writes a polygon or path as a reference to its definition.
+     */
+    private void use(String element, String attribute, String geometry,
+            String cls, double x0, double y0, Rectangle2D bounds,
+            double margin) {
+        String id = document.shape(element, attribute, geometry);
+        if (open("use", cls, bounds.getX(), bounds.getY(),
+                bounds.getWidth(), bounds.getHeight(), margin)) {
+            StringBuilder sb = document.element;
+            sb.append(" xlink:href=\"#").append(id).append('"');
+            attribute(sb, "x", x0 + dx());
+            attribute(sb, "y", y0 + dy());
+            close();
+        }
+    }
+
+    private void polygon(String element, int[] xPoints, int[] yPoints,
+            int nPoints, String cls, double margin) {
+        if (nPoints <= 0) {
+            return;
+        }
+        StringBuilder geometry = new StringBuilder();
+        int x0 = xPoints[0];
+        int y0 = yPoints[0];
+        int minX = x0, minY = y0, maxX = x0, maxY = y0;
+        for (int i = 0; i < nPoints; i++) {
+            if (i > 0) {
+                geometry.append(' ');
+            }
+            geometry.append(xPoints[i] - x0).append(',')
+                    .append(yPoints[i] - y0);
+            minX = Math.min(minX, xPoints[i]);
+            maxX = Math.max(maxX, xPoints[i]);
+            minY = Math.min(minY, yPoints[i]);
+            maxY = Math.max(maxY, yPoints[i]);
+        }
+        use(element, "points", geometry.toString(), cls, x0, y0,
+                new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY),
+                margin);
+    }
+
+    private void shape(Shape s, boolean fill) {
+        String cls = fill ? fillClass() : strokeClass();
+        double margin = fill ? 0 : strokeMargin();
+        if (s instanceof Line2D) {
+            Line2D l = (Line2D) s;
+            line(l.getX1(), l.getY1(), l.getX2(), l.getY2(), cls, margin);
+            return;
+        }
+        if (s instanceof Rectangle2D) {
+            Rectangle2D r = (Rectangle2D) s;
+            rect(r.getX(), r.getY(), r.getWidth(), r.getHeight(), 0, 0, cls,
+                    margin);
+            return;
+        }
+        if (s instanceof RoundRectangle2D) {
+            RoundRectangle2D r = (RoundRectangle2D) s;
+            rect(r.getX(), r.getY(), r.getWidth(), r.getHeight(),
+                    r.getArcWidth(), r.getArcHeight(), cls, margin);
+            return;
+        }
+        if (s instanceof Ellipse2D) {
+            Ellipse2D e = (Ellipse2D) s;
+            ellipse(e.getX(), e.getY(), e.getWidth(), e.getHeight(), cls,
+                    margin);
+            return;
+        }
+        if (s instanceof Polygon) {
+            Polygon p = (Polygon) s;
+            polygon("polygon", p.xpoints, p.ypoints, p.npoints, cls, margin);
+            return;
+        }
+        PathIterator i = s.getPathIterator(null);
+        if (i.isDone()) {
+            return;
+        }
+        double[] c = new double[6];
+        i.currentSegment(c);
+        StringBuilder geometry = path(new StringBuilder(), s, c[0], c[1]);
+        if (fill && i.getWindingRule() == PathIterator.WIND_EVEN_ODD) {
+            cls = document.styleClass(fillStyleEvenOdd());
+        }
+        use("path", "d", geometry.toString(), cls, c[0], c[1],
+                s.getBounds2D(), margin);
+    }
+
+    private String fillStyleEvenOdd() {
+        StringBuilder sb = new StringBuilder("fill:");
+        color(sb, color);
+        opacity(sb, "fill-opacity", color);
+        return sb.append(";fill-rule:evenodd").toString();
+    }
+
+    private void line(double x1, double y1, double x2, double y2,
+            String cls, double margin) {
+        if (open("line", cls, Math.min(x1, x2), Math.min(y1, y2),
+                Math.abs(x2 - x1), Math.abs(y2 - y1), margin)) {
+            StringBuilder sb = document.element;
+            attribute(sb, "x1", x1 + dx());
+            attribute(sb, "y1", y1 + dy());
+            attribute(sb, "x2", x2 + dx());
+            attribute(sb, "y2", y2 + dy());
+            close();
+        }
+    }
+
+    private void rect(double x, double y, double w, double h,
+            double arcWidth, double arcHeight, String cls, double margin) {
+        if (w < 0 || h < 0) {
+            return;
+        }
+        if (open("rect", cls, x, y, w, h, margin)) {
+            StringBuilder sb = document.element;
+            attribute(sb, "x", x + dx());
+            attribute(sb, "y", y + dy());
+            attribute(sb, "width", w);
+            attribute(sb, "height", h);
+            if (arcWidth > 0 && arcHeight > 0) {
+                attribute(sb, "rx", arcWidth / 2);
+                attribute(sb, "ry", arcHeight / 2);
+            }
+            close();
+        }
+    }
+
+    private void ellipse(double x, double y, double w, double h, String cls,
+            double margin) {
+        if (w < 0 || h < 0) {
+            return;
+        }
+        if (open("ellipse", cls, x, y, w, h, margin)) {
+            StringBuilder sb = document.element;
+            attribute(sb, "cx", x + w / 2 + dx());
+            attribute(sb, "cy", y + h / 2 + dy());
+            attribute(sb, "rx", w / 2);
+            attribute(sb, "ry", h / 2);
+            close();
+        }
+    }
+
+    private void text(String str, double x, double y) {
+        if (str.length() == 0) {
+            return;
+        }
+        FontMetrics fm = document.getFontMetrics(font);
+        if (open("text", textClass(), x, y - fm.getAscent(),
+                fm.stringWidth(str), fm.getAscent() + fm.getDescent(), 0)) {
+            StringBuilder sb = document.element;
+            attribute(sb, "x", x + dx());
+            attribute(sb, "y", y + dy());
+            close("text", str);
+        }
+    }
+
+    private void image(BufferedImage image, AffineTransform xform) {
+        AffineTransform saved = transform;
+        transform = new AffineTransform(transform);
+        if (xform != null) {
+            transform.concatenate(xform);
+        }
+        try {
+            if (open("image", null, 0, 0, image.getWidth(),
+                    image.getHeight(), 0)) {
+                ByteArrayOutputStream png = new ByteArrayOutputStream();
+                ImageIO.write(image, "png", png);
+                StringBuilder sb = document.element;
+                attribute(sb, "x", dx());
+                attribute(sb, "y", dy());
+                attribute(sb, "width", image.getWidth());
+                attribute(sb, "height", image.getHeight());
+                sb.append(" xlink:href=\"data:image/png;base64,");
+                sb.append(Base64.getEncoder().encodeToString(png.toByteArray()));
+                sb.append('"');
+                close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            transform = saved;
+        }
+    }
+
+    private static BufferedImage toBufferedImage(Image image,
+            ImageObserver observer) {
+        if (image instanceof BufferedImage) {
+            return (BufferedImage) image;
+        }
+        int width = image.getWidth(observer);
+        int height = image.getHeight(observer);
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        BufferedImage copy = new BufferedImage(width, height,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = copy.createGraphics();
+        g2d.drawImage(image, 0, 0, observer);
+        g2d.dispose();
+        return copy;
+    }
+
+    private Shape toDevice(Shape shape) {
+        if (shape instanceof Rectangle2D && isTranslation()) {
+            Rectangle2D r = (Rectangle2D) shape;
+            return new Rectangle2D.Double(r.getX() + transform.getTranslateX(),
+                    r.getY() + transform.getTranslateY(), r.getWidth(),
+                    r.getHeight());
+        }
+        return transform.createTransformedShape(shape);
+    }
+
+    @Override
+    public Graphics create() {
+        return new SVGGraphics(this);
+    }
+
+    @Override
+    public void dispose() {
+        /* empty */
+    }
+
+    @Override
+    public Color getColor() {
+        return color;
+    }
+
+    @Override
+    public void setColor(Color c) {
+        if (c != null && !c.equals(color)) {
+            color = c;
+            paint = c;
+            invalidateClasses();
+        }
+    }
+
+    @Override
+    public Paint getPaint() {
+        return paint;
+    }
+
+    /**
+     * Sets the paint. Paints other than colors are not supported, shapes
+     * are filled with the current color instead.
+     */
+    @Override
+    public void setPaint(Paint paint) {
+        if (paint instanceof Color) {
+            setColor((Color) paint);
+        } else if (paint != null) {
+            this.paint = paint;
+        }
+    }
+
+    @Override
+    public void setPaintMode() {
+        setComposite(AlphaComposite.SrcOver);
+    }
+
+    /**
+     * The XOR mode is not supported, it is ignored.
+     */
+    @Override
+    public void setXORMode(Color c1) {
+        /* empty */
+    }
+
+    @Override
+    public Composite getComposite() {
+        return composite;
+    }
+
+    @Override
+    public void setComposite(Composite comp) {
+        if (comp != null) {
+            composite = comp;
+            invalidateClasses();
+        }
+    }
+
+    @Override
+    public Stroke getStroke() {
+        return stroke;
+    }
+
+    @Override
+    public void setStroke(Stroke s) {
+        if (s != null && !s.equals(stroke)) {
+            stroke = s;
+            strokeClass = null;
+        }
+    }
+
+    @Override
+    public Font getFont() {
+        return font;
+    }
+
+    @Override
+    public void setFont(Font font) {
+        if (font != null && !font.equals(this.font)) {
+            this.font = font;
+            textClass = null;
+        }
+    }
+
+    @Override
+    public Color getBackground() {
+        return background;
+    }
+
+    @Override
+    public void setBackground(Color color) {
+        background = color;
+    }
+
+    @Override
+    public Object getRenderingHint(RenderingHints.Key hintKey) {
+        return hints.get(hintKey);
+    }
+
+    @Override
+    public void setRenderingHint(RenderingHints.Key hintKey, Object hintValue) {
+        hints.put(hintKey, hintValue);
+    }
+
+    @Override
+    public void setRenderingHints(Map<?, ?> hints) {
+        this.hints = new RenderingHints(null);
+        this.hints.putAll(hints);
+    }
+
+    @Override
+    public void addRenderingHints(Map<?, ?> hints) {
+        this.hints.putAll(hints);
+    }
+
+    @Override
+    public RenderingHints getRenderingHints() {
+        return (RenderingHints) hints.clone();
+    }
+
+    @Override
+    public FontRenderContext getFontRenderContext() {
+        return document.scratch.getFontRenderContext();
+    }
+
+    @Override
+    public FontMetrics getFontMetrics(Font f) {
+        return document.getFontMetrics(f);
+    }
+
+    @Override
+    public GraphicsConfiguration getDeviceConfiguration() {
+        return document.scratch.getDeviceConfiguration();
+    }
+
+    @Override
+    public void translate(int x, int y) {
+        transform.translate(x, y);
+    }
+
+    @Override
+    public void translate(double tx, double ty) {
+        transform.translate(tx, ty);
+    }
+
+    @Override
+    public void rotate(double theta) {
+        transform.rotate(theta);
+    }
+
+    @Override
+    public void rotate(double theta, double x, double y) {
+        transform.rotate(theta, x, y);
+    }
+
+    @Override
+    public void scale(double sx, double sy) {
+        transform.scale(sx, sy);
+    }
+
+    @Override
+    public void shear(double shx, double shy) {
+        transform.shear(shx, shy);
+    }
+
+    @Override
+    public void transform(AffineTransform tx) {
+        transform.concatenate(tx);
+    }
+
+    @Override
+    public void setTransform(AffineTransform tx) {
+        transform = new AffineTransform(tx);
+    }
+
+    @Override
+    public AffineTransform getTransform() {
+        return new AffineTransform(transform);
+    }
+
+    @Override
+    public Shape getClip() {
+        if (clip == null) {
+            return null;
+        }
+        if (clip instanceof Rectangle2D && isTranslation()) {
+            Rectangle2D r = (Rectangle2D) clip;
+            return new Rectangle2D.Double(r.getX() - transform.getTranslateX(),
+                    r.getY() - transform.getTranslateY(), r.getWidth(),
+                    r.getHeight());
+        }
+        try {
+            return transform.createInverse().createTransformedShape(clip);
+        } catch (NoninvertibleTransformException e) {
+            return new Rectangle();
+        }
+    }
+
+    @Override
+    public Rectangle getClipBounds() {
+        Shape clip = getClip();
+        return clip == null ? null : clip.getBounds();
+    }
+
+    @Override
+    public void clip(Shape s) {
+        if (s == null) {
+            clip = null;
+            return;
+        }
+        Shape device = toDevice(s);
+        if (clip == null) {
+            clip = device;
+        } else if (clip instanceof Rectangle2D && device instanceof Rectangle2D) {
+            Rectangle2D r = new Rectangle2D.Double();
+            Rectangle2D.intersect((Rectangle2D) clip, (Rectangle2D) device, r);
+            clip = r;
+        } else {
+            Area area = new Area(clip);
+            area.intersect(new Area(device));
+            clip = area;
+        }
+    }
+
+    @Override
+    public void clipRect(int x, int y, int width, int height) {
+        clip(new Rectangle(x, y, width, height));
+    }
+
+    @Override
+    public void setClip(int x, int y, int width, int height) {
+        setClip(new Rectangle(x, y, width, height));
+    }
+
+    @Override
+    public void setClip(Shape clip) {
+        this.clip = null;
+        if (clip != null) {
+            clip(clip);
+        }
+    }
+
+    @Override
+    public boolean hit(Rectangle rect, Shape s, boolean onStroke) {
+        if (onStroke) {
+            s = stroke.createStrokedShape(s);
+        }
+        s = transform.createTransformedShape(s);
+        if (clip != null && !clip.intersects(rect)) {
+            return false;
+        }
+        return s.intersects(rect);
+    }
+
+    /**
+     * Copying areas is not supported, it is ignored.
+     */
+    @Override
+    public void copyArea(int x, int y, int width, int height, int dx, int dy) {
+        /* empty */
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        line(x1, y1, x2, y2, strokeClass(), strokeMargin());
+    }
+
+    @Override
+    public void drawRect(int x, int y, int width, int height) {
+        rect(x, y, width, height, 0, 0, strokeClass(), strokeMargin());
+    }
+
+    @Override
+    public void fillRect(int x, int y, int width, int height) {
+        rect(x, y, width, height, 0, 0, fillClass(), 0);
+    }
+
+    @Override
+    public void clearRect(int x, int y, int width, int height) {
+        Color saved = color;
+        setColor(background);
+        fillRect(x, y, width, height);
+        setColor(saved);
+    }
+
+    @Override
+    public void drawRoundRect(int x, int y, int width, int height,
+            int arcWidth, int arcHeight) {
+        rect(x, y, width, height, arcWidth, arcHeight, strokeClass(),
+                strokeMargin());
+    }
+
+    @Override
+    public void fillRoundRect(int x, int y, int width, int height,
+            int arcWidth, int arcHeight) {
+        rect(x, y, width, height, arcWidth, arcHeight, fillClass(), 0);
+    }
+
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+        ellipse(x, y, width, height, strokeClass(), strokeMargin());
+    }
+
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        ellipse(x, y, width, height, fillClass(), 0);
+    }
+
+    @Override
+    public void drawArc(int x, int y, int width, int height, int startAngle,
+            int arcAngle) {
+        shape(new Arc2D.Double(x, y, width, height, startAngle, arcAngle,
+                Arc2D.OPEN), false);
+    }
+
+    @Override
+    public void fillArc(int x, int y, int width, int height, int startAngle,
+            int arcAngle) {
+        shape(new Arc2D.Double(x, y, width, height, startAngle, arcAngle,
+                Arc2D.PIE), true);
+    }
+
+    @Override
+    public void drawPolyline(int[] xPoints, int[] yPoints, int nPoints) {
+        polygon("polyline", xPoints, yPoints, nPoints, strokeClass(),
+                strokeMargin());
+    }
+
+    @Override
+    public void drawPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+        polygon("polygon", xPoints, yPoints, nPoints, strokeClass(),
+                strokeMargin());
+    }
+
+    @Override
+    public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+        polygon("polygon", xPoints, yPoints, nPoints, fillClass(), 0);
+    }
+
+    @Override
+    public void draw(Shape s) {
+        shape(s, false);
+    }
+
+    @Override
+    public void fill(Shape s) {
+        shape(s, true);
+    }
+
+    @Override
+    public void drawString(String str, int x, int y) {
+        text(str, x, y);
+    }
+
+    @Override
+    public void drawString(String str, float x, float y) {
+        text(str, x, y);
+    }
+
+    /**
+     * Draws the characters of the iterator, with the current font.
+     */
+    @Override
+    public void drawString(AttributedCharacterIterator iterator, int x, int y) {
+        drawString(iterator, (float) x, (float) y);
+    }
+
+    /**
+     * Draws the characters of the iterator, with the current font.
+     */
+    @Override
+    public void drawString(AttributedCharacterIterator iterator, float x,
+            float y) {
+        StringBuilder sb = new StringBuilder();
+        for (char c = iterator.first(); c != AttributedCharacterIterator.DONE; c = iterator
+                .next()) {
+            sb.append(c);
+        }
+        text(sb.toString(), x, y);
+    }
+
+    /**
+     * Draws the outlines of the glyphs, as the characters are not known.
+     */
+    @Override
+    public void drawGlyphVector(GlyphVector g, float x, float y) {
+        fill(g.getOutline(x, y));
+    }
+
+    @Override
+    public boolean drawImage(Image img, AffineTransform xform,
+            ImageObserver obs) {
+        BufferedImage image = toBufferedImage(img, obs);
+        if (image != null) {
+            image(image, xform);
+        }
+        return true;
+    }
+
+    @Override
+    public void drawImage(BufferedImage img, BufferedImageOp op, int x, int y) {
+        image(op == null ? img : op.filter(img, null),
+                AffineTransform.getTranslateInstance(x, y));
+    }
+
+    @Override
+    public void drawRenderedImage(RenderedImage img, AffineTransform xform) {
+        if (img instanceof BufferedImage) {
+            image((BufferedImage) img, xform);
+            return;
+        }
+        BufferedImage image = new BufferedImage(img.getColorModel(), img
+                .getData().createCompatibleWritableRaster(img.getWidth(),
+                        img.getHeight()), img.getColorModel()
+                .isAlphaPremultiplied(), null);
+        image.setData(img.getData().createTranslatedChild(0, 0));
+        image(image, xform);
+    }
+
+    @Override
+    public void drawRenderableImage(RenderableImage img, AffineTransform xform) {
+        drawRenderedImage(img.createDefaultRendering(), xform);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, ImageObserver observer) {
+        return drawImage(img, AffineTransform.getTranslateInstance(x, y),
+                observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, Color bgcolor,
+            ImageObserver observer) {
+        BufferedImage image = toBufferedImage(img, observer);
+        if (image != null) {
+            fillBackground(bgcolor, x, y, image.getWidth(), image.getHeight());
+            image(image, AffineTransform.getTranslateInstance(x, y));
+        }
+        return true;
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, int width, int height,
+            ImageObserver observer) {
+        return drawImage(img, x, y, width, height, null, observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, int width, int height,
+            Color bgcolor, ImageObserver observer) {
+        BufferedImage image = toBufferedImage(img, observer);
+        if (image != null && width != 0 && height != 0) {
+            fillBackground(bgcolor, x, y, width, height);
+            AffineTransform xform = AffineTransform.getTranslateInstance(x, y);
+            xform.scale(1D * width / image.getWidth(),
+                    1D * height / image.getHeight());
+            image(image, xform);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2,
+            int sx1, int sy1, int sx2, int sy2, ImageObserver observer) {
+        return drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, null,
+                observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2,
+            int sx1, int sy1, int sx2, int sy2, Color bgcolor,
+            ImageObserver observer) {
+        BufferedImage image = toBufferedImage(img, observer);
+        if (image == null || sx1 == sx2 || sy1 == sy2) {
+            return true;
+        }
+        Rectangle source = new Rectangle(Math.min(sx1, sx2), Math.min(sy1,
+                sy2), Math.abs(sx2 - sx1), Math.abs(sy2 - sy1))
+                .intersection(new Rectangle(0, 0, image.getWidth(), image
+                        .getHeight()));
+        if (source.isEmpty()) {
+            return true;
+        }
+        fillBackground(bgcolor, Math.min(dx1, dx2), Math.min(dy1, dy2),
+                Math.abs(dx2 - dx1), Math.abs(dy2 - dy1));
+        AffineTransform xform = AffineTransform.getTranslateInstance(dx1, dy1);
+        xform.scale(1D * (dx2 - dx1) / (sx2 - sx1), 1D * (dy2 - dy1)
+                / (sy2 - sy1));
+        xform.translate(source.x - sx1, source.y - sy1);
+        image(image.getSubimage(source.x, source.y, source.width,
+                source.height), xform);
+        return true;
+    }
+
+    private void fillBackground(Color bgcolor, int x, int y, int width,
+            int height) {
+        if (bgcolor != null) {
+            Color saved = color;
+            setColor(bgcolor);
+            fillRect(x, y, width, height);
+            setColor(saved);
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.server;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An <tt>SVGPage</tt> keeps track of the SVG documents (or fragments of them)
+ * that are embedded into one HTML page, where they share the styles and ids,
+ * and makes the names of the classes and ids unique across them.
+ * <p>
+ * The prefix of the names of a document (see {@linkplain SVGGraphics}) is
+ * derived from the {@linkplain RenderCache#getKey render cache key} of the
+ * diagram, so diagrams that differ have different prefixes, and the same
+ * diagram always gets the same document, which can be cached. When the same
+ * diagram is embedded into a page again, the prefix of the copy is extended
+ * by the number of the copy.
+ * 
+ * @author Markus Strauch
+ */
+public final class SVGPage {
+
+	/*
+	 * The number of hex digits of the key in a prefix.
+	 */
+	private static final int DIGITS = 12;
+
+	/*
+	 * Maps the prefixes of the documents on the page onto the numbers of
+	 * their copies.
+	 */
+	private final Map<String, Integer> copies;
+
+	/**
+	 * Creates a new, empty <tt>SVGPage</tt>.
+	 */
+	public SVGPage() {
+		copies = new HashMap<String, Integer>();
+	}
+
+	/**
+	 * Returns the prefix of the names of the classes and ids in the SVG
+	 * document for a diagram.
+	 * 
+	 * @param key
+	 *            the render cache key of the diagram
+	 * @return the prefix of the names in the document for the diagram
+	 */
+	public static String getPrefix(String key) {
+		return "sd" + key.substring(0, DIGITS) + "-";
+	}
+
+	/**
+	 * Returns the given document as it is to be embedded into the page. This
+	 * is the document itself when it is the first document with its prefix
+	 * on the page, otherwise it is a copy of the document with the prefix
+	 * extended by the number of the copy.
+	 * 
+	 * @param document
+	 *            an SVG document or fragment
+	 * @param prefix
+	 *            the prefix of the document, as returned by
+	 *            {@linkplain #getPrefix(String)}
+	 * @return the document with names that do not appear in the documents
+	 *         embedded into the page so far
+	 */
+	public String embed(String document, String prefix) {
+		Integer number = copies.get(prefix);
+		copies.put(prefix, number == null ? 1 : number + 1);
+		if (number == null) {
+			return document;
+		}
+		// the names following a prefix start with a letter, and the prefixes
+		// of other diagrams differ in the key
+		return document.replace(prefix, prefix + number + "-");
+	}
+
+	/**
+	 * Forgets about the documents embedded so far, as the next document is
+	 * embedded into a new page.
+	 */
+	public void clear() {
+		copies.clear();
+	}
+
+}
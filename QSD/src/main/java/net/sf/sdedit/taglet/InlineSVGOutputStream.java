@@ -0,0 +1,261 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+
+package net.sf.sdedit.taglet;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An <tt>InlineSVGOutputStream</tt> turns an SVG document, as it is written by
+ * an exporter, into a fragment that can be embedded into an HTML page while it
+ * is being written. The prolog (XML declaration, document type declaration and
+ * everything else in front of the root element) and all comments are dropped,
+ * and so is whitespace between two tags. Everything else is passed through
+ * unchanged, in particular the escaped characters in texts and attribute
+ * values.
+ * <p>
+ * The document must be encoded in a superset of ASCII, like UTF-8.
+ * 
+ * @author Markus Strauch
+ */
+final class InlineSVGOutputStream extends FilterOutputStream {
+
+	private static final byte[] COMMENT = { '<', '!', '-', '-' };
+
+	private static final byte[] CDATA = { '<', '!', '[' };
+
+	private static final int TEXT = 0;
+
+	/*
+	 * The first bytes of markup, as long as it might still be a comment.
+	 */
+	private static final int MARKUP = 1;
+
+	private static final int TAG = 2;
+
+	private static final int COMMENT_BODY = 3;
+
+	private static final int CDATA_BODY = 4;
+
+	/*
+	 * A declaration or processing instruction in the prolog.
+	 */
+	private static final int DECLARATION = 5;
+
+	private final byte[] buffer = new byte[8192];
+
+	private int length;
+
+	/*
+	 * Whitespace in a text that is only written when it is followed by a
+	 * character other than '<'
+	 */
+	private final byte[] space = new byte[256];
+
+	private int spaceLength;
+
+	private final byte[] markup = new byte[COMMENT.length];
+
+	private int markupLength;
+
+	private int state = TEXT;
+
+	private boolean inRoot;
+
+	private byte quote;
+
+	/*
+	 * The last two bytes of a comment or CDATA section, for recognizing its
+	 * end.
+	 */
+	private int last;
+
+	private int secondLast;
+
+	/*
+	 * The nesting level of brackets in a declaration.
+	 */
+	private int brackets;
+
+	/**
+	 * Creates a new <tt>InlineSVGOutputStream</tt>.
+	 * 
+	 * @param out
+	 *            the stream where the fragment is written to
+	 */
+	InlineSVGOutputStream(OutputStream out) {
+		super(out);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		process((byte) b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		for (int i = off; i < off + len; i++) {
+			process(b[i]);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		drain();
+		out.flush();
+	}
+
+	private void process(byte b) throws IOException {
+		switch (state) {
+		case TEXT:
+			if (b == '<') {
+				spaceLength = 0;
+				markup[0] = b;
+				markupLength = 1;
+				state = MARKUP;
+			} else if (inRoot) {
+				if (b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+					if (spaceLength == space.length) {
+						emitSpace();
+					}
+					space[spaceLength++] = b;
+				} else {
+					emitSpace();
+					emit(b);
+				}
+			}
+			break;
+		case MARKUP:
+			markup[markupLength++] = b;
+			if (startsWith(COMMENT)) {
+				if (markupLength == COMMENT.length) {
+					last = 0;
+					secondLast = 0;
+					state = COMMENT_BODY;
+				}
+			} else if (!inRoot && (markup[1] == '?' || markup[1] == '!')) {
+				brackets = 0;
+				state = DECLARATION;
+				for (int i = 1; i < markupLength; i++) {
+					skipDeclaration(markup[i]);
+				}
+			} else {
+				inRoot = true;
+				state = startsWith(CDATA) ? CDATA_BODY : TAG;
+				last = 0;
+				secondLast = 0;
+				quote = 0;
+				for (int i = 0; i < markupLength; i++) {
+					emit(markup[i]);
+					if (state == TAG) {
+						scanTag(markup[i]);
+					}
+				}
+			}
+			break;
+		case TAG:
+			emit(b);
+			scanTag(b);
+			break;
+		case COMMENT_BODY:
+			if (b == '>' && last == '-' && secondLast == '-') {
+				state = TEXT;
+			}
+			secondLast = last;
+			last = b;
+			break;
+		case CDATA_BODY:
+			emit(b);
+			if (b == '>' && last == ']' && secondLast == ']') {
+				state = TEXT;
+			}
+			secondLast = last;
+			last = b;
+			break;
+		case DECLARATION:
+			skipDeclaration(b);
+			break;
+		default:
+			throw new IllegalStateException();
+		}
+	}
+
+	private boolean startsWith(byte[] prefix) {
+		int n = Math.min(markupLength, prefix.length);
+		for (int i = 0; i < n; i++) {
+			if (markup[i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * '>' ends a tag unless it appears inside of an attribute value.
+	 */
+	private void scanTag(byte b) {
+		if (quote != 0) {
+			if (b == quote) {
+				quote = 0;
+			}
+		} else if (b == '"' || b == '\'') {
+			quote = b;
+		} else if (b == '>') {
+			state = TEXT;
+		}
+	}
+
+	private void skipDeclaration(byte b) {
+		if (b == '[') {
+			brackets++;
+		} else if (b == ']') {
+			brackets--;
+		} else if (b == '>' && brackets <= 0) {
+			state = TEXT;
+		}
+	}
+
+	private void emitSpace() throws IOException {
+		for (int i = 0; i < spaceLength; i++) {
+			emit(space[i]);
+		}
+		spaceLength = 0;
+	}
+
+	private void emit(byte b) throws IOException {
+		if (length == buffer.length) {
+			drain();
+		}
+		buffer[length++] = b;
+	}
+
+	private void drain() throws IOException {
+		if (length > 0) {
+			out.write(buffer, 0, length);
+			length = 0;
+		}
+	}
+}
@@ -24,9 +24,23 @@
 
 package net.sf.sdedit.taglet;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.sf.sdedit.config.ConfigurationManager;
 import net.sf.sdedit.config.SequenceConfiguration;
@@ -34,14 +48,17 @@ import net.sf.sdedit.diagram.DiagramFactory;
 import net.sf.sdedit.diagram.SDPaintDevice;
 import net.sf.sdedit.diagram.SequenceDiagramFactory;
 import net.sf.sdedit.server.Exporter;
+import net.sf.sdedit.server.RenderCache;
+import net.sf.sdedit.server.SVGPage;
 import net.sf.sdedit.text.TextHandler;
-import net.sf.sdedit.util.DocUtil;
+import net.sf.sdedit.ui.components.configuration.Bean;
 import net.sf.sdedit.util.PWriter;
 import net.sf.sdedit.util.Utilities;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.Doc;
+import com.sun.javadoc.PackageDoc;
+import com.sun.javadoc.ProgramElementDoc;
 import com.sun.javadoc.Tag;
 
 /**
@@ -54,6 +71,14 @@ import com.sun.javadoc.Tag;
  * <p>
  * <tt>@sequence.diagram</tt> are no inline tags and they can be used inside
  * classes, and inside package documentation.
+ * <p>
+ * When the first tag of a package is processed, the diagrams of all tags in
+ * the package are rendered in parallel, using as many threads as specified by
+ * the system property {@value #THREADS_PROPERTY} (by default, the number of
+ * processors; 0 turns this off). If a {@linkplain RenderCache#getDefault()
+ * default render cache} is configured, the output is stored there, so
+ * diagrams that have not changed since a previous javadoc run are not
+ * rendered again.
  * 
  * @sequence.diagram <code>
  * "Processing of <tt>@sequence.diagram</tt> tags"
@@ -81,6 +106,64 @@ public abstract class SequenceTaglet {
 
 	private static final String tagName = "sequence.diagram";
 
+	/**
+	 * The name of the system property that specifies the number of threads
+	 * used for rendering the diagrams of a package in parallel.
+	 */
+	public static final String THREADS_PROPERTY = "sdedit.tagletThreads";
+
+	/*
+	 * The type of the render cache entries: the inline SVG fragment, not
+	 * a complete SVG document.
+	 */
+	private static final String CACHE_TYPE = "inline-svg";
+
+	private static final Charset UTF8 = Charset.forName("utf-8");
+
+	private static ExecutorService executor;
+
+	private static boolean executorInitialized;
+
+	/*
+	 * The packages whose tags have been rendered in advance.
+	 */
+	private static final Set<PackageDoc> prerenderedPackages = Collections
+			.newSetFromMap(new WeakHashMap<PackageDoc, Boolean>());
+
+	/*
+	 * Maps tag texts onto the outputs that are rendered in advance, for the
+	 * tags of the package that has been rendered in advance last.
+	 */
+	private static final ConcurrentMap<String, Future<Output>> prerendered =
+			new ConcurrentHashMap<String, Future<Output>>();
+
+	/*
+	 * The inline SVG fragments on the page that is being written, and the
+	 * holder of the tags on that page.
+	 */
+	private final SVGPage page = new SVGPage();
+
+	private Doc pageHolder;
+
+	/*
+	 * The output for a tag: the title and the inline SVG fragment, whose
+	 * names start with the prefix.
+	 */
+	private static final class Output {
+
+		private final String title;
+
+		private final String svg;
+
+		private final String prefix;
+
+		Output(String title, String svg, String prefix) {
+			this.title = title;
+			this.svg = svg;
+			this.prefix = prefix;
+		}
+	}
+
 	/**
 	 * Registers an instance of this taglet class.
 	 * 
@@ -109,14 +192,14 @@ public abstract class SequenceTaglet {
 	 * @param source
 	 *            string array containing the lines of the diagram specification
 	 * @return the output that is to appear on the javadoc page (i. e. the
-	 *         inline svg code)
+	 *         inline svg code), <tt>null</tt> if there is no diagram
 	 * @throws SequenceTagletException
 	 *             if the creation of the diagram fails
 	 */
-	private String generateOutput(String[] source)
+	private Output generateOutput(String[] source)
 			throws SequenceTagletException {
 		if (source == null || source.length == 0) {
-			return "";
+			return null;
 		}
 		PWriter writer = PWriter.create();
 		writer.setLineSeparator("\n");
@@ -136,63 +219,157 @@ public abstract class SequenceTaglet {
 		writer.close();
 		String specification = writer.toString();
 		if (specification.length() == 0) {
-			return "";
+			return null;
 		}
-		SequenceConfiguration conf = ConfigurationManager
-				.createNewDefaultConfiguration(SequenceConfiguration.class)
-				.getDataObject();
+		Bean<SequenceConfiguration> bean = ConfigurationManager
+				.createNewDefaultConfiguration(SequenceConfiguration.class);
+		SequenceConfiguration conf = bean.getDataObject();
 		conf.setHeadWidth(25);
 		conf.setMainLifelineWidth(5);
 		conf.setSubLifelineWidth(5);
 		conf.setThreaded(true);
 		conf.setGlue(3);
-		ByteArrayOutputStream stream = new ByteArrayOutputStream();
-		Exporter exporter = Exporter.getExporter("svg", "Landscape", "A4",
-				stream);
-		SDPaintDevice paintDevice = new SDPaintDevice(exporter);
-		DiagramFactory factory = new SequenceDiagramFactory(specification,
-				paintDevice);
+		RenderCache cache = RenderCache.getDefault();
+		// the key also determines the names in the SVG fragment
+		String key = RenderCache.getKey(specification, bean, CACHE_TYPE,
+				"Landscape", "A4");
+		String prefix = SVGPage.getPrefix(key);
+		byte[] output = null;
+		if (cache != null) {
+			output = cache.get(key);
+		}
+		if (output == null) {
+			ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			// the exporter writes the fragment that is embedded into the page
+			// directly, the SVG document is never parsed
+			OutputStream svg = new InlineSVGOutputStream(stream);
+			Exporter exporter = Exporter.getExporter("svg", "Landscape", "A4",
+					svg);
+			exporter.setIdPrefix(prefix);
+			SDPaintDevice paintDevice = new SDPaintDevice(exporter);
+			DiagramFactory factory = new SequenceDiagramFactory(specification,
+					paintDevice);
 
-		try {
-			factory.generateDiagram(conf);
-		} catch (Exception e) {
-
-			e.printStackTrace();
-			TextHandler handler = (TextHandler) factory.getProvider();
-			int error = handler.getLineNumber();
-			StringBuffer code = new StringBuffer("<br><tt>");
-			for (int i = 0; i < source.length; i++) {
-				String html = source[i].replaceAll("&", "&amp;")
-						.replaceAll("<", "&lt;").replaceAll(">", "&gt;")
-						.replaceAll("\"", "&quot;");
-				if (i == error) {
-					html = "<FONT COLOR=\"red\"><U><B>" + html
-							+ "</B></U></FONT>";
+			try {
+				factory.generateDiagram(conf);
+			} catch (Exception e) {
+
+				e.printStackTrace();
+				TextHandler handler = (TextHandler) factory.getProvider();
+				int error = handler.getLineNumber();
+				StringBuffer code = new StringBuffer("<br><tt>");
+				for (int i = 0; i < source.length; i++) {
+					String html = source[i].replaceAll("&", "&amp;")
+							.replaceAll("<", "&lt;").replaceAll(">", "&gt;")
+							.replaceAll("\"", "&quot;");
+					if (i == error) {
+						html = "<FONT COLOR=\"red\"><U><B>" + html
+								+ "</B></U></FONT>";
+					}
+					code.append(html + "<br>");
 				}
-				code.append(html + "<br>");
+				throw new SequenceTagletException(
+						"Malformed diagram specification: " + e.getMessage(),
+						"<DT><HR><B>Sequence Diagram:</B></DT>"
+								+ "<DD><B>Could not create sequence diagram: "
+								+ "<font color=\"red\">" + e.getMessage()
+								+ "</font></B>" + code.toString() + "</DD>");
+			}
+
+			exporter.export();
+			try {
+				svg.flush();
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			output = stream.toByteArray();
+			if (cache != null) {
+				cache.put(key, output);
 			}
-			throw new SequenceTagletException(
-					"Malformed diagram specification: " + e.getMessage(),
-					"<DT><HR><B>Sequence Diagram:</B></DT>"
-							+ "<DD><B>Could not create sequence diagram: "
-							+ "<font color=\"red\">" + e.getMessage()
-							+ "</font></B>" + code.toString() + "</DD>");
 		}
+		return new Output(diagramTitle, new String(output, UTF8), prefix);
 
-		exporter.export();
-		ByteArrayInputStream in = new ByteArrayInputStream(stream.toByteArray());
-		Document svg;
+	}
 
-		try {
-			svg = DocUtil.readDocument(in, "utf-8");
-		} catch (Exception e) {
-			throw new IllegalStateException(e);
+	private static synchronized ExecutorService getExecutor() {
+		if (!executorInitialized) {
+			executorInitialized = true;
+			int threads = Integer.getInteger(THREADS_PROPERTY, Runtime
+					.getRuntime().availableProcessors());
+			if (threads > 0) {
+				executor = Executors.newFixedThreadPool(threads,
+						new ThreadFactory() {
+							private final AtomicInteger number = new AtomicInteger();
+
+							public Thread newThread(Runnable runnable) {
+								Thread thread = new Thread(runnable);
+								thread.setDaemon(true);
+								thread.setName("SequenceTaglet-Thread-"
+										+ number.incrementAndGet());
+								return thread;
+							}
+						});
+			}
 		}
-		Element root = svg.getDocumentElement();
-		String s = DocUtil.toString(root, true);
-		return "<DT><HR><B>" + diagramTitle + ":</B><P></DT>" + "<DD>" + s
-				+ "</DD>";
+		return executor;
+	}
 
+	/*
+	 * Javadoc processes one package after the other, so when the first tag
+	 * of a package is requested, the diagrams of all tags of the package are
+	 * submitted for rendering. The outputs for the tags of the previous
+	 * package that have not been requested (because their holders are
+	 * excluded from the documentation) are discarded then; should they be
+	 * requested nevertheless, they are rendered again.
+	 */
+	private void prerender(Doc holder) {
+		ExecutorService executor = getExecutor();
+		if (executor == null) {
+			return;
+		}
+		PackageDoc pkg;
+		if (holder instanceof PackageDoc) {
+			pkg = (PackageDoc) holder;
+		} else if (holder instanceof ProgramElementDoc) {
+			pkg = ((ProgramElementDoc) holder).containingPackage();
+		} else {
+			return;
+		}
+		synchronized (prerenderedPackages) {
+			if (pkg == null || !prerenderedPackages.add(pkg)) {
+				return;
+			}
+			for (Future<Output> future : prerendered.values()) {
+				future.cancel(false);
+			}
+			prerendered.clear();
+		}
+		prerender(executor, pkg);
+		for (ClassDoc cls : pkg.allClasses()) {
+			prerender(executor, cls);
+			for (Doc member : cls.constructors()) {
+				prerender(executor, member);
+			}
+			for (Doc member : cls.fields()) {
+				prerender(executor, member);
+			}
+			for (Doc member : cls.methods()) {
+				prerender(executor, member);
+			}
+		}
+	}
+
+	private void prerender(ExecutorService executor, Doc doc) {
+		for (Tag tag : doc.tags(getName())) {
+			final String text = tag.text();
+			if (!prerendered.containsKey(text)) {
+				prerendered.put(text, executor.submit(new Callable<Output>() {
+					public Output call() throws SequenceTagletException {
+						return generateOutput(text.split("\n"));
+					}
+				}));
+			}
+		}
 	}
 
 	public String getName() {
@@ -228,8 +405,54 @@ public abstract class SequenceTaglet {
 	}
 
 	protected String makeString(Tag tag) throws SequenceTagletException {
-		String output;
-		output = generateOutput(tag.text().split("\n"));
-		return output;
+		prerender(tag.holder());
+		Future<Output> future = prerendered.remove(tag.text());
+		Output output;
+		if (future == null) {
+			output = generateOutput(tag.text().split("\n"));
+		} else {
+			output = get(future);
+		}
+		if (output == null) {
+			return "";
+		}
+		Doc holder = page(tag.holder());
+		if (holder != pageHolder) {
+			pageHolder = holder;
+			page.clear();
+		}
+		return "<DT><HR><B>" + output.title + ":</B><P></DT>" + "<DD>"
+				+ page.embed(output.svg, output.prefix) + "</DD>";
+	}
+
+	/*
+	 * Returns the holder of the page on which the documentation of the given
+	 * holder appears: the class for its members, otherwise the holder itself.
+	 */
+	private static Doc page(Doc holder) {
+		if (holder instanceof ProgramElementDoc
+				&& !(holder instanceof ClassDoc)) {
+			return ((ProgramElementDoc) holder).containingClass();
+		}
+		return holder;
+	}
+
+	private static Output get(Future<Output> future)
+			throws SequenceTagletException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof SequenceTagletException) {
+				throw (SequenceTagletException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
 	}
 }
\ No newline at end of file
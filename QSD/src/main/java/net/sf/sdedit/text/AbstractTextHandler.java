@@ -23,18 +23,78 @@
 //THE POSSIBILITY OF SUCH DAMAGE.
 package net.sf.sdedit.text;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.Reader;
 
-public abstract class AbstractTextHandler {
-	
-	private BufferedReader reader;
+import net.sf.sdedit.diagram.Copier;
+
+/**
+ * An <tt>AbstractTextHandler</tt> reads a diagram specification line by line.
+ * The text is given as a <tt>CharSequence</tt> (typically a string, but it can
+ * as well be the segment of a document or a buffer), which must not change
+ * while it is read.
+ * <p>
+ * When reading begins, the text is scanned once: the lines are recorded as
+ * ranges of positions (terminators being the same as for
+ * <tt>BufferedReader.readLine()</tt>), and the header of the diagram is
+ * detected, that is the title (<tt>#![title]</tt>) and the description
+ * (<tt>#!&gt;&gt;</tt> ... <tt>#!&lt;&lt;</tt>). A line only becomes a string
+ * when its contents are needed.
+ * <p>
+ * Alternatively, the text can be read from a <tt>Reader</tt>. Then only the
+ * current line (and what has been read ahead) is kept in memory, so texts of
+ * any size can be read, but only once. The header must be found in advance,
+ * by a {@linkplain HeaderScanner} (see {@linkplain FileDataProviderFactory}),
+ * and positions are reported as <tt>int</tt>s, so they are meaningful only
+ * for the first 2<sup>31</sup>-1 characters (line numbers are not affected).
+ * 
+ * @author Markus Strauch
+ */
+public abstract class AbstractTextHandler implements Copier.Copyable {
+
+	private CharSequence text;
+
+	/*
+	 * The text read so far from the reader, if there is one, then text ==
+	 * window, and next is the position where the next line begins.
+	 */
+	private TextWindow window;
+
+	private int next;
+
+	/*
+	 * The first positions of the lines and the positions of their
+	 * terminators (or the end of the text), for the first numberOfLines
+	 * lines.
+	 */
+	private int[] begins;
+
+	private int[] ends;
+
+	private int numberOfLines;
+
+	private int titleBegin;
 
-	private String text;
+	private int titleEnd;
+
+	private int descriptionBegin;
+
+	private int descriptionEnd;
+
+	/*
+	 * The title and the description of a text read from a reader, as found
+	 * by scanning the whole text in advance.
+	 */
+	private String title;
+
+	private String description;
 
 	private String rawLine;
 
+	private int currentBegin;
+
+	private int currentEnd;
+
 	private String currentLine;
 
 	private int lineBegin;
@@ -43,12 +103,65 @@ public abstract class AbstractTextHandler {
 	
 	private int lineNumber;
 	
-	public AbstractTextHandler (String text) {
+	public AbstractTextHandler (CharSequence text) {
 		lineBegin = 0;
 		lineEnd = -1;
 		lineNumber = 0;
+		currentBegin = -1;
 		this.text = text;
 	}
+
+	/**
+	 * Creates a new <tt>AbstractTextHandler</tt> reading the text from the
+	 * given reader. The reader is closed when the end of the text has been
+	 * reached, or when {@linkplain #close()} is called.
+	 * 
+	 * @param reader
+	 *            the reader from which to read the text
+	 * @param title
+	 *            the title of the text (see {@linkplain #rawTitle()}), or
+	 *            <tt>null</tt>
+	 * @param description
+	 *            the description of the text (see
+	 *            {@linkplain #rawDescription()}), or <tt>null</tt>
+	 */
+	public AbstractTextHandler (Reader reader, String title,
+			String description) {
+		this((CharSequence) null);
+		window = new TextWindow(reader);
+		text = window;
+		this.title = title;
+		this.description = description;
+	}
+	
+	/**
+	 * Creates a copy of an <tt>AbstractTextHandler</tt>, for a copy of its
+	 * diagram. Only the position in the text is copied, the copy does not
+	 * read any text until {@linkplain #resume(CharSequence)} has been called.
+	 * 
+	 * @param original
+	 *            the text handler to be copied
+	 * @param copier
+	 *            the copier that keeps track of the copies
+	 * @throws IllegalArgumentException
+	 *             if the original reads its text from a reader
+	 */
+	protected AbstractTextHandler (AbstractTextHandler original,
+			Copier copier) {
+		if (original.window != null) {
+			throw new IllegalArgumentException(
+					"cannot copy a text handler reading from a reader");
+		}
+		copier.register(original, this);
+		next = original.next;
+		rawLine = original.rawLine;
+		currentBegin = original.currentBegin;
+		currentEnd = original.currentEnd;
+		currentLine = original.currentLine;
+		lineBegin = original.lineBegin;
+		lineEnd = original.lineEnd;
+		lineNumber = original.lineNumber;
+	}
 	
 	/**
 	 * Returns the index of the first position of the current line in the
@@ -58,30 +171,154 @@ public abstract class AbstractTextHandler {
 	 *         specification
 	 */
 	public int getLineBegin() {
-		return lineBegin;
+		return position(lineBegin);
 	}
 	
 	public int getLineNumber() {
 		return lineNumber;
 	}
 
-	public String getText() {
-		return text;
+	/**
+	 * Returns the text, or <tt>null</tt> if it is read from a reader.
+	 * 
+	 * @return the text
+	 */
+	public CharSequence getText() {
+		return window == null ? text : null;
+	}
+
+	/**
+	 * Returns the number of characters that have been read, including the
+	 * terminator of the current line.
+	 * 
+	 * @return the number of characters that have been read
+	 */
+	public int getOffset() {
+		if (window != null) {
+			return position(next);
+		}
+		return lineNumber < numberOfLines ? begins[lineNumber] : text.length();
+	}
+
+	/*
+	 * Returns the position in the text of the given position in text().
+	 */
+	private int position(int index) {
+		if (window == null) {
+			return index;
+		}
+		return (int) Math.min(Integer.MAX_VALUE, window.getDiscarded() + index);
+	}
+
+	/**
+	 * Closes the reader from which the text is read, if there is one.
+	 * 
+	 * @throws IOException
+	 *             if the reader cannot be closed
+	 */
+	public void close() throws IOException {
+		if (window != null) {
+			window.close();
+		}
 	}
 	
 	protected final String currentLine () {
+		if (currentLine == null && currentBegin >= 0) {
+			currentLine = text.subSequence(currentBegin, currentEnd).toString();
+		}
 		return currentLine;
 	}
-	
-	protected final void setCurrentLine (String currentLine) {
-		this.currentLine = currentLine;
+
+	/**
+	 * Makes the given range of the text the current line.
+	 * 
+	 * @param begin
+	 *            the first position of the current line
+	 * @param end
+	 *            the position after the last character of the current line
+	 */
+	protected final void setCurrentLine (int begin, int end) {
+		currentBegin = begin;
+		currentEnd = end;
+		currentLine = null;
+	}
+
+	protected final void clearCurrentLine () {
+		currentBegin = -1;
+		currentLine = null;
+	}
+
+	protected final boolean hasCurrentLine () {
+		return currentBegin >= 0;
+	}
+
+	protected final boolean currentLineStartsWith (String prefix) {
+		return currentBegin >= 0
+				&& regionMatches(currentBegin, currentEnd, prefix);
+	}
+
+	protected final boolean currentLineEndsWith (String suffix) {
+		return currentBegin >= 0
+				&& regionMatches(currentEnd - suffix.length(), currentEnd, suffix);
+	}
+
+	protected final boolean currentLineEquals (String string) {
+		return currentBegin >= 0 && currentEnd - currentBegin == string.length()
+				&& regionMatches(currentBegin, currentEnd, string);
+	}
+
+	/**
+	 * Returns the first character of the current line that is not a white
+	 * space (in the sense of <tt>String.trim()</tt>), or 0 if there is none.
+	 * 
+	 * @return the first character of the trimmed current line
+	 */
+	protected final char currentLineFirstChar () {
+		if (currentBegin >= 0) {
+			int begin = trimBegin(currentBegin, currentEnd);
+			if (begin < currentEnd) {
+				return text.charAt(begin);
+			}
+		}
+		return 0;
+	}
+
+	protected final int currentLineIndexOf (char c) {
+		if (currentBegin >= 0) {
+			for (int i = currentBegin; i < currentEnd; i++) {
+				if (text.charAt(i) == c) {
+					return i - currentBegin;
+				}
+			}
+		}
+		return -1;
 	}
 	
-	protected final String text() {
+	/**
+	 * Returns the text, or, if it is read from a reader, the part of it that
+	 * begins with the current line. The positions returned by
+	 * {@linkplain #rawLineBegin()} and {@linkplain #rawLineEnd()} and the ones
+	 * passed to {@linkplain #setCurrentLine(int, int)} refer to it.
+	 * 
+	 * @return the text or the part of it that is currently read
+	 */
+	protected final CharSequence text() {
 		return text;
 	}
+
+	protected final int rawLineBegin() {
+		return lineBegin;
+	}
+
+	protected final int rawLineEnd() {
+		return lineEnd;
+	}
 	
 	protected final String rawLine () {
+		if (rawLine == null && lineNumber > 0 && 0 <= lineBegin
+				&& lineBegin <= lineEnd) {
+			rawLine = text.subSequence(lineBegin, lineEnd).toString();
+		}
 		return rawLine;
 	}
 
@@ -93,7 +330,7 @@ public abstract class AbstractTextHandler {
 	 *         specification string
 	 */
 	public int getLineEnd() {
-		return lineEnd;
+		return position(lineEnd);
 	}
 
 	/**
@@ -102,46 +339,256 @@ public abstract class AbstractTextHandler {
 	 * @return the line that is currently read
 	 */
 	public String getCurrentLine() {
-		return currentLine;
+		return currentLine();
+	}
+
+	/**
+	 * Returns the title found in the text, or <tt>null</tt>.
+	 * 
+	 * @return the title found in the text
+	 */
+	protected final String rawTitle () {
+		if (window != null) {
+			return title;
+		}
+		return titleBegin < 0 ? null : text.subSequence(titleBegin, titleEnd)
+				.toString();
+	}
+
+	/**
+	 * Returns the text between the last <tt>#!&lt;&lt;</tt> of the text and
+	 * the last <tt>#!&gt;&gt;</tt> in front of it, or <tt>null</tt>.
+	 * 
+	 * @return the text of the description
+	 */
+	protected final String rawDescription () {
+		if (window != null) {
+			return description;
+		}
+		return descriptionBegin < 0 ? null : text.subSequence(
+				descriptionBegin, descriptionEnd).toString();
 	}
 	
 	protected void reset () {
+		if (window != null && lineNumber > 0) {
+			throw new IllegalStateException(
+					"a text from a reader can only be read once");
+		}
 		lineBegin = 0;
 		lineEnd = -1;
-		currentLine = null;
+		lineNumber = 0;
+		clearCurrentLine();
 		rawLine = null;
-		reader = new BufferedReader(new StringReader(text));
+		scan();
 	}
 	
-	protected final String readLine () {
-		try {
+	/**
+	 * Makes this text handler continue reading from the given text, which must
+	 * coincide with the text read so far up to (and including) the current
+	 * line. The next line read is the line following the current line in the
+	 * given text.
+	 * 
+	 * @param text
+	 *            the text from which to continue reading
+	 */
+	public void resume(CharSequence text) {
+		if (window != null) {
+			throw new IllegalStateException(
+					"cannot resume reading a text from a reader");
+		}
+		this.text = text;
+		scan();
+	}
+
+	/*
+	 * Records the ranges of the lines and finds the header. A text read from
+	 * a reader is not scanned, its lines are found while it is read.
+	 */
+	private void scan() {
+		if (window != null) {
+			return;
+		}
+		int length = text.length();
+		begins = new int[Math.max(16, length / 32)];
+		ends = new int[begins.length];
+		numberOfLines = 0;
+		HeaderScanner header = new HeaderScanner();
+		int begin = 0;
+		int i = 0;
+		while (i < length) {
+			char c = text.charAt(i);
+			header.next(c, i);
+			if (c == '\n' || c == '\r') {
+				addLine(begin, i);
+				i++;
+				if (c == '\r' && i < length && text.charAt(i) == '\n') {
+					header.next('\n', i);
+					i++;
+				}
+				begin = i;
+				continue;
+			}
+			i++;
+		}
+		if (begin < length) {
+			addLine(begin, length);
+		}
+		titleBegin = (int) header.getTitleBegin();
+		titleEnd = (int) header.getTitleEnd();
+		descriptionBegin = (int) header.getDescriptionBegin();
+		descriptionEnd = (int) header.getDescriptionEnd();
+	}
+
+	/*
+	 * Returns the position of the terminator of the line beginning at the
+	 * given position of the window (or of the end of the text), reading
+	 * from the reader as far as necessary, or -1 if there is no such line.
+	 */
+	private int findLineEnd(int begin) {
+		int i = begin;
+		while (true) {
+			if (i == window.length() && !window.fill()) {
+				return i == begin ? -1 : i;
+			}
+			char c = window.charAt(i);
+			if (c == '\n' || c == '\r') {
+				return i;
+			}
+			i++;
+		}
+	}
+
+	private int skipTerminator(int end) {
+		if (end == window.length()) {
+			return end;
+		}
+		if (window.charAt(end) == '\r'
+				&& (end + 1 < window.length() || window.fill())
+				&& window.charAt(end + 1) == '\n') {
+			return end + 2;
+		}
+		return end + 1;
+	}
+
+	private void addLine(int begin, int end) {
+		if (numberOfLines == begins.length) {
+			int[] b = new int[2 * numberOfLines];
+			int[] e = new int[b.length];
+			System.arraycopy(begins, 0, b, 0, numberOfLines);
+			System.arraycopy(ends, 0, e, 0, numberOfLines);
+			begins = b;
+			ends = e;
+		}
+		begins[numberOfLines] = begin;
+		ends[numberOfLines] = end;
+		numberOfLines++;
+	}
+
+	private boolean regionMatches(int begin, int end, String string) {
+		if (begin < currentBegin || begin + string.length() > end) {
+			return false;
+		}
+		for (int i = 0; i < string.length(); i++) {
+			if (text.charAt(begin + i) != string.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the position of the first character of the given range of
+	 * the text that is not a white space (in the sense of
+	 * <tt>String.trim()</tt>), or <tt>end</tt>.
+	 * 
+	 * @param begin
+	 *            the first position of the range
+	 * @param end
+	 *            the position after the range
+	 * @return the first position of the trimmed range
+	 */
+	protected final int trimBegin (int begin, int end) {
+		while (begin < end && text.charAt(begin) <= ' ') {
+			begin++;
+		}
+		return begin;
+	}
+
+	/**
+	 * Returns the position after the last character of the given range of
+	 * the text that is not a white space (in the sense of
+	 * <tt>String.trim()</tt>), or <tt>begin</tt>.
+	 * 
+	 * @param begin
+	 *            the first position of the range
+	 * @param end
+	 *            the position after the range
+	 * @return the position after the trimmed range
+	 */
+	protected final int trimEnd (int begin, int end) {
+		while (end > begin && text.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		return end;
+	}
+	
+	/**
+	 * Reads the next line, which can then be accessed via
+	 * {@linkplain #getLineBegin()} and {@linkplain #getLineEnd()}.
+	 * 
+	 * @return false if there are no more lines
+	 */
+	protected final boolean readLine () {
+		rawLine = null;
+		if (window != null) {
+			return readLineFromWindow();
+		}
+		if (lineNumber >= numberOfLines) {
 		    if (lineEnd >= 0) {
 		        lineBegin = lineEnd + 1;    
 		    }
-			rawLine = reader.readLine();
-			if (rawLine != null) {
-				lineNumber++;
-				lineEnd = lineBegin + rawLine.length();
-			}
-		} catch (IOException e) {
-			e.printStackTrace();
-			return null;
+			return false;
 		}
-		return rawLine;
+		lineBegin = begins[lineNumber];
+		lineEnd = ends[lineNumber];
+		lineNumber++;
+		return true;
 	}
 	
-	protected final boolean ready () {
-		try {
-			return reader.ready();
-		} catch (IOException e) {
-			e.printStackTrace();
+	private boolean readLineFromWindow() {
+		int end = findLineEnd(next);
+		if (end < 0) {
+			if (lineEnd >= 0) {
+				lineBegin = lineEnd + 1;
+			}
 			return false;
 		}
+		if (next > 0) {
+			// the lines in front of this one are not needed any more
+			window.discard(next);
+			end -= next;
+			clearCurrentLine();
+		}
+		lineBegin = 0;
+		lineEnd = end;
+		next = skipTerminator(end);
+		lineNumber++;
+		return true;
 	}
-	
+
+	/**
+	 * Makes the given positions (as returned by {@linkplain #getLineBegin()}
+	 * and {@linkplain #getLineEnd()}) the ones of the current line again.
+	 * 
+	 * @param oldBegin
+	 *            the first position of a line read before
+	 * @param oldEnd
+	 *            the last position of a line read before
+	 */
 	protected final void reset (int oldBegin, int oldEnd) {
-		this.lineBegin = oldBegin;
-		this.lineEnd = oldEnd;
+		int offset = position(0);
+		this.lineBegin = oldBegin - offset;
+		this.lineEnd = oldEnd - offset;
 	}
 	
 
@@ -0,0 +1,219 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.text;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+
+import net.sf.sdedit.diagram.DiagramDataProvider;
+import net.sf.sdedit.diagram.DiagramDataProviderFactory;
+
+/**
+ * A <tt>FileDataProviderFactory</tt> creates {@linkplain TextHandler}s that
+ * read a plain diagram specification (<tt>.sd</tt>) directly from a file, so
+ * the specification is never held in memory as a whole, however big it is.
+ * <p>
+ * Every provider reads the file from its beginning (a diagram may be
+ * generated twice). When a new provider is created, the file of the previous
+ * one is closed.
+ * <p>
+ * Before the first provider is created, the file is scanned for the header
+ * (title and description) of the diagram, which may be anywhere in it. If
+ * there is a header, the file is read once more to extract it.
+ * 
+ * @author Markus Strauch
+ */
+public class FileDataProviderFactory implements DiagramDataProviderFactory,
+		Closeable {
+
+	private static final char BOM = '\uFEFF';
+
+	private final File file;
+
+	private final String encoding;
+
+	private TextHandler handler;
+
+	private boolean headerScanned;
+
+	private String title;
+
+	private String description;
+
+	/**
+	 * Creates a new <tt>FileDataProviderFactory</tt>.
+	 * 
+	 * @param file
+	 *            the diagram file
+	 * @param encoding
+	 *            the encoding of the diagram file
+	 */
+	public FileDataProviderFactory(File file, String encoding) {
+		this.file = file;
+		this.encoding = encoding;
+	}
+
+	/**
+	 * Returns true if the given file contains a plain diagram specification,
+	 * false if it is an XML file, containing a specification along with a
+	 * configuration (<tt>.sdx</tt>).
+	 * 
+	 * @param file
+	 *            a diagram file
+	 * @param encoding
+	 *            the encoding of the file
+	 * @return true if the file contains a plain diagram specification
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static boolean isPlain(File file, String encoding)
+			throws IOException {
+		Reader reader = open(file, encoding);
+		try {
+			char[] buffer = new char[64];
+			int length = 0;
+			int n;
+			while (length < buffer.length
+					&& (n = reader.read(buffer, length, buffer.length - length)) > 0) {
+				length += n;
+			}
+			return !new String(buffer, 0, length).trim().startsWith("<?xml");
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static Reader open(File file, String encoding) throws IOException {
+		PushbackReader reader = new PushbackReader(new InputStreamReader(
+				new FileInputStream(file), encoding));
+		int c = reader.read();
+		if (c >= 0 && c != BOM) {
+			reader.unread(c);
+		}
+		return reader;
+	}
+
+	/*
+	 * Finds the title and the description of the diagram, without keeping
+	 * more of the file in memory than them.
+	 */
+	private void scanHeader() throws IOException {
+		HeaderScanner scanner = new HeaderScanner();
+		char[] buffer = new char[8192];
+		Reader reader = open(file, encoding);
+		try {
+			long position = 0;
+			int n;
+			while ((n = reader.read(buffer)) > 0) {
+				for (int i = 0; i < n; i++) {
+					scanner.next(buffer[i], position + i);
+				}
+				position += n;
+			}
+		} finally {
+			reader.close();
+		}
+		long titleBegin = scanner.getTitleBegin();
+		long descriptionBegin = scanner.getDescriptionBegin();
+		if (titleBegin < 0 && descriptionBegin < 0) {
+			return;
+		}
+		StringBuilder titleText = new StringBuilder();
+		StringBuilder descriptionText = new StringBuilder();
+		long end = Math.max(titleBegin < 0 ? 0 : scanner.getTitleEnd(),
+				descriptionBegin < 0 ? 0 : scanner.getDescriptionEnd());
+		reader = open(file, encoding);
+		try {
+			long position = 0;
+			int n;
+			while (position < end && (n = reader.read(buffer)) > 0) {
+				for (int i = 0; i < n; i++) {
+					long p = position + i;
+					if (p >= titleBegin && p < scanner.getTitleEnd()) {
+						titleText.append(buffer[i]);
+					}
+					if (p >= descriptionBegin
+							&& p < scanner.getDescriptionEnd()) {
+						descriptionText.append(buffer[i]);
+					}
+				}
+				position += n;
+			}
+		} finally {
+			reader.close();
+		}
+		title = titleBegin < 0 ? null : titleText.toString();
+		description = descriptionBegin < 0 ? null : descriptionText
+				.toString();
+	}
+
+	/**
+	 * @throws UncheckedIOException
+	 *             if the file cannot be opened
+	 */
+	public DiagramDataProvider createProvider() {
+		Reader reader;
+		try {
+			close();
+			if (!headerScanned) {
+				scanHeader();
+				headerScanned = true;
+			}
+			reader = open(file, encoding);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		boolean opened = false;
+		try {
+			handler = new TextHandler(reader, title, description);
+			opened = true;
+		} finally {
+			if (!opened) {
+				try {
+					reader.close();
+				} catch (IOException ignored) {
+					/* empty */
+				}
+			}
+		}
+		return handler;
+	}
+
+	/**
+	 * Closes the file read by the most recently created provider.
+	 */
+	public void close() throws IOException {
+		if (handler != null) {
+			handler.close();
+			handler = null;
+		}
+	}
+
+}
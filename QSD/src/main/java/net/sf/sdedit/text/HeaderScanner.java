@@ -0,0 +1,132 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.text;
+
+/**
+ * A <tt>HeaderScanner</tt> finds the header of a diagram specification, that
+ * is the title (<tt>#![title]</tt>) and the description (<tt>#!&gt;&gt;</tt>
+ * ... <tt>#!&lt;&lt;</tt>), while the characters of the text are passed to it
+ * one after the other. The title is the text between the last <tt>#![</tt>
+ * that has a <tt>]</tt> behind it on the same line and that <tt>]</tt>, the
+ * description is the text between the last <tt>#!&gt;&gt;</tt> in front of
+ * the last <tt>#!&lt;&lt;</tt> and that <tt>#!&lt;&lt;</tt>.
+ * <p>
+ * As only the positions of the header are recorded, the text can be scanned
+ * without keeping it in memory.
+ * 
+ * @author Markus Strauch
+ */
+final class HeaderScanner {
+
+	// the last three characters, c1 being the last one
+	private char c1;
+
+	private char c2;
+
+	private char c3;
+
+	private long title;
+
+	private long description;
+
+	private long titleBegin;
+
+	private long titleEnd;
+
+	private long descriptionBegin;
+
+	private long descriptionEnd;
+
+	HeaderScanner() {
+		title = -1;
+		description = -1;
+		titleBegin = -1;
+		descriptionBegin = -1;
+	}
+
+	/**
+	 * Scans the next character of the text.
+	 * 
+	 * @param c
+	 *            the character
+	 * @param position
+	 *            the position of the character in the text
+	 */
+	void next(char c, long position) {
+		if (c == '\n' || c == '\r') {
+			title = -1;
+		} else if (c == ']') {
+			if (title >= 0) {
+				titleBegin = title;
+				titleEnd = position;
+				title = -1;
+			}
+		} else if (c == '[') {
+			if (c1 == '!' && c2 == '#') {
+				title = position + 1;
+			}
+		} else if (c == c1 && c2 == '!' && c3 == '#') {
+			if (c == '>') {
+				description = position + 1;
+			} else if (c == '<') {
+				descriptionBegin = description;
+				descriptionEnd = position - 3;
+			}
+		}
+		c3 = c2;
+		c2 = c1;
+		c1 = c;
+	}
+
+	/**
+	 * Returns the position of the first character of the title, or -1 if
+	 * there is no title.
+	 */
+	long getTitleBegin() {
+		return titleBegin;
+	}
+
+	/**
+	 * Returns the position behind the last character of the title.
+	 */
+	long getTitleEnd() {
+		return titleEnd;
+	}
+
+	/**
+	 * Returns the position of the first character of the description, or -1
+	 * if there is no description.
+	 */
+	long getDescriptionBegin() {
+		return descriptionBegin;
+	}
+
+	/**
+	 * Returns the position behind the last character of the description.
+	 */
+	long getDescriptionEnd() {
+		return descriptionEnd;
+	}
+
+}
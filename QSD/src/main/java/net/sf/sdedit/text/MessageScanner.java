@@ -0,0 +1,385 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.text;
+
+/**
+ * A <tt>MessageScanner</tt> determines the parts of a message string in one
+ * deterministic pass. It recognizes exactly the language of the regular
+ * expressions of the {@linkplain MessageType}s and, for every string, finds
+ * the same match as <tt>java.util.regex</tt> would, i.e. it chooses the first
+ * matching type and, inside a type, the same greedy or reluctant
+ * decompositions. Instead of backtracking, it computes the rightmost
+ * separator that admits a match of the rest of the string (this is what a
+ * greedy caller group ends up with) and then takes the leftmost candidates
+ * for the reluctant groups.
+ * <p>
+ * The groups are numbered as in the regular expressions, so that the
+ * <i>i</i>-th group belongs to the <i>i</i>-th property of
+ * {@linkplain MessageType#getProperties()}. Groups that do not participate in
+ * the match have start and end <tt>-1</tt>, like in a
+ * <tt>java.util.regex.Matcher</tt>.
+ * 
+ * @author Markus Strauch
+ */
+final class MessageScanner {
+
+	// group indices of the PREFIX pattern
+	private static final int NOTE_ID = 0;
+
+	private static final int NOTE_DUMMY = 1;
+
+	private static final int CALLER = 2;
+
+	// group indices of the LEVELS pattern
+	private static final int LEVELS = 3;
+
+	private static final int LEVEL = 4;
+
+	private static final int THREAD = 5;
+
+	private static final int SINGLE_LEVEL = 6;
+
+	private static final int MAX_GROUPS = 10;
+
+	private final String string;
+
+	private final int length;
+
+	private final int[] starts;
+
+	private final int[] ends;
+
+	// index of the last character that '.' does not match, or -1
+	private int lastTerminator;
+
+	// the end of the note id prefix "(n,m)" or -1 if there is none
+	private int noteEnd;
+
+	private int noteComma;
+
+	private int lastDot;
+
+	private int lastEqBeforeDot;
+
+	MessageScanner(String string) {
+		this.string = string;
+		this.length = string.length();
+		starts = new int[MAX_GROUPS];
+		ends = new int[MAX_GROUPS];
+	}
+
+	/**
+	 * Scans the string and returns the type of the message, or <tt>null</tt>
+	 * if the string does not represent a message.
+	 * 
+	 * @return the type of the message or <tt>null</tt>
+	 */
+	MessageType scan() {
+		lastTerminator = -1;
+		lastDot = -1;
+		for (int i = 0; i < length; i++) {
+			char c = string.charAt(i);
+			switch (c) {
+			case '\n':
+			case '\r':
+			case '\u0085':
+			case '\u2028':
+			case '\u2029':
+				lastTerminator = i;
+				break;
+			case '.':
+				if (!isEscaped(i)) {
+					lastDot = i;
+				}
+				break;
+			default:
+			}
+		}
+		lastEqBeforeDot = -1;
+		for (int i = lastDot - 2; i >= 0; i--) {
+			if (string.charAt(i) == '=' && !isEscaped(i)) {
+				lastEqBeforeDot = i;
+				break;
+			}
+		}
+		scanNoteId();
+		for (MessageType type : MessageType.values()) {
+			if (match(type)) {
+				return type;
+			}
+		}
+		return null;
+	}
+
+	int getStart(int group) {
+		return starts[group];
+	}
+
+	int getEnd(int group) {
+		return ends[group];
+	}
+
+	private boolean match(MessageType type) {
+		switch (type) {
+		case LEVEL_THREAD_ANSWER:
+			return matchLevelColon(lastEqBeforeDot - 1)
+					&& matchAnswer(LEVELS + 4, ends[LEVELS] + 1);
+		case LEVEL_THREAD_NO_ANSWER:
+			return matchLevelColon(lastDot - 2)
+					&& matchCallee(LEVELS + 4, ends[LEVELS] + 1, 1);
+		case NO_LEVEL_NO_THREAD_ANSWER:
+			return matchColon(lastEqBeforeDot - 1)
+					&& matchAnswer(CALLER + 1, ends[CALLER] + 1);
+		case NO_LEVEL_NO_THREAD_NO_ANSWER:
+			return matchColon(lastDot - 1)
+					&& matchCallee(CALLER + 1, ends[CALLER] + 1, 0);
+		case PRIMITIVE_WITH_LEVEL:
+			return matchLevelColon(length - 1)
+					&& matchRest(LEVELS + 4, ends[LEVELS] + 1);
+		case PRIMITIVE_WITHOUT_LEVEL:
+			return matchColon(length - 1)
+					&& matchRest(CALLER + 1, ends[CALLER] + 1);
+		case SPAWN_WITH_LEVEL:
+			return matchLevelSpawn()
+					&& matchCallee(LEVELS + 4, ends[LEVELS] + 2, 1);
+		case SPAWN_WITHOUT_LEVEL:
+			return matchSpawn()
+					&& matchCallee(CALLER + 1, ends[CALLER] + 2, 1);
+		default:
+			throw new IllegalArgumentException("unknown message type: "
+					+ type);
+		}
+	}
+
+	/*
+	 * The rightmost separator (':', ':>' or "[level,thread]:") that has an
+	 * admissible rest gives the end of the caller, the caller's start is then
+	 * determined by the note id and the whitespace that follows it.
+	 */
+	private boolean matchPrefix(int callerEnd) {
+		if (callerEnd <= 0) {
+			return false;
+		}
+		if (noteEnd >= 0) {
+			int start = Math.min(skipWhitespace(noteEnd), callerEnd - 1);
+			if (start >= noteEnd && start > lastTerminator) {
+				set(NOTE_ID, 0, noteEnd);
+				if (noteComma >= 0) {
+					set(NOTE_DUMMY, noteComma, noteEnd - 1);
+				} else {
+					unset(NOTE_DUMMY);
+				}
+				set(CALLER, start, callerEnd);
+				return true;
+			}
+		}
+		int start = Math.min(skipWhitespace(0), callerEnd - 1);
+		if (start > lastTerminator) {
+			unset(NOTE_ID);
+			unset(NOTE_DUMMY);
+			set(CALLER, start, callerEnd);
+			return true;
+		}
+		return false;
+	}
+
+	private boolean matchColon(int limit) {
+		int colon = lastColon(Math.min(limit, length - 1));
+		return colon >= 0 && matchPrefix(colon);
+	}
+
+	private boolean matchSpawn() {
+		for (int i = Math.min(lastDot - 3, length - 2); i >= 0; i--) {
+			if (isSpawn(i)) {
+				return matchPrefix(i);
+			}
+		}
+		return false;
+	}
+
+	private boolean matchLevelColon(int limit) {
+		for (int colon = lastColon(Math.min(limit, length - 1)); colon >= 0;
+				colon = lastColon(colon - 1)) {
+			if (matchLevels(colon)) {
+				return matchPrefix(starts[LEVELS]);
+			}
+		}
+		return false;
+	}
+
+	private boolean matchLevelSpawn() {
+		for (int i = Math.min(lastDot - 3, length - 2); i >= 0; i--) {
+			if (isSpawn(i) && matchLevels(i)) {
+				return matchPrefix(starts[LEVELS]);
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Matches "[level,thread]" or "[level]" ending right before the given
+	 * separator. There is at most one way to do this.
+	 */
+	private boolean matchLevels(int separator) {
+		int i = separator - 1;
+		if (i < 0 || string.charAt(i) != ']') {
+			return false;
+		}
+		int digitsEnd = i;
+		i = skipDigitsBackwards(i - 1);
+		if (i == digitsEnd - 1) {
+			return false;
+		}
+		if (i >= 0 && string.charAt(i) == '[') {
+			set(LEVELS, i, separator);
+			unset(LEVEL);
+			unset(THREAD);
+			set(SINGLE_LEVEL, i + 1, digitsEnd);
+			return true;
+		}
+		if (i < 0 || string.charAt(i) != ',') {
+			return false;
+		}
+		int comma = i;
+		i = skipDigitsBackwards(i - 1);
+		if (i < 0 || string.charAt(i) != '[') {
+			return false;
+		}
+		set(LEVELS, i, separator);
+		set(LEVEL, i + 1, comma);
+		set(THREAD, comma + 1, digitsEnd);
+		unset(SINGLE_LEVEL);
+		return true;
+	}
+
+	/*
+	 * "answer=callee.message", the answer is greedy, the callee reluctant.
+	 */
+	private boolean matchAnswer(int group, int from) {
+		if (lastEqBeforeDot < from) {
+			return false;
+		}
+		set(group, from, lastEqBeforeDot);
+		return matchCallee(group + 1, lastEqBeforeDot + 1, 1);
+	}
+
+	/*
+	 * "callee.message", the callee is reluctant and has at least the given
+	 * length.
+	 */
+	private boolean matchCallee(int group, int from, int minLength) {
+		for (int i = from + minLength; i <= lastDot; i++) {
+			if (string.charAt(i) == '.' && !isEscaped(i)) {
+				set(group, from, i);
+				return matchRest(group + 1, i + 1);
+			}
+		}
+		return false;
+	}
+
+	private boolean matchRest(int group, int from) {
+		set(group, from, length);
+		return true;
+	}
+
+	private void scanNoteId() {
+		noteEnd = -1;
+		noteComma = -1;
+		if (length == 0 || string.charAt(0) != '(') {
+			return;
+		}
+		int i = skipDigits(1);
+		int comma = -1;
+		if (i + 1 < length && string.charAt(i) == ','
+				&& isDigit(string.charAt(i + 1))) {
+			comma = i;
+			i = skipDigits(i + 1);
+		}
+		if (i < length && string.charAt(i) == ')') {
+			noteEnd = i + 1;
+			noteComma = comma;
+		}
+	}
+
+	private int lastColon(int from) {
+		for (int i = from; i >= 0; i--) {
+			if (string.charAt(i) == ':' && !isEscaped(i)
+					&& (i + 1 == length || string.charAt(i + 1) != '>')) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private boolean isSpawn(int i) {
+		return string.charAt(i) == ':' && string.charAt(i + 1) == '>'
+				&& !isEscaped(i);
+	}
+
+	private boolean isEscaped(int i) {
+		return i > 0 && string.charAt(i - 1) == '\\';
+	}
+
+	private int skipDigits(int i) {
+		while (i < length && isDigit(string.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	private int skipDigitsBackwards(int i) {
+		while (i >= 0 && isDigit(string.charAt(i))) {
+			i--;
+		}
+		return i;
+	}
+
+	private int skipWhitespace(int i) {
+		while (i < length && isWhitespace(string.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	// the characters matched by \s
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000b'
+				|| c == '\f' || c == '\r';
+	}
+
+	private void set(int group, int start, int end) {
+		starts[group] = start;
+		ends[group] = end;
+	}
+
+	private void unset(int group) {
+		starts[group] = -1;
+		ends[group] = -1;
+	}
+
+}
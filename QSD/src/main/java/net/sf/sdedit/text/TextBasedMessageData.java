@@ -54,16 +54,41 @@ public class TextBasedMessageData extends MessageData {
 
 	private String string;
 
-	private final Map<String, Grep.Region> regions;
+	private Map<String, Grep.Region> regions;
+
+	private MessageType type;
+
+	private int[] spans;
 
 	/**
-	 * Creates a new <tt>MessageParser</tt> for parsing a string.
+	 * Creates a new <tt>TextBasedMessageData</tt> from a string that is
+	 * parsed by a {@linkplain MessageScanner}.
 	 * 
 	 * @param string
 	 *            the string to be parsed
 	 * @throws SyntaxError
 	 *             if the string is not a valid message
 	 */
+	public TextBasedMessageData(String string) throws SyntaxError {
+		super();
+		this.string = string;
+		scan();
+	}
+
+	/**
+	 * Creates a new <tt>TextBasedMessageData</tt> from a string that is
+	 * matched against the regular expressions of the {@linkplain MessageType}s
+	 * one after another. This is the reference implementation of the message
+	 * syntax, {@linkplain #TextBasedMessageData(String)} must yield the same
+	 * results.
+	 * 
+	 * @param string
+	 *            the string to be parsed
+	 * @param grep
+	 *            the {@linkplain Grep} used for matching
+	 * @throws SyntaxError
+	 *             if the string is not a valid message
+	 */
 	public TextBasedMessageData(String string, Grep grep) throws SyntaxError {
 		super();
 		this.string = string;
@@ -71,6 +96,66 @@ public class TextBasedMessageData extends MessageData {
 		parse(grep);
 	}
 
+	private void scan() throws SyntaxError {
+		if (string.indexOf(':') == -1) {
+			throw new SyntaxError(null, "not a valid message - ':' missing");
+		}
+		MessageScanner scanner = new MessageScanner(string);
+		type = scanner.scan();
+		if (type == null) {
+			throw new SyntaxError(null, "not a valid message");
+		}
+		String[] properties = type.getProperties();
+		spans = new int[2 * properties.length];
+		for (int i = 0; i < properties.length; i++) {
+			int start = scanner.getStart(i);
+			int end = scanner.getEnd(i);
+			spans[2 * i] = start;
+			spans[2 * i + 1] = end;
+			String value = "";
+			if (start >= 0) {
+				value = string.substring(start, end);
+				if (value.indexOf('\\') >= 0) {
+					value = Grep.DEFAULT_UNESCAPE.unescape(value);
+				}
+			}
+			setProperty(properties[i], value);
+		}
+	}
+
+	private void setProperty(String property, String value) {
+		switch (property) {
+		case "noteId":
+			setNoteId(value);
+			break;
+		case "dummy":
+			break;
+		case "caller":
+			setCaller(value);
+			break;
+		case "spawner":
+			setSpawner(value);
+			break;
+		case "levelString":
+			setLevelString(value);
+			break;
+		case "threadString":
+			setThreadString(value);
+			break;
+		case "answer":
+			setAnswer(value);
+			break;
+		case "callee":
+			setCallee(value);
+			break;
+		case "message":
+			setMessage(value);
+			break;
+		default:
+			throw new IllegalArgumentException("property " + property + " does not exist");
+		}
+	}
+
 	/**
 	 * Parses the string, after that the attributes corresponding to the parts
 	 * of the string (see {@linkplain TextBasedMessageData} can be fetched via
@@ -157,8 +242,36 @@ public class TextBasedMessageData extends MessageData {
 		}
 	}
 
+	/**
+	 * Returns the region of the string that the given property has been
+	 * derived from. If a property name occurs more than once in the syntax
+	 * of the message, the last occurrence counts.
+	 * 
+	 * @param property
+	 *            the name of a property
+	 * @return the region of the property or <tt>null</tt> if the syntax of the
+	 *         message does not contain the property
+	 */
 	public Region getRegion(String property) {
-		return regions.get(property);
+		if (regions != null) {
+			return regions.get(property);
+		}
+		String[] properties = type.getProperties();
+		for (int i = properties.length - 1; i >= 0; i--) {
+			if (properties[i].equals(property)) {
+				int start = spans[2 * i];
+				int end = spans[2 * i + 1];
+				return new ScannedRegion(start < 0 ? null : string.substring(start, end), start, end);
+			}
+		}
+		return null;
+	}
+
+	private static class ScannedRegion extends Region {
+
+		ScannedRegion(String text, int start, int end) {
+			super(text, start, end);
+		}
 	}
 }
 // {{core}}
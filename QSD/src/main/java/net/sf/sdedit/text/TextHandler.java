@@ -23,6 +23,8 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package net.sf.sdedit.text;
 
+import net.sf.sdedit.diagram.Copier;
+import java.io.Reader;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
@@ -47,7 +49,7 @@ import static net.sf.sdedit.diagram.LifelineFlag.*;
 
 /**
  * A <tt>DiagramDataProvider</tt> implementation, reading a diagram
- * specification from a single string.
+ * specification from a single string or from a reader.
  * 
  * @author Markus Strauch
  * 
@@ -78,7 +80,7 @@ public class TextHandler extends AbstractTextHandler implements SequenceDiagramD
 	 *            a diagram specification
 	 * 
 	 */
-	public TextHandler(String text) {
+	public TextHandler(CharSequence text) {
 		super(text);
 		grep = new Grep(Grep.DEFAULT_UNESCAPE);
 		section = -1;
@@ -86,6 +88,61 @@ public class TextHandler extends AbstractTextHandler implements SequenceDiagramD
 		objectSectionEnd = 0;
 		reset();
 	}
+
+	/**
+	 * Creates a new <tt>TextHandler</tt> that reads a diagram specification
+	 * from the given reader, without keeping more of it in memory than the
+	 * current line. Such a <tt>TextHandler</tt> can be used for generating a
+	 * single diagram, see {@linkplain AbstractTextHandler}. As the header of
+	 * the specification may be anywhere in it, it must have been found in
+	 * advance, see {@linkplain FileDataProviderFactory}.
+	 * 
+	 * @param reader
+	 *            the reader from which to read the diagram specification
+	 * @param title
+	 *            the text of the <tt>#![title]</tt> comment, or <tt>null</tt>
+	 * @param description
+	 *            the text between <tt>#!&gt;&gt;</tt> and
+	 *            <tt>#!&lt;&lt;</tt>, or <tt>null</tt>
+	 */
+	public TextHandler(Reader reader, String title, String description) {
+		super(reader, title, description);
+		grep = new Grep(Grep.DEFAULT_UNESCAPE);
+		section = -1;
+		annotations = new HashMap<Lifeline, String>();
+		objectSectionEnd = 0;
+		reset();
+	}
+
+	/**
+	 * Creates a copy of a <tt>TextHandler</tt>, for a copy of its diagram.
+	 * The copy does not read any text until {@linkplain #resume(CharSequence)}
+	 * has been called.
+	 * 
+	 * @param original
+	 *            the text handler to be copied
+	 * @param copier
+	 *            the copier that keeps track of the copies
+	 */
+	protected TextHandler(TextHandler original, Copier copier) {
+		super(original, copier);
+		grep = new Grep(Grep.DEFAULT_UNESCAPE);
+		section = original.section;
+		title = original.title;
+		description = original.description;
+		annotations = new HashMap<Lifeline, String>();
+		for (Map.Entry<Lifeline, String> entry : original.annotations
+				.entrySet()) {
+			annotations.put(copier.copy(entry.getKey()), entry.getValue());
+		}
+		objectSectionEnd = original.objectSectionEnd;
+		diagram = copier.copy(original.diagram);
+		userData = original.userData;
+	}
+
+	public TextHandler copy(Copier copier) {
+		return new TextHandler(this, copier);
+	}
 	
 	public SequenceDiagram getDiagram () {
 		return diagram;
@@ -120,17 +177,12 @@ public class TextHandler extends AbstractTextHandler implements SequenceDiagramD
 	 */
 	protected void reset() {
 		super.reset();
-		String[] titleString = grep.parse("(?s).*#!\\[([^\n\r]*?)\\].*", text());
-		if (titleString == null) {
-			title = null;
-		} else {
-			title = titleString[0];
-		}
-		String[] descString = grep.parse("(?s).*#!>>(.*)#!<<.*", text());
+		title = Grep.DEFAULT_UNESCAPE.unescape(rawTitle());
+		String descString = Grep.DEFAULT_UNESCAPE.unescape(rawDescription());
 		if (descString == null) {
 			description = null;
 		} else {
-			description = descString[0].trim().split("\n");
+			description = descString.trim().split("\n");
 		}
 		for (int i = 0; description != null && i < description.length; i++) {
 			description[i] = description[i].trim();
@@ -190,66 +242,78 @@ public class TextHandler extends AbstractTextHandler implements SequenceDiagramD
 	}
 	
 	private boolean advance(boolean ignoreEmptyLines) {
-		try {
-			if (!ready()) {
+		int begin;
+		int end;
+		do {
+			if (!readLine()) {
 				section = 1;
 				return false;
 			}
-			String line;
-			do {
-				line = readLine();
-				if (line == null) {
-					section = 1;
-					return false;
-				}
-				
-				if (ignoreEmptyLines) {
-					line = line.trim();
-				}
-				
-				if (section == 1 && line.trim().startsWith("#!")) {
-					updateUserData(line.trim().substring(2));
-				}
-				
-				if (section == -1 && (line.equals("") || line.startsWith("#"))) {
-					continue;
-				}
+			begin = rawLineBegin();
+			end = rawLineEnd();
+			int trimmedBegin = trimBegin(begin, end);
+			int trimmedEnd = trimEnd(trimmedBegin, end);
+
+			if (ignoreEmptyLines) {
+				begin = trimmedBegin;
+				end = trimmedEnd;
+			}
+
+			if (section == 1 && startsWith(trimmedBegin, trimmedEnd, "#!")) {
+				updateUserData(text().subSequence(trimmedBegin + 2, trimmedEnd)
+						.toString());
+			}
+
+			if (section == -1 && (begin == end || text().charAt(begin) == '#')) {
+				continue;
+			}
 
-				section = Math.max(0, section);
-				if (section == 0) {
-					int cmt = line.indexOf("#");
-					if (cmt >= 0) {
-						line = line.substring(0, cmt).trim();
+			section = Math.max(0, section);
+			if (section == 0) {
+				for (int i = begin; i < end; i++) {
+					if (text().charAt(i) == '#') {
+						end = trimEnd(begin, i);
+						begin = trimBegin(begin, end);
+						break;
 					}
 				}
-				if (section == 0 && line.equals("")) {
-					objectSectionEnd = getLineNumber() - 1;
-					section = 1;
-					return false;
-				}
-			} while (ignoreEmptyLines
-					&& (line.equals("") || line.startsWith("#")));
-			setCurrentLine(line);
-			return true;
-		} catch (Exception e) {
-			e.printStackTrace();
+			}
+			if (section == 0 && begin == end) {
+				objectSectionEnd = getLineNumber() - 1;
+				section = 1;
+				return false;
+			}
+		} while (ignoreEmptyLines
+				&& (begin == end || text().charAt(begin) == '#'));
+		setCurrentLine(begin, end);
+		return true;
+	}
+
+	private boolean startsWith(int begin, int end, String prefix) {
+		if (end - begin < prefix.length()) {
 			return false;
 		}
+		for (int i = 0; i < prefix.length(); i++) {
+			if (text().charAt(begin + i) != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	public String openFragment() {
 		if (section == 0) {
 			throw new IllegalStateException("not all objects have been read");
 		}
-		if (currentLine() == null) {
+		if (!hasCurrentLine()) {
 			throw new IllegalStateException("nothing to read");
 		}
-		if (currentLine().startsWith("//")) {
+		if (currentLineStartsWith("//")) {
 			System.err
 					.println("Warning: Comments starting with // are deprecated. Use [c:<type> <text>]...[/c].");
 			return currentLine().substring(2).trim();
 		}
-		if (currentLine().endsWith("]") && currentLine().startsWith("[c")) {
+		if (currentLineEndsWith("]") && currentLineStartsWith("[c")) {
 			return currentLine();
 		}
 		return null;
@@ -259,10 +323,10 @@ public class TextHandler extends AbstractTextHandler implements SequenceDiagramD
 		if (section == 0) {
 			throw new IllegalStateException("not all objects have been read");
 		}
-		if (currentLine() == null) {
+		if (!hasCurrentLine()) {
 			throw new IllegalStateException("nothing to read");
 		}
-		if (currentLine().startsWith("--")) {
+		if (currentLineStartsWith("--")) {
 			return currentLine().substring(2);
 		}
 		return null;
@@ -272,11 +336,11 @@ public class TextHandler extends AbstractTextHandler implements SequenceDiagramD
 		if (section == 0) {
 			throw new IllegalStateException("not all objects have been read");
 		}
-		if (currentLine() == null) {
+		if (!hasCurrentLine()) {
 			throw new IllegalStateException("nothing to read");
 		}
-		return currentLine().equals("\\\\") || currentLine().endsWith("]")
-				&& currentLine().startsWith("[/c");
+		return currentLineEquals("\\\\") || currentLineEndsWith("]")
+				&& currentLineStartsWith("[/c");
 	}
 
 	/**
@@ -290,17 +354,17 @@ public class TextHandler extends AbstractTextHandler implements SequenceDiagramD
 		if (section == 0) {
 			throw new IllegalStateException("not all objects have been read");
 		}
-		if (currentLine() == null) {
+		if (!hasCurrentLine()) {
 			throw new IllegalStateException("nothing to read");
 		}
 		MessageData data;
 		try {
-			data = new TextBasedMessageData(currentLine(), grep);
+			data = new TextBasedMessageData(currentLine());
 		} catch (SyntaxError e) {
 			e.setProvider(this);
 			throw e;
 		}
-		setCurrentLine(null);
+		clearCurrentLine();
 		data.setUserData(userData);
 		return data;
 	}
@@ -318,10 +382,10 @@ public class TextHandler extends AbstractTextHandler implements SequenceDiagramD
 			throw new IllegalStateException(
 					"reading objects has already been finished");
 		}
-		if (currentLine() == null) {
+		if (!hasCurrentLine()) {
 			throw new IllegalStateException("nothing to read");
 		}
-		if (currentLine().indexOf(':') == -1) {
+		if (currentLineIndexOf(':') == -1) {
 			throw new SyntaxError(this,
 					"not a valid object declaration - ':' missing");
 		}
@@ -339,7 +403,7 @@ public class TextHandler extends AbstractTextHandler implements SequenceDiagramD
 			}
 			throw new SyntaxError(this, msg);
 		}
-		setCurrentLine(null);
+		clearCurrentLine();
 		String name = parts[0];
 		String type = parts[1];
 		String flags = parts[2];
@@ -418,9 +482,13 @@ public class TextHandler extends AbstractTextHandler implements SequenceDiagramD
 		if (section == 0) {
 			throw new IllegalStateException("not all objects have been read");
 		}
-		if (currentLine() == null) {
+		if (!hasCurrentLine()) {
 			throw new IllegalStateException("nothing to read");
 		}
+		char first = currentLineFirstChar();
+		if (first != '*' && first != '+') {
+			return null;
+		}
 		String[] parts = grep.parse("\\s*(\\*|\\+)(\\d+)\\s*(.+)", currentLine());
 		if (parts == null) {
 			return null;
@@ -496,9 +564,12 @@ public class TextHandler extends AbstractTextHandler implements SequenceDiagramD
 		if (section == 0) {
 			throw new IllegalStateException("not all objects have been read");
 		}
-		if (currentLine() == null) {
+		if (!hasCurrentLine()) {
 			throw new IllegalStateException("nothing to read");
 		}
+		if (!currentLineStartsWith("(")) {
+			return null;
+		}
 		String[] parts = grep.parse("\\((\\d+)\\)\\s*(\\w+)", currentLine());
 		if (parts == null) {
 			return null;
@@ -0,0 +1,157 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.text;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+
+/**
+ * A <tt>TextWindow</tt> is the part of a text read from a <tt>Reader</tt>
+ * that has not yet been discarded. Positions are relative to the beginning of
+ * the window, so they change when characters are discarded. Characters are
+ * read from the reader only when they are needed, so the size of a window is
+ * bounded by the amount of text its user keeps, not by the size of the text.
+ * 
+ * @author Markus Strauch
+ */
+final class TextWindow implements CharSequence {
+
+	private static final int CHUNK = 8192;
+
+	private final Reader reader;
+
+	private char[] buffer;
+
+	/*
+	 * the window consists of the characters buffer[start] ...
+	 * buffer[start + length - 1]
+	 */
+	private int start;
+
+	private int length;
+
+	private long discarded;
+
+	private boolean endOfText;
+
+	TextWindow(Reader reader) {
+		this.reader = reader;
+		buffer = new char[2 * CHUNK];
+	}
+
+	/**
+	 * Appends characters from the reader to the window. The reader is closed
+	 * when its end has been reached.
+	 * 
+	 * @return false if there are no more characters
+	 * @throws UncheckedIOException
+	 *             if the reader cannot be read
+	 */
+	boolean fill() {
+		if (endOfText) {
+			return false;
+		}
+		if (buffer.length - start - length < CHUNK) {
+			char[] target = buffer;
+			if (buffer.length - length < CHUNK) {
+				target = new char[Math.max(2 * buffer.length, length + CHUNK)];
+			}
+			System.arraycopy(buffer, start, target, 0, length);
+			buffer = target;
+			start = 0;
+		}
+		try {
+			int n = reader.read(buffer, start + length, buffer.length - start
+					- length);
+			if (n < 0) {
+				endOfText = true;
+				reader.close();
+				return false;
+			}
+			length += n;
+			return true;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Removes the given number of characters from the beginning of the
+	 * window.
+	 * 
+	 * @param n
+	 *            the number of characters to be removed
+	 */
+	void discard(int n) {
+		if (n < 0 || n > length) {
+			throw new IndexOutOfBoundsException("cannot discard " + n
+					+ " of " + length + " characters");
+		}
+		start += n;
+		length -= n;
+		discarded += n;
+	}
+
+	/**
+	 * Returns the number of characters that have been discarded, which is
+	 * the position of the window in the text.
+	 * 
+	 * @return the number of characters that have been discarded
+	 */
+	long getDiscarded() {
+		return discarded;
+	}
+
+	void close() throws IOException {
+		endOfText = true;
+		reader.close();
+	}
+
+	public int length() {
+		return length;
+	}
+
+	public char charAt(int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("index: " + index
+					+ ", length: " + length);
+		}
+		return buffer[start + index];
+	}
+
+	public CharSequence subSequence(int begin, int end) {
+		if (begin < 0 || end > length || begin > end) {
+			throw new IndexOutOfBoundsException("begin: " + begin + ", end: "
+					+ end + ", length: " + length);
+		}
+		return new String(buffer, start + begin, end - begin);
+	}
+
+	@Override
+	public String toString() {
+		return new String(buffer, start, length);
+	}
+
+}
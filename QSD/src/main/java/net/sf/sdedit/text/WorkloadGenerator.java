@@ -0,0 +1,1417 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.text;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+
+/**
+ * A <tt>WorkloadGenerator</tt> produces the texts of synthetic sequence
+ * diagrams for scalability and soak tests of layout and export. The texts use
+ * every construct that the {@linkplain TextHandler} understands: object
+ * declarations with flags, labels and annotations, nested calls with levels,
+ * answers, constructors and destructors, primitive messages, notes with event
+ * and message associations, <tt>[c:...]</tt> fragments with <tt>--</tt>
+ * separators, <tt>#!</tt> user data and, if threads are enabled, spawning,
+ * broadcast and instantly returning messages, explicit thread numbers and
+ * <tt>stop</tt>.
+ * <p>
+ * The generator keeps a model of the call stacks of all threads, so each text
+ * is a valid diagram. A text without threads is valid whether the
+ * <tt>threaded</tt> property is set or not, a text with threads (see
+ * {@linkplain #isThreaded()}) requires it. A text depends only on the
+ * parameters and the seed. A {@linkplain Defect} can be injected into a text
+ * in order to get a diagram that is not valid.
+ * <p>
+ * The <tt>main</tt> method offers the generator as a command line tool.
+ *
+ * @author Markus Strauch
+ */
+public final class WorkloadGenerator {
+
+	/**
+	 * The kinds of messages that are generated. Each kind has a weight, the
+	 * probability of a kind is proportional to its weight. Kinds that need
+	 * multithreading are only generated when threads are enabled.
+	 */
+	public enum Kind {
+
+		/**
+		 * A message to another object, the callee becomes active.
+		 */
+		CALL(40, false),
+
+		/**
+		 * A message with an explicit answer.
+		 */
+		ANSWER(12, false),
+
+		/**
+		 * A message of an object to itself.
+		 */
+		SELF(8, false),
+
+		/**
+		 * A message that creates an object that was declared invisible.
+		 */
+		CONSTRUCTOR(3, false),
+
+		/**
+		 * A message that destroys an inactive object.
+		 */
+		DESTROY(2, false),
+
+		/**
+		 * A message without a callee.
+		 */
+		PRIMITIVE(5, false),
+
+		/**
+		 * A message that spawns a new thread.
+		 */
+		SPAWN(5, true),
+
+		/**
+		 * A message that is sent to a set of objects at once.
+		 */
+		BROADCAST(2, true),
+
+		/**
+		 * A message that returns instantly.
+		 */
+		INSTANT(5, true),
+
+		/**
+		 * The end of a thread.
+		 */
+		STOP(1, true);
+
+		private final int weight;
+
+		private final boolean threaded;
+
+		Kind(int weight, boolean threaded) {
+			this.weight = weight;
+			this.threaded = threaded;
+		}
+
+		/**
+		 * Returns the weight that is used when no other weight is set.
+		 *
+		 * @return the default weight
+		 */
+		public int getDefaultWeight() {
+			return weight;
+		}
+
+		/**
+		 * Returns true if messages of this kind can only be generated when
+		 * threads are enabled.
+		 *
+		 * @return true if messages of this kind need multithreading
+		 */
+		public boolean isThreaded() {
+			return threaded;
+		}
+	}
+
+	/**
+	 * Defects that can be injected into a generated text. Each of them makes
+	 * the diagram fail with a syntax error or a semantic error.
+	 */
+	public enum Defect {
+
+		/**
+		 * A message without a colon.
+		 */
+		SYNTAX,
+
+		/**
+		 * A message to an object that has not been declared.
+		 */
+		UNKNOWN_OBJECT,
+
+		/**
+		 * A message sent by an object that is not active.
+		 */
+		INACTIVE_CALLER,
+
+		/**
+		 * An object that is declared twice.
+		 */
+		DUPLICATE_OBJECT,
+
+		/**
+		 * An object declaration with the unsupported <tt>f</tt> flag.
+		 */
+		BAD_FLAG,
+
+		/**
+		 * A missing empty line between the objects and the messages.
+		 */
+		MISSING_SECTION_BREAK,
+
+		/**
+		 * A note without a closing line.
+		 */
+		UNCLOSED_NOTE,
+
+		/**
+		 * A fragment closing line without an open fragment.
+		 */
+		STRAY_FRAGMENT_CLOSE,
+
+		/**
+		 * A spawning message sent by an actor, which is not allowed in either
+		 * mode.
+		 */
+		ILLEGAL_SPAWN
+	}
+
+	private static final String[] VERBS = { "get", "set", "load", "store",
+			"update", "check", "notify", "compute", "open", "close", "send",
+			"receive", "find", "create", "validate", "process" };
+
+	private static final String[] NOUNS = { "value", "item", "request",
+			"result", "data", "state", "entry", "event", "page", "record",
+			"session", "token" };
+
+	private static final String[] FRAGMENTS = { "alt", "opt", "loop", "break",
+			"critical", "par" };
+
+	private static final String[] COLORS = { "red", "blue", "green", "orange",
+			"magenta", "#4060a0", "#a06040" };
+
+	private static final int MAX_FRAGMENT_NESTING = 3;
+
+	private int lifelines = 10;
+
+	private int messages = 100;
+
+	private int maxDepth = 5;
+
+	private int threads;
+
+	private int fragments = 10;
+
+	private int notes = 10;
+
+	private long seed;
+
+	private final Map<Kind, Integer> weights;
+
+	/**
+	 * Creates a new <tt>WorkloadGenerator</tt> for a diagram with 10
+	 * lifelines, 100 messages, a maximal call depth of 5, 10 fragments, 10
+	 * notes, no threads and seed 0.
+	 */
+	public WorkloadGenerator() {
+		weights = new EnumMap<Kind, Integer>(Kind.class);
+		for (Kind kind : Kind.values()) {
+			weights.put(kind, kind.getDefaultWeight());
+		}
+	}
+
+	/**
+	 * Sets the number of lifelines.
+	 *
+	 * @param lifelines
+	 *            the number of lifelines, at least 2
+	 */
+	public void setLifelines(int lifelines) {
+		if (lifelines < 2) {
+			throw new IllegalArgumentException("at least 2 lifelines needed");
+		}
+		this.lifelines = lifelines;
+	}
+
+	public int getLifelines() {
+		return lifelines;
+	}
+
+	/**
+	 * Sets the number of messages.
+	 *
+	 * @param messages
+	 *            the number of messages
+	 */
+	public void setMessages(int messages) {
+		if (messages < 0) {
+			throw new IllegalArgumentException("negative number of messages");
+		}
+		this.messages = messages;
+	}
+
+	public int getMessages() {
+		return messages;
+	}
+
+	/**
+	 * Sets the maximal number of activations on the stack of a thread.
+	 *
+	 * @param maxDepth
+	 *            the maximal call depth, at least 1
+	 */
+	public void setMaxDepth(int maxDepth) {
+		if (maxDepth < 1) {
+			throw new IllegalArgumentException("maximal depth must be positive");
+		}
+		this.maxDepth = maxDepth;
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * Sets the maximal number of threads. If this is 0, the diagram is
+	 * sequential, otherwise it must be generated with the <tt>threaded</tt>
+	 * property set.
+	 *
+	 * @param threads
+	 *            the maximal number of threads
+	 */
+	public void setThreads(int threads) {
+		if (threads < 0) {
+			throw new IllegalArgumentException("negative number of threads");
+		}
+		this.threads = threads;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Returns true if threads are enabled.
+	 *
+	 * @return true if threads are enabled
+	 */
+	public boolean isThreaded() {
+		return threads > 0;
+	}
+
+	/**
+	 * Sets the number of fragments.
+	 *
+	 * @param fragments
+	 *            the number of fragments
+	 */
+	public void setFragments(int fragments) {
+		if (fragments < 0) {
+			throw new IllegalArgumentException("negative number of fragments");
+		}
+		this.fragments = fragments;
+	}
+
+	public int getFragments() {
+		return fragments;
+	}
+
+	/**
+	 * Sets the number of notes.
+	 *
+	 * @param notes
+	 *            the number of notes
+	 */
+	public void setNotes(int notes) {
+		if (notes < 0) {
+			throw new IllegalArgumentException("negative number of notes");
+		}
+		this.notes = notes;
+	}
+
+	public int getNotes() {
+		return notes;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Sets the weight of a kind of messages.
+	 *
+	 * @param kind
+	 *            the kind of messages
+	 * @param weight
+	 *            the weight, 0 if messages of the kind should not be
+	 *            generated
+	 */
+	public void setWeight(Kind kind, int weight) {
+		if (weight < 0) {
+			throw new IllegalArgumentException("negative weight");
+		}
+		weights.put(kind, weight);
+	}
+
+	public int getWeight(Kind kind) {
+		return weights.get(kind);
+	}
+
+	/**
+	 * Returns the text of a valid diagram.
+	 *
+	 * @return the text of a valid diagram
+	 */
+	public String generate() {
+		return generate(null);
+	}
+
+	/**
+	 * Returns the text of a diagram with the given defect.
+	 *
+	 * @param defect
+	 *            the defect, if <tt>null</tt>, the diagram is valid
+	 * @return the text of a diagram with the given defect
+	 */
+	public String generate(Defect defect) {
+		Run run = new Run();
+		run.declare();
+		run.run();
+		if (defect != null) {
+			run.inject(defect);
+		}
+		StringBuilder text = new StringBuilder();
+		for (String line : run.text) {
+			text.append(line).append('\n');
+		}
+		return text.toString();
+	}
+
+	@Override
+	public String toString() {
+		return "lifelines=" + lifelines + ",messages=" + messages
+				+ ",maxDepth=" + maxDepth + ",threads=" + threads
+				+ ",fragments=" + fragments + ",notes=" + notes + ",seed="
+				+ seed;
+	}
+
+	/*
+	 * The model of a lifeline.
+	 */
+	private static final class Line {
+
+		final String name;
+
+		final boolean alwaysActive;
+
+		final boolean automatic;
+
+		boolean alive;
+
+		boolean destroyed;
+
+		// true if the lifeline is or was the first caller of a thread
+		boolean root;
+
+		// true if the lifeline was active when its activity was ended by an
+		// actor without threads; with threads, it would still be active
+		boolean interrupted;
+
+		Line(String name, boolean alwaysActive, boolean automatic,
+				boolean alive) {
+			this.name = name;
+			this.alwaysActive = alwaysActive;
+			this.automatic = automatic;
+			this.alive = alive;
+		}
+
+		boolean usable() {
+			return alive && !destroyed;
+		}
+	}
+
+	/*
+	 * The model of a thread: the first caller at index 0 and the callees of
+	 * the activations that have not yet been answered.
+	 */
+	private static final class Stack {
+
+		final int number;
+
+		final LinkedList<Line> lines = new LinkedList<Line>();
+
+		boolean dead;
+
+		// true if the first caller has declared its own thread, such a
+		// lifeline is not active before it sends a message, so the thread
+		// number is always given explicitly
+		boolean declared;
+
+		Stack(int number) {
+			this.number = number;
+		}
+
+		boolean usable() {
+			return !dead && !lines.isEmpty();
+		}
+	}
+
+	/*
+	 * A fragment that is currently open.
+	 */
+	private static final class Fragment {
+
+		final int sections;
+
+		final int sectionLength;
+
+		int section;
+
+		int count;
+
+		Fragment(int sections, int sectionLength) {
+			this.sections = sections;
+			this.sectionLength = sectionLength;
+		}
+	}
+
+	/*
+	 * The state of a single call of generate.
+	 */
+	private final class Run {
+
+		final Random random = new Random(seed);
+
+		final List<String> text = new ArrayList<String>();
+
+		final List<Line> lines = new ArrayList<Line>();
+
+		final List<Line> actors = new ArrayList<Line>();
+
+		final List<Stack> stacks = new ArrayList<Stack>();
+
+		final LinkedList<Fragment> openFragments = new LinkedList<Fragment>();
+
+		// notes that have not yet been associated with an event or a message
+		final LinkedList<Integer> unassociated = new LinkedList<Integer>();
+
+		// the indices of the lines before which something can be inserted
+		// into the message section
+		final List<Integer> boundaries = new ArrayList<Integer>();
+
+		final List<Integer> declarations = new ArrayList<Integer>();
+
+		// the indices of the lines after which an object that has just been
+		// called by an actor is active
+		final List<Integer> activations = new ArrayList<Integer>();
+
+		int sectionBreak;
+
+		int note;
+
+		int fragment;
+
+		boolean userData;
+
+		int lastCallee;
+
+		void declare() {
+			text.add("#![Workload " + seed + "]");
+			text.add("#!>>");
+			text.add("#!" + WorkloadGenerator.this.toString());
+			text.add("#!<<");
+			int numActors = Math.max(1, lifelines / 10);
+			int numProcesses = lifelines / 20;
+			int numTasks = isThreaded() ? Math.min(lifelines / 10,
+					threads / 2) : 0;
+			int numInvisible = lifelines / 8;
+			int numObjects = lifelines - numActors - numProcesses - numTasks
+					- numInvisible;
+			List<String> declarations = new ArrayList<String>();
+			for (int i = 1; i <= numActors; i++) {
+				declarations.add(declareActor("actor" + i, "Actor", ""));
+			}
+			for (int i = 1; i <= numProcesses; i++) {
+				declarations.add(declareActor("process" + i, "Process", "[p]"));
+			}
+			for (int i = 1; i <= numObjects; i++) {
+				declarations.add(declareObject(i));
+			}
+			for (int i = 1; i <= numInvisible; i++) {
+				String name = "temp" + i;
+				lines.add(new Line(name, false, false, false));
+				declarations.add("/" + name + ":Temp"
+						+ (random.nextBoolean() ? "[v]" : ""));
+			}
+			for (int i = 1; i <= numTasks; i++) {
+				String name = "task" + i;
+				Line line = new Line(name, false, false, true);
+				line.root = true;
+				lines.add(line);
+				declarations.add(name + ":Task[t]");
+			}
+			// lifelines with threads of their own must be declared in the
+			// order of their thread numbers
+			int first = declarations.size() - numTasks;
+			for (int i = first - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				declarations.set(i, declarations.set(j, declarations.get(i)));
+			}
+			for (String declaration : declarations) {
+				this.declarations.add(text.size());
+				text.add(declaration);
+			}
+			for (int i = 0; i < numTasks; i++) {
+				Stack stack = new Stack(stacks.size());
+				stack.declared = true;
+				stack.lines.add(lines.get(lines.size() - numTasks + i));
+				stacks.add(stack);
+			}
+			if (!isThreaded()) {
+				stacks.add(new Stack(0));
+			}
+			sectionBreak = text.size();
+			text.add("");
+		}
+
+		private String declareActor(String name, String type, String flags) {
+			Line line = new Line(name, true, false, true);
+			lines.add(line);
+			actors.add(line);
+			return name + ":" + type + flags;
+		}
+
+		private String declareObject(int i) {
+			String flags = "";
+			if (random.nextInt(10) == 0) {
+				flags += "a";
+			}
+			if (random.nextInt(10) == 0) {
+				flags += "r";
+			}
+			if (random.nextInt(20) == 0) {
+				flags += "e";
+			}
+			boolean automatic = random.nextInt(20) == 0;
+			if (automatic) {
+				flags += "x";
+			}
+			String name = "object" + i;
+			lines.add(new Line(name, false, automatic, true));
+			String declaration = name + ":Class" + (1 + random.nextInt(i))
+					+ (flags.length() > 0 ? "[" + flags + "]" : "");
+			if (random.nextInt(8) == 0) {
+				declaration += " \"" + noun() + " " + i + "\"";
+			}
+			if (random.nextInt(8) == 0) {
+				declaration += " #!" + verb() + "s " + noun() + "s";
+			}
+			return declaration;
+		}
+
+		void run() {
+			for (int m = 0; m < messages; m++) {
+				boundaries.add(text.size());
+				if (fragment < fragments
+						&& openFragments.size() < MAX_FRAGMENT_NESTING
+						&& m >= (long) fragment * messages / fragments) {
+					openFragment(m);
+				}
+				if (note < notes && m >= (long) note * messages / notes) {
+					note();
+				}
+				if (m > 0 && random.nextInt(userData ? 10 : 50) == 0) {
+					userData();
+				}
+				int associated = 0;
+				if (!unassociated.isEmpty() && random.nextInt(4) == 0) {
+					if (random.nextBoolean()) {
+						associate();
+					} else {
+						associated = unassociated.removeFirst();
+					}
+				}
+				message();
+				if (associated > 0) {
+					int last = text.size() - 1;
+					// a note can only be associated with an arrow
+					if (text.get(last).indexOf('.') > 0) {
+						text.set(last, "(" + associated + ")" + text.get(last));
+					} else {
+						unassociated.addFirst(associated);
+					}
+				}
+				stepFragments(m);
+			}
+			while (!openFragments.isEmpty()) {
+				openFragments.removeLast();
+				text.add("[/c]");
+			}
+			boundaries.add(text.size());
+		}
+
+		private void openFragment(int m) {
+			fragment++;
+			int remaining = messages - m;
+			int length = Math.max(1, messages / (2 * fragments));
+			length = Math.min(remaining, 1 + random.nextInt(2 * length));
+			String type = FRAGMENTS[random.nextInt(FRAGMENTS.length)];
+			int sections = type.equals("alt") || type.equals("par") ? 2 + random
+					.nextInt(2) : 1;
+			sections = Math.min(sections, length);
+			openFragments.add(new Fragment(sections, length / sections));
+			switch (random.nextInt(4)) {
+			case 0:
+				text.add("[c:" + type + "]");
+				break;
+			case 1:
+				text.add("[c " + noun() + " " + fragment + "]");
+				break;
+			default:
+				text.add("[c:" + type + " " + noun() + " " + fragment + "]");
+			}
+		}
+
+		private void stepFragments(int m) {
+			while (!openFragments.isEmpty()) {
+				Fragment current = openFragments.getLast();
+				current.count++;
+				if (current.count < current.sectionLength) {
+					return;
+				}
+				if (current.section < current.sections - 1) {
+					if (m < messages - 1) {
+						current.section++;
+						current.count = 0;
+						text.add(random.nextBoolean() ? "--" : "--[" + noun()
+								+ "]");
+						return;
+					}
+				}
+				openFragments.removeLast();
+				text.add("[/c]");
+			}
+		}
+
+		private void note() {
+			note++;
+			Line line = pick(false, false, false);
+			if (line == null) {
+				return;
+			}
+			boolean consuming = random.nextInt(4) == 0;
+			text.add((consuming ? "+" : "*") + note + " " + line.name);
+			int n = 1 + random.nextInt(3);
+			for (int i = 0; i < n; i++) {
+				text.add(noun() + " " + note + "." + i);
+			}
+			text.add((consuming ? "+" : "*") + note);
+			unassociated.add(note);
+		}
+
+		private void associate() {
+			Line line = pick(false, false, false);
+			if (line != null) {
+				text.add("(" + unassociated.removeFirst() + ")" + line.name);
+			}
+		}
+
+		private void userData() {
+			if (userData) {
+				text.add("#!");
+				userData = false;
+			} else {
+				String data = "color:" + COLORS[random.nextInt(COLORS.length)];
+				if (random.nextBoolean()) {
+					data += ";background-color:"
+							+ COLORS[random.nextInt(COLORS.length)];
+				}
+				text.add("#!" + data);
+				userData = true;
+			}
+		}
+
+		private void message() {
+			int total = 0;
+			for (Kind kind : Kind.values()) {
+				if (isThreaded() || !kind.isThreaded()) {
+					total += weights.get(kind);
+				}
+			}
+			if (total > 0) {
+				int r = random.nextInt(total);
+				for (Kind kind : Kind.values()) {
+					if (isThreaded() || !kind.isThreaded()) {
+						r -= weights.get(kind);
+						if (r < 0) {
+							if (message(kind)) {
+								return;
+							}
+							break;
+						}
+					}
+				}
+			}
+			if (!message(Kind.CALL)) {
+				// an actor can always do something on its own
+				actorPrimitive();
+			}
+		}
+
+		private boolean message(Kind kind) {
+			switch (kind) {
+			case CALL:
+				if (random.nextInt(8) == 0 || !hasCaller()) {
+					return actorCall();
+				}
+				return call(false);
+			case ANSWER:
+				return call(true);
+			case SELF:
+				return self();
+			case CONSTRUCTOR:
+				return constructor();
+			case DESTROY:
+				return destroy();
+			case PRIMITIVE:
+				return primitive();
+			case SPAWN:
+				return spawn();
+			case BROADCAST:
+				return broadcast();
+			case INSTANT:
+				return instant();
+			case STOP:
+				return stop();
+			default:
+				throw new IllegalArgumentException();
+			}
+		}
+
+		private boolean actorCall() {
+			Line actor = actors.get(random.nextInt(actors.size()));
+			Line callee = pick(false,
+					isThreaded() && stacks.size() >= threads, true);
+			if (callee == null || callee == actor) {
+				return false;
+			}
+			text.add(actor.name + ":" + callee.name + "." + method());
+			if (!isThreaded()) {
+				// without threads, all activities end when an actor sends a
+				// message
+				interrupt();
+			}
+			if (!callee.alwaysActive) {
+				activations.add(text.size());
+				Stack stack;
+				if (isThreaded()) {
+					stack = new Stack(stacks.size());
+					stacks.add(stack);
+					callee.root = true;
+				} else {
+					stack = stacks.get(0);
+				}
+				stack.lines.add(callee);
+			}
+			return true;
+		}
+
+		private boolean call(boolean answer) {
+			Stack stack = pickStack();
+			if (stack == null) {
+				return false;
+			}
+			int index = pickIndex(stack, true);
+			Line callee = pick(answer, false, true);
+			if (index < 0 || callee == null) {
+				return false;
+			}
+			Line caller = stack.lines.get(index);
+			if (callee == caller) {
+				return false;
+			}
+			String line = caller(stack, index) + ":";
+			if (answer) {
+				line += noun() + "=";
+			}
+			line += callee.name + "." + method();
+			text.add(line);
+			pop(stack, index);
+			if (!callee.alwaysActive) {
+				stack.lines.add(callee);
+			}
+			return true;
+		}
+
+		private boolean self() {
+			Stack stack = pickStack();
+			if (stack == null) {
+				return false;
+			}
+			int index = pickIndex(stack, true);
+			if (index < 0) {
+				return false;
+			}
+			Line caller = stack.lines.get(index);
+			text.add(caller(stack, index) + ":" + caller.name + "." + method());
+			pop(stack, index);
+			stack.lines.add(caller);
+			return true;
+		}
+
+		private boolean constructor() {
+			Stack stack = pickStack();
+			if (stack == null) {
+				return false;
+			}
+			int index = pickIndex(stack, true);
+			if (index < 0) {
+				return false;
+			}
+			Line callee = null;
+			for (Line line : lines) {
+				if (!line.alive) {
+					callee = line;
+					break;
+				}
+			}
+			if (callee == null) {
+				return false;
+			}
+			text.add(caller(stack, index) + ":" + callee.name
+					+ (random.nextBoolean() ? ".new" : ".new(" + noun() + ")"));
+			pop(stack, index);
+			callee.alive = true;
+			stack.lines.add(callee);
+			return true;
+		}
+
+		private boolean destroy() {
+			Stack stack = pickStack();
+			if (stack == null) {
+				return false;
+			}
+			int index = pickIndex(stack, false);
+			List<Line> candidates = new ArrayList<Line>();
+			outer: for (Line line : lines) {
+				if (line.usable() && !line.alwaysActive && !line.automatic
+						&& !line.root && !line.interrupted) {
+					for (Stack s : stacks) {
+						if (s.lines.contains(line)) {
+							continue outer;
+						}
+					}
+					candidates.add(line);
+				}
+			}
+			if (candidates.isEmpty()) {
+				return false;
+			}
+			Line callee = candidates.get(random.nextInt(candidates.size()));
+			text.add(caller(stack, index) + ":" + callee.name
+					+ (random.nextBoolean() ? ".destroy" : ".destroy()"));
+			pop(stack, index);
+			callee.destroyed = true;
+			return true;
+		}
+
+		private boolean primitive() {
+			Stack stack = pickStack();
+			if (stack == null || random.nextInt(4) == 0) {
+				actorPrimitive();
+				return true;
+			}
+			int index = pickIndex(stack, false);
+			text.add(caller(stack, index) + ":" + verb() + " " + noun());
+			pop(stack, index);
+			return true;
+		}
+
+		private void actorPrimitive() {
+			Line actor = actors.get(random.nextInt(actors.size()));
+			text.add(actor.name + ":" + verb() + " " + noun());
+			if (!isThreaded()) {
+				interrupt();
+			}
+		}
+
+		/*
+		 * Ends all activities of the single thread. If the text is rendered
+		 * with threads (the default configuration), they go on, so the
+		 * lifelines must not be destroyed.
+		 */
+		private void interrupt() {
+			for (Line line : stacks.get(0).lines) {
+				line.interrupted = true;
+			}
+			stacks.get(0).lines.clear();
+		}
+
+		private boolean spawn() {
+			Stack stack = pickStack();
+			if (stack == null || stacks.size() >= threads) {
+				return false;
+			}
+			int index = pickIndex(stack, false);
+			Line caller = stack.lines.get(index);
+			Line callee = pick(true, false, true);
+			if (callee == null || callee == caller) {
+				return false;
+			}
+			text.add(caller(stack, index) + ":>" + callee.name + "."
+					+ method());
+			pop(stack, index);
+			Stack spawned = new Stack(stacks.size());
+			stacks.add(spawned);
+			spawned.lines.add(callee);
+			callee.root = true;
+			return true;
+		}
+
+		private boolean broadcast() {
+			Stack stack = pickStack();
+			if (stack == null) {
+				return false;
+			}
+			int index = pickIndex(stack, false);
+			Line caller = stack.lines.get(index);
+			// the caller is looked up for each callee, after the first one
+			// its activations above the index have been answered
+			if (stack.lines.lastIndexOf(caller) != index) {
+				return false;
+			}
+			int n = Math.min(threads - stacks.size(), 2 + random.nextInt(3));
+			List<Line> callees = new ArrayList<Line>();
+			for (int i = 0; i < 2 * n && callees.size() < n; i++) {
+				Line callee = pick(true, false, true);
+				if (callee != null && callee != caller
+						&& !callees.contains(callee)) {
+					callees.add(callee);
+				}
+			}
+			if (callees.size() < 2) {
+				return false;
+			}
+			StringBuilder line = new StringBuilder();
+			line.append(caller(stack, index) + ":{");
+			for (int i = 0; i < callees.size(); i++) {
+				line.append(i > 0 ? "," : "").append(callees.get(i).name);
+			}
+			line.append("}." + method());
+			text.add(line.toString());
+			pop(stack, index);
+			for (Line callee : callees) {
+				Stack spawned = new Stack(stacks.size());
+				stacks.add(spawned);
+				spawned.lines.add(callee);
+				callee.root = true;
+			}
+			return true;
+		}
+
+		private boolean instant() {
+			Stack stack = pickStack();
+			if (stack == null) {
+				return false;
+			}
+			int index = pickIndex(stack, false);
+			Line caller = stack.lines.get(index);
+			Line callee = pick(true, false, true);
+			if (callee == null || callee == caller) {
+				return false;
+			}
+			text.add(caller(stack, index) + ":" + callee.name + "." + method()
+					+ "&");
+			pop(stack, index);
+			return true;
+		}
+
+		private boolean stop() {
+			int alive = 0;
+			for (Stack stack : stacks) {
+				if (stack.usable()) {
+					alive++;
+				}
+			}
+			Stack stack = pickStack();
+			if (alive < 2) {
+				return false;
+			}
+			int index = pickIndex(stack, false);
+			text.add(caller(stack, index) + ":stop");
+			stack.lines.clear();
+			stack.dead = true;
+			return true;
+		}
+
+		private boolean hasCaller() {
+			for (Stack stack : stacks) {
+				if (stack.usable()) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/*
+		 * Returns a random thread with an active object, or null.
+		 */
+		private Stack pickStack() {
+			List<Stack> candidates = new ArrayList<Stack>();
+			for (Stack stack : stacks) {
+				if (stack.usable()) {
+					candidates.add(stack);
+				}
+			}
+			if (candidates.isEmpty()) {
+				return null;
+			}
+			return candidates.get(random.nextInt(candidates.size()));
+		}
+
+		/*
+		 * Returns the position of the caller on the stack, preferring the most
+		 * recent activation. If the caller pushes another activation, the
+		 * maximal depth is respected and -1 is returned if this is not
+		 * possible.
+		 */
+		private int pickIndex(Stack stack, boolean push) {
+			int index = stack.lines.size() - 1;
+			while (index > 0 && random.nextInt(3) == 0) {
+				index--;
+			}
+			if (push) {
+				index = Math.min(index, maxDepth - 2);
+			}
+			return index;
+		}
+
+		/*
+		 * Returns a random lifeline that can receive a message, or null. The
+		 * lifelines are picked round-robin with random steps, so all of them
+		 * are used.
+		 */
+		private Line pick(boolean activatable, boolean alwaysActive,
+				boolean automatic) {
+			int n = lines.size();
+			lastCallee = (lastCallee + 1 + random.nextInt(n)) % n;
+			for (int i = 0; i < n; i++) {
+				Line line = lines.get((lastCallee + i) % n);
+				if (line.usable() && (!activatable || !line.alwaysActive)
+						&& (!alwaysActive || line.alwaysActive)
+						&& (automatic || !line.automatic)) {
+					return line;
+				}
+			}
+			return null;
+		}
+
+		/*
+		 * Returns the caller as it appears in a message, with a level if the
+		 * caller is active more than once above the index and with an
+		 * explicit thread number where it is needed.
+		 */
+		private String caller(Stack stack, int index) {
+			Line caller = stack.lines.get(index);
+			int level = 0;
+			for (int i = index + 1; i < stack.lines.size(); i++) {
+				if (stack.lines.get(i) == caller) {
+					level++;
+				}
+			}
+			boolean thread = false;
+			if (isThreaded()) {
+				int active = 0;
+				for (Stack s : stacks) {
+					if (!s.dead && s.lines.contains(caller)) {
+						active++;
+					}
+				}
+				thread = active != 1 || stack.declared
+						|| random.nextInt(4) == 0;
+			}
+			if (thread) {
+				return caller.name + "[" + (level > 0 ? level : "") + ","
+						+ stack.number + "]";
+			}
+			if (level > 0) {
+				return caller.name + "[" + level + "]";
+			}
+			return caller.name;
+		}
+
+		private void pop(Stack stack, int index) {
+			while (stack.lines.size() > index + 1) {
+				stack.lines.removeLast();
+			}
+		}
+
+		private String method() {
+			String noun = noun();
+			String method = verb() + noun.substring(0, 1).toUpperCase()
+					+ noun.substring(1);
+			switch (random.nextInt(4)) {
+			case 0:
+				return method;
+			case 1:
+				return method + "()";
+			case 2:
+				return method + "(" + noun() + ")";
+			default:
+				return method + "(" + noun() + ", \"" + verb() + " "
+						+ noun() + "\")";
+			}
+		}
+
+		private String verb() {
+			return VERBS[random.nextInt(VERBS.length)];
+		}
+
+		private String noun() {
+			return NOUNS[random.nextInt(NOUNS.length)];
+		}
+
+		void inject(Defect defect) {
+			int at = boundaries.get(random.nextInt(boundaries.size()));
+			String actor = actors.get(0).name;
+			switch (defect) {
+			case SYNTAX:
+				text.add(at, actor + " " + verb() + " " + noun());
+				break;
+			case UNKNOWN_OBJECT:
+				text.add(at, actor + ":nobody." + method());
+				break;
+			case INACTIVE_CALLER:
+				// an inactive object becomes the first caller if nothing
+				// else is active
+				if (activations.isEmpty()) {
+					text.add(actor + ":" + lines.get(actors.size()).name + "."
+							+ method());
+					text.add("idle:idle." + method());
+				} else {
+					text.add(activations.get(random.nextInt(activations
+							.size())), "idle:idle." + method());
+				}
+				text.add(sectionBreak, "idle:Idle");
+				break;
+			case DUPLICATE_OBJECT:
+				int i = declarations.get(random.nextInt(declarations.size()));
+				text.add(i, text.get(i));
+				break;
+			case BAD_FLAG:
+				text.add(sectionBreak, "bad:Bad[f]");
+				break;
+			case MISSING_SECTION_BREAK:
+				// the first message is taken for a redeclaration of the actor
+				text.add(sectionBreak + 1, actor + ":" + verb() + " " + noun());
+				text.remove(sectionBreak);
+				break;
+			case UNCLOSED_NOTE:
+				text.add(at, "*" + (notes + 1) + " " + actor);
+				text.add(at + 1, noun());
+				break;
+			case STRAY_FRAGMENT_CLOSE:
+				text.add(sectionBreak + 1, "[/c]");
+				break;
+			case ILLEGAL_SPAWN:
+				Line callee = lines.get(actors.size());
+				text.add(at, actor + ":>" + callee.name + "." + method());
+				break;
+			default:
+				throw new IllegalArgumentException();
+			}
+		}
+	}
+
+	private static void printHelp(Options options) {
+		HelpFormatter formatter = new HelpFormatter();
+		formatter.printHelp(
+				"java " + WorkloadGenerator.class.getName() + " [options]",
+				options);
+	}
+
+	@SuppressWarnings("static-access")
+	private static Options createOptions() {
+		Options options = new Options();
+		options.addOption(OptionBuilder.hasArg().withArgName("lifelines")
+				.withDescription("number of lifelines (default 10)")
+				.create('l'));
+		options.addOption(OptionBuilder.hasArg().withArgName("messages")
+				.withDescription("number of messages (default 100)")
+				.create('m'));
+		options.addOption(OptionBuilder.hasArg().withArgName("depth")
+				.withDescription("maximal call depth (default 5)").create('d'));
+		options.addOption(OptionBuilder
+				.hasArg()
+				.withArgName("threads")
+				.withDescription(
+						"maximal number of threads, if positive, the diagrams "
+								+ "must be rendered with --threaded=true "
+								+ "(default 0)").create('t'));
+		options.addOption(OptionBuilder.hasArg().withArgName("fragments")
+				.withDescription("number of fragments (default 10)")
+				.create('f'));
+		options.addOption(OptionBuilder.hasArg().withArgName("notes")
+				.withDescription("number of notes (default 10)").create('n'));
+		options.addOption(OptionBuilder.hasArg().withArgName("seed")
+				.withDescription("seed of the first diagram (default 0)")
+				.create('s'));
+		options.addOption(OptionBuilder
+				.hasArg()
+				.withArgName("count")
+				.withDescription(
+						"number of diagrams, generated with consecutive seeds "
+								+ "(default 1)").create('c'));
+		options.addOption(OptionBuilder.hasArgs().withArgName("kind=weight")
+				.withDescription("weight of a kind of messages, kinds are "
+						+ names(Kind.values())).create('w'));
+		options.addOption(OptionBuilder.hasArg().withArgName("defect")
+				.withDescription("inject one of " + names(Defect.values()))
+				.create('x'));
+		options.addOption(OptionBuilder
+				.hasArg()
+				.withArgName("output")
+				.withDescription(
+						"output file, or directory if there is more than one "
+								+ "diagram (default: standard output)")
+				.create('o'));
+		options.addOption(OptionBuilder.withDescription("show this help")
+				.create('h'));
+		return options;
+	}
+
+	private static String names(Enum<?>[] values) {
+		StringBuilder names = new StringBuilder("{");
+		for (int i = 0; i < values.length; i++) {
+			names.append(i > 0 ? ", " : "").append(
+					values[i].name().toLowerCase(Locale.ENGLISH));
+		}
+		return names.append("}").toString();
+	}
+
+	private static int intOption(CommandLine cmd, char option, int def) {
+		String value = cmd.getOptionValue(option);
+		return value == null ? def : Integer.parseInt(value);
+	}
+
+	/**
+	 * Generates diagrams as specified by the command line arguments. Use
+	 * <tt>-h</tt> for a description of the options.
+	 *
+	 * @param argv
+	 *            the command line arguments
+	 * @throws IOException
+	 *             if a diagram cannot be written
+	 */
+	public static void main(String[] argv) throws IOException {
+		Options options = createOptions();
+		CommandLineParser parser = new PosixParser();
+		CommandLine cmd;
+		WorkloadGenerator generator = new WorkloadGenerator();
+		Defect defect = null;
+		int count;
+		try {
+			cmd = parser.parse(options, argv);
+			if (cmd.hasOption('h')) {
+				printHelp(options);
+				return;
+			}
+			generator.setLifelines(intOption(cmd, 'l', 10));
+			generator.setMessages(intOption(cmd, 'm', 100));
+			generator.setMaxDepth(intOption(cmd, 'd', 5));
+			generator.setThreads(intOption(cmd, 't', 0));
+			generator.setFragments(intOption(cmd, 'f', 10));
+			generator.setNotes(intOption(cmd, 'n', 10));
+			if (cmd.hasOption('s')) {
+				generator.setSeed(Long.parseLong(cmd.getOptionValue('s')));
+			}
+			count = intOption(cmd, 'c', 1);
+			if (cmd.hasOption('w')) {
+				for (String weight : cmd.getOptionValues('w')) {
+					int eq = weight.indexOf('=');
+					if (eq < 0) {
+						throw new IllegalArgumentException("bad weight: "
+								+ weight);
+					}
+					generator.setWeight(
+							Kind.valueOf(weight.substring(0, eq).trim()
+									.toUpperCase(Locale.ENGLISH)),
+							Integer.parseInt(weight.substring(eq + 1).trim()));
+				}
+			}
+			if (cmd.hasOption('x')) {
+				defect = Defect.valueOf(cmd.getOptionValue('x').toUpperCase(
+						Locale.ENGLISH));
+			}
+		} catch (ParseException e) {
+			System.err.println(e.getMessage());
+			printHelp(options);
+			return;
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			printHelp(options);
+			return;
+		}
+		String output = cmd.getOptionValue('o');
+		long seed = generator.getSeed();
+		for (int i = 0; i < count; i++) {
+			generator.setSeed(seed + i);
+			String text = generator.generate(defect);
+			if (output == null) {
+				System.out.print(text);
+				continue;
+			}
+			File file = new File(output);
+			if (count > 1) {
+				file.mkdirs();
+				file = new File(file, "workload-" + (seed + i)
+						+ (defect != null ? "-"
+								+ defect.name().toLowerCase(Locale.ENGLISH)
+								: "") + ".sd");
+			}
+			Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+					"UTF-8");
+			try {
+				writer.write(text);
+			} finally {
+				writer.close();
+			}
+		}
+	}
+}
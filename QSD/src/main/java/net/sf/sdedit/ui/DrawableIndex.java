@@ -0,0 +1,255 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.ui;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import net.sf.sdedit.drawable.Drawable;
+
+/**
+ * A <tt>DrawableIndex</tt> is an immutable index over the drawable elements of
+ * a finished diagram that finds the elements at a point or in a rectangle
+ * without looking at all of them.
+ * <p>
+ * Sequence diagrams grow mainly downwards, so the elements are organized by
+ * their vertical extent (see {@linkplain Drawable#getExtent()}) in a centered
+ * interval tree. A query visits O(log n + k) elements, where k is the number
+ * of elements whose vertical extent meets the query. The candidates are then
+ * tested exactly by {@linkplain Drawable#contains(Point)} or
+ * {@linkplain Drawable#intersects(Rectangle)}.
+ * <p>
+ * The results of the queries are ordered in the same way as the elements
+ * were when the index was built, so they can be painted in the usual order.
+ * 
+ * @author Markus Strauch
+ */
+public final class DrawableIndex {
+
+	private final Drawable[] drawables;
+
+	private final int[] tops;
+
+	private final int[] bottoms;
+
+	private final Node root;
+
+	/**
+	 * Creates a new <tt>DrawableIndex</tt>. The drawable elements must not be
+	 * moved or resized afterwards.
+	 * 
+	 * @param elements
+	 *            the drawable elements, in the order in which they are painted
+	 */
+	public DrawableIndex(Iterable<Drawable> elements) {
+		List<Drawable> list = new ArrayList<Drawable>();
+		for (Drawable drawable : elements) {
+			list.add(drawable);
+		}
+		drawables = list.toArray(new Drawable[list.size()]);
+		tops = new int[drawables.length];
+		bottoms = new int[drawables.length];
+		Integer[] all = new Integer[drawables.length];
+		for (int i = 0; i < drawables.length; i++) {
+			Rectangle extent = drawables[i].getExtent();
+			tops[i] = extent.y;
+			bottoms[i] = extent.y + extent.height;
+			all[i] = i;
+		}
+		root = build(all);
+	}
+
+	/*
+	 * The center is the median of the endpoints of the intervals, so at least
+	 * one of them contains the center and both subtrees have at most half of
+	 * the intervals.
+	 */
+	private Node build(Integer[] intervals) {
+		if (intervals.length == 0) {
+			return null;
+		}
+		int[] endpoints = new int[2 * intervals.length];
+		for (int i = 0; i < intervals.length; i++) {
+			endpoints[2 * i] = tops[intervals[i]];
+			endpoints[2 * i + 1] = bottoms[intervals[i]];
+		}
+		Arrays.sort(endpoints);
+		int center = endpoints[intervals.length];
+		List<Integer> left = new ArrayList<Integer>();
+		List<Integer> right = new ArrayList<Integer>();
+		List<Integer> here = new ArrayList<Integer>();
+		for (Integer i : intervals) {
+			if (bottoms[i] < center) {
+				left.add(i);
+			} else if (tops[i] > center) {
+				right.add(i);
+			} else {
+				here.add(i);
+			}
+		}
+		Node node = new Node();
+		node.center = center;
+		node.byTop = sort(here, new Comparator<Integer>() {
+			public int compare(Integer i, Integer j) {
+				return tops[i] - tops[j];
+			}
+		});
+		node.byBottom = sort(here, new Comparator<Integer>() {
+			public int compare(Integer i, Integer j) {
+				return bottoms[j] - bottoms[i];
+			}
+		});
+		node.left = build(left.toArray(new Integer[left.size()]));
+		node.right = build(right.toArray(new Integer[right.size()]));
+		return node;
+	}
+
+	private static int[] sort(List<Integer> list, Comparator<Integer> comparator) {
+		Integer[] array = list.toArray(new Integer[list.size()]);
+		Arrays.sort(array, comparator);
+		int[] sorted = new int[array.length];
+		for (int i = 0; i < array.length; i++) {
+			sorted[i] = array[i];
+		}
+		return sorted;
+	}
+
+	/**
+	 * Returns the number of drawable elements in this index.
+	 * 
+	 * @return the number of drawable elements in this index
+	 */
+	public int size() {
+		return drawables.length;
+	}
+
+	/**
+	 * Returns the drawable elements that contain the given point.
+	 * 
+	 * @param point
+	 *            a point of the diagram
+	 * @return the drawable elements that contain the point
+	 */
+	public List<Drawable> getDrawablesAt(Point point) {
+		List<Drawable> result = new ArrayList<Drawable>();
+		for (int i : query(point.y, point.y)) {
+			if (drawables[i].contains(point)) {
+				result.add(drawables[i]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the drawable elements that intersect the given rectangle.
+	 * 
+	 * @param rectangle
+	 *            a rectangular area of the diagram
+	 * @return the drawable elements intersecting the rectangle
+	 */
+	public List<Drawable> getDrawablesIn(Rectangle rectangle) {
+		List<Drawable> result = new ArrayList<Drawable>();
+		for (int i : query(rectangle.y, rectangle.y + rectangle.height)) {
+			if (drawables[i].intersects(rectangle)) {
+				result.add(drawables[i]);
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * Returns the (sorted) indices of the drawables whose vertical extent
+	 * meets [y0,y1].
+	 */
+	private int[] query(int y0, int y1) {
+		int[] result = new int[16];
+		int size = 0;
+		List<Node> stack = new ArrayList<Node>();
+		if (root != null) {
+			stack.add(root);
+		}
+		while (!stack.isEmpty()) {
+			Node node = stack.remove(stack.size() - 1);
+			int[] found;
+			int n;
+			if (y1 < node.center) {
+				found = node.byTop;
+				n = 0;
+				while (n < found.length && tops[found[n]] <= y1) {
+					n++;
+				}
+				push(stack, node.left);
+			} else if (y0 > node.center) {
+				found = node.byBottom;
+				n = 0;
+				while (n < found.length && bottoms[found[n]] >= y0) {
+					n++;
+				}
+				push(stack, node.right);
+			} else {
+				found = node.byTop;
+				n = found.length;
+				push(stack, node.left);
+				push(stack, node.right);
+			}
+			if (size + n > result.length) {
+				result = Arrays.copyOf(result, Math.max(2 * result.length,
+						size + n));
+			}
+			for (int i = 0; i < n; i++) {
+				result[size++] = found[i];
+			}
+		}
+		result = Arrays.copyOf(result, size);
+		Arrays.sort(result);
+		return result;
+	}
+
+	private static void push(List<Node> stack, Node node) {
+		if (node != null) {
+			stack.add(node);
+		}
+	}
+
+	private static final class Node {
+
+		int center;
+
+		// the intervals containing the center, sorted by their tops
+		int[] byTop;
+
+		// the intervals containing the center, sorted descendingly by their
+		// bottoms
+		int[] byBottom;
+
+		Node left;
+
+		Node right;
+	}
+
+}
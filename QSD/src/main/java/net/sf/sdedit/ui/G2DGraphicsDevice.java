@@ -28,6 +28,7 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 
 import net.sf.sdedit.diagram.AbstractGraphicDevice;
+import net.sf.sdedit.drawable.DisplayList;
 import net.sf.sdedit.drawable.Drawable;
 import net.sf.sdedit.drawable.Strokes;
 
@@ -62,11 +63,17 @@ public abstract class G2DGraphicsDevice extends AbstractGraphicDevice
     
     /**
      * Draws all of the diagram's elements into the graphics context
-     * created via {@linkplain #createGraphics()}.
+     * created via {@linkplain #createGraphics()}, or replays the
+     * {@linkplain #setDisplayList(DisplayList) display list} into it.
      */
     public void drawAll () {
         g2d.setColor(Color.BLACK);
         g2d.setStroke(Strokes.defaultStroke());
+        DisplayList displayList = getDisplayList();
+        if (displayList != null) {
+            displayList.replay(g2d);
+            return;
+        }
         for (Drawable drawable : drawables()) {
             drawable.draw(g2d);
         }
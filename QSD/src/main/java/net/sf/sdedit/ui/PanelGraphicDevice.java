@@ -41,6 +41,8 @@ import javax.swing.event.MouseInputListener;
 import net.sf.sdedit.Constants;
 import net.sf.sdedit.diagram.AbstractGraphicDevice;
 import net.sf.sdedit.diagram.Diagram;
+import net.sf.sdedit.diagram.RenderTimes;
+import net.sf.sdedit.diagram.RenderTimes.Phase;
 import net.sf.sdedit.drawable.Drawable;
 import net.sf.sdedit.drawable.Fragment;
 import net.sf.sdedit.drawable.Strokes;
@@ -93,6 +95,11 @@ public class PanelGraphicDevice extends
 	
 	private boolean empty;
 
+	/**
+	 * Index over the drawable elements, built when the diagram is complete.
+	 */
+	private volatile DrawableIndex index;
+
 	/**
 	 * Creates a new <tt>PanelPaintDevice</tt>.
 	 * 
@@ -128,7 +135,7 @@ public class PanelGraphicDevice extends
 				zp.setCursor(Cursor.getDefaultCursor());
 			}
 			lastDrawableMovedOver = null;
-			for (Drawable drawable : drawables()) {
+			for (Drawable drawable : drawablesAt(point)) {
 				if (!(drawable instanceof Fragment)) {
 					if (drawable.contains(point)) {
 						lastDrawableMovedOver = drawable;
@@ -142,6 +149,38 @@ public class PanelGraphicDevice extends
 		}
 	}
 	
+	/**
+	 * Returns the (visible) drawable elements containing the given point, in
+	 * the order in which they are drawn.
+	 * 
+	 * @param point
+	 *            a point of the diagram
+	 * @return the drawable elements containing the point
+	 */
+	protected Iterable<Drawable> drawablesAt(Point point) {
+		DrawableIndex index = this.index;
+		if (index == null) {
+			return drawables();
+		}
+		return index.getDrawablesAt(point);
+	}
+
+	/**
+	 * Returns the (visible) drawable elements that may intersect the given
+	 * rectangle, in the order in which they are drawn.
+	 * 
+	 * @param rectangle
+	 *            a rectangular area of the diagram
+	 * @return the drawable elements that may intersect the rectangle
+	 */
+	protected Iterable<Drawable> drawablesIn(Rectangle rectangle) {
+		DrawableIndex index = this.index;
+		if (index == null) {
+			return drawables();
+		}
+		return index.getDrawablesIn(rectangle);
+	}
+
 	public void highlight (Drawable drawable) {
 		highlighted = drawable;
 	}
@@ -274,7 +313,7 @@ public class PanelGraphicDevice extends
 			String text = null;
 			if (partner != null) {
 				Point mousePoint = e.getPoint();
-				for (Drawable drawable : drawables()) {
+				for (Drawable drawable : drawablesAt(mousePoint)) {
 					if (drawable.contains(mousePoint)) {
 						text = partner.getTooltip(drawable);
 						break;
@@ -289,6 +328,7 @@ public class PanelGraphicDevice extends
 
 		@Override
 		public void paintComponent(Graphics g) {
+			long start = System.nanoTime();
 			Graphics2D g2 = (Graphics2D) g.create();
 			Rectangle clipBounds = g2.getClipBounds();
 			g2.setColor(Color.WHITE);
@@ -302,7 +342,7 @@ public class PanelGraphicDevice extends
 				}
 		        g2.setColor(Color.BLACK);
 		        g2.setStroke(Strokes.defaultStroke());
-		        for (Drawable drawable : drawables()) {
+		        for (Drawable drawable : drawablesIn(clipBounds)) {
 					if (drawable.intersects(clipBounds)) {
 						if (drawable == highlighted) {
 							Graphics gg = g2.create();
@@ -315,6 +355,10 @@ public class PanelGraphicDevice extends
 				}
 			}
 			g2.dispose();
+			RenderTimes times = getRenderTimes();
+			if (times != null) {
+				times.recordSince(Phase.PAINT, start);
+			}
 			if (lastMove != null) {
 				mouseMoved(lastMove);
 			}
@@ -325,9 +369,12 @@ public class PanelGraphicDevice extends
     public void close (int width, int height, boolean empty) {
         this.empty = empty;
         size = new Dimension(width, height);
+        // the diagram is complete now, no drawable will be moved anymore
+        index = new DrawableIndex(drawables());
     }
 
     public void initialize(Diagram diagram) {
+        index = null;
         super.initialize(diagram);
     }
     
@@ -0,0 +1,161 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.ui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import net.sf.sdedit.diagram.AbstractGraphicDevice;
+import net.sf.sdedit.diagram.RenderTimes;
+import net.sf.sdedit.diagram.RenderTimes.Phase;
+import net.sf.sdedit.drawable.DisplayList;
+import net.sf.sdedit.drawable.Drawable;
+import net.sf.sdedit.drawable.Strokes;
+import net.sf.sdedit.jfr.FlightEvents;
+import net.sf.sdedit.util.CountingOutputStream;
+import net.sf.sdedit.util.PNGEncoder;
+
+/**
+ * A <tt>StripedPNGGraphicsDevice</tt> writes a diagram as a PNG image without
+ * creating an image of the whole diagram, as an
+ * {@linkplain ImageGraphicsDevice} does. The diagram is drawn into a horizontal
+ * strip of at most {@value #STRIP_PIXELS} pixels, one strip after the other,
+ * and the rows of each strip are passed to a {@linkplain PNGEncoder}. Only the
+ * drawable elements that intersect a strip are drawn into it (see
+ * {@linkplain DrawableIndex}), so the memory needed does not depend on the
+ * height of the diagram. The same holds for a
+ * {@linkplain #setDisplayList(DisplayList) display list}, which is replayed
+ * strip by strip.
+ * 
+ * @author Markus Strauch
+ */
+public class StripedPNGGraphicsDevice extends AbstractGraphicDevice {
+
+	/**
+	 * The maximal number of pixels of a strip (unless the diagram is wider).
+	 */
+	public static final int STRIP_PIXELS = 1 << 22;
+
+	private final static RenderingHints AALIAS = new RenderingHints(
+			RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+	private final boolean antialias;
+
+	private final int stripPixels;
+
+	public StripedPNGGraphicsDevice() {
+		this(true, STRIP_PIXELS);
+	}
+
+	/**
+	 * Creates a new <tt>StripedPNGGraphicsDevice</tt>.
+	 * 
+	 * @param antialias
+	 *            flag denoting if antialiasing is to be used
+	 * @param stripPixels
+	 *            the maximal number of pixels of a strip (a strip has at
+	 *            least one row)
+	 */
+	public StripedPNGGraphicsDevice(boolean antialias, int stripPixels) {
+		this.antialias = antialias;
+		this.stripPixels = stripPixels;
+	}
+
+	/**
+	 * Writes the diagram as a PNG image. This method must be called when the
+	 * diagram has been generated. Like {@linkplain
+	 * net.sf.sdedit.server.Exporter#export()}, it records the export as a
+	 * flight recorder event and in the render times of the diagram.
+	 * 
+	 * @param stream
+	 *            the stream to write the PNG image to
+	 * @throws IOException
+	 */
+	public void writeToStream(OutputStream stream) throws IOException {
+		long start = System.nanoTime();
+		FlightEvents events = FlightEvents.get();
+		Object event = events.beginExport();
+		CountingOutputStream counter = new CountingOutputStream(stream);
+		writeStrips(counter);
+		events.endExport(event, "png", counter.getCount(),
+				getDisplayList() == null ? drawables() : getDisplayList()
+						.getExtents());
+		RenderTimes times = getRenderTimes();
+		if (times != null) {
+			times.recordSince(Phase.EXPORT, start);
+		}
+	}
+
+	private void writeStrips(OutputStream stream) throws IOException {
+		int width = getWidth();
+		int height = getHeight();
+		int stripHeight = Math.max(1,
+				Math.min(height, stripPixels / Math.max(1, width)));
+		DisplayList displayList = getDisplayList();
+		DrawableIndex index = displayList == null ? new DrawableIndex(
+				drawables()) : null;
+		BufferedImage strip = new BufferedImage(width, stripHeight,
+				BufferedImage.TYPE_INT_RGB);
+		int[] pixels = ((DataBufferInt) strip.getRaster().getDataBuffer())
+				.getData();
+		PNGEncoder encoder = new PNGEncoder(stream, width, height);
+		try {
+			for (int top = 0; top < height; top += stripHeight) {
+				int rows = Math.min(stripHeight, height - top);
+				Graphics2D g2d = strip.createGraphics();
+				if (antialias) {
+					g2d.setRenderingHints(AALIAS);
+				}
+				g2d.setFont(getFont());
+				g2d.setColor(Color.WHITE);
+				g2d.fillRect(0, 0, width, stripHeight);
+				g2d.translate(0, -top);
+				g2d.setColor(Color.BLACK);
+				g2d.setStroke(Strokes.defaultStroke());
+				Rectangle area = new Rectangle(0, top, width, rows);
+				if (displayList != null) {
+					displayList.replay(g2d, area);
+				} else {
+					for (Drawable drawable : index.getDrawablesIn(area)) {
+						drawable.draw(g2d);
+					}
+				}
+				g2d.dispose();
+				for (int row = 0; row < rows; row++) {
+					encoder.writeRow(pixels, row * width);
+				}
+			}
+			encoder.finish();
+		} finally {
+			encoder.end();
+		}
+	}
+
+}
@@ -23,83 +23,132 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package net.sf.sdedit.ui.impl;
 
-import java.util.LinkedList;
-import java.util.ListIterator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.SwingUtilities;
 
 import net.sf.sdedit.diagram.Diagram;
 import net.sf.sdedit.diagram.DiagramFactory;
 import net.sf.sdedit.diagram.PaintDevice;
+import net.sf.sdedit.diagram.RenderStatistics;
+import net.sf.sdedit.diagram.RenderTimes;
+import net.sf.sdedit.diagram.RenderTimes.Phase;
 import net.sf.sdedit.error.DiagramError;
 import net.sf.sdedit.error.FatalError;
+import net.sf.sdedit.error.GenerationCancelled;
 
 /**
  * A <tt>DiagramRenderer</tt> (typically a singleton instance) is responsible
- * for rendering diagrams belonging to {@linkplain DiagramTab}s on a separate
- * thread.
+ * for rendering diagrams belonging to {@linkplain DiagramTab}s on separate
+ * threads.
+ * <p>
+ * Diagrams of different tabs are rendered in parallel by a bounded pool of
+ * threads. For each tab, at most one diagram is rendered at a time, and only
+ * the most recently requested diagram is displayed: a new request cancels the
+ * rendering that is running for the tab (it stops before the next message is
+ * processed) and replaces a request that is still waiting.
+ * <p>
+ * The number of requests that are waiting or running, the number of
+ * superseded requests and the latency of the requests (see
+ * {@linkplain RenderTimes.Phase#LATENCY}) are published by the
+ * {@linkplain RenderStatistics} of the tabs and by the global ones.
  * 
  * @author Markus Strauch
  * 
  */
-public class DiagramRenderer implements Runnable {
+public class DiagramRenderer {
 
-	private LinkedList<DiagramFactory> queue;
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Maps tabs onto the jobs rendering their diagrams.
+	 */
+	private final Map<DiagramTab, Job> running;
+
+	/**
+	 * Maps tabs onto the jobs that are to be started when the running jobs
+	 * for the tabs are done.
+	 */
+	private final Map<DiagramTab, Job> waiting;
 
 	public DiagramRenderer() {
-		queue = new LinkedList<DiagramFactory>();
-		Thread thread = new Thread(this);
-		thread.setDaemon(true);
-		thread.setName("DiagramRenderer-Thread");
-		thread.start();
+		this(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())));
 	}
 
-	private synchronized void enqueue(DiagramFactory factory) {
-		ListIterator<DiagramFactory> iter = queue.listIterator();
-		while (iter.hasNext()) {
-			DiagramFactory theFactory = iter.next();
-			if (theFactory.getProvider() == factory.getProvider()) {
-				iter.remove();
-				break;
-			}
-		}
-		queue.addFirst(factory);
-		notify();
-	}
+	/**
+	 * Creates a new <tt>DiagramRenderer</tt>.
+	 * 
+	 * @param threads
+	 *            the maximal number of diagrams that are rendered in parallel
+	 */
+	public DiagramRenderer(int threads) {
+		running = new IdentityHashMap<DiagramTab, Job>();
+		waiting = new IdentityHashMap<DiagramTab, Job>();
+		executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					private final AtomicInteger number = new AtomicInteger();
 
-	public void renderDiagram(DiagramTab tab) {
-        PaintDevice ppd = tab.createPaintDevice(null);
-        DiagramFactory factory = tab.createFactory(ppd);
-	    enqueue(factory);
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable);
+						thread.setDaemon(true);
+						thread.setName("DiagramRenderer-Thread-" + number.incrementAndGet());
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
 	}
 
-	public void run() {
-		while (true) {
-			DiagramFactory factory;
-			DiagramError err = null;
-			synchronized (this) {
-				while (queue.isEmpty()) {
-					try {
-						wait();
-					} catch (InterruptedException ie) {
-						Thread.currentThread().interrupt();
-					}
+	public void renderDiagram(DiagramTab tab) {
+		PaintDevice ppd = tab.createPaintDevice(null);
+		DiagramFactory factory = tab.createDisplayFactory(ppd);
+		Job job = new Job(tab, factory);
+		synchronized (this) {
+			Job current = running.get(tab);
+			if (current == null) {
+				running.put(tab, job);
+				executor.execute(job);
+			} else {
+				current.factory.cancel();
+				Job replaced = waiting.put(tab, job);
+				if (replaced != null) {
+					replaced.times.superseded();
 				}
-				factory = queue.removeLast();
 			}
-			DiagramTab tab = (DiagramTab) factory.getProviderFactory();
-			try {
-				factory.generateDiagram(tab.getConfiguration().getDataObject());
-			} catch (DiagramError e) {
-				err = e;
-			} catch (Throwable e) {
-				e.printStackTrace();
-				err = new FatalError(factory.getProvider(), e);
-			} 
-			doDisplay(tab, factory.getDiagram(), err);
 		}
 	}
 
+	/*
+	 * Called when a job is done, starts the job that has been waiting for
+	 * the same tab, if any.
+	 */
+	private synchronized void finished(Job job) {
+		Job next = waiting.remove(job.tab);
+		if (next == null) {
+			running.remove(job.tab);
+		} else {
+			running.put(job.tab, next);
+			executor.execute(next);
+		}
+	}
+
+	/**
+	 * Returns true if a diagram of the given tab is being rendered or waiting
+	 * to be rendered.
+	 * 
+	 * @param tab
+	 *            a tab
+	 * @return flag denoting if the tab's diagram is being rendered
+	 */
+	public synchronized boolean isRendering(DiagramTab tab) {
+		return running.containsKey(tab);
+	}
+
 	private void doDisplay(final DiagramTab tab, final Diagram diagram,
 			final DiagramError err) {
 		SwingUtilities.invokeLater(new Runnable() {
@@ -109,4 +158,50 @@ public class DiagramRenderer implements Runnable {
 		});
 	}
 
+	private class Job implements Runnable {
+
+		final DiagramTab tab;
+
+		final DiagramFactory factory;
+
+		final RenderTimes times;
+
+		final long requested;
+
+		Job(DiagramTab tab, DiagramFactory factory) {
+			this.tab = tab;
+			this.factory = factory;
+			times = new RenderTimes(tab.getRenderStatistics(),
+					RenderStatistics.getGlobal());
+			requested = System.nanoTime();
+		}
+
+		public void run() {
+			DiagramError err = null;
+			boolean wasCancelled = false;
+			factory.setRenderTimes(times);
+			try {
+				factory.generateDiagram(tab.getConfiguration().getDataObject());
+			} catch (GenerationCancelled e) {
+				wasCancelled = true;
+			} catch (DiagramError e) {
+				err = e;
+			} catch (Throwable e) {
+				e.printStackTrace();
+				err = new FatalError(factory.getProvider(), e);
+			} finally {
+				if (!wasCancelled) {
+					times.recordSince(Phase.LATENCY, requested);
+				}
+				times.finished(wasCancelled, err != null);
+				// display before the next job for the tab can start, so the
+				// diagrams are displayed in the order of the requests
+				if (!wasCancelled) {
+					doDisplay(tab, factory.getDiagram(), err);
+				}
+				finished(this);
+			}
+		}
+	}
+
 }
@@ -56,6 +56,9 @@ import net.sf.sdedit.diagram.DiagramDataProviderFactory;
 import net.sf.sdedit.diagram.DiagramFactory;
 import net.sf.sdedit.diagram.GraphicDevice;
 import net.sf.sdedit.diagram.PaintDevice;
+import net.sf.sdedit.diagram.RenderStatistics;
+import net.sf.sdedit.diagram.SDPaintDevice;
+import net.sf.sdedit.drawable.DisplayList;
 import net.sf.sdedit.drawable.Drawable;
 import net.sf.sdedit.editor.plugin.FileActionProvider;
 import net.sf.sdedit.error.DiagramError;
@@ -103,6 +106,8 @@ public abstract class DiagramTab extends Tab implements PropertyChangeListener,
 	
 	private DataFlavor flavor;
 
+	private RenderStatistics renderStatistics;
+
 	public DiagramTab(UserInterfaceImpl ui) {
 		super(ui);
 		this.zoomPane = new ZoomPane();
@@ -151,6 +156,34 @@ public abstract class DiagramTab extends Tab implements PropertyChangeListener,
 		return renderer;
 	}
 
+	/**
+	 * Returns the statistics of the renderings of this tab's diagrams, which
+	 * are registered as an MBean (named after the tab's id) while the tab is
+	 * open.
+	 * 
+	 * @return the render statistics of this tab
+	 */
+	public synchronized RenderStatistics getRenderStatistics() {
+		if (renderStatistics == null) {
+			renderStatistics = new RenderStatistics("tab-" + getId());
+			renderStatistics.register();
+		}
+		return renderStatistics;
+	}
+
+	@Override
+	public boolean close(boolean check) {
+		boolean close = super.close(check);
+		if (close) {
+			synchronized (this) {
+				if (renderStatistics != null) {
+					renderStatistics.unregister();
+				}
+			}
+		}
+		return close;
+	}
+
 	/**
 	 * Clears the diagram view.
 	 */
@@ -182,6 +215,24 @@ public abstract class DiagramTab extends Tab implements PropertyChangeListener,
 		return diagram;
 	}
 
+	/**
+	 * Returns the display list of the diagram that is displayed by this tab,
+	 * so it can be copied, exported or printed without being generated again.
+	 * If there is no such diagram, if it is incomplete because of an error or
+	 * if it is outdated because the diagram is being rendered again,
+	 * <tt>null</tt> is returned.
+	 * 
+	 * @return the display list of the diagram displayed or <tt>null</tt>
+	 */
+	public DisplayList getDisplayList() {
+		if (isEmpty() || getDiagramError() != null
+				|| renderer.isRendering(this)
+				|| !(diagram.getPaintDevice() instanceof SDPaintDevice)) {
+			return null;
+		}
+		return ((SDPaintDevice) diagram.getPaintDevice()).getDisplayList();
+	}
+
 	protected JPopupMenu createPopupMenu() {
 		List<Action> actions = interaction.getContextActions();
 		JPopupMenu menu = null;
@@ -286,15 +337,33 @@ public abstract class DiagramTab extends Tab implements PropertyChangeListener,
 	
 	public abstract DiagramFactory createFactory (PaintDevice paintDevice);
 	
+	/**
+	 * Returns a factory for the diagram that is displayed by this tab. Unlike
+	 * the factories for exports, it may reuse state from the generation of the
+	 * diagram that has been displayed before.
+	 * 
+	 * @param paintDevice
+	 *            the paint device for the diagram to be displayed
+	 * @return a factory for the diagram to be displayed
+	 */
+	public DiagramFactory createDisplayFactory (PaintDevice paintDevice) {
+		return createFactory(paintDevice);
+	}
+	
 	private InputStream getTransferDataVector (String format) throws IOException {
 		ByteArrayOutputStream stream = new ByteArrayOutputStream();
 		Exporter exporter = Exporter.getExporter(format, "Landscape", "A0", stream);
-		PaintDevice paintDevice = createPaintDevice(exporter);
-		DiagramFactory factory = createFactory(paintDevice);
-		try {
-			factory.generateDiagram(getConfiguration().getDataObject());
-		} catch (DiagramError e) {
-			/* ignored */
+		DisplayList displayList = getDisplayList();
+		if (displayList != null) {
+			exporter.setDisplayList(displayList);
+		} else {
+			PaintDevice paintDevice = createPaintDevice(exporter);
+			DiagramFactory factory = createFactory(paintDevice);
+			try {
+				factory.generateDiagram(getConfiguration().getDataObject());
+			} catch (DiagramError e) {
+				/* ignored */
+			}
 		}
 		exporter.export();
 		byte[] bytes = stream.toByteArray();
@@ -304,12 +373,17 @@ public abstract class DiagramTab extends Tab implements PropertyChangeListener,
 	
 	private Image getTransferDataBitmap () throws IOException {
 		ImageGraphicsDevice ipd = new ImageGraphicsDevice(false);
-		PaintDevice paintDevice = createPaintDevice(ipd);
-		DiagramFactory factory = createFactory(paintDevice);
-		try {
-		    factory.generateDiagram(getConfiguration().getDataObject());
-		} catch (DiagramError e) {
-			/* ignored */
+		DisplayList displayList = getDisplayList();
+		if (displayList != null) {
+			ipd.setDisplayList(displayList);
+		} else {
+			PaintDevice paintDevice = createPaintDevice(ipd);
+			DiagramFactory factory = createFactory(paintDevice);
+			try {
+			    factory.generateDiagram(getConfiguration().getDataObject());
+			} catch (DiagramError e) {
+				/* ignored */
+			}
 		}
 		ipd.drawAll();
 		return ipd.getImage();
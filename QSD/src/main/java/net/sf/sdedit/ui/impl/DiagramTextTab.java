@@ -63,6 +63,8 @@ import javax.swing.event.CaretEvent;
 import javax.swing.event.CaretListener;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
 
 import net.sf.sdedit.Constants;
 import net.sf.sdedit.config.Configuration;
@@ -256,7 +258,7 @@ public abstract class DiagramTextTab extends DiagramTab implements DocumentListe
 			changeTimer.restart();
 			invokeLater(new Runnable() {
 				public void run() {
-					boolean isStained = textArea.getText().length() != code.length() || !textArea.getText().equals(code)
+					boolean isStained = textArea.getDocument().getLength() != code.length() || !textArea.getText().equals(code)
 							|| !oldConfiguration.equals(getConfiguration());
 					setClean(!isStained);
 				}
@@ -434,7 +436,7 @@ public abstract class DiagramTextTab extends DiagramTab implements DocumentListe
 				scrollToDrawable(drawable, highlight && globalConf.isHighlightCurrent());
 			} else {
 				int caret = textArea.getCaretPosition();
-				if (textArea.getText().substring(caret).trim().length() == 0) {
+				if (textArea.isBlankFrom(caret)) {
 					getZoomPane().scrollToBottom();
 				}
 			}
@@ -465,27 +467,52 @@ public abstract class DiagramTextTab extends DiagramTab implements DocumentListe
 
 	public void append(final String text) {
 		if (isEventDispatchThread()) {
-			textArea.setText(textArea.getText() + text);
+			appendText(text);
 			// happens automatically via DocumentListener
 			// redrawThread.indicateChange();
 		} else {
 			invokeLater(new Runnable() {
 				public void run() {
-					textArea.setText(textArea.getText() + text);
+					appendText(text);
 					// redrawThread.indicateChange();
 				}
 			});
 		}
 	}
 
-	void setStatus(final String status) {
+	private void appendText(String text) {
+		Document document = textArea.getDocument();
+		try {
+			document.insertString(document.getLength(), text, null);
+		} catch (BadLocationException e) {
+			// the end of the document is a valid location
+			throw new IllegalStateException(e);
+		}
+	}
+
+	void setStatus(String status) {
+		final String text = appendRenderTimes(status);
 		invokeLater(new Runnable() {
 			public void run() {
-				statusLabel.setText(status + "    ");
+				statusLabel.setText(text + "    ");
 			}
 		});
 	}
 
+	/*
+	 * Appends the durations of the phases of the rendering of the diagram
+	 * to the status, if they are to be shown.
+	 */
+	private String appendRenderTimes(String status) {
+		Diagram diagram = getDiagram();
+		if (diagram == null || diagram.getRenderTimes() == null
+				|| !ConfigurationManager.getGlobalConfiguration().isShowRenderTimes()) {
+			return status;
+		}
+		String times = diagram.getRenderTimes().toString();
+		return status.length() == 0 ? times : status + " | " + times;
+	}
+
 	protected void setError(final boolean warning, final String error, final int begin, final int end) {
 		invokeLater(new Runnable() {
 			public void run() {
@@ -621,7 +648,7 @@ public abstract class DiagramTextTab extends DiagramTab implements DocumentListe
 		try {
 			PrintWriter printWriter = new PrintWriter(
 					new OutputStreamWriter(stream, ConfigurationManager.getGlobalConfiguration().getFileEncoding()));
-			BufferedReader bufferedReader = new BufferedReader(new StringReader(textHandler.getText()));
+			BufferedReader bufferedReader = new BufferedReader(new StringReader(textHandler.getText().toString()));
 			int error = textHandler.getLineNumber();
 			printWriter.println(exception.getClass().getSimpleName() + " has occurred in line " + error + "\n");
 			int i = 0;
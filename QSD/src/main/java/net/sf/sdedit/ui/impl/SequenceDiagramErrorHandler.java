@@ -146,7 +146,7 @@ public class SequenceDiagramErrorHandler extends DiagramErrorHandler {
                     stream, ConfigurationManager.getGlobalConfiguration()
                             .getFileEncoding()));
             BufferedReader bufferedReader = new BufferedReader(
-                    new StringReader(textHandler.getText()));
+                    new StringReader(textHandler.getText().toString()));
             int error = textHandler.getLineNumber();
             printWriter.println(exception.getClass().getSimpleName()
                     + " has occurred in line " + error + "\n");
@@ -27,6 +27,7 @@ import java.awt.Font;
 
 import net.sf.sdedit.config.Configuration;
 import net.sf.sdedit.diagram.AbstractPaintDevice;
+import net.sf.sdedit.diagram.Checkpoints;
 import net.sf.sdedit.diagram.DiagramDataProvider;
 import net.sf.sdedit.diagram.DiagramFactory;
 import net.sf.sdedit.diagram.GraphicDevice;
@@ -46,6 +47,8 @@ public class SequenceDiagramTextTab extends DiagramTextTab {
 
 	private static final long serialVersionUID = 5278509849011224397L;
 
+	private final Checkpoints checkpoints = new Checkpoints();
+
 	public SequenceDiagramTextTab(UserInterfaceImpl ui, Font codeFont,
 			Bean<? extends Configuration> configuration) {
 		super(ui, codeFont, configuration);
@@ -98,6 +101,14 @@ public class SequenceDiagramTextTab extends DiagramTextTab {
 		return new SequenceDiagramFactory(this, paintDevice);
 	}
 
+	@Override
+	public DiagramFactory createDisplayFactory(PaintDevice paintDevice) {
+		SequenceDiagramFactory factory = new SequenceDiagramFactory(this,
+				paintDevice);
+		factory.setCheckpoints(checkpoints, getConfiguration());
+		return factory;
+	}
+
 	@Override
 	public String getCategory() {
 		return "Sequence diagrams";
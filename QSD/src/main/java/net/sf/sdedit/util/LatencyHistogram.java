@@ -0,0 +1,199 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.util;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A <tt>LatencyHistogram</tt> counts durations in buckets whose upper bounds
+ * double from one bucket to the next (1 ms, 2 ms, 4 ms, ..., 65536 ms), the
+ * last bucket takes all longer durations. Percentiles are reported as the
+ * upper bound of the bucket they fall into, so they are never too
+ * optimistic.
+ * <p>
+ * Durations can be recorded by any number of threads without locking.
+ * 
+ * @author Markus Strauch
+ */
+public final class LatencyHistogram {
+
+	/**
+	 * The number of buckets. Bucket <tt>i &lt; BUCKETS - 1</tt> counts the
+	 * durations that are shorter than {@linkplain #getUpperBound(int)} and at
+	 * least as long as the upper bound of bucket <tt>i - 1</tt>.
+	 */
+	public static final int BUCKETS = 18;
+
+	private final AtomicLongArray counts;
+
+	private final AtomicLong count;
+
+	private final AtomicLong total;
+
+	private final AtomicLong max;
+
+	public LatencyHistogram() {
+		counts = new AtomicLongArray(BUCKETS);
+		count = new AtomicLong();
+		total = new AtomicLong();
+		max = new AtomicLong();
+	}
+
+	/**
+	 * Returns the upper bound (exclusive) of a bucket in milliseconds, or
+	 * <tt>Long.MAX_VALUE</tt> for the last bucket.
+	 * 
+	 * @param bucket
+	 *            the index of a bucket
+	 * @return the upper bound of the bucket in milliseconds
+	 */
+	public static long getUpperBound(int bucket) {
+		return bucket == BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+	}
+
+	private static int getBucket(long millis) {
+		if (millis < 1) {
+			return 0;
+		}
+		return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+	}
+
+	/**
+	 * Records a duration.
+	 * 
+	 * @param nanos
+	 *            the duration in nanoseconds
+	 */
+	public void record(long nanos) {
+		nanos = Math.max(0, nanos);
+		counts.incrementAndGet(getBucket(nanos / 1000000));
+		count.incrementAndGet();
+		total.addAndGet(nanos);
+		long m = max.get();
+		while (nanos > m && !max.compareAndSet(m, nanos)) {
+			m = max.get();
+		}
+	}
+
+	/**
+	 * Returns the number of durations that have been recorded.
+	 * 
+	 * @return the number of durations that have been recorded
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Returns the number of durations that fell into the given bucket.
+	 * 
+	 * @param bucket
+	 *            the index of a bucket
+	 * @return the number of durations in the bucket
+	 */
+	public long getCount(int bucket) {
+		return counts.get(bucket);
+	}
+
+	/**
+	 * Returns the mean of the recorded durations in milliseconds, or 0 if
+	 * nothing has been recorded.
+	 * 
+	 * @return the mean of the recorded durations in milliseconds
+	 */
+	public double getMeanMillis() {
+		long n = count.get();
+		return n == 0 ? 0 : total.get() / 1E6 / n;
+	}
+
+	/**
+	 * Returns the longest duration that has been recorded, in milliseconds.
+	 * 
+	 * @return the longest duration that has been recorded, in milliseconds
+	 */
+	public double getMaxMillis() {
+		return max.get() / 1E6;
+	}
+
+	/**
+	 * Returns an upper bound of the given percentile of the recorded
+	 * durations, in milliseconds. For the last bucket, which has no upper
+	 * bound, the longest duration is returned.
+	 * 
+	 * @param percentile
+	 *            a number between 0 and 100
+	 * @return an upper bound of the percentile in milliseconds, or 0 if
+	 *         nothing has been recorded
+	 */
+	public double getPercentile(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long n = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			n += snapshot[i];
+		}
+		if (n == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS - 1; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(getUpperBound(i), getMaxMillis());
+			}
+		}
+		return getMaxMillis();
+	}
+
+	/**
+	 * Prints one line per non-empty bucket.
+	 * 
+	 * @param writer
+	 *            the writer to print the buckets to
+	 */
+	public void printBuckets(PrintWriter writer) {
+		for (int i = 0; i < BUCKETS; i++) {
+			long n = counts.get(i);
+			if (n > 0) {
+				if (i == BUCKETS - 1) {
+					writer.printf("  >= %6d ms: %d%n", getUpperBound(i - 1), n);
+				} else {
+					writer.printf("  <  %6d ms: %d%n", getUpperBound(i), n);
+				}
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("n=%d mean=%.1fms p50<=%.0fms p90<=%.0fms "
+				+ "p99<=%.0fms max=%.1fms", getCount(), getMeanMillis(),
+				getPercentile(50), getPercentile(90), getPercentile(99),
+				getMaxMillis());
+	}
+
+}
@@ -0,0 +1,267 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.util;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * A <tt>PNGEncoder</tt> writes an RGB image to a stream row by row, so the
+ * image never needs to be in memory as a whole. Each row is filtered with the
+ * PNG filter that minimizes the sum of the absolute differences (like most PNG
+ * encoders do), the compressed data is written in IDAT chunks of bounded size.
+ * 
+ * @author Markus Strauch
+ */
+public class PNGEncoder {
+
+	private static final byte[] SIGNATURE = { (byte) 137, 80, 78, 71, 13, 10,
+			26, 10 };
+
+	private static final int CHUNK_SIZE = 1 << 16;
+
+	private final DataOutputStream out;
+
+	private final int width;
+
+	private final int height;
+
+	private final Deflater deflater;
+
+	private final DeflaterOutputStream compressed;
+
+	private final ChunkStream chunks;
+
+	private byte[] previous;
+
+	private byte[] current;
+
+	// filtered[f] is the current row, filtered with filter type f
+	private final byte[][] filtered;
+
+	private int rows;
+
+	/**
+	 * Creates a new <tt>PNGEncoder</tt> and writes the PNG header.
+	 * 
+	 * @param stream
+	 *            the stream where the PNG is written to
+	 * @param width
+	 *            the width of the image
+	 * @param height
+	 *            the height of the image
+	 * @throws IOException
+	 */
+	public PNGEncoder(OutputStream stream, int width, int height)
+			throws IOException {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("illegal image size: " + width
+					+ "x" + height);
+		}
+		this.out = new DataOutputStream(stream);
+		this.width = width;
+		this.height = height;
+		previous = new byte[3 * width];
+		current = new byte[3 * width];
+		filtered = new byte[5][1 + 3 * width];
+		for (int f = 0; f < 5; f++) {
+			filtered[f][0] = (byte) f;
+		}
+		out.write(SIGNATURE);
+		byte[] header = new byte[13];
+		writeInt(header, 0, width);
+		writeInt(header, 4, height);
+		header[8] = 8; // bit depth
+		header[9] = 2; // color type RGB
+		writeChunk("IHDR", header, header.length);
+		deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		chunks = new ChunkStream();
+		compressed = new DeflaterOutputStream(chunks, deflater, CHUNK_SIZE);
+	}
+
+	private static void writeInt(byte[] bytes, int offset, int value) {
+		bytes[offset] = (byte) (value >>> 24);
+		bytes[offset + 1] = (byte) (value >>> 16);
+		bytes[offset + 2] = (byte) (value >>> 8);
+		bytes[offset + 3] = (byte) value;
+	}
+
+	private void writeChunk(String type, byte[] data, int length)
+			throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] typeBytes = type.getBytes("US-ASCII");
+		crc.update(typeBytes);
+		crc.update(data, 0, length);
+		out.writeInt(length);
+		out.write(typeBytes);
+		out.write(data, 0, length);
+		out.writeInt((int) crc.getValue());
+	}
+
+	/**
+	 * Writes the next row of the image.
+	 * 
+	 * @param pixels
+	 *            an array containing the pixels of the row in the format of
+	 *            <tt>BufferedImage.TYPE_INT_RGB</tt>
+	 * @param offset
+	 *            the index of the first pixel of the row in the array
+	 * @throws IOException
+	 */
+	public void writeRow(int[] pixels, int offset) throws IOException {
+		if (rows == height) {
+			throw new IllegalStateException("all rows have been written");
+		}
+		for (int x = 0, i = 0; x < width; x++) {
+			int rgb = pixels[offset + x];
+			current[i++] = (byte) (rgb >> 16);
+			current[i++] = (byte) (rgb >> 8);
+			current[i++] = (byte) rgb;
+		}
+		compressed.write(filter());
+		byte[] tmp = previous;
+		previous = current;
+		current = tmp;
+		rows++;
+	}
+
+	/*
+	 * Computes all five filtered versions of the current row and returns the
+	 * one with the smallest sum of absolute values.
+	 */
+	private byte[] filter() {
+		byte[] none = filtered[0];
+		byte[] sub = filtered[1];
+		byte[] up = filtered[2];
+		byte[] avg = filtered[3];
+		byte[] paeth = filtered[4];
+		long[] sums = new long[5];
+		for (int i = 0; i < current.length; i++) {
+			int x = current[i] & 0xff;
+			int a = i < 3 ? 0 : current[i - 3] & 0xff;
+			int b = previous[i] & 0xff;
+			int c = i < 3 ? 0 : previous[i - 3] & 0xff;
+			none[i + 1] = (byte) x;
+			sub[i + 1] = (byte) (x - a);
+			up[i + 1] = (byte) (x - b);
+			avg[i + 1] = (byte) (x - ((a + b) >> 1));
+			paeth[i + 1] = (byte) (x - paeth(a, b, c));
+			for (int f = 0; f < 5; f++) {
+				sums[f] += Math.abs(filtered[f][i + 1]);
+			}
+		}
+		int best = 0;
+		for (int f = 1; f < 5; f++) {
+			if (sums[f] < sums[best]) {
+				best = f;
+			}
+		}
+		return filtered[best];
+	}
+
+	private static int paeth(int a, int b, int c) {
+		int p = a + b - c;
+		int pa = Math.abs(p - a);
+		int pb = Math.abs(p - b);
+		int pc = Math.abs(p - c);
+		if (pa <= pb && pa <= pc) {
+			return a;
+		}
+		return pb <= pc ? b : c;
+	}
+
+	/**
+	 * Writes the end of the image. This method must be called after all rows
+	 * have been written. It does not close the underlying stream.
+	 * 
+	 * @throws IOException
+	 */
+	public void finish() throws IOException {
+		if (rows != height) {
+			throw new IllegalStateException("only " + rows + " of " + height
+					+ " rows have been written");
+		}
+		try {
+			compressed.finish();
+			chunks.flush();
+			writeChunk("IEND", new byte[0], 0);
+			out.flush();
+		} finally {
+			end();
+		}
+	}
+
+	/**
+	 * Releases the (native) memory used for compressing the image. After this
+	 * method has been called, no more rows can be written. It is called by
+	 * {@linkplain #finish()}, and must be called if the image is not
+	 * finished, for example because writing a row failed. Calling it more
+	 * than once has no effect.
+	 */
+	public void end() {
+		deflater.end();
+	}
+
+	/*
+	 * Collects compressed data and writes it as IDAT chunks.
+	 */
+	private final class ChunkStream extends OutputStream {
+
+		private final byte[] buffer = new byte[CHUNK_SIZE];
+
+		private int size;
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				int n = Math.min(len, buffer.length - size);
+				System.arraycopy(b, off, buffer, size, n);
+				size += n;
+				off += n;
+				len -= n;
+				if (size == buffer.length) {
+					flush();
+				}
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (size > 0) {
+				writeChunk("IDAT", buffer, size);
+				size = 0;
+			}
+		}
+	}
+
+}
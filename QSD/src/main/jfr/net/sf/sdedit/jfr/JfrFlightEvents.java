@@ -0,0 +1,259 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The <tt>FlightEvents</tt> that are used if the JVM has a flight recorder.
+ * This class is compiled against the JDK's own classes, since
+ * <tt>jdk.jfr</tt> is not part of the Java 8 API, but for Java 8, so it can
+ * be loaded by Java 8 JVMs that have a flight recorder.
+ * 
+ * @author Markus Strauch
+ */
+public final class JfrFlightEvents extends FlightEvents {
+
+	private static final String CATEGORY = "Quick Sequence Diagram Editor";
+
+	@Override
+	public boolean isAvailable() {
+		return true;
+	}
+
+	@Override
+	public Object beginParse() {
+		return begin(new DiagramParse());
+	}
+
+	@Override
+	public void endParse(Object event, int lifelines, int messages,
+			boolean dryRun, boolean resumed, String outcome) {
+		if (event == null) {
+			return;
+		}
+		DiagramParse parse = (DiagramParse) event;
+		parse.end();
+		if (parse.shouldCommit()) {
+			parse.lifelines = lifelines;
+			parse.messages = messages;
+			parse.dryRun = dryRun;
+			parse.resumed = resumed;
+			parse.outcome = outcome;
+			parse.commit();
+		}
+	}
+
+	@Override
+	public Object beginLayout() {
+		return begin(new DiagramLayout());
+	}
+
+	@Override
+	public void endLayout(Object event, int width, int height, int drawables) {
+		if (event == null) {
+			return;
+		}
+		DiagramLayout layout = (DiagramLayout) event;
+		layout.end();
+		if (layout.shouldCommit()) {
+			layout.width = width;
+			layout.height = height;
+			layout.drawables = drawables;
+			layout.commit();
+		}
+	}
+
+	@Override
+	public Object beginAxisComputation() {
+		return begin(new LifelineAxisComputation());
+	}
+
+	@Override
+	public void endAxisComputation(Object event, int positions) {
+		if (event == null) {
+			return;
+		}
+		LifelineAxisComputation computation = (LifelineAxisComputation) event;
+		computation.end();
+		if (computation.shouldCommit()) {
+			computation.positions = positions;
+			computation.commit();
+		}
+	}
+
+	@Override
+	public Object beginExport() {
+		return begin(new DiagramExport());
+	}
+
+	@Override
+	public void endExport(Object event, String format, long bytes,
+			Iterable<?> drawables) {
+		if (event == null) {
+			return;
+		}
+		DiagramExport export = (DiagramExport) event;
+		export.end();
+		if (export.shouldCommit()) {
+			export.format = format;
+			export.bytes = bytes;
+			export.drawables = count(drawables);
+			export.commit();
+		}
+	}
+
+	@Override
+	public Object beginRealtimeBatch() {
+		return begin(new RealtimeBatchApplied());
+	}
+
+	@Override
+	public void endRealtimeBatch(Object event, String tab, int lines,
+			int characters, boolean cleared) {
+		if (event == null) {
+			return;
+		}
+		RealtimeBatchApplied batch = (RealtimeBatchApplied) event;
+		batch.end();
+		if (batch.shouldCommit()) {
+			batch.tab = tab;
+			batch.lines = lines;
+			batch.characters = characters;
+			batch.cleared = cleared;
+			batch.commit();
+		}
+	}
+
+	private static Event begin(Event event) {
+		if (!event.isEnabled()) {
+			return null;
+		}
+		event.begin();
+		return event;
+	}
+
+	private static int count(Iterable<?> drawables) {
+		int n = 0;
+		if (drawables != null) {
+			for (@SuppressWarnings("unused")
+			Object drawable : drawables) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	@Name("net.sf.sdedit.DiagramParse")
+	@Label("Diagram Parse")
+	@Category(CATEGORY)
+	@Description("Generation of a sequence diagram from its text")
+	static final class DiagramParse extends Event {
+
+		@Label("Lifelines")
+		int lifelines;
+
+		@Label("Messages")
+		int messages;
+
+		@Label("Dry Run")
+		@Description("The diagram had to be generated twice")
+		boolean dryRun;
+
+		@Label("Resumed")
+		@Description("The generation continued from a checkpoint")
+		boolean resumed;
+
+		@Label("Outcome")
+		String outcome;
+	}
+
+	@Name("net.sf.sdedit.DiagramLayout")
+	@Label("Diagram Layout")
+	@Category(CATEGORY)
+	@Description("Computation of the size of a sequence diagram")
+	static final class DiagramLayout extends Event {
+
+		@Label("Width")
+		int width;
+
+		@Label("Height")
+		int height;
+
+		@Label("Drawables")
+		int drawables;
+	}
+
+	@Name("net.sf.sdedit.LifelineAxisComputation")
+	@Label("Lifeline Axis Computation")
+	@Category(CATEGORY)
+	@Description("Computation of the horizontal positions of the lifelines")
+	static final class LifelineAxisComputation extends Event {
+
+		@Label("Positions")
+		int positions;
+	}
+
+	@Name("net.sf.sdedit.DiagramExport")
+	@Label("Diagram Export")
+	@Category(CATEGORY)
+	@Description("Drawing a sequence diagram to a file or stream")
+	static final class DiagramExport extends Event {
+
+		@Label("Format")
+		String format;
+
+		@Label("Bytes")
+		@DataAmount
+		long bytes;
+
+		@Label("Drawables")
+		int drawables;
+	}
+
+	@Name("net.sf.sdedit.RealtimeBatchApplied")
+	@Label("Realtime Batch Applied")
+	@Category(CATEGORY)
+	@Description("Entering a batch of lines received by the real-time server")
+	static final class RealtimeBatchApplied extends Event {
+
+		@Label("Tab")
+		String tab;
+
+		@Label("Lines")
+		int lines;
+
+		@Label("Characters")
+		int characters;
+
+		@Label("Cleared")
+		boolean cleared;
+	}
+
+}
@@ -0,0 +1,278 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.config;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.beans.PropertyDescriptor;
+import java.io.File;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Set;
+
+import net.sf.sdedit.ui.components.configuration.Adjustable;
+import net.sf.sdedit.ui.components.configuration.Bean;
+import net.sf.sdedit.ui.components.configuration.DataObject;
+
+/**
+ * Checks that the data objects generated for the configuration interfaces,
+ * and for an interface with a property of each type a bean can have, behave
+ * like the dynamic proxies that are used when no class can be generated.
+ * Each property is set via the generated object, via a proxy backed by the
+ * same bean and via the bean itself, and after each change all get-methods
+ * of the generated object must return what the proxy returns.
+ *
+ * @author Markus Strauch
+ */
+public class DataObjectsTest {
+
+	public enum Mode {
+		LEFT, RIGHT
+	}
+
+	public interface AllTypes extends DataObject {
+
+		public boolean isBoolean();
+
+		@Adjustable(info = "boolean", category = "test")
+		public void setBoolean(boolean b);
+
+		public byte getByte();
+
+		@Adjustable(info = "byte", category = "test")
+		public void setByte(byte b);
+
+		public short getShort();
+
+		@Adjustable(info = "short", category = "test")
+		public void setShort(short s);
+
+		public int getInt();
+
+		@Adjustable(info = "int", category = "test")
+		public void setInt(int i);
+
+		public long getLong();
+
+		@Adjustable(info = "long", category = "test")
+		public void setLong(long l);
+
+		public float getFloat();
+
+		@Adjustable(info = "float", category = "test")
+		public void setFloat(float f);
+
+		public double getDouble();
+
+		@Adjustable(info = "double", category = "test")
+		public void setDouble(double d);
+
+		public Integer getBoxed();
+
+		@Adjustable(info = "boxed", category = "test")
+		public void setBoxed(Integer i);
+
+		public String getString();
+
+		@Adjustable(info = "string", category = "test")
+		public void setString(String s);
+
+		public String getChoice();
+
+		@Adjustable(info = "choice", category = "test", choices = { "a", "b" })
+		public void setChoice(String s);
+
+		public Mode getMode();
+
+		@Adjustable(info = "mode", category = "test")
+		public void setMode(Mode mode);
+
+		public Color getColor();
+
+		@Adjustable(info = "color", category = "test")
+		public void setColor(Color color);
+
+		public Font getFont();
+
+		@Adjustable(info = "font", category = "test")
+		public void setFont(Font font);
+
+		public File getFile();
+
+		@Adjustable(info = "file", category = "test")
+		public void setFile(File file);
+
+		public String[] getStrings();
+
+		@Adjustable(info = "strings", category = "test")
+		public void setStrings(String[] strings);
+
+		public int[] getInts();
+
+		@Adjustable(info = "ints", category = "test")
+		public void setInts(int[] ints);
+
+		public File[] getFiles();
+
+		@Adjustable(info = "files", category = "test")
+		public void setFiles(File[] files);
+
+	}
+
+	private static final Class<?>[] INTERFACES = { Configuration.class,
+			SequenceConfiguration.class, GlobalConfiguration.class,
+			PrintConfiguration.class, ExportConfiguration.class,
+			AllTypes.class };
+
+	/*
+	 * Returns one of two different values of the given type, or null if the
+	 * type is unknown.
+	 */
+	private static Object sample(Class<?> type, Set<String> choices, int k) {
+		if (type == Boolean.TYPE || type == Boolean.class) {
+			return k == 1;
+		}
+		if (type == Byte.TYPE || type == Byte.class) {
+			return (byte) (k - 3);
+		}
+		if (type == Short.TYPE || type == Short.class) {
+			return (short) (1000 + k);
+		}
+		if (type == Integer.TYPE || type == Integer.class) {
+			return 17 + k;
+		}
+		if (type == Long.TYPE || type == Long.class) {
+			return (1L << 40) + k;
+		}
+		if (type == Float.TYPE || type == Float.class) {
+			return 0.25F + k;
+		}
+		if (type == Double.TYPE || type == Double.class) {
+			return -1.5 + k;
+		}
+		if (type == String.class) {
+			if (!choices.isEmpty()) {
+				return choices.toArray()[k % choices.size()];
+			}
+			return "value" + k;
+		}
+		if (type.isEnum()) {
+			return type.getEnumConstants()[k];
+		}
+		if (type == Color.class) {
+			return k == 0 ? Color.RED : Color.BLUE;
+		}
+		if (type == Font.class) {
+			return new Font("Serif", Font.BOLD, 10 + k);
+		}
+		if (type == File.class) {
+			return new File("file" + k);
+		}
+		if (type.isArray()) {
+			Object array = Array.newInstance(type.getComponentType(), k + 1);
+			for (int i = 0; i <= k; i++) {
+				Array.set(array, i, sample(type.getComponentType(), choices, i
+						% 2));
+			}
+			return array;
+		}
+		return null;
+	}
+
+	/*
+	 * Returns the first property whose get-method returns something else
+	 * from the generated object than from the proxy, or null.
+	 */
+	private static String compare(Bean<?> bean, Object generated, Object proxy)
+			throws Exception {
+		for (PropertyDescriptor property : bean.getProperties()) {
+			Method getter = property.getReadMethod();
+			Object expected = getter.invoke(proxy);
+			Object actual = getter.invoke(generated);
+			if (!Arrays.deepEquals(new Object[] { expected },
+					new Object[] { actual })) {
+				return property.getName() + " is " + actual + " instead of "
+						+ expected;
+			}
+		}
+		return null;
+	}
+
+	private static <T extends DataObject> String check(Class<T> cls)
+			throws Exception {
+		Bean<T> bean = new Bean<T>(cls, null);
+		T generated = bean.getDataObject();
+		if (Proxy.isProxyClass(generated.getClass())) {
+			return "no class generated";
+		}
+		Object proxy = Proxy.newProxyInstance(cls.getClassLoader(),
+				new Class<?>[] { cls }, bean);
+		String error = compare(bean, generated, proxy);
+		if (error != null) {
+			return "initially " + error;
+		}
+		for (PropertyDescriptor property : bean.getProperties()) {
+			Class<?> type = property.getPropertyType();
+			Set<String> choices = bean.getStringsForProperty(property);
+			if (sample(type, choices, 0) == null) {
+				return property.getName() + " has an unknown type " + type;
+			}
+			Method setter = property.getWriteMethod();
+			setter.invoke(generated, sample(type, choices, 0));
+			error = compare(bean, generated, proxy);
+			if (error == null) {
+				setter.invoke(proxy, sample(type, choices, 1));
+				error = compare(bean, generated, proxy);
+			}
+			if (error == null) {
+				bean.setValue(property, sample(type, choices, 0));
+				error = compare(bean, generated, proxy);
+			}
+			if (error != null) {
+				return "after setting " + property.getName() + ", " + error;
+			}
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static void main(String[] argv) throws Exception {
+		int failed = 0;
+		for (Class<?> cls : INTERFACES) {
+			String error = check((Class<? extends DataObject>) cls);
+			if (error != null) {
+				failed++;
+				System.out.println(cls.getSimpleName() + ": " + error);
+			}
+		}
+		System.out.println(INTERFACES.length + " interfaces checked, " + failed
+				+ " failures");
+		if (failed > 0) {
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,181 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.diagram;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import net.sf.sdedit.config.ConfigurationManager;
+import net.sf.sdedit.config.SequenceConfiguration;
+import net.sf.sdedit.drawable.Drawable;
+import net.sf.sdedit.error.DiagramError;
+import net.sf.sdedit.text.AbstractTextHandler;
+import net.sf.sdedit.text.WorkloadGenerator;
+import net.sf.sdedit.ui.PanelGraphicDevice;
+import net.sf.sdedit.ui.components.configuration.Bean;
+
+/**
+ * Checks that a diagram that is generated while a text is being edited,
+ * continuing from a {@linkplain Checkpoint}, is the same as the diagram
+ * generated from scratch, and that the diagrams do contain only objects that
+ * a checkpoint can copy.
+ * 
+ * @author Markus Strauch
+ */
+public class CheckpointsTest {
+
+	private static int resumed;
+
+	/*
+	 * Describes the drawables (sorted, as the order in which they are added
+	 * may differ) and the error of a diagram.
+	 */
+	private static List<String> generate(String text,
+			Bean<SequenceConfiguration> configuration, Checkpoints checkpoints) {
+		SDPaintDevice paintDevice = new SDPaintDevice(new PanelGraphicDevice(
+				false));
+		SequenceDiagramFactory factory = new SequenceDiagramFactory(text,
+				paintDevice);
+		if (checkpoints != null) {
+			factory.setCheckpoints(checkpoints, configuration);
+		}
+		List<String> result = new ArrayList<String>();
+		try {
+			factory.generateDiagram(configuration.getDataObject());
+		} catch (DiagramError e) {
+			result.add("error in line "
+					+ ((AbstractTextHandler) e.getProvider()).getLineNumber()
+					+ ": " + e.getMessage());
+		}
+		if (factory.isResumed()) {
+			resumed++;
+		}
+		SDPaintDevice device = (SDPaintDevice) ((SequenceDiagram) factory
+				.getDiagram()).getPaintDevice();
+		for (Drawable drawable : device) {
+			result.add(drawable.getClass().getSimpleName() + " "
+					+ drawable.getLeft() + "," + drawable.getTop() + ","
+					+ drawable.getWidth() + "," + drawable.getHeight() + " "
+					+ drawable.isVisible());
+		}
+		Collections.sort(result);
+		result.add(0, device.getWidth() + "x" + device.getHeight());
+		return result;
+	}
+
+	/*
+	 * Changes a random line of the text: a character is inserted or removed,
+	 * or a line is removed, duplicated or appended.
+	 */
+	private static String edit(String text, Random random) {
+		List<String> lines = new ArrayList<String>();
+		for (String line : text.split("\n", -1)) {
+			lines.add(line);
+		}
+		int i = random.nextInt(lines.size());
+		String line = lines.get(i);
+		switch (random.nextInt(5)) {
+		case 0:
+			int at = random.nextInt(line.length() + 1);
+			lines.set(i, line.substring(0, at) + "x" + line.substring(at));
+			break;
+		case 1:
+			if (line.length() > 0) {
+				at = random.nextInt(line.length());
+				lines.set(i, line.substring(0, at) + line.substring(at + 1));
+			}
+			break;
+		case 2:
+			lines.remove(i);
+			break;
+		case 3:
+			lines.add(i, line);
+			break;
+		default:
+			lines.add(lines.get(random.nextInt(lines.size())));
+		}
+		StringBuilder result = new StringBuilder();
+		for (int j = 0; j < lines.size(); j++) {
+			if (j > 0) {
+				result.append('\n');
+			}
+			result.append(lines.get(j));
+		}
+		return result.toString();
+	}
+
+	public static void main(String[] argv) {
+		int checked = 0;
+		int failed = 0;
+		for (int threads : new int[] { 0, 5 }) {
+			for (int fragments : new int[] { 0, 7 }) {
+				WorkloadGenerator generator = new WorkloadGenerator();
+				generator.setLifelines(10);
+				generator.setMessages(1000);
+				generator.setMaxDepth(4);
+				generator.setThreads(threads);
+				generator.setFragments(fragments);
+				generator.setNotes(fragments);
+				generator.setSeed(threads + fragments);
+				Bean<SequenceConfiguration> configuration = ConfigurationManager
+						.createNewDefaultConfiguration(SequenceConfiguration.class);
+				configuration.getDataObject().setThreaded(
+						generator.isThreaded());
+				Checkpoints checkpoints = new Checkpoints();
+				Random random = new Random(threads + fragments);
+				String text = generator.generate();
+				for (int i = 0; i < 40; i++) {
+					checked++;
+					try {
+						List<String> expected = generate(text, configuration,
+								null);
+						if (!expected.equals(generate(text, configuration,
+								checkpoints))) {
+							failed++;
+							System.out.println(generator + ", edit " + i
+									+ ": diagrams differ");
+						}
+					} catch (RuntimeException e) {
+						failed++;
+						System.out.println(generator + ", edit " + i + ": "
+								+ e);
+					}
+					text = edit(text, random);
+				}
+			}
+		}
+		if (resumed == 0) {
+			failed++;
+			System.out.println("no diagram continued from a checkpoint");
+		}
+		System.out.println(checked + " diagrams checked (" + resumed
+				+ " continued from a checkpoint), " + failed + " failures");
+		if (failed > 0) {
+			System.exit(1);
+		}
+	}
+
+}
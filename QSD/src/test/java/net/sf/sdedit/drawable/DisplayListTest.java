@@ -0,0 +1,194 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.drawable;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import net.sf.sdedit.config.ConfigurationManager;
+import net.sf.sdedit.config.SequenceConfiguration;
+import net.sf.sdedit.diagram.SDPaintDevice;
+import net.sf.sdedit.diagram.SequenceDiagramFactory;
+import net.sf.sdedit.text.WorkloadGenerator;
+import net.sf.sdedit.ui.ImageGraphicsDevice;
+import net.sf.sdedit.ui.PanelGraphicDevice;
+
+/**
+ * Checks that replaying the {@linkplain DisplayList} of a diagram gives the
+ * same pixels as drawing the diagram's elements, as a whole, strip by strip
+ * and by several threads at once.
+ * 
+ * @author Markus Strauch
+ */
+public class DisplayListTest {
+
+	/*
+	 * Labels that are drawn by the HTML renderer of a JLabel
+	 */
+	private static final String HTML = "a:A\nb:B\n\n"
+			+ "[c:loop x<y & z]\na:b.m(x<y & z)\n"
+			+ "*1 b\n<b>bold</b> &amp; more\n\n\tindented\n*1\n[/c]\n";
+
+	private static int[] pixels(BufferedImage image) {
+		return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null,
+				0, image.getWidth());
+	}
+
+	/*
+	 * Draws the elements as an ImageGraphicsDevice does. The same text is not
+	 * compared with a diagram generated again, as the order in which
+	 * overlapping elements are drawn may differ.
+	 */
+	private static int[] drawn(SDPaintDevice paintDevice) {
+		BufferedImage image = new BufferedImage(paintDevice.getWidth(),
+				paintDevice.getHeight(), BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2d = image.createGraphics();
+		g2d.setRenderingHints(new RenderingHints(
+				RenderingHints.KEY_ANTIALIASING,
+				RenderingHints.VALUE_ANTIALIAS_ON));
+		g2d.setFont(paintDevice.getFont());
+		g2d.setColor(Color.WHITE);
+		g2d.fillRect(0, 0, image.getWidth(), image.getHeight());
+		g2d.setColor(Color.BLACK);
+		g2d.setStroke(Strokes.defaultStroke());
+		for (Drawable drawable : paintDevice) {
+			drawable.draw(g2d);
+		}
+		g2d.dispose();
+		return pixels(image);
+	}
+
+	private static int[] strips(DisplayList displayList, int stripHeight) {
+		BufferedImage image = new BufferedImage(displayList.getWidth(),
+				displayList.getHeight(), BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2d = image.createGraphics();
+		g2d.setColor(Color.WHITE);
+		g2d.fillRect(0, 0, image.getWidth(), image.getHeight());
+		g2d.dispose();
+		for (int top = 0; top < image.getHeight(); top += stripHeight) {
+			Graphics2D strip = image.createGraphics();
+			strip.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+					RenderingHints.VALUE_ANTIALIAS_ON);
+			strip.setFont(displayList.getFont());
+			strip.clipRect(0, top, image.getWidth(), stripHeight);
+			strip.setColor(Color.BLACK);
+			strip.setStroke(Strokes.defaultStroke());
+			displayList.replay(strip, new Rectangle(0, top, image.getWidth(),
+					stripHeight));
+			strip.dispose();
+		}
+		return pixels(image);
+	}
+
+	private static int[] replayed(DisplayList displayList) {
+		ImageGraphicsDevice device = new ImageGraphicsDevice(true);
+		device.setDisplayList(displayList);
+		device.drawAll();
+		return pixels((BufferedImage) device.getImage());
+	}
+
+	private static String check(String text, boolean threaded)
+			throws Exception {
+		SequenceConfiguration configuration = ConfigurationManager
+				.createNewDefaultConfiguration(SequenceConfiguration.class)
+				.getDataObject();
+		configuration.setThreaded(threaded);
+		// the display list is recorded from the diagram as displayed
+		SDPaintDevice paintDevice = new SDPaintDevice(new PanelGraphicDevice(
+				false));
+		new SequenceDiagramFactory(text, paintDevice)
+				.generateDiagram(configuration);
+		int[] expected = drawn(paintDevice);
+		final DisplayList displayList = paintDevice.getDisplayList();
+		if (!Arrays.equals(expected, replayed(displayList))) {
+			return "replay differs";
+		}
+		if (!Arrays.equals(expected, strips(displayList, 37))) {
+			return "replay of strips differs";
+		}
+		final int[][] results = new int[4][];
+		Thread[] threads = new Thread[results.length];
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					results[index] = replayed(displayList);
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+			if (!Arrays.equals(expected, results[i])) {
+				return "concurrent replay differs";
+			}
+		}
+		return null;
+	}
+
+	public static void main(String[] argv) throws Exception {
+		int checked = 0;
+		int failed = 0;
+		String error = check(HTML, false);
+		checked++;
+		if (error != null) {
+			failed++;
+			System.out.println("HTML labels: " + error);
+		}
+		for (int lifelines : new int[] { 2, 10 }) {
+			for (int messages : new int[] { 1, 60, 250 }) {
+				for (int threads : new int[] { 0, 5 }) {
+					for (int fragments : new int[] { 0, 7 }) {
+						WorkloadGenerator generator = new WorkloadGenerator();
+						generator.setLifelines(lifelines);
+						generator.setMessages(messages);
+						generator.setMaxDepth(4);
+						generator.setThreads(threads);
+						generator.setFragments(fragments);
+						generator.setNotes(fragments);
+						generator.setSeed(messages);
+						checked++;
+						error = check(generator.generate(),
+								generator.isThreaded());
+						if (error != null) {
+							failed++;
+							System.out.println(generator + ": " + error);
+						}
+					}
+				}
+			}
+		}
+		System.out.println(checked + " diagrams checked, " + failed
+				+ " failures");
+		if (failed > 0) {
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,258 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import net.sf.sdedit.config.ConfigurationManager;
+import net.sf.sdedit.config.SequenceConfiguration;
+import net.sf.sdedit.diagram.SDPaintDevice;
+import net.sf.sdedit.diagram.SequenceDiagramFactory;
+import net.sf.sdedit.text.WorkloadGenerator;
+import net.sf.sdedit.ui.components.configuration.Bean;
+
+/**
+ * Checks that the SVG documents written by {@linkplain SVGGraphics} are well
+ * formed, that they have a single style sheet, that the styles, shapes and
+ * clip paths they refer to are defined in the same document, also when
+ * several documents (and copies of the same document) are embedded into one
+ * HTML page by an {@linkplain SVGPage}, and that exporting a diagram directly
+ * and by replaying its display list gives the same document.
+ * 
+ * @author Markus Strauch
+ */
+public class SVGGraphicsTest {
+
+	private static final String SVG = "http://www.w3.org/2000/svg";
+
+	private static final String XLINK = "http://www.w3.org/1999/xlink";
+
+	/*
+	 * Labels that are drawn by the HTML renderer of a JLabel, and characters
+	 * that must be escaped
+	 */
+	private static final String HTML = "a:A\nb:B\n\n"
+			+ "[c:loop x<y & z]\na:b.m(x<y & z)\n"
+			+ "*1 b\n<b>bold</b> &amp; more\n\n\tindented\n*1\n[/c]\n";
+
+	private static final Pattern CLASS = Pattern.compile("\\.([\\w-]+)\\{");
+
+	private static final Pattern URL = Pattern.compile("url\\(#([\\w-]+)\\)");
+
+	/*
+	 * Returns the document exported directly and the one exported by
+	 * replaying the display list of the diagram, with names starting with
+	 * the given prefix.
+	 */
+	private static String[] export(String text, boolean threaded,
+			String prefix) throws Exception {
+		SequenceConfiguration configuration = configuration(threaded)
+				.getDataObject();
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		Exporter exporter = Exporter.getExporter("svg", "Portrait", "A4",
+				stream);
+		exporter.setIdPrefix(prefix);
+		SDPaintDevice paintDevice = new SDPaintDevice(exporter);
+		new SequenceDiagramFactory(text, paintDevice)
+				.generateDiagram(configuration);
+		exporter.export();
+		ByteArrayOutputStream replayed = new ByteArrayOutputStream();
+		exporter = Exporter.getExporter("svg", "Portrait", "A4", replayed);
+		exporter.setIdPrefix(prefix);
+		exporter.setDisplayList(paintDevice.getDisplayList());
+		exporter.export();
+		return new String[] { stream.toString("UTF-8"),
+				replayed.toString("UTF-8") };
+	}
+
+	private static Bean<SequenceConfiguration> configuration(boolean threaded) {
+		Bean<SequenceConfiguration> configuration = ConfigurationManager
+				.createNewDefaultConfiguration(SequenceConfiguration.class);
+		configuration.getDataObject().setThreaded(threaded);
+		return configuration;
+	}
+
+	private static Document parse(String xml) throws Exception {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+		return factory.newDocumentBuilder().parse(
+				new ByteArrayInputStream(xml.getBytes("UTF-8")));
+	}
+
+	/*
+	 * Checks an svg element, adding the names of the classes and the ids it
+	 * defines to the given set. They must not be in the set yet.
+	 */
+	private static String check(Element svg, Set<String> defined) {
+		Set<String> names = new HashSet<String>();
+		NodeList styles = svg.getElementsByTagNameNS(SVG, "style");
+		if (styles.getLength() != 1) {
+			return styles.getLength() + " style elements";
+		}
+		Element style = (Element) styles.item(0);
+		Element defs = (Element) style.getParentNode();
+		if (!defs.getLocalName().equals("defs") || defs.getParentNode() != svg) {
+			return "style element not in the defs of the document";
+		}
+		Matcher matcher = CLASS.matcher(style.getTextContent());
+		while (matcher.find()) {
+			names.add(matcher.group(1));
+		}
+		NodeList elements = svg.getElementsByTagName("*");
+		for (int i = 0; i < elements.getLength(); i++) {
+			Element element = (Element) elements.item(i);
+			if (element.hasAttribute("id")) {
+				names.add(element.getAttribute("id"));
+			}
+		}
+		int texts = 0;
+		for (int i = 0; i < elements.getLength(); i++) {
+			Element element = (Element) elements.item(i);
+			if (element.getLocalName().equals("text")) {
+				texts++;
+			}
+			String cls = element.getAttribute("class");
+			if (cls.length() > 0 && !names.contains(cls)) {
+				return "class " + cls + " is not defined";
+			}
+			matcher = URL.matcher(element.getAttribute("clip-path"));
+			if (matcher.find() && !names.contains(matcher.group(1))) {
+				return "clip path " + matcher.group(1) + " is not defined";
+			}
+			String href = element.getAttributeNS(XLINK, "href");
+			if (href.startsWith("#") && !names.contains(href.substring(1))) {
+				return "shape " + href + " is not defined";
+			}
+		}
+		for (String name : names) {
+			if (!defined.add(name)) {
+				return name + " is defined by another document";
+			}
+		}
+		return texts == 0 ? "no text elements" : null;
+	}
+
+	private static String check(String text, boolean threaded)
+			throws Exception {
+		String[] svg = export(text, threaded, SVGGraphics.DEFAULT_PREFIX);
+		String error = check(parse(svg[0]).getDocumentElement(),
+				new HashSet<String>());
+		if (error != null) {
+			return error;
+		}
+		if (!svg[0].equals(svg[1])) {
+			return "replayed document differs";
+		}
+		return null;
+	}
+
+	/*
+	 * Embeds the documents for the given texts into an XHTML page, as the
+	 * taglet does, and checks that they do not interfere.
+	 */
+	private static String checkEmbedded(String... texts) throws Exception {
+		StringBuilder page = new StringBuilder(
+				"<html xmlns=\"http://www.w3.org/1999/xhtml\"><body>\n");
+		SVGPage svgPage = new SVGPage();
+		for (String text : texts) {
+			String prefix = SVGPage.getPrefix(RenderCache.getKey(text,
+					configuration(true), "inline-svg", "Portrait", "A4"));
+			String svg = export(text, true, prefix)[0];
+			svg = svgPage.embed(svg.substring(svg.indexOf("<svg")), prefix);
+			page.append(svg).append("<br/>\n");
+		}
+		page.append("</body></html>\n");
+		NodeList svgs = parse(page.toString()).getElementsByTagNameNS(SVG,
+				"svg");
+		if (svgs.getLength() != texts.length) {
+			return svgs.getLength() + " svg elements";
+		}
+		Set<String> defined = new HashSet<String>();
+		for (int i = 0; i < svgs.getLength(); i++) {
+			String error = check((Element) svgs.item(i), defined);
+			if (error != null) {
+				return "document " + i + ": " + error;
+			}
+		}
+		return null;
+	}
+
+	private static WorkloadGenerator generator(int lifelines, int messages,
+			int threads, int fragments) {
+		WorkloadGenerator generator = new WorkloadGenerator();
+		generator.setLifelines(lifelines);
+		generator.setMessages(messages);
+		generator.setMaxDepth(4);
+		generator.setThreads(threads);
+		generator.setFragments(fragments);
+		generator.setNotes(fragments);
+		generator.setSeed(messages);
+		return generator;
+	}
+
+	public static void main(String[] argv) throws Exception {
+		int checked = 0;
+		int failed = 0;
+		String error = check(HTML, false);
+		checked++;
+		if (error != null) {
+			failed++;
+			System.out.println("HTML labels: " + error);
+		}
+		WorkloadGenerator[] generators = { generator(2, 60, 0, 0),
+				generator(10, 250, 0, 7), generator(10, 250, 5, 7) };
+		for (WorkloadGenerator generator : generators) {
+			checked++;
+			error = check(generator.generate(), generator.isThreaded());
+			if (error != null) {
+				failed++;
+				System.out.println(generator + ": " + error);
+			}
+		}
+		checked++;
+		// the same diagram three times, and diagrams with the same styles
+		error = checkEmbedded(HTML, HTML, generators[1].generate(), HTML,
+				generators[2].generate());
+		if (error != null) {
+			failed++;
+			System.out.println("embedded diagrams: " + error);
+		}
+		System.out.println(checked + " checks, " + failed + " failures");
+		if (failed > 0) {
+			System.exit(1);
+		}
+	}
+
+}
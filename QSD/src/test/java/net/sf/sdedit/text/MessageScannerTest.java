@@ -0,0 +1,178 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.text;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import net.sf.sdedit.util.Grep;
+import net.sf.sdedit.util.Grep.Region;
+import net.sf.sdedit.util.Utilities;
+
+/**
+ * Checks that {@linkplain MessageScanner} accepts the same messages as the
+ * regular expressions of the {@linkplain MessageType}s and that it yields the
+ * same message data and regions. The messages are taken from the corpus
+ * <tt>messages.txt</tt>, from random mutations of the corpus entries and from
+ * random strings over the characters that are significant for the syntax.
+ * 
+ * @author Markus Strauch
+ */
+public class MessageScannerTest {
+
+	private static final String PROPERTIES[] = { "noteId", "dummy",
+			"caller", "spawner", "levelString", "threadString", "answer",
+			"callee", "message" };
+
+	private static final String ALPHABET = "ab :::..=>[],()019\\&{} "
+			+ "\t\r\n\u0085\u2028";
+
+	private static final Grep grep = new Grep(Grep.DEFAULT_UNESCAPE);
+
+	private static String describe(TextBasedMessageData data) {
+		StringBuilder builder = new StringBuilder();
+		builder.append("caller=" + data.getCaller());
+		builder.append(" callee=" + data.getCallee());
+		builder.append(" callees=" + Arrays.toString(data.getCallees()));
+		builder.append(" answer=" + data.getAnswer());
+		builder.append(" message=" + data.getMessage());
+		builder.append(" level=" + data.getLevel());
+		builder.append(" thread=" + data.getThread());
+		builder.append(" note=" + data.getNoteNumber());
+		builder.append(" answerNote=" + data.getAnswerNoteNumber());
+		builder.append(" spawn=" + data.isSpawnMessage());
+		builder.append(" instantly=" + data.returnsInstantly());
+		for (String property : PROPERTIES) {
+			Region region = data.getRegion(property);
+			if (region != null) {
+				builder.append(" " + property + "@" + region.getStart() + "-"
+						+ region.getEnd() + ":" + region.getText());
+			}
+		}
+		return builder.toString();
+	}
+
+	private static String describe(String message, boolean scan) {
+		try {
+			TextBasedMessageData data = scan ? new TextBasedMessageData(message)
+					: new TextBasedMessageData(message, grep);
+			return describe(data);
+		} catch (IllegalArgumentException e) {
+			// NumberFormatException or its wrapper from Grep
+			return "IllegalArgumentException";
+		} catch (Exception e) {
+			return e.getClass().getSimpleName() + ": " + e.getMessage();
+		}
+	}
+
+	private static boolean check(String message) {
+		String expected = describe(message, false);
+		String actual = describe(message, true);
+		if (!expected.equals(actual)) {
+			System.out.println("mismatch for " + escape(message));
+			System.out.println("  regex:   " + expected);
+			System.out.println("  scanner: " + actual);
+			return false;
+		}
+		return true;
+	}
+
+	private static String escape(String string) {
+		StringBuilder builder = new StringBuilder("\"");
+		for (char c : string.toCharArray()) {
+			if (c < ' ' || c > '~') {
+				builder.append(String.format("\\u%04x", (int) c));
+			} else {
+				builder.append(c);
+			}
+		}
+		return builder.append('"').toString();
+	}
+
+	private static String randomString(Random random, int length) {
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+		}
+		return new String(chars);
+	}
+
+	private static String mutate(Random random, String string) {
+		StringBuilder builder = new StringBuilder(string);
+		int mutations = 1 + random.nextInt(3);
+		for (int i = 0; i < mutations; i++) {
+			int pos = random.nextInt(builder.length() + 1);
+			if (random.nextBoolean() || builder.length() == 0) {
+				builder.insert(pos,
+						ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+			} else {
+				builder.deleteCharAt(Math.min(pos, builder.length() - 1));
+			}
+		}
+		return builder.toString();
+	}
+
+	public static void main(String[] argv) throws IOException {
+		URL resource = MessageScannerTest.class.getResource("messages.txt");
+		List<String> corpus = new ArrayList<String>();
+		for (String line : Utilities.readLines(resource,
+				Charset.forName("utf-8"))) {
+			if (line.length() > 0 && !line.startsWith("#")) {
+				corpus.add(line);
+			}
+		}
+		Random random = new Random(4711);
+		int checked = 0;
+		int failed = 0;
+		for (String message : corpus) {
+			checked++;
+			if (!check(message)) {
+				failed++;
+			}
+			for (int i = 0; i < 200; i++) {
+				checked++;
+				if (!check(mutate(random, message))) {
+					failed++;
+				}
+			}
+		}
+		for (int i = 0; i < 500000; i++) {
+			checked++;
+			if (!check(randomString(random, random.nextInt(13)))) {
+				failed++;
+			}
+		}
+		System.out.println(checked + " messages checked, " + failed
+				+ " mismatches");
+		if (failed > 0) {
+			System.exit(1);
+		}
+	}
+
+}
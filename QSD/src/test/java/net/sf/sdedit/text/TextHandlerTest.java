@@ -0,0 +1,156 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.text;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import net.sf.sdedit.config.ConfigurationManager;
+import net.sf.sdedit.config.SequenceConfiguration;
+import net.sf.sdedit.diagram.SDPaintDevice;
+import net.sf.sdedit.diagram.SequenceDiagram;
+import net.sf.sdedit.diagram.SequenceDiagramFactory;
+import net.sf.sdedit.drawable.Drawable;
+import net.sf.sdedit.error.DiagramError;
+import net.sf.sdedit.text.WorkloadGenerator.Defect;
+import net.sf.sdedit.ui.PanelGraphicDevice;
+
+/**
+ * Checks that the {@linkplain TextHandler}s of a
+ * {@linkplain FileDataProviderFactory}, reading from a file, yield the same
+ * diagrams, errors, positions and titles as one reading from a string, for
+ * generated texts with all kinds of line terminators, and with the header in
+ * front of or behind the objects.
+ * 
+ * @author Markus Strauch
+ */
+public class TextHandlerTest {
+
+	/*
+	 * A header behind the objects, which replaces the generated one.
+	 */
+	private static final String LATE_HEADER = "#![Late title]\n#!>>\n"
+			+ "#!late description\n#!<<\n";
+
+	private static String generate(String text, boolean threaded, File file)
+			throws IOException {
+		SequenceConfiguration configuration = ConfigurationManager
+				.createNewDefaultConfiguration(SequenceConfiguration.class)
+				.getDataObject();
+		configuration.setThreaded(threaded);
+		SDPaintDevice paintDevice = new SDPaintDevice(new PanelGraphicDevice(
+				false));
+		SequenceDiagramFactory factory;
+		FileDataProviderFactory providers = null;
+		if (file != null) {
+			OutputStream out = new FileOutputStream(file);
+			try {
+				out.write(text.getBytes("UTF-8"));
+			} finally {
+				out.close();
+			}
+			providers = new FileDataProviderFactory(file, "UTF-8");
+			factory = new SequenceDiagramFactory(providers, paintDevice);
+		} else {
+			factory = new SequenceDiagramFactory(text, paintDevice);
+		}
+		StringBuilder result = new StringBuilder();
+		try {
+			factory.generateDiagram(configuration);
+		} catch (DiagramError e) {
+			result.append(e.getMessage());
+		} finally {
+			if (providers != null) {
+				providers.close();
+			}
+		}
+		TextHandler handler = (TextHandler) factory.getProvider();
+		result.append(" ").append(handler.getLineBegin()).append(" ")
+				.append(handler.getLineEnd()).append(" ")
+				.append(handler.getLineNumber()).append(" ")
+				.append(handler.getTitle()).append(" ")
+				.append(handler.getDescription() == null ? null : String
+						.join("|", handler.getDescription())).append(" ")
+				.append(paintDevice.getWidth()).append("x")
+				.append(paintDevice.getHeight());
+		SequenceDiagram diagram = (SequenceDiagram) factory.getDiagram();
+		if (diagram != null) {
+			// the order of the drawables is not always the same
+			long sum = 0;
+			for (Drawable drawable : diagram.getPaintDevice()) {
+				Object state = diagram.getStateForDrawable(drawable);
+				sum += drawable.getLeft() + 31L * drawable.getTop() + 961L
+						* drawable.getWidth() + 29791L * drawable.getHeight()
+						+ (state == null ? 0 : 923521L * state.hashCode());
+			}
+			result.append(" ").append(sum);
+		}
+		return result.toString();
+	}
+
+	public static void main(String[] argv) throws IOException {
+		File file = File.createTempFile("diagram", ".sd");
+		file.deleteOnExit();
+		int checked = 0;
+		int failed = 0;
+		for (int seed = 0; seed < 40; seed++) {
+			WorkloadGenerator generator = new WorkloadGenerator();
+			generator.setSeed(seed);
+			generator.setLifelines(2 + seed % 7);
+			generator.setMessages(10 + 7 * seed);
+			generator.setThreads(seed % 3 == 0 ? 4 : 0);
+			generator.setFragments(seed % 4);
+			generator.setNotes(seed % 5);
+			String[] texts = new String[Defect.values().length + 2];
+			texts[0] = generator.generate();
+			for (Defect defect : Defect.values()) {
+				texts[defect.ordinal() + 1] = generator.generate(defect);
+			}
+			texts[texts.length - 1] = texts[0] + LATE_HEADER;
+			for (String text : texts) {
+				for (String terminator : new String[] { "\n", "\r\n", "\r" }) {
+					String variant = text.replace("\n", terminator);
+					checked++;
+					String expected = generate(variant,
+							generator.isThreaded(), null);
+					String actual = generate(variant, generator.isThreaded(),
+							file);
+					if (!expected.equals(actual)) {
+						failed++;
+						System.out.println(generator + ": " + expected
+								+ " != " + actual);
+					}
+				}
+			}
+		}
+		System.out.println(checked + " texts checked, " + failed
+				+ " failures");
+		if (failed > 0) {
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,133 @@
+// Copyright (c) 2006 - 2016, Markus Strauch.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+// 
+// * Redistributions of source code must retain the above copyright notice, 
+// this list of conditions and the following disclaimer.
+// * Redistributions in binary form must reproduce the above copyright notice, 
+// this list of conditions and the following disclaimer in the documentation 
+// and/or other materials provided with the distribution.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+// THE POSSIBILITY OF SUCH DAMAGE.
+package net.sf.sdedit.text;
+
+import net.sf.sdedit.config.ConfigurationManager;
+import net.sf.sdedit.config.SequenceConfiguration;
+import net.sf.sdedit.diagram.SDPaintDevice;
+import net.sf.sdedit.diagram.SequenceDiagramFactory;
+import net.sf.sdedit.error.DiagramError;
+import net.sf.sdedit.text.WorkloadGenerator.Defect;
+import net.sf.sdedit.ui.PanelGraphicDevice;
+
+/**
+ * Checks that the texts made by a {@linkplain WorkloadGenerator} are
+ * deterministic, that they are valid diagrams for all shapes (texts without
+ * threads also with the default configuration, which is threaded) and that
+ * each {@linkplain Defect} makes them invalid.
+ * 
+ * @author Markus Strauch
+ */
+public class WorkloadGeneratorTest {
+
+	private static String generate(WorkloadGenerator generator, String text) {
+		return generate(generator, text, false);
+	}
+
+	private static String generate(WorkloadGenerator generator, String text,
+			boolean defaultConfiguration) {
+		SequenceConfiguration configuration = ConfigurationManager
+				.createNewDefaultConfiguration(SequenceConfiguration.class)
+				.getDataObject();
+		if (!defaultConfiguration) {
+			configuration.setThreaded(generator.isThreaded());
+		}
+		try {
+			new SequenceDiagramFactory(text, new SDPaintDevice(
+					new PanelGraphicDevice(false)))
+					.generateDiagram(configuration);
+			return null;
+		} catch (DiagramError e) {
+			return e.getMessage();
+		} catch (RuntimeException e) {
+			return e.toString();
+		}
+	}
+
+	public static void main(String[] argv) {
+		int checked = 0;
+		int failed = 0;
+		for (int lifelines : new int[] { 2, 3, 10, 50 }) {
+			for (int messages : new int[] { 0, 1, 5, 100, 1000 }) {
+				for (int depth : new int[] { 1, 2, 8 }) {
+					for (int threads : new int[] { 0, 1, 5, 30 }) {
+						for (int fragments : new int[] { 0, 1, 7 }) {
+							for (int seed = 0; seed < 2; seed++) {
+								WorkloadGenerator generator = new WorkloadGenerator();
+								generator.setLifelines(lifelines);
+								generator.setMessages(messages);
+								generator.setMaxDepth(depth);
+								generator.setThreads(threads);
+								generator.setFragments(fragments);
+								generator.setNotes(fragments);
+								generator.setSeed(seed);
+								String text = generator.generate();
+								checked++;
+								String error = generate(generator, text);
+								if (error != null) {
+									failed++;
+									System.out.println(generator + ": "
+											+ error);
+								}
+								if (!generator.isThreaded()) {
+									checked++;
+									error = generate(generator, text, true);
+									if (error != null) {
+										failed++;
+										System.out.println(generator
+												+ " (default configuration): "
+												+ error);
+									}
+								}
+								if (!text.equals(generator.generate())) {
+									failed++;
+									System.out.println(generator
+											+ ": not deterministic");
+								}
+								if (seed > 0 || messages > 100) {
+									continue;
+								}
+								for (Defect defect : Defect.values()) {
+									checked++;
+									if (generate(generator,
+											generator.generate(defect)) == null) {
+										failed++;
+										System.out.println(generator + ": "
+												+ defect + " not detected");
+									}
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		System.out.println(checked + " diagrams checked, " + failed
+				+ " failures");
+		if (failed > 0) {
+			System.exit(1);
+		}
+	}
+
+}